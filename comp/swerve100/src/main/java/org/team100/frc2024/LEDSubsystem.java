@@ -3,28 +3,34 @@ package org.team100.frc2024;
 import java.util.Optional;
 
 import org.team100.frc2024.motion.shooter.Shooter;
+import org.team100.lib.commands.Subsystem100;
 import org.team100.lib.indicator.LEDIndicator;
 import org.team100.lib.indicator.LEDIndicator.State;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
-public class LEDSubsystem extends SubsystemBase {
+/**
+ * Runs at 25 Hz, every other tick: fast enough for the 80 ms flash, and
+ * nobody can see the difference.
+ */
+public class LEDSubsystem extends Subsystem100 {
+    private static final double kPeriodS = 0.04;
 
     LEDIndicator m_indicator;
     SensorInterface m_sensors;
     Shooter m_shooter;
 
     public LEDSubsystem(LEDIndicator indicator, SensorInterface sensors, Shooter shooter) {
+        super(kPeriodS);
         m_indicator = indicator;
         m_sensors = sensors;
         m_shooter = shooter;
     }
 
     @Override
-    public void periodic() {
+    public void periodic100(double dt) {
         boolean atVelocitySetpoint = m_shooter.atVelocitySetpoint(false);
         boolean indexerIsEmpty = m_sensors.getFeederSensor();
         SmartDashboard.putBoolean("FEEDER", indexerIsEmpty);
@@ -57,4 +63,9 @@ public class LEDSubsystem extends SubsystemBase {
 
         m_indicator.periodic();
     }
+
+    @Override
+    public String getGlassName() {
+        return "LEDs";
+    }
 }
@@ -3,12 +3,14 @@ package org.team100.frc2024;
 import java.io.IOException;
 
 import org.team100.frc2024.config.AutonChooser;
+import org.team100.frc2024.motion.drivetrain.ShooterUtil;
 import org.team100.lib.config.Identity;
 import org.team100.lib.dashboard.Glassy;
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
 import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.util.Housekeeping;
 import org.team100.lib.util.Names;
 import org.team100.lib.util.Util;
 
@@ -17,6 +19,7 @@ import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.util.WPILibVersion;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
@@ -29,6 +32,7 @@ public class Robot extends TimedRobot implements Glassy {
     private final String m_name = Names.name(this);
     private RobotContainer m_robotContainer;
     private String m_logName = "";
+    private double m_maxPeriodicS;
 
     @Override
     public void robotInit() {
@@ -52,11 +56,16 @@ public class Robot extends TimedRobot implements Glassy {
 
         m_robotContainer.onInit();
 
+        // solve the shoot-on-the-move table now, rather than in the first
+        // cycle that shoots.
+        ShooterUtil.init();
+
         DataLogManager.start();
     }
 
     @Override
     public void robotPeriodic() {
+        double startS = Timer.getFPGATimestamp();
         m_robotContainer.beforeCommandCycle();
         CommandScheduler.getInstance().run();
 
@@ -69,6 +78,15 @@ public class Robot extends TimedRobot implements Glassy {
             Util.warn("FLUSHING EVERY LOOP, DO NOT USE IN COMP");
             NetworkTableInstance.getDefault().flush();
         }
+
+        // before housekeeping, which fills whatever time is left.
+        double elapsedS = Timer.getFPGATimestamp() - startS;
+        m_maxPeriodicS = Math.max(m_maxPeriodicS, elapsedS);
+        t.log(Level.DEBUG, m_name, "robotPeriodic/ms", elapsedS * 1000);
+        t.log(Level.DEBUG, m_name, "robotPeriodic/max ms", m_maxPeriodicS * 1000);
+
+        // last, so it only uses what's left of the cycle.
+        Housekeeping.get().run(startS);
     }
 
     @Override
@@ -93,6 +111,7 @@ public class Robot extends TimedRobot implements Glassy {
         // this forces the static initializer to run, so that the widget appears.
         // TODO: make the LEDs blink somehow indicating the active auton.
         t.log(Level.INFO, m_name, "active auton routine", AutonChooser.routine().name());
+        m_robotContainer.compileAuton();
     }
 
     @Override
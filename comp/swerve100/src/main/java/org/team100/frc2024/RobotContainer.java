@@ -9,9 +9,9 @@ import org.team100.frc2024.RobotState100.AmpState100;
 import org.team100.frc2024.RobotState100.FeederState100;
 import org.team100.frc2024.RobotState100.IntakeState100;
 import org.team100.frc2024.RobotState100.ShooterState100;
-import org.team100.frc2024.commands.AutonCommand;
 import org.team100.frc2024.commands.drivetrain.DriveWithProfileNote;
 import org.team100.frc2024.config.AutonChooser;
+import org.team100.frc2024.motion.AutoCompiler;
 import org.team100.frc2024.motion.AutoMaker;
 import org.team100.frc2024.motion.ChangeAmpState;
 import org.team100.frc2024.motion.FeedCommand;
@@ -50,6 +50,8 @@ import org.team100.lib.controller.HolonomicDriveController3;
 import org.team100.lib.controller.State100;
 import org.team100.lib.copies.SwerveDrivePoseEstimator100;
 import org.team100.lib.dashboard.Glassy;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.GeometryUtil;
 import org.team100.lib.hid.DriverControl;
 import org.team100.lib.hid.DriverControlProxy;
@@ -60,6 +62,7 @@ import org.team100.lib.indicator.LEDStrip;
 import org.team100.lib.localization.AprilTagFieldLayoutWithCorrectOrientation;
 import org.team100.lib.localization.NotePosition24ArrayListener;
 import org.team100.lib.localization.VisionDataProvider24;
+import org.team100.lib.motion.drivetrain.DriveLoop;
 import org.team100.lib.motion.drivetrain.SwerveDriveSubsystem;
 import org.team100.lib.motion.drivetrain.SwerveLocal;
 import org.team100.lib.motion.drivetrain.SwerveState;
@@ -113,7 +116,9 @@ public class RobotContainer implements Glassy {
     final SwerveDriveSubsystem m_drive;
     private final SwerveModuleCollection m_modules;
 
-    private final Command m_auton;
+    private final AutoCompiler m_autoCompiler;
+    /** The auton we scheduled, so we can cancel it. */
+    private Command m_auton;
 
     private final SelfTestRunner m_selfTest;
 
@@ -192,6 +197,8 @@ public class RobotContainer implements Glassy {
                 poseEstimator,
                 swerveLocal,
                 driverControl::speed);
+        if (Experiments.instance.enabled(Experiment.HighRateDrive))
+            m_drive.startLoop(DriveLoop.kDefaultPeriodS);
 
         m_feeder = new FeederSubsystem(39);
 
@@ -248,7 +255,7 @@ public class RobotContainer implements Glassy {
 
         List<TimingConstraint> constraints = new TimingConstraintFactory(swerveKinodynamics).allGood();
 
-        TrajectoryPlanner planner = new TrajectoryPlanner();
+        TrajectoryPlanner planner = new TrajectoryPlanner(true);
 
         whileTrue(driverControl::driveWithFancyTrajec,
                 new FancyTrajectory(m_drive, planner, constraints));
@@ -342,13 +349,13 @@ public class RobotContainer implements Glassy {
 
         DriveManually driveManually = new DriveManually(driverControl::twist, m_drive);
 
-        driveManually.register("MODULE_STATE", false,
+        driveManually.register(DriveManually.Mode.MODULE_STATE, false,
                 new SimpleManualModuleStates(m_name, swerveKinodynamics));
 
-        driveManually.register("ROBOT_RELATIVE_CHASSIS_SPEED", false,
+        driveManually.register(DriveManually.Mode.ROBOT_RELATIVE_CHASSIS_SPEED, false,
                 new ManualChassisSpeeds(m_name, swerveKinodynamics));
 
-        driveManually.register("ROBOT_RELATIVE_FACING_NOTE", false,
+        driveManually.register(DriveManually.Mode.ROBOT_RELATIVE_FACING_NOTE, false,
                 new ManualWithNoteRotation(
                         m_name,
                         swerveKinodynamics,
@@ -358,10 +365,10 @@ public class RobotContainer implements Glassy {
                         omegaController,
                         driverControl::trigger));
 
-        driveManually.register("FIELD_RELATIVE_TWIST", false,
+        driveManually.register(DriveManually.Mode.FIELD_RELATIVE_TWIST, false,
                 new ManualFieldRelativeSpeeds(m_name, swerveKinodynamics));
 
-        driveManually.register("SNAPS", true,
+        driveManually.register(DriveManually.Mode.SNAPS, true,
                 new ManualWithHeading(
                         m_name,
                         swerveKinodynamics,
@@ -369,7 +376,7 @@ public class RobotContainer implements Glassy {
                         driverControl::desiredRotation,
                         thetaController,
                         omegaController));
-        driveManually.register("FIELD_RELATIVE_FACING_NOTE", false,
+        driveManually.register(DriveManually.Mode.FIELD_RELATIVE_FACING_NOTE, false,
                 new FieldManualWithNoteRotation(
                         m_name,
                         swerveKinodynamics,
@@ -379,7 +386,7 @@ public class RobotContainer implements Glassy {
                         omegaController,
                         driverControl::trigger));
 
-        driveManually.register("LOCKED", false,
+        driveManually.register(DriveManually.Mode.LOCKED, false,
                 new ManualWithTargetLock(
                         m_name,
                         swerveKinodynamics,
@@ -389,7 +396,7 @@ public class RobotContainer implements Glassy {
                         omegaController,
                         driverControl::trigger));
 
-        driveManually.register("SHOOTER_LOCK", false,
+        driveManually.register(DriveManually.Mode.SHOOTER_LOCK, false,
                 new ManualWithShooterLock(
                         m_name,
                         swerveKinodynamics,
@@ -506,32 +513,22 @@ public class RobotContainer implements Glassy {
         // Registers the subsystems so that they run with the specified priority
         // SubsystemPriority.registerWithPriority();
 
-        // m_auton = m_AutoMaker.fourNoteAuto(m_alliance, notePositionDetector,
-        // swerveKinodynamics, m_sensors);
-
-        // joel mar 13: the alliance command chooses which of these autos to run
-        m_auton = new AllianceCommand(
-                m_AutoMaker.fourNoteAuto(Alliance.Red, notePositionDetector, swerveKinodynamics, m_sensors),
-                m_AutoMaker.fourNoteAuto(Alliance.Blue, notePositionDetector, swerveKinodynamics, m_sensors));
-
-        // this illustrates how to use AutonCommand together with AllianceCommand
-        Command choosableAuton = new AutonCommand(
+        // The compiler plans only the selected routine, for our alliance, in the
+        // background while disabled, instead of planning all of them here.
+        // joel mar 13: we always run the four note auto; to use the chooser,
+        // supply AutonChooser::routine as the selector.
+        m_autoCompiler = new AutoCompiler(
+                m_AutoMaker,
                 Map.of(
-                        AutonChooser.Routine.FOUR_NOTE, new AllianceCommand(
-                                m_AutoMaker.fourNoteAuto(
-                                        Alliance.Red, notePositionDetector, swerveKinodynamics, m_sensors),
-                                m_AutoMaker.fourNoteAuto(
-                                        Alliance.Blue, notePositionDetector, swerveKinodynamics, m_sensors)),
-                        AutonChooser.Routine.FIVE_NOTE, new AllianceCommand(
-                                new PrintCommand("five note red goes here"),
-                                new PrintCommand("five note blue goes here")),
-                        AutonChooser.Routine.COMPLEMENTARY, new AllianceCommand(
-                                new PrintCommand("complementary red goes here"),
-                                new PrintCommand("complementary blue goes here")),
-                        AutonChooser.Routine.NOTHING, new AllianceCommand(
-                                new PrintCommand("nothing red goes here"),
-                                new PrintCommand("nothing blue goes here"))),
-                AutonChooser::routine);
+                        AutonChooser.Routine.FOUR_NOTE, alliance -> m_AutoMaker.fourNoteAuto(
+                                alliance, notePositionDetector, swerveKinodynamics, m_sensors),
+                        AutonChooser.Routine.FIVE_NOTE,
+                        alliance -> new PrintCommand("five note " + alliance + " goes here"),
+                        AutonChooser.Routine.COMPLEMENTARY,
+                        alliance -> new PrintCommand("complementary " + alliance + " goes here"),
+                        AutonChooser.Routine.NOTHING,
+                        alliance -> new PrintCommand("nothing " + alliance + " goes here")),
+                () -> AutonChooser.Routine.FOUR_NOTE);
 
         // selftest uses fields we just initialized above, so it comes last.
         m_selfTest = new SelfTestRunner(this, operatorControl::selfTestEnable);
@@ -569,9 +566,13 @@ public class RobotContainer implements Glassy {
         m_selfTest.schedule();
     }
 
+    /** Compile the selected auton in the background. Call this while disabled. */
+    public void compileAuton() {
+        m_autoCompiler.periodic();
+    }
+
     public void scheduleAuton() {
-        if (m_auton == null)
-            return;
+        m_auton = m_autoCompiler.get();
         m_auton.schedule();
     }
 
@@ -605,6 +606,7 @@ public class RobotContainer implements Glassy {
     public void close() {
         if (m_autonSelector != null)
             m_autonSelector.close();
+        m_autoCompiler.close();
         // m_indicator.close();
         m_modules.close();
     }
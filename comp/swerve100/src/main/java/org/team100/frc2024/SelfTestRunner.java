@@ -5,6 +5,7 @@ import java.util.function.BooleanSupplier;
 
 import org.team100.frc2024.selftest.AmpSelfTest;
 import org.team100.frc2024.selftest.IntakeSelfTest;
+import org.team100.frc2024.selftest.ShooterSelfTest;
 import org.team100.lib.commands.drivetrain.DriveManually;
 import org.team100.lib.commands.drivetrain.Oscillate;
 import org.team100.lib.commands.drivetrain.Veering;
@@ -14,7 +15,7 @@ import org.team100.lib.motion.drivetrain.manual.SimpleManualModuleStates;
 import org.team100.lib.selftest.DefenseSelfTest;
 import org.team100.lib.selftest.DriveManuallySelfTest;
 import org.team100.lib.selftest.OscillateSelfTest;
-import org.team100.lib.selftest.SelfTestCase;
+import org.team100.lib.selftest.SelfTestEngine;
 import org.team100.lib.selftest.SelfTestListener;
 import org.team100.lib.selftest.VeeringSelfTest;
 import org.team100.lib.util.ExcludeFromJacocoGeneratedReport;
@@ -22,12 +23,11 @@ import org.team100.lib.util.Util;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.Subsystem;
 
 /**
- * Run all the test cases sequentially.
+ * Run all the test cases, concurrently where they don't share subsystems, so
+ * the mechanism cases run while the drivetrain cases do.
  * 
  * This is in the frc2024 package in order to get package-private access to
  * RobotContainer internals.
@@ -47,7 +47,7 @@ public class SelfTestRunner extends Command {
 
     private static final int kLimit = 10;
     private final RobotContainer m_container;
-    private final SequentialCommandGroup m_group;
+    private final SelfTestEngine m_engine;
     private final SelfTestListener m_listener;
     private final BooleanSupplier m_enable;
 
@@ -55,8 +55,8 @@ public class SelfTestRunner extends Command {
     public SelfTestRunner(RobotContainer container, BooleanSupplier enable) {
         m_container = container;
         m_enable = enable;
-        m_group = new SequentialCommandGroup();
         m_listener = new SelfTestListener();
+        m_engine = new SelfTestEngine(m_listener);
 
         // a blocking morse code message to start the test
         // joel 2/22/24 removing for SVR, put it back after that
@@ -76,9 +76,9 @@ public class SelfTestRunner extends Command {
             DriveManuallySelfTest driveManuallyTest = new DriveManuallySelfTest(drivetrain, m_listener);
 
             DriveManually driveManually = new DriveManually(driveManuallyTest::treatment, drivetrain);
-            driveManually.register("MODULE_STATE", false,
+            driveManually.register(DriveManually.Mode.MODULE_STATE, false,
                     new SimpleManualModuleStates("foo", SwerveKinodynamicsFactory.forTest()));
-            driveManually.overrideMode(() -> "MODULE_STATE");
+            driveManually.overrideMode(() -> DriveManually.Mode.MODULE_STATE);
             addCase(driveManuallyTest, driveManually);
 
             // this only tests the end-state
@@ -99,7 +99,8 @@ public class SelfTestRunner extends Command {
         }
 
         if (kTestMechanisms) {
-            // mechanism tests
+            // mechanism tests. these don't share subsystems with the drive tests,
+            // or with each other, so they all run alongside the first drive test.
             IntakeSelfTest intakeSelfTest = new IntakeSelfTest(container.m_intake, m_listener);
             addCase(intakeSelfTest, container.m_intake.run(intakeSelfTest::treatment));
 
@@ -109,8 +110,8 @@ public class SelfTestRunner extends Command {
             AmpSelfTest ampSelfTest = new AmpSelfTest(container.m_amp, m_listener);
             addCase(ampSelfTest, container.m_amp.run(ampSelfTest::treatment));
 
-            // ShooterSelfTest shooterSelfTest = new ShooterSelfTest(container.m_shooter, m_listener);
-            // addCase(shooterSelfTest, container.m_shooter.run(shooterSelfTest::treatment));
+            ShooterSelfTest shooterSelfTest = new ShooterSelfTest(container.m_shooter, m_listener);
+            addCase(shooterSelfTest, container.m_shooter.run(shooterSelfTest::treatment));
         }
 
         if (kTestVision) {
@@ -128,12 +129,11 @@ public class SelfTestRunner extends Command {
     }
 
     /**
-     * add commands to the group that announce the test being run, and run a new
-     * testcase with deadline as the observer of commands.
+     * add a new testcase with deadline as the observer of commands. the engine
+     * announces each case as it starts.
      */
     private void addCase(Command deadline, Command... commands) {
-        m_group.addCommands(new InstantCommand(() -> Util.println("\nRunning " + deadline.getName() + "...")));
-        m_group.addCommands(new SelfTestCase(deadline, commands));
+        m_engine.addCase(deadline, commands);
     }
 
     @Override
@@ -150,12 +150,12 @@ public class SelfTestRunner extends Command {
             waitCounter += 1;
             DriverStation.refreshData();
         }
-        m_group.initialize();
+        m_engine.initialize();
     }
 
     @Override
     public final void execute() {
-        m_group.execute();
+        m_engine.execute();
     }
 
     @Override
@@ -164,7 +164,7 @@ public class SelfTestRunner extends Command {
             Util.warn("Aborting test due to enable");
             return true;
         }
-        if (m_group.isFinished()) {
+        if (m_engine.isFinished()) {
             Util.warn("Test complete.");
             return true;
         }
@@ -173,13 +173,14 @@ public class SelfTestRunner extends Command {
 
     @Override
     public final void end(boolean interrupted) {
-        m_group.end(interrupted);
+        m_engine.end(interrupted);
         Util.println(m_listener.summary());
+        Util.println(m_listener.report());
     }
 
     @Override
     public Set<Subsystem> getRequirements() {
-        return m_group.getRequirements();
+        return m_engine.getRequirements();
     }
 
     private void sleep1() {
@@ -0,0 +1,176 @@
+package org.team100.frc2024.motion;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.team100.frc2024.config.AutonChooser.Routine;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.trajectory.TrajectoryCache;
+import org.team100.lib.util.Names;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.PrintCommand;
+
+/**
+ * Compiles the selected auton routine for the current alliance while
+ * disabled, so that nothing is planned when the match starts, and nothing
+ * is planned for the routines and alliance we're not going to run.
+ *
+ * Compilation has three steps:
+ *
+ * 1. record: run the routine factory on the main thread with planning turned
+ * off, to find out which legs it needs. This is cheap.
+ *
+ * 2. plan: plan the legs in the background, using the AutoMaker's cache, so
+ * legs shared between routines, and mirror-image legs for the other alliance,
+ * are reused.
+ *
+ * 3. link: run the factory again on the main thread. Every leg is a cache hit,
+ * so this is cheap too.
+ *
+ * The command graph is built on the main thread because the command scheduler
+ * isn't thread-safe.
+ *
+ * If the selection changes, the new one is compiled; the cache keeps the old
+ * legs. If auton starts before compilation is done, the routine is linked
+ * right away: legs the background is planning are waited for, and the rest
+ * are planned on the main thread, which is what used to happen at startup.
+ */
+public class AutoCompiler {
+    private final Telemetry t = Telemetry.get();
+    private final String m_name;
+    private final AutoMaker m_maker;
+    private final Map<Routine, Function<Alliance, Command>> m_routines;
+    private final Supplier<Routine> m_selector;
+    private final ExecutorService m_executor;
+
+    /** The selection being compiled, or compiled. */
+    private Routine m_routine;
+    private Alliance m_alliance;
+    /** The background planning task for the current selection. */
+    private Future<?> m_planning;
+    /** The linked command for the current selection, null until ready. */
+    private Command m_compiled;
+    private int m_legs;
+    private double m_startS;
+    private double m_compileTimeS;
+
+    /**
+     * @param maker    the routine factories use this maker
+     * @param routines factories for each routine
+     * @param selector which routine to run
+     */
+    public AutoCompiler(
+            AutoMaker maker,
+            Map<Routine, Function<Alliance, Command>> routines,
+            Supplier<Routine> selector) {
+        m_name = Names.name(this);
+        m_maker = maker;
+        m_routines = routines;
+        m_selector = selector;
+        m_executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "AutoCompiler");
+            thread.setDaemon(true);
+            // don't compete with the main loop
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Call this periodically while disabled. Starts compiling if the selection
+     * changed, finishes compiling if the planning is done, and reports status.
+     */
+    public void periodic() {
+        Routine routine = m_selector.get();
+        Optional<Alliance> alliance = DriverStation.getAlliance();
+        if (routine != null && alliance.isPresent()
+                && (routine != m_routine || alliance.get() != m_alliance)) {
+            start(routine, alliance.get());
+        }
+        if (m_compiled == null && m_planning != null && m_planning.isDone()) {
+            link();
+        }
+        t.log(Level.INFO, m_name, "routine", m_routine == null ? "none" : m_routine.name());
+        t.log(Level.INFO, m_name, "alliance", m_alliance == null ? "none" : m_alliance.name());
+        t.log(Level.INFO, m_name, "ready", m_compiled != null);
+        t.log(Level.INFO, m_name, "legs", m_legs);
+        t.log(Level.INFO, m_name, "compile time (s)", m_compileTimeS);
+        TrajectoryCache cache = m_maker.getCache();
+        t.log(Level.DEBUG, m_name, "cache size", cache.size());
+        t.log(Level.DEBUG, m_name, "cache plans", cache.plans());
+        t.log(Level.DEBUG, m_name, "cache mirrors", cache.mirrors());
+    }
+
+    /**
+     * The routine for the current selection, compiled synchronously if it's not
+     * ready yet.
+     */
+    public Command get() {
+        Routine routine = m_selector.get();
+        Optional<Alliance> alliance = DriverStation.getAlliance();
+        if (routine == null || alliance.isEmpty()) {
+            return new PrintCommand("AutoCompiler: no routine or alliance!");
+        }
+        if (m_compiled != null && routine == m_routine && alliance.get() == m_alliance) {
+            return m_compiled;
+        }
+        Util.warn("AutoCompiler: auton is not ready, compiling now");
+        if (routine != m_routine || alliance.get() != m_alliance) {
+            start(routine, alliance.get());
+        }
+        // Don't restart the planning for the same selection; the cache makes
+        // the link wait for legs in flight and plan only the missing ones.
+        if (m_compiled == null)
+            link();
+        return m_compiled;
+    }
+
+    public void close() {
+        m_executor.shutdownNow();
+    }
+
+    ///////////////////////////////////////
+
+    private void start(Routine routine, Alliance alliance) {
+        m_routine = routine;
+        m_alliance = alliance;
+        m_compiled = null;
+        m_startS = Timer.getFPGATimestamp();
+        if (m_planning != null)
+            m_planning.cancel(false);
+        Function<Alliance, Command> factory = m_routines.get(routine);
+        if (factory == null) {
+            m_legs = 0;
+            m_planning = null;
+            m_compiled = new PrintCommand("AutoCompiler: no factory for " + routine.name());
+            m_compileTimeS = 0;
+            return;
+        }
+        List<TrajectoryCache.Request> legs = m_maker.legs(() -> factory.apply(alliance));
+        m_legs = legs.size();
+        TrajectoryCache cache = m_maker.getCache();
+        m_planning = m_executor.submit(() -> {
+            for (TrajectoryCache.Request leg : legs) {
+                cache.get(leg);
+            }
+        });
+    }
+
+    /** Build the command graph on this thread, planning anything still missing. */
+    private void link() {
+        m_compiled = m_routines.get(m_routine).apply(m_alliance);
+        m_compileTimeS = Timer.getFPGATimestamp() - m_startS;
+    }
+}
@@ -1,7 +1,9 @@
 package org.team100.frc2024.motion;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import org.opencv.core.Mat;
 import org.team100.frc2024.SensorInterface;
@@ -23,6 +25,7 @@ import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.sensors.HeadingInterface;
 import org.team100.lib.timing.TimingConstraint;
 import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.TrajectoryCache;
 import org.team100.lib.trajectory.TrajectoryPlanner;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -57,6 +60,14 @@ public class AutoMaker {
     private final double kShooterScale;
     private final double kIntakeOffset = 0;
 
+    /** Red poses are blue poses mirrored across the middle of the field. */
+    private static final double kFieldWidthM = 8.221;
+
+    /** Every leg goes through here, so each is planned once. */
+    private final TrajectoryCache m_cache;
+    /** Non-null while recording legs instead of planning them. */
+    private List<TrajectoryCache.Request> m_recording;
+
     public enum FieldPoint {
         NOTE1, NOTE2, NOTE3, NOTE4, NOTE5, NOTE6, NOTE7, NOTE8, CLOSEWINGSHOT, FARWINGSHOT, STAGESHOT,
         CENTRALSTAGEOPENING,
@@ -259,13 +270,33 @@ public class AutoMaker {
         m_amp = amp;
         m_heading = heading;
         m_limits = limits;
+        m_cache = new TrajectoryCache(planner, kFieldWidthM);
+    }
+
+    public TrajectoryCache getCache() {
+        return m_cache;
+    }
+
+    /**
+     * Run the routine factory without planning anything, and return the legs it
+     * would plan. The commands it makes are placeholders and should be
+     * discarded; plan the legs with the cache, and then run the factory again.
+     */
+    public List<TrajectoryCache.Request> legs(Supplier<Command> routine) {
+        m_recording = new ArrayList<>();
+        try {
+            routine.get();
+            return m_recording;
+        } finally {
+            m_recording = null;
+        }
     }
 
     public Translation2d forAlliance(Translation2d translation, Alliance alliance) {
         if (alliance == Alliance.Blue) {
             return translation;
         }
-        return new Translation2d(translation.getX(), 8.221 - translation.getY());
+        return new Translation2d(translation.getX(), kFieldWidthM - translation.getY());
     }
 
     public Rotation2d forAlliance(Rotation2d rotation, Alliance alliance) {
@@ -288,8 +319,7 @@ public class AutoMaker {
         List<Pose2d> waypointsM = List.of(startWaypoint, betweenWaypoint, endWaypoint);
         Rotation2d betweenHeading = new Rotation2d(Math.PI);
         List<Rotation2d> headings = List.of(startPose.getRotation(), betweenHeading, endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -320,8 +350,7 @@ public class AutoMaker {
         System.out.println("ENNNNNNNNNNNNNNDDDDDDDDDDDDDD" + endPose.getRotation());
         List<Rotation2d> headings = List.of(startPose.getRotation(), betweenHeading, betweenHeading,
                 endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, maxVel,
-                maxAcc);
+        Trajectory100 trajectory = plan(waypointsM, headings, maxVel, maxAcc);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -337,8 +366,7 @@ public class AutoMaker {
         List<Pose2d> waypointsM = List.of(new Pose2d(2, 2, new Rotation2d()),
                 new Pose2d(5, 2, new Rotation2d()));
         List<Rotation2d> headings = List.of(new Rotation2d(Math.PI), new Rotation2d(Math.PI));
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -355,8 +383,7 @@ public class AutoMaker {
         // List<Rotation2d> headings = List.of(new Rotation2d(Math.PI), new
         // Rotation2d(0));
 
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -364,24 +391,21 @@ public class AutoMaker {
         List<Pose2d> waypointsM = List.of(new Pose2d(5, 2, new Rotation2d(Math.PI)),
                 new Pose2d(2, 2, new Rotation2d(Math.PI)));
         List<Rotation2d> headings = List.of(new Rotation2d(Math.PI), new Rotation2d(Math.PI));
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
     public TrajectoryCommand100 tuningTrajectory3() {
         List<Pose2d> waypointsM = List.of(new Pose2d(), new Pose2d());
         List<Rotation2d> headings = List.of(new Rotation2d(Math.PI), new Rotation2d());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
     public TrajectoryCommand100 tuningTrajectory4() {
         List<Pose2d> waypointsM = List.of(new Pose2d(), new Pose2d());
         List<Rotation2d> headings = List.of(new Rotation2d(), new Rotation2d(Math.PI));
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -397,8 +421,7 @@ public class AutoMaker {
 
         List<Pose2d> waypointsM = List.of(startWaypoint, waypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), endPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints,
-                kAutoNoteMaxVelM_S, kAutoNoteMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kAutoNoteMaxVelM_S, kAutoNoteMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -414,8 +437,7 @@ public class AutoMaker {
 
         List<Pose2d> waypointsM = List.of(startWaypoint, waypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), endPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints,
-                2, 2);
+        Trajectory100 trajectory = plan(waypointsM, headings, 2, 2);
         return new TrajectoryCommand100(m_swerve, trajectory, DriveMotionControllerFactory.complementPIDF());
     }
 
@@ -431,8 +453,7 @@ public class AutoMaker {
 
         List<Pose2d> waypointsM = List.of(startWaypoint, waypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), endPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints,
-                2, 2);
+        Trajectory100 trajectory = plan(waypointsM, headings, 2, 2);
         return new TrajectoryCommand100(m_swerve, trajectory, DriveMotionControllerFactory.complementPIDF());
     }
 
@@ -444,7 +465,7 @@ public class AutoMaker {
         Pose2d endWaypoint = new Pose2d(endPose.getTranslation(), angleToGoal);
         List<Pose2d> waypointsM = List.of(startWaypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, maxVel, maxAcc);
+        Trajectory100 trajectory = plan(waypointsM, headings, maxVel, maxAcc);
         return new TrajectoryCommand100(m_swerve, trajectory, DriveMotionControllerFactory.straightPIDF());
     }
 
@@ -456,7 +477,7 @@ public class AutoMaker {
         Pose2d endWaypoint = new Pose2d(endPose.getTranslation(),  new Rotation2d(endingSplineDirection));
         List<Pose2d> waypointsM = List.of(startWaypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, maxVel, maxAcc);
+        Trajectory100 trajectory = plan(waypointsM, headings, maxVel, maxAcc);
         return new TrajectoryCommand100(m_swerve, trajectory, DriveMotionControllerFactory.complementPIDF());
     }
 
@@ -482,8 +503,7 @@ public class AutoMaker {
         // return new TrajectoryCommand100(m_swerve, trajec tory, new
         // DrivePIDFController(false, 2, 2));
 
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints,
-                4, 4);
+        Trajectory100 trajectory = plan(waypointsM, headings, 4, 4);
         return new TrajectoryCommand100(
                 m_swerve,
                 trajectory,
@@ -505,7 +525,7 @@ public class AutoMaker {
 
         List<Pose2d> waypointsM = List.of(startWaypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), new Rotation2d(Math.PI));
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, 4, 4);
+        Trajectory100 trajectory = plan(waypointsM, headings, 4, 4);
         return new TrajectoryCommand100(m_swerve, trajectory, DriveMotionControllerFactory.straightPIDF());
 
         // List<Pose2d> waypointsM = List.of(startWaypoint, midPoint, endWaypoint);
@@ -536,8 +556,7 @@ public class AutoMaker {
         Pose2d endWaypoint = new Pose2d(endPose.getTranslation(), endRotation);
         List<Pose2d> waypointsM = List.of(startWaypoint, betweenWaypoint, endWaypoint);
         List<Rotation2d> headings = List.of(startPose.getRotation(), betweenPose.getRotation(), endPose.getRotation());
-        Trajectory100 trajectory = m_planner.generateTrajectory(false, waypointsM, headings, m_constraints, kMaxVelM_S,
-                kMaxAccelM_S_S);
+        Trajectory100 trajectory = plan(waypointsM, headings, kMaxVelM_S, kMaxAccelM_S_S);
         return new TrajectoryCommand100(m_swerve, trajectory, m_controller);
     }
 
@@ -797,6 +816,18 @@ public class AutoMaker {
 
     }
 
+    /** Find or plan the trajectory for one leg. */
+    private Trajectory100 plan(List<Pose2d> waypointsM, List<Rotation2d> headings, double maxVel, double maxAcc) {
+        TrajectoryCache.Request request = new TrajectoryCache.Request(
+                waypointsM, headings, m_constraints, maxVel, maxAcc);
+        if (m_recording != null) {
+            m_recording.add(request);
+            if (!m_cache.contains(request))
+                return new Trajectory100();
+        }
+        return m_cache.get(request);
+    }
+
     public Command tuning() {
         return tuningTrajectory6();
     }
@@ -9,14 +9,26 @@ import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
 import org.team100.lib.units.Distance100;
 
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.AccelStrategy;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
 
 import edu.wpi.first.math.controller.PIDController;
 
 //TODO I will fix this shitty shitty shitty class after SVR - Sanjan 
 
 public class GravityServo {
+    /** For the Smart Motion velocity feedforward, which is duty cycle per RPM. */
+    private static final double kFreeSpeedRPM = 5676;
+    /**
+     * Smart Motion tracks its profile with the SparkMax velocity loop, so its P
+     * is duty cycle per RPM of velocity error, unrelated to m_controller, which
+     * is a position gain. This is REV's example value; calibrate it.
+     */
+    private static final double kOutboardVelocityP = 5e-5;
 
     String m_name;
     SysParam m_params;
@@ -33,6 +45,10 @@ public class GravityServo {
 
     private State100 m_goal = new State100(0, 0);
     private State100 m_setpoint = new State100(0, 0);
+    /** Smart Motion is configured on first use. */
+    private boolean m_outboard = false;
+    /** The motor encoder matches the absolute one, for outboard control. */
+    private boolean m_synced = false;
 
     public GravityServo(
             CANSparkMax motor,
@@ -73,6 +89,8 @@ public class GravityServo {
             return;
         }
         m_setpoint = new State100(getPosition(), 0);
+        // the next outboard command resyncs the motor encoder.
+        m_synced = false;
     }
 
     public Double getPosition() {
@@ -141,6 +159,39 @@ public class GravityServo {
 
     }
 
+    /**
+     * Like setPosition(), but the SparkMax runs the profile (Smart Motion), with
+     * the SysParam constraints, and follows it with its velocity loop, so the
+     * RIO just sends the goal and the gravity feedforward.
+     * 
+     * The first call after reset() syncs the motor encoder with the absolute
+     * encoder, so servos that never use this don't pay for the CAN write.
+     */
+    public void setPositionOutboard(double goal) {
+        Double measurement = m_encoder.getPosition();
+        if (measurement == null) {
+            return;
+        }
+        if (!m_outboard) {
+            configureOutboard();
+            m_outboard = true;
+        }
+        if (!m_synced) {
+            m_motor.getEncoder().setPosition(measurement * motorRevsPerUnit());
+            m_synced = true;
+        }
+        m_goal = new State100(goal, 0.0);
+        double gravityDutyCycle = 0.006 * Math.cos(measurement);
+        m_motor.getPIDController().setReference(
+                goal * motorRevsPerUnit(),
+                ControlType.kSmartMotion,
+                0,
+                gravityDutyCycle,
+                ArbFFUnits.kPercentOut);
+        t.log(Level.DEBUG, m_name, "Goal", m_goal);
+        t.log(Level.DEBUG, m_name, "Measurement", measurement);
+    }
+
     public void setDutyCycle(double value) {
         m_motor.set(value);
     }
@@ -242,4 +293,28 @@ public class GravityServo {
         m_motor.set(0);
     }
 
+    /** Mechanism units (radians) to motor revolutions. */
+    private double motorRevsPerUnit() {
+        return m_params.gearRatio() / (2 * Math.PI);
+    }
+
+    /**
+     * Smart Motion uses motor revolutions and RPM, so scale the constraints.
+     * The feedback is a velocity gain of its own, see kOutboardVelocityP.
+     */
+    private void configureOutboard() {
+        double revsPerUnit = motorRevsPerUnit();
+        SparkPIDController pid = m_motor.getPIDController();
+        pid.setP(kOutboardVelocityP, 0);
+        pid.setI(0, 0);
+        pid.setD(0, 0);
+        pid.setFF(1 / kFreeSpeedRPM, 0);
+        pid.setOutputRange(-1, 1, 0);
+        pid.setSmartMotionAccelStrategy(AccelStrategy.kTrapezoidal, 0);
+        pid.setSmartMotionMaxVelocity(m_params.maxVelM_S() * revsPerUnit * 60, 0);
+        pid.setSmartMotionMaxAccel(m_params.maxAccelM_S2() * revsPerUnit * 60, 0);
+        pid.setSmartMotionMinOutputVelocity(0, 0);
+        pid.setSmartMotionAllowedClosedLoopError(m_controller.getPositionTolerance() * revsPerUnit, 0);
+    }
+
 }
@@ -10,6 +10,7 @@ import org.team100.frc2024.SensorInterface;
 import org.team100.frc2024.motion.drivetrain.ShooterUtil;
 import org.team100.frc2024.motion.intake.Intake;
 import org.team100.frc2024.motion.shooter.Shooter;
+import org.team100.lib.geometry.FiringSolutionTable;
 import org.team100.lib.motion.drivetrain.SwerveDriveSubsystem;
 import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
@@ -34,6 +35,7 @@ public class ShootSmart extends Command {
   SwerveDriveSubsystem m_drive;
   boolean m_isPreload;
 double m_pivotOverride;
+  private final double[] m_solution = new double[3];
 
   public ShootSmart(SensorInterface sensor, Shooter shooter, Intake intake, FeederSubsystem feeder, SwerveDriveSubsystem drive, double pivotOverride, boolean isPreload) {
     // Use addRequirements() here to declare subsystem dependencies.
@@ -73,11 +75,11 @@ double m_pivotOverride;
 
 double targetShooterAngle;
 
-    double distance = m_drive.getPose().getTranslation().getDistance(ShooterUtil.getSpeakerTranslation(alliance.get()));
+    ShooterUtil.getFiringSolution(alliance.get(), m_drive.getState(), m_solution);
     m_timer.reset();
     m_shooter.forward();
 // if(m_pivotOverride == -1){
-    m_shooter.setAngle(ShooterUtil.getAngle(distance));
+    m_shooter.setAngle(m_solution[FiringSolutionTable.kPivot]);
 // } else {
     //     m_shooter.setAngle(m_pivotOverride);
     // }
@@ -95,8 +97,9 @@ double targetShooterAngle;
     
     double angle;
     if(m_pivotOverride == -1){
-        double distance = m_drive.getPose().getTranslation().getDistance(ShooterUtil.getSpeakerTranslation(alliance.get())); 
-       angle = ShooterUtil.getAngle(distance);
+        // corrected for robot motion, at the fixed roller speed
+        ShooterUtil.getFiringSolution(alliance.get(), m_drive.getState(), m_solution);
+        angle = m_solution[FiringSolutionTable.kPivot];
     } else {
         angle = m_pivotOverride;
     }
@@ -73,7 +73,7 @@ m_goal = m_trajectory.getLastPoint().state().state().getPose();
     public void execute100(double dt) {
         final double now = Timer.getFPGATimestamp();
         Pose2d currentPose = m_robotDrive.getPose();
-        ChassisSpeeds currentRobotRelativeSpeed = m_robotDrive.speeds(dt);
+        ChassisSpeeds currentRobotRelativeSpeed = m_robotDrive.speeds();
         Twist2d robotRelativeVelocity = GeometryUtil.toTwist2d(currentRobotRelativeSpeed);
         ChassisSpeeds output = m_controller.update(now, currentPose, robotRelativeVelocity);
 
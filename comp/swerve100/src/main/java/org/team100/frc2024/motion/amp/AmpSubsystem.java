@@ -1,10 +1,12 @@
 package org.team100.frc2024.motion.amp;
 
 import org.team100.frc2024.motion.GravityServo;
+import org.team100.lib.commands.Subsystem100;
 import org.team100.lib.config.Identity;
 import org.team100.lib.config.SysParam;
-import org.team100.lib.dashboard.Glassy;
 import org.team100.lib.encoder.DutyCycleEncoder100;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.profile.TrapezoidProfile100;
 import org.team100.lib.util.Names;
 
@@ -13,12 +15,14 @@ import com.revrobotics.CANSparkMax;
 
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.wpilibj.PWM;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 /**
  * A 1-dof arm driven by two separate motors with opposite phases.
+ * 
+ * The servo runs when it's commanded; periodic only logs, so it runs at 10 Hz.
  */
-public class AmpSubsystem extends SubsystemBase implements Glassy {
+public class AmpSubsystem extends Subsystem100 {
+    private static final double kPeriodS = 0.1;
     // ALERT! notice this very high current limit!!  ALERT! 
     private static final int kCurrentLimit = 80;
 
@@ -35,6 +39,7 @@ public class AmpSubsystem extends SubsystemBase implements Glassy {
 
     
     public AmpSubsystem(int pivotID) {
+        super(kPeriodS);
         m_encoder = new DutyCycleEncoder100("ANALOG ENCODER PIVOT", 2, 0.51 , false);
         m_name = Names.name(this);
         m_params = SysParam.neoPositionServoSystem(
@@ -110,7 +115,11 @@ public class AmpSubsystem extends SubsystemBase implements Glassy {
      * @param value
      */
     public void setAmpPosition(double value) {
-        ampAngleServo.setPositionWithSteadyState(value);
+        if (Experiments.instance.enabled(Experiment.OutboardPositionServo)) {
+            ampAngleServo.setPositionOutboard(value);
+        } else {
+            ampAngleServo.setPositionWithSteadyState(value);
+        }
     }
 
     public void setDutyCycle(double value) {
@@ -143,7 +152,7 @@ public class AmpSubsystem extends SubsystemBase implements Glassy {
     }
 
     @Override
-    public void periodic() {
+    public void periodic100(double dt) {
         ampAngleServo.periodic();
 
         // System.out.println("GET" + m_encoder.m_encoder.get());
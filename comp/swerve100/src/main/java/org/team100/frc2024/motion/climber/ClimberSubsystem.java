@@ -1,8 +1,8 @@
 package org.team100.frc2024.motion.climber;
 
+import org.team100.lib.commands.Subsystem100;
 import org.team100.lib.config.Identity;
 import org.team100.lib.config.SysParam;
-import org.team100.lib.dashboard.Glassy;
 import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
 import org.team100.lib.util.Names;
@@ -10,8 +10,6 @@ import org.team100.lib.util.Names;
 import com.revrobotics.CANSparkFlex;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
-
 /**
  * Dual winch climber.
  * 
@@ -26,8 +24,11 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
  * some.
  * 
  * TODO: add climber to selftest.
+ * 
+ * Periodic only logs, so it runs at 5 Hz.
  */
-public class ClimberSubsystem extends SubsystemBase implements Glassy {
+public class ClimberSubsystem extends Subsystem100 {
+    private static final double kPeriodS = 0.2;
     // TODO: tune the current limit
     private static final int kCurrentLimit = 2;
     private final String m_name;
@@ -36,6 +37,7 @@ public class ClimberSubsystem extends SubsystemBase implements Glassy {
     private final CANSparkFlex s2;
 
     public ClimberSubsystem(int leftClimberID, int rightClimberID) {
+        super(kPeriodS);
         m_name = Names.name(this);
 
 
@@ -119,7 +121,7 @@ public class ClimberSubsystem extends SubsystemBase implements Glassy {
     }
     
     @Override
-    public void periodic() {
+    public void periodic100(double dt) {
         
         // s1.set(-1);
         // s2.set(-1);
@@ -102,7 +102,7 @@ public class DriveToAdjacentWithShooterAngle extends Command100 {
     public void execute100(double dt) {
         double now = Timer.getFPGATimestamp();
         Pose2d currentPose = m_swerve.getPose();
-        ChassisSpeeds currentSpeed = m_swerve.speeds(dt);
+        ChassisSpeeds currentSpeed = m_swerve.speeds();
         Twist2d velocity = new Twist2d(
                 currentSpeed.vxMetersPerSecond,
                 currentSpeed.vyMetersPerSecond,
@@ -2,8 +2,10 @@ package org.team100.frc2024.motion.drivetrain;
 
 import org.team100.frc2024.FieldConstants;
 import org.team100.frc2024.motion.shooter.ShooterTable;
+import org.team100.lib.geometry.FiringSolutionTable;
 import org.team100.lib.geometry.Vector2d;
 import org.team100.lib.motion.drivetrain.SwerveState;
+import org.team100.lib.util.Util;
 
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -13,6 +15,27 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 public class ShooterUtil {
     public static ShooterTable instance = new ShooterTable();
 
+    /** Matches the roller velocity in DrumShooter; the solutions keep it. */
+    private static final double kMuzzleSpeedM_S = 20;
+
+    /**
+     * Shoot-on-the-move solutions, built once from the stationary table, by
+     * init(). Range covers the table, velocity covers the drivetrain.
+     */
+    private static volatile FiringSolutionTable m_firingSolutions;
+
+    /**
+     * Solve the shoot-on-the-move table. This takes a while, so call it from
+     * robotInit; otherwise the first cycle that shoots pays for it. Calling it
+     * again does nothing.
+     */
+    public static synchronized void init() {
+        if (m_firingSolutions != null)
+            return;
+        m_firingSolutions = new FiringSolutionTable(
+                ShooterUtil::getAngle, kMuzzleSpeedM_S, 1.0, 6.0, 0.05, 5.0, 0.5);
+    }
+
     public static Translation2d getOffsetTranslation(Alliance alliance, SwerveState state, double kScale) {
         Translation2d currentTranslation = state.pose().getTranslation();
 
@@ -73,6 +96,46 @@ public class ShooterUtil {
         return instance.getAngle(distance);
     }
 
+    /**
+     * Shoot-on-the-move firing solution at the speaker, from the precomputed
+     * table. Does not allocate.
+     * 
+     * @param out {pivot angle rad, absolute robot yaw rad, roller speed m/s}
+     */
+    public static void getFiringSolution(Alliance alliance, SwerveState state, double[] out) {
+        getFiringSolution(0, FieldConstants.get(alliance).getShooterCenterY(), state, out);
+    }
+
+    /**
+     * Shoot-on-the-move firing solution at the target, from the precomputed
+     * table. Does not allocate.
+     * 
+     * @param targetX field-relative target position
+     * @param targetY field-relative target position
+     * @param state   field-relative robot state
+     * @param out     {pivot angle rad, absolute robot yaw rad, roller speed m/s}
+     */
+    public static void getFiringSolution(double targetX, double targetY, SwerveState state, double[] out) {
+        double dx = targetX - state.x().x();
+        double dy = targetY - state.y().x();
+        double range = Math.hypot(dx, dy);
+        double cos = range > 1e-6 ? dx / range : 1;
+        double sin = range > 1e-6 ? dy / range : 0;
+        double vx = state.x().v();
+        double vy = state.y().v();
+        // robot velocity along and across the line of sight.
+        double radial = vx * cos + vy * sin;
+        double tangential = -vx * sin + vy * cos;
+        FiringSolutionTable table = m_firingSolutions;
+        if (table == null) {
+            Util.warn("ShooterUtil.init() was not called, solving the table now");
+            init();
+            table = m_firingSolutions;
+        }
+        table.get(range, radial, tangential, out);
+        out[FiringSolutionTable.kYawLead] += Math.atan2(sin, cos);
+    }
+
     // Distance in Meters
     // Velocity also needs to be in M/s
 
@@ -22,7 +22,7 @@
 //         new FollowPathHolonomic(
 //             path,
 //             () -> m_drive.getPose(), // Robot pose supplier
-//             () -> m_drive.speeds(0.02), // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
+//             () -> m_drive.speeds(), // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
 //             m_drive.m_swerveLocal::setChassisSpeeds, // Method that will drive the robot given ROBOT RELATIVE ChassisSpeeds
 //             new PIDConstants(5.0, 0.0, 0.0), // Translation PID constants
 //             new PIDConstants(5.0, 0.0, 0.0), // Rotation PID constants
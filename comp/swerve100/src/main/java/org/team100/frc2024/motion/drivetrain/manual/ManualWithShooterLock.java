@@ -6,8 +6,8 @@ import java.util.function.BooleanSupplier;
 import org.team100.frc2024.motion.drivetrain.ShooterUtil;
 import org.team100.lib.commands.drivetrain.FieldRelativeDriver;
 import org.team100.lib.controller.State100;
+import org.team100.lib.geometry.FiringSolutionTable;
 import org.team100.lib.geometry.TargetUtil;
-import org.team100.lib.geometry.Vector2d;
 import org.team100.lib.motion.drivetrain.SwerveState;
 import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.profile.Constraints100;
@@ -35,8 +35,8 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
  * 
  * Rotation uses a profile, velocity feedforward, and positional feedback.
  * 
- * The targeting solution is based on bearing alone, so it won't work if the
- * robot or target is moving. That effect can be compensated, though.
+ * The targeting solution leads the target to compensate for robot motion,
+ * using the shoot-on-the-move table in ShooterUtil.
  */
 public class ManualWithShooterLock implements FieldRelativeDriver {
     private static final double kBallVelocityM_S = 5;
@@ -53,6 +53,15 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
     private final PIDController m_omegaController;
     private final String m_name;
     private final TrapezoidProfile100 m_profile;
+    /** Scratch for the clipped input. */
+    private final Twist2d m_clipped = new Twist2d();
+    /** Scratch for the scaled input. */
+    private final Twist2d m_scaled = new Twist2d();
+    /** For the field widget, reused. */
+    private final double[] m_targetArray = new double[3];
+    private final double[] m_ballArray = new double[3];
+    /** Firing solution output, reused. */
+    private final double[] m_solution = new double[3];
     State100 m_thetaSetpoint;
     Translation2d m_ball;
     Translation2d m_ballV;
@@ -102,36 +111,39 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
             return new Twist2d();
 
         // clip the input to the unit circle
-        Twist2d clipped = DriveUtil.clampTwist(input, 1.0);
+        Twist2d clipped = DriveUtil.clampTwist(input, 1.0, m_clipped);
         Rotation2d currentRotation = state.pose().getRotation();
         double headingRate = m_heading.getHeadingRateNWU();
 
         Translation2d currentTranslation = state.pose().getTranslation();
         Translation2d target = ShooterUtil.getOffsetTranslation(optionalAlliance.get(), state, m_scale);
-        Rotation2d bearing = bearing(currentTranslation, target);
-        Rotation2d bearingCorrected = aimWhileMoving(bearing, 20, state); //make this integreate with shooter blah blah blah h mhh bh h                                                                                                                    
+        t.log(Level.TRACE, m_name, "bearing", bearing(currentTranslation, target));
 
-        t.log(Level.TRACE, m_name, "bearing", bearing);
+        // lead the target to correct for robot motion.
+        ShooterUtil.getFiringSolution(target.getX(), target.getY(), state, m_solution);
+        Rotation2d bearing = new Rotation2d(m_solution[FiringSolutionTable.kYawLead]);
+        t.log(Level.TRACE, m_name, "bearing corrected", bearing);
 
         // take the short path
         double measurement = currentRotation.getRadians();
-        bearing = new Rotation2d(
-                Math100.getMinDistance(measurement, bearing.getRadians()));
+        double bearingRad = Math100.getMinDistance(measurement, bearing.getRadians());
+        if (bearingRad != bearing.getRadians())
+            bearing = new Rotation2d(bearingRad);
 
         checkBearing(bearing, currentRotation);
 
         t.log(Level.TRACE, m_name, "Bearing Check", bearing.minus(currentRotation).getDegrees());
 
         // make sure the setpoint uses the modulus close to the measurement.
-        m_thetaSetpoint = new State100(
-                Math100.getMinDistance(measurement, m_thetaSetpoint.x()),
-                m_thetaSetpoint.v());
+        double setpointRad = Math100.getMinDistance(measurement, m_thetaSetpoint.x());
+        if (setpointRad != m_thetaSetpoint.x())
+            m_thetaSetpoint = new State100(setpointRad, m_thetaSetpoint.v());
 
         // the goal omega should match the target's apparent motion
         double targetMotion = TargetUtil.targetMotion(state, target);
         t.log(Level.TRACE, m_name, "apparent motion", targetMotion);
 
-        State100 goal = new State100(bearing.getRadians(), targetMotion);
+        State100 goal = new State100(bearingRad, targetMotion);
 
         m_thetaSetpoint = m_profile.calculate(kDtSec, m_thetaSetpoint, goal);
 
@@ -139,7 +151,8 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
         Twist2d scaledInput = DriveUtil.scale(
                 clipped,
                 m_swerveKinodynamics.getMaxDriveVelocityM_S(),
-                m_swerveKinodynamics.getMaxAngleSpeedRad_S());
+                m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
+                m_scaled);
 
         double thetaFF = m_thetaSetpoint.v();
 
@@ -162,16 +175,16 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
                 thetaFF + thetaFB + omegaFB,
                 -m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
                 m_swerveKinodynamics.getMaxAngleSpeedRad_S());
-        Twist2d twistWithLockM_S = new Twist2d(scaledInput.dx, scaledInput.dy, omega);
+        scaledInput.dtheta = omega;
 
         // desaturate to feasibility by preferring the rotational velocity.
-        twistWithLockM_S = m_swerveKinodynamics.preferRotation(twistWithLockM_S);
+        // this makes a new twist, so the scratch doesn't escape.
+        Twist2d twistWithLockM_S = m_swerveKinodynamics.preferRotation(scaledInput);
 
         // this name needs to be exactly "/field/target" for glass.
-        t.log(Level.TRACE, "field", "target", new double[] {
-                target.getX(),
-                target.getY(),
-                0 });
+        m_targetArray[0] = target.getX();
+        m_targetArray[1] = target.getY();
+        t.log(Level.TRACE, "field", "target", m_targetArray);
 
         // this is just for simulation
         if (m_trigger.getAsBoolean()) {
@@ -183,10 +196,9 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
         if (m_ball != null) {
             m_ball = m_ball.plus(m_ballV);
             // this name needs to be exactly "/field/ball" for glass.
-            t.log(Level.TRACE, "field", "ball", new double[] {
-                    m_ball.getX(),
-                    m_ball.getY(),
-                    0 });
+            m_ballArray[0] = m_ball.getX();
+            m_ballArray[1] = m_ball.getY();
+            t.log(Level.TRACE, "field", "ball", m_ballArray);
         }
 
         m_prevPose = state.pose();
@@ -219,25 +231,6 @@ public class ManualWithShooterLock implements FieldRelativeDriver {
         return isAligned;
     }
 
-    static Rotation2d aimWhileMoving(Rotation2d bearing, double shooterVelocity, SwerveState state) {
-
-        // its the shooter util code but robot moving vec is y velocity and angle in
-        // rads is bearing
-
-        // double angleWithoutMoving = bearing.getRadians();
-
-        Rotation2d angleInRads = bearing;
-        
-        Vector2d stationaryRobotVector = new Vector2d(shooterVelocity, angleInRads);
-
-        Vector2d robotMovingVector = new Vector2d(state.y().v(), 0);
-
-        Vector2d resultingVector = Vector2d.sub(stationaryRobotVector, robotMovingVector);
-
-        return resultingVector.getTheta();
-
-    }
-
     @Override
     public String getGlassName() {
         return "ManualWithShooterLock";
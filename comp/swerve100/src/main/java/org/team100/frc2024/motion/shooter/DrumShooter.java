@@ -9,6 +9,8 @@ import org.team100.lib.config.SysParam;
 import org.team100.lib.encoder.DutyCycleEncoder100;
 import org.team100.lib.encoder.Encoder100;
 import org.team100.lib.encoder.SparkMaxEncoder;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.motion.components.OutboardVelocityServo;
 import org.team100.lib.motion.components.ServoFactory;
 import org.team100.lib.motion.components.VelocityServo;
@@ -193,7 +195,7 @@ public class DrumShooter extends Shooter{
     @Override
     public void setAngle(Double goal){
 
-        pivotServo.setPosition(goal);
+        setPivot(goal);
 
     }
 
@@ -208,7 +210,7 @@ public class DrumShooter extends Shooter{
         //     pivotServo.setPosition(goal);
         // }
 
-        pivotServo.setPosition(goal);
+        setPivot(goal);
 
 
     }
@@ -275,7 +277,7 @@ public class DrumShooter extends Shooter{
     }
 
     public void setPivotPosition(double value){
-        pivotServo.setPosition(value);
+        setPivot(value);
     }
 
     public void feed(){
@@ -320,4 +322,14 @@ public class DrumShooter extends Shooter{
         return false;
 
     }
-}
\ No newline at end of file
+
+    /////////////////////////////////////////////////////////////////
+
+    private void setPivot(double goal) {
+        if (Experiments.instance.enabled(Experiment.OutboardPositionServo)) {
+            pivotServo.setPositionOutboard(goal);
+        } else {
+            pivotServo.setPosition(goal);
+        }
+    }
+}
@@ -64,6 +64,7 @@ public class AmpSelfTest extends Command {
     @Override
     public void end(boolean interrupted) {
         m_amp.stop();
+        m_listener.metric(this, "position error", Math.abs(position - kExpectedPosition));
         String fmt = "expected position %5.3f actual %5.3f";
         if (pass) {
             m_listener.pass(this, fmt, kExpectedPosition, position);
@@ -2,6 +2,7 @@ package org.team100.frc2024.selftest;
 
 import org.team100.frc2024.motion.indexer.IndexerSubsystem;
 import org.team100.lib.selftest.SelfTestListener;
+import org.team100.lib.selftest.SignalStats;
 import org.team100.lib.util.ExcludeFromJacocoGeneratedReport;
 
 import edu.wpi.first.wpilibj.Timer;
@@ -17,13 +18,18 @@ public class IndexerSelfTest extends Command {
     private final SelfTestListener m_listener;
     private final Timer m_timer;
 
+    /** Velocity once it's up to speed, for the ripple. */
+    private final SignalStats m_atSpeed;
+
     private double maxVelocity = 0;
+    private double timeToSpeed = Double.NaN;
     private boolean pass = false;
 
     public IndexerSelfTest(IndexerSubsystem indexer, SelfTestListener listener) {
         m_indexer = indexer;
         m_listener = listener;
         m_timer = new Timer();
+        m_atSpeed = new SignalStats();
     }
     
     public void treatment() {
@@ -34,6 +40,10 @@ public class IndexerSelfTest extends Command {
     @Override
     public void initialize() {
         m_timer.restart();
+        m_atSpeed.reset();
+        maxVelocity = 0;
+        timeToSpeed = Double.NaN;
+        pass = false;
     }
 
     @Override
@@ -42,8 +52,12 @@ public class IndexerSelfTest extends Command {
         double v = m_indexer.getVelocity();
         maxVelocity = Math.max(maxVelocity, v);
         if (v > kExpectedVelocity) {
+            if (!pass)
+                timeToSpeed = m_timer.get();
             pass = true;
         }
+        if (pass)
+            m_atSpeed.add(v);
 
     }
 
@@ -55,6 +69,9 @@ public class IndexerSelfTest extends Command {
     @Override
     public void end(boolean interrupted) {
         m_indexer.stop();
+        m_listener.metric(this, "max velocity", maxVelocity);
+        m_listener.metric(this, "time to speed", timeToSpeed);
+        m_listener.metric(this, "ripple", m_atSpeed.stddev());
         String fmt = "expected speed %5.3f actual %5.3f";
         if (pass) {
             m_listener.pass(this, fmt, kExpectedVelocity, maxVelocity);
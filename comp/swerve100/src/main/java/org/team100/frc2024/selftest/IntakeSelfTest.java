@@ -2,6 +2,7 @@ package org.team100.frc2024.selftest;
 
 import org.team100.frc2024.motion.intake.Intake;
 import org.team100.lib.selftest.SelfTestListener;
+import org.team100.lib.selftest.SignalStats;
 import org.team100.lib.util.ExcludeFromJacocoGeneratedReport;
 
 import edu.wpi.first.wpilibj.Timer;
@@ -17,13 +18,18 @@ public class IntakeSelfTest extends Command {
     private final SelfTestListener m_listener;
     private final Timer m_timer;
 
+    /** Velocity once it's up to speed, for the ripple. */
+    private final SignalStats m_atSpeed;
+
     private double maxVelocity = 0;
+    private double timeToSpeed = Double.NaN;
     private boolean pass = false;
 
     public IntakeSelfTest(Intake intake, SelfTestListener listener) {
         m_intake = intake;
         m_listener = listener;
         m_timer = new Timer();
+        m_atSpeed = new SignalStats();
     }
 
     public void treatment() {
@@ -34,6 +40,10 @@ public class IntakeSelfTest extends Command {
     @Override
     public void initialize() {
         m_timer.restart();
+        m_atSpeed.reset();
+        maxVelocity = 0;
+        timeToSpeed = Double.NaN;
+        pass = false;
     }
 
     @Override
@@ -42,8 +52,12 @@ public class IntakeSelfTest extends Command {
         double v = m_intake.getVelocity();
         maxVelocity = Math.max(maxVelocity, v);
         if (v > kExpectedVelocity) {
+            if (!pass)
+                timeToSpeed = m_timer.get();
             pass = true;
         }
+        if (pass)
+            m_atSpeed.add(v);
     }
 
     @Override
@@ -54,6 +68,9 @@ public class IntakeSelfTest extends Command {
     @Override
     public void end(boolean interrupted) {
         m_intake.stop();
+        m_listener.metric(this, "max velocity", maxVelocity);
+        m_listener.metric(this, "time to speed", timeToSpeed);
+        m_listener.metric(this, "ripple", m_atSpeed.stddev());
         String fmt = "expected speed %5.3f actual %5.3f";
         if (pass) {
             m_listener.pass(this, fmt, kExpectedVelocity, maxVelocity);
@@ -1,23 +1,119 @@
 package org.team100.lib.commands;
 
 import org.team100.lib.dashboard.Glassy;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.util.Names;
 
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
-/** provides periodic with dt. */
+/**
+ * Provides periodic with dt, at a rate chosen by the subsystem.
+ *
+ * Lots of subsystems only log, or update the LEDs, in periodic(), and 5 or 10
+ * Hz is plenty for that. A subsystem with a period longer than the scheduler
+ * tick runs on one tick out of every N, and the phase of each one is chosen
+ * so they're spread across the ticks, so the cost of each tick stays about
+ * the same. The dt passed to periodic100() is the time since the last time
+ * it ran.
+ *
+ * The cost of periodic100() is logged, average and max, so we can see which
+ * subsystems are expensive.
+ */
 public abstract class Subsystem100 extends SubsystemBase implements Glassy {
+    private static final TickStagger kStagger = new TickStagger();
 
+    private final int m_ticks;
+    private final int m_phase;
     private double prevTime = Timer.getFPGATimestamp();
+    private long m_count;
+    private String m_name;
+    private Telemetry t;
+    private int m_runs;
+    private double m_totalS;
+    private double m_maxS;
+
+    /** Run on every scheduler tick. */
+    protected Subsystem100() {
+        m_ticks = 1;
+        m_phase = 0;
+    }
+
+    /**
+     * Run about once per period, on whichever tick is least busy.
+     *
+     * @param periodS rounded to a whole number of scheduler ticks.
+     */
+    protected Subsystem100(double periodS) {
+        m_ticks = ticks(periodS);
+        m_phase = kStagger.assign(m_ticks);
+    }
+
+    /**
+     * Run about once per period, on a specific tick.
+     *
+     * @param periodS rounded to a whole number of scheduler ticks.
+     * @param phase   which tick of the period, starting from zero.
+     */
+    protected Subsystem100(double periodS, int phase) {
+        m_ticks = ticks(periodS);
+        if (phase < 0 || phase >= m_ticks)
+            throw new IllegalArgumentException("phase must be less than " + m_ticks);
+        m_phase = phase;
+        kStagger.add(m_ticks, m_phase);
+    }
 
     public abstract void periodic100(double dt);
 
     @Override
     public void periodic() {
+        if (m_count++ % m_ticks != m_phase)
+            return;
         double now = Timer.getFPGATimestamp();
         double dt = now - prevTime;
         prevTime = now;
+
+        long startNs = System.nanoTime();
         periodic100(dt);
+        double elapsedS = (System.nanoTime() - startNs) / 1e9;
+
+        m_runs++;
+        m_totalS += elapsedS;
+        m_maxS = Math.max(m_maxS, elapsedS);
+        if (t == null) {
+            // getGlassName() may not work in the constructor.
+            t = Telemetry.get();
+            m_name = Names.name(this);
+        }
+        t.log(Level.DEBUG, m_name, "periodic/ms", elapsedS * 1000);
+        t.log(Level.DEBUG, m_name, "periodic/avg ms", m_totalS * 1000 / m_runs);
+        t.log(Level.DEBUG, m_name, "periodic/max ms", m_maxS * 1000);
     }
 
+    /** Scheduler ticks per run. */
+    public int getTicks() {
+        return m_ticks;
+    }
+
+    public int getPhase() {
+        return m_phase;
+    }
+
+    /** Average cost of periodic100(), zero if it hasn't run. */
+    public double getAverageS() {
+        if (m_runs == 0)
+            return 0;
+        return m_totalS / m_runs;
+    }
+
+    /** Worst-case cost of periodic100(). */
+    public double getMaxS() {
+        return m_maxS;
+    }
+
+    private static int ticks(double periodS) {
+        return Math.max(1, (int) Math.round(periodS / TimedRobot.kDefaultPeriod));
+    }
 }
@@ -0,0 +1,45 @@
+package org.team100.lib.commands;
+
+/**
+ * Picks the phase of each low-rate subsystem so that they don't all run on
+ * the same scheduler tick.
+ *
+ * Keeps the number of subsystems running on each tick of a 60-tick window (60
+ * is divisible by all the small divisors) and puts each new subsystem on the
+ * phase whose busiest tick is least busy. Every subsystem counts the same;
+ * costs aren't known until they run.
+ */
+class TickStagger {
+    static final int kSlots = 60;
+    private final int[] m_load = new int[kSlots];
+
+    /** @return the phase, in [0, divisor) */
+    synchronized int assign(int divisor) {
+        int best = 0;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int phase = 0; phase < divisor; ++phase) {
+            int load = 0;
+            for (int slot = phase; slot < kSlots; slot += divisor) {
+                load = Math.max(load, m_load[slot]);
+            }
+            if (load < bestLoad) {
+                best = phase;
+                bestLoad = load;
+            }
+        }
+        add(divisor, best);
+        return best;
+    }
+
+    /** Record a subsystem with a fixed phase. */
+    synchronized void add(int divisor, int phase) {
+        for (int slot = phase; slot < kSlots; slot += divisor) {
+            m_load[slot]++;
+        }
+    }
+
+    /** For testing. */
+    synchronized int load(int slot) {
+        return m_load[slot];
+    }
+}
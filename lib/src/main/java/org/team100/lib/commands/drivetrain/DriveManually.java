@@ -1,7 +1,5 @@
 package org.team100.lib.commands.drivetrain;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import org.team100.lib.commands.Command100;
@@ -27,32 +25,51 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  * -- field-relative
  * -- field-relative with rotation control
  * 
- * Use the mode supplier to choose which mode to use, e.g. using a Sendable
- * Chooser.
+ * The mode comes from a Sendable Chooser, which tells us when it changes,
+ * rather than us asking every cycle. The drivers are in an array indexed by
+ * mode, so each cycle is one array lookup.
  */
 public class DriveManually extends Command100 {
+    /** The manual modes, one driver each. */
+    public enum Mode {
+        MODULE_STATE,
+        ROBOT_RELATIVE_CHASSIS_SPEED,
+        ROBOT_RELATIVE_FACING_NOTE,
+        FIELD_RELATIVE_TWIST,
+        SNAPS,
+        FIELD_RELATIVE_FACING_NOTE,
+        LOCKED,
+        SHOOTER_LOCK
+    }
 
-    private static final SendableChooser<String> m_manualModeChooser = new NamedChooser<>("Manual Drive Mode") {
+    private static final SendableChooser<Mode> m_manualModeChooser = new NamedChooser<>("Manual Drive Mode") {
     };
+    /** Written by the chooser listener, read by execute. */
+    private static volatile Mode m_selected;
+
+    static {
+        m_manualModeChooser.onChange(DriveManually::select);
+    }
 
-    private Supplier<String> m_mode;
+    private Supplier<Mode> m_mode;
     /**
      * Velocity control in control units, [-1,1] on all axes. This needs to be
      * mapped to a feasible velocity control as early as possible.
      */
     private final Supplier<Twist2d> m_twistSupplier;
     private final SwerveDriveSubsystem m_drive;
-    private final Map<String, Driver> m_drivers;
+    /** Indexed by mode ordinal, null for unregistered modes. */
+    private final Driver[] m_drivers;
     private final Driver m_defaultDriver;
 
-    String currentManualMode = null;
+    Mode currentManualMode = null;
 
     public DriveManually(Supplier<Twist2d> twistSupplier, SwerveDriveSubsystem robotDrive) {
-        m_mode = m_manualModeChooser::getSelected;
+        m_mode = DriveManually::selected;
         m_twistSupplier = twistSupplier;
         m_drive = robotDrive;
         m_defaultDriver = stop();
-        m_drivers = new ConcurrentHashMap<>();
+        m_drivers = new Driver[Mode.values().length];
         SmartDashboard.putData(m_manualModeChooser);
         addRequirements(m_drive);
     }
@@ -64,38 +81,33 @@ public class DriveManually extends Command100 {
         // the real previous setpoint is.
         // Note this is not necessarily "at rest," because we might start driving
         // manually while the robot is moving.
-        ChassisSpeeds currentSpeeds = m_drive.speeds(0.02);
+        ChassisSpeeds currentSpeeds = m_drive.speeds();
         SwerveModuleState[] currentStates = m_drive.moduleStates();
         SwerveSetpoint setpoint = new SwerveSetpoint(currentSpeeds, currentStates);
         m_drive.resetSetpoint(setpoint);
-        Pose2d p = m_drive.getPose();
-        for (Driver d : m_drivers.values()) {
-            d.reset(p);
-        }
+        resetAll();
     }
 
     @Override
     public void execute100(double dt) {
-        String manualMode = m_mode.get();
+        Mode manualMode = m_mode.get();
         if (manualMode == null) {
             return;
         }
 
-        if (!(manualMode.equals(currentManualMode))) {
+        if (manualMode != currentManualMode) {
             currentManualMode = manualMode;
             // there's state in there we'd like to forget
-            Pose2d p = m_drive.getPose();
-            for (Driver d : m_drivers.values()) {
-                d.reset(p);
-            }
+            resetAll();
         }
 
         // input in [-1,1] control units
         Twist2d input = m_twistSupplier.get();
         SwerveState state = m_drive.getState();
-        Driver d = m_drivers.getOrDefault(manualMode, m_defaultDriver);
+        Driver d = m_drivers[manualMode.ordinal()];
+        if (d == null)
+            d = m_defaultDriver;
         d.apply(state, input, dt);
-
     }
 
     @Override
@@ -108,56 +120,50 @@ public class DriveManually extends Command100 {
      * 
      * For testing only.
      */
-    public void overrideMode(Supplier<String> mode) {
+    public void overrideMode(Supplier<Mode> mode) {
         m_mode = mode;
     }
 
     /** Register a driver for module state mode */
-    public void register(String name, boolean isDefault, ModuleStateDriver d) {
-        addName(name, isDefault);
-        m_drivers.put(
-                name,
-                new Driver() {
-                    public void apply(SwerveState s, Twist2d t, double dt) {
-                        m_drive.setRawModuleStates(d.apply(t));
-                    }
-
-                    public void reset(Pose2d p) {
-                        //
-                    }
-                });
+    public void register(Mode mode, boolean isDefault, ModuleStateDriver d) {
+        addName(mode, isDefault);
+        m_drivers[mode.ordinal()] = new Driver() {
+            public void apply(SwerveState s, Twist2d t, double dt) {
+                m_drive.setRawModuleStates(d.apply(t));
+            }
+
+            public void reset(Pose2d p) {
+                //
+            }
+        };
     }
 
     /** Register a driver for robot-relative speed mode */
-    public void register(String name, boolean isDefault, ChassisSpeedDriver d) {
-        addName(name, isDefault);
-        m_drivers.put(
-                name,
-                new Driver() {
-                    public void apply(SwerveState s, Twist2d t, double dt) {
-                        m_drive.setChassisSpeeds(d.apply(s,t), dt);
-                    }
-
-                    public void reset(Pose2d p) {
-                        d.reset(p);
-                    }
-                });
+    public void register(Mode mode, boolean isDefault, ChassisSpeedDriver d) {
+        addName(mode, isDefault);
+        m_drivers[mode.ordinal()] = new Driver() {
+            public void apply(SwerveState s, Twist2d t, double dt) {
+                m_drive.setChassisSpeeds(d.apply(s,t), dt);
+            }
+
+            public void reset(Pose2d p) {
+                d.reset(p);
+            }
+        };
     }
 
     /** Register a driver for field-relative speed mode */
-    public void register(String name, boolean isDefault, FieldRelativeDriver d) {
-        addName(name, isDefault);
-        m_drivers.put(
-                name,
-                new Driver() {
-                    public void apply(SwerveState s, Twist2d t, double dt) {
-                        m_drive.driveInFieldCoords(d.apply(s, t), dt);
-                    }
-
-                    public void reset(Pose2d p) {
-                        d.reset(p);
-                    }
-                });
+    public void register(Mode mode, boolean isDefault, FieldRelativeDriver d) {
+        addName(mode, isDefault);
+        m_drivers[mode.ordinal()] = new Driver() {
+            public void apply(SwerveState s, Twist2d t, double dt) {
+                m_drive.driveInFieldCoords(d.apply(s, t), dt);
+            }
+
+            public void reset(Pose2d p) {
+                d.reset(p);
+            }
+        };
     }
 
     //////////////
@@ -174,9 +180,29 @@ public class DriveManually extends Command100 {
         };
     }
 
-    private void addName(String name, boolean isDefault) {
-        m_manualModeChooser.addOption(name, name);
-        if (isDefault)
-            m_manualModeChooser.setDefaultOption(name, name);
+    private void resetAll() {
+        Pose2d p = m_drive.getPose();
+        for (Driver d : m_drivers) {
+            if (d != null)
+                d.reset(p);
+        }
+    }
+
+    private static void addName(Mode mode, boolean isDefault) {
+        m_manualModeChooser.addOption(mode.name(), mode);
+        if (isDefault) {
+            m_manualModeChooser.setDefaultOption(mode.name(), mode);
+            // the chooser doesn't tell the listener about the default.
+            if (m_selected == null)
+                m_selected = mode;
+        }
+    }
+
+    private static void select(Mode mode) {
+        m_selected = mode;
+    }
+
+    private static Mode selected() {
+        return m_selected;
     }
 }
@@ -130,7 +130,7 @@ Transform2d transform = new Transform2d(m_goal.getTranslation().minus(m_swerve.g
     public void execute100(double dt) {
         double now = Timer.getFPGATimestamp();
         Pose2d currentPose = m_swerve.getPose();
-        ChassisSpeeds currentSpeed = m_swerve.speeds(dt);
+        ChassisSpeeds currentSpeed = m_swerve.speeds();
         Twist2d velocity = new Twist2d(
                 currentSpeed.vxMetersPerSecond,
                 currentSpeed.vyMetersPerSecond,
@@ -78,6 +78,13 @@ public enum Camera {
 
     UNKNOWN(null, new Transform3d());
 
+    /**
+     * Time from the sensor exposure to the blips being published, for cameras
+     * that haven't been measured. The camera logs this as "latency"; it's
+     * usually 40-55 ms, depending on the buffer count and the tags in view.
+     */
+    private static final double kDefaultCaptureOffsetS = 0.050;
+
     private static Map<String, Camera> cameras = new HashMap<>();
     static {
         for (Camera i : Camera.values()) {
@@ -86,10 +93,16 @@ public enum Camera {
     }
     private String m_serialNumber;
     private Transform3d m_Offset;
+    private double m_captureOffsetS;
 
     private Camera(String serialNumber, Transform3d offset) {
+        this(serialNumber, offset, kDefaultCaptureOffsetS);
+    }
+
+    private Camera(String serialNumber, Transform3d offset, double captureOffsetS) {
         m_serialNumber = serialNumber;
         m_Offset = offset;
+        m_captureOffsetS = captureOffsetS;
     }
 
     public static Camera get(String serialNumber) {
@@ -101,4 +114,12 @@ public enum Camera {
     public Transform3d getOffset() {
         return m_Offset;
     }
+
+    /**
+     * Time between the frame capture and the publication of its blips, which
+     * is subtracted from the NT timestamp to get the capture time.
+     */
+    public double getCaptureOffsetS() {
+        return m_captureOffsetS;
+    }
 }
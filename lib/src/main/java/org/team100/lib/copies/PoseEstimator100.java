@@ -4,6 +4,8 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import edu.wpi.first.math.MathSharedStore;
 import edu.wpi.first.math.Matrix;
@@ -42,6 +44,14 @@ import edu.wpi.first.math.numbers.N3;
  * never call it then this class will behave exactly like regular encoder
  * odometry.
  *
+ * <p>
+ * The public methods are synchronized, since vision measurements arrive on the
+ * NT listener thread, and odometry may be updated by the {@code DriveLoop}
+ * thread. Applying a vision measurement replays the odometry since then, which
+ * is too long to make the loop wait for, so while the loop runs, it calls
+ * {@link #setDeferVision(boolean)}, and vision measurements are queued, to be
+ * applied by the next odometry update, on the loop thread.
+ *
  * @param <T> Wheel positions type.
  */
 public class PoseEstimator100<T extends WheelPositions<T>> {
@@ -54,6 +64,13 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
     private final TimeInterpolatableBuffer100<InterpolationRecord> m_poseBuffer = TimeInterpolatableBuffer100
             .createBuffer(kBufferDuration);
 
+    /** A vision measurement waiting for the next update, with its gain. */
+    private record PendingVision(Pose2d pose, double timestampSeconds, Matrix<N3, N3> k) {
+    }
+
+    private final Queue<PendingVision> m_pendingVision = new ConcurrentLinkedQueue<>();
+    private volatile boolean m_deferVision;
+
     /**
      * Constructs a PoseEstimator.
      *
@@ -100,7 +117,7 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      *                                 y,
      *                                 theta]ᵀ, with units in meters and radians.
      */
-    public final void setVisionMeasurementStdDevs(Matrix<N3, N1> visionMeasurementStdDevs) {
+    public final synchronized void setVisionMeasurementStdDevs(Matrix<N3, N1> visionMeasurementStdDevs) {
         var r = new double[3];
         for (int i = 0; i < 3; ++i) {
             r[i] = visionMeasurementStdDevs.get(i, 0) * visionMeasurementStdDevs.get(i, 0);
@@ -130,13 +147,13 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      * @param wheelPositions The current encoder readings.
      * @param poseMeters     The position on the field that your robot is at.
      */
-    public void resetPosition(Rotation2d gyroAngle, T wheelPositions, Pose2d poseMeters) {
+    public synchronized void resetPosition(Rotation2d gyroAngle, T wheelPositions, Pose2d poseMeters) {
         // Reset state estimate and error covariance
         m_odometry.resetPosition(gyroAngle, wheelPositions, poseMeters);
         m_poseBuffer.clear();
     }
 
-    public Rotation2d getGyroOffset() {
+    public synchronized Rotation2d getGyroOffset() {
         return m_odometry.getGyroOffset();
     }
 
@@ -145,7 +162,7 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      *
      * @return The estimated robot pose in meters.
      */
-    public Pose2d getEstimatedPosition() {
+    public synchronized Pose2d getEstimatedPosition() {
         return m_odometry.getPoseMeters();
     }
 
@@ -153,7 +170,7 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      * This is for vision calculations, so that we use the high-accuracy gyro
      * measurement for the correct time in the past.
      */
-    public Optional<Rotation2d> getSampledRotation(double timestampSeconds) {
+    public synchronized Optional<Rotation2d> getSampledRotation(double timestampSeconds) {
         Optional<PoseEstimator100<T>.InterpolationRecord> sample = m_poseBuffer.getSample(timestampSeconds);
         if (sample.isEmpty())
             return Optional.empty();
@@ -161,6 +178,19 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
         return Optional.of(sample.get().poseMeters.getRotation());
     }
 
+    /**
+     * True if the odometry history reaches back to the given time, i.e. a vision
+     * measurement from that time can be replayed. Measurements older than this
+     * are ignored by {@link #addVisionMeasurement(Pose2d, double)}.
+     */
+    public synchronized boolean hasHistory(double timestampSeconds) {
+        try {
+            return m_poseBuffer.getInternalBuffer().lastKey() - kBufferDuration <= timestampSeconds;
+        } catch (NoSuchElementException ex) {
+            return false;
+        }
+    }
+
     /**
      * Adds a vision measurement to the Kalman Filter. This will correct the
      * odometry pose estimate
@@ -196,55 +226,26 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      *                              sync the epochs.
      */
     public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds) {
-        // Step 0: If this measurement is old enough to be outside the pose buffer's
-        // timespan, skip.
-        try {
-            if (m_poseBuffer.getInternalBuffer().lastKey() - kBufferDuration > timestampSeconds) {
-                return;
-            }
-        } catch (NoSuchElementException ex) {
+        if (m_deferVision) {
+            m_pendingVision.add(new PendingVision(visionRobotPoseMeters, timestampSeconds, visionK()));
             return;
         }
-
-        // Step 1: Get the pose odometry measured at the moment the vision measurement
-        // was made.
-        var sample = m_poseBuffer.getSample(timestampSeconds);
-
-        if (sample.isEmpty()) {
-            return;
+        synchronized (this) {
+            applyVision(visionRobotPoseMeters, timestampSeconds, m_visionK);
         }
+    }
 
-        // Step 2: Measure the twist between the odometry pose and the vision pose.
-        var twist = sample.get().poseMeters.log(visionRobotPoseMeters);
-        // Step 3: We should not trust the twist entirely, so instead we scale this
-        // twist by a Kalman
-        // gain matrix representing how much we trust vision measurements compared to
-        // our current pose.
-        var k_times_twist = m_visionK.times(VecBuilder.fill(twist.dx, twist.dy, twist.dtheta));
-
-        // Step 4: Convert back to Twist2d.
-        var scaledTwist = new Twist2d(k_times_twist.get(0, 0), k_times_twist.get(1, 0), k_times_twist.get(2, 0));
-
-        // Step 5: Reset Odometry to state at sample with vision adjustment.
-        m_odometry.resetPosition(
-                sample.get().gyroAngle,
-                sample.get().wheelPositions,
-                sample.get().poseMeters.exp(scaledTwist));
-        
-
-        // Step 6: Record the current pose to allow multiple measurements from the same
-        // timestamp
-        m_poseBuffer.addSample(
-                timestampSeconds,
-                new InterpolationRecord(
-                        getEstimatedPosition(), sample.get().gyroAngle, sample.get().wheelPositions));
-
-        // Step 7: Replay odometry inputs between sample time and latest recorded sample
-        // to update the
-        // pose buffer and correct odometry.
-        for (Map.Entry<Double, InterpolationRecord> entry : m_poseBuffer.getInternalBuffer().tailMap(timestampSeconds)
-                .entrySet()) {
-            updateWithTime(entry.getKey(), entry.getValue().gyroAngle, entry.getValue().wheelPositions);
+    /**
+     * If true, addVisionMeasurement() only queues the measurement, and the next
+     * update applies it, so the thread calling update never waits for a replay
+     * on another thread. If false, anything queued is applied now.
+     */
+    public void setDeferVision(boolean defer) {
+        m_deferVision = defer;
+        if (!defer) {
+            synchronized (this) {
+                drainVision();
+            }
         }
     }
 
@@ -293,7 +294,7 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      *                                 in radians). Increase these numbers to trust
      *                                 the vision pose measurement less.
      */
-    public void addVisionMeasurement(
+    public synchronized void addVisionMeasurement(
             Pose2d visionRobotPoseMeters,
             double timestampSeconds,
             Matrix<N3, N1> visionMeasurementStdDevs) {
@@ -310,21 +311,41 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
      * @param wheelPositions The current encoder readings.
      * @return The estimated pose of the robot in meters.
      */
-    public Pose2d update(Rotation2d gyroAngle, T wheelPositions) {
+    public synchronized Pose2d update(Rotation2d gyroAngle, T wheelPositions) {
         return updateWithTime(MathSharedStore.getTimestamp(), gyroAngle, wheelPositions);
     }
 
     /**
      * Updates the pose estimator with wheel encoder and gyro information. This
      * should be called every
-     * loop.
+     * loop. Applies any deferred vision measurements first.
      *
      * @param currentTimeSeconds Time at which this method was called, in seconds.
      * @param gyroAngle          The current gyro angle.
      * @param wheelPositions     The current encoder readings.
      * @return The estimated pose of the robot in meters.
      */
-    public Pose2d updateWithTime(double currentTimeSeconds, Rotation2d gyroAngle, T wheelPositions) {
+    public synchronized Pose2d updateWithTime(double currentTimeSeconds, Rotation2d gyroAngle, T wheelPositions) {
+        drainVision();
+        return addOdometry(currentTimeSeconds, gyroAngle, wheelPositions);
+    }
+
+    ///////////////////////////////////////////////////////
+
+    private synchronized Matrix<N3, N3> visionK() {
+        return m_visionK.copy();
+    }
+
+    /** Caller holds the lock. */
+    private void drainVision() {
+        PendingVision pending;
+        while ((pending = m_pendingVision.poll()) != null) {
+            applyVision(pending.pose(), pending.timestampSeconds(), pending.k());
+        }
+    }
+
+    /** Caller holds the lock. */
+    private Pose2d addOdometry(double currentTimeSeconds, Rotation2d gyroAngle, T wheelPositions) {
         m_odometry.update(gyroAngle, wheelPositions);
         m_poseBuffer.addSample(
                 currentTimeSeconds,
@@ -333,6 +354,55 @@ public class PoseEstimator100<T extends WheelPositions<T>> {
         return getEstimatedPosition();
     }
 
+    /** Caller holds the lock. */
+    private void applyVision(Pose2d visionRobotPoseMeters, double timestampSeconds, Matrix<N3, N3> visionK) {
+        // Step 0: If this measurement is old enough to be outside the pose buffer's
+        // timespan, skip.
+        if (!hasHistory(timestampSeconds))
+            return;
+
+        // Step 1: Get the pose odometry measured at the moment the vision measurement
+        // was made.
+        var sample = m_poseBuffer.getSample(timestampSeconds);
+
+        if (sample.isEmpty()) {
+            return;
+        }
+
+        // Step 2: Measure the twist between the odometry pose and the vision pose.
+        var twist = sample.get().poseMeters.log(visionRobotPoseMeters);
+        // Step 3: We should not trust the twist entirely, so instead we scale this
+        // twist by a Kalman
+        // gain matrix representing how much we trust vision measurements compared to
+        // our current pose.
+        var k_times_twist = visionK.times(VecBuilder.fill(twist.dx, twist.dy, twist.dtheta));
+
+        // Step 4: Convert back to Twist2d.
+        var scaledTwist = new Twist2d(k_times_twist.get(0, 0), k_times_twist.get(1, 0), k_times_twist.get(2, 0));
+
+        // Step 5: Reset Odometry to state at sample with vision adjustment.
+        m_odometry.resetPosition(
+                sample.get().gyroAngle,
+                sample.get().wheelPositions,
+                sample.get().poseMeters.exp(scaledTwist));
+        
+
+        // Step 6: Record the current pose to allow multiple measurements from the same
+        // timestamp
+        m_poseBuffer.addSample(
+                timestampSeconds,
+                new InterpolationRecord(
+                        getEstimatedPosition(), sample.get().gyroAngle, sample.get().wheelPositions));
+
+        // Step 7: Replay odometry inputs between sample time and latest recorded sample
+        // to update the
+        // pose buffer and correct odometry.
+        for (Map.Entry<Double, InterpolationRecord> entry : m_poseBuffer.getInternalBuffer().tailMap(timestampSeconds)
+                .entrySet()) {
+            addOdometry(entry.getKey(), entry.getValue().gyroAngle, entry.getValue().wheelPositions);
+        }
+    }
+
     /**
      * Represents an odometry record. The record contains the inputs provided as
      * well as the pose that
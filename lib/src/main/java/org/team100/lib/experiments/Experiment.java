@@ -55,5 +55,14 @@ public enum Experiment {
      * Compensate for drive/steer coupling
      * https://docs.google.com/document/d/1Zm6VpteqNMmT0VaTDhN5U6-jF3VS11uCoykzZUIGQdU/edit
      */
-    DriveSteerCouplingCompensation
+    DriveSteerCouplingCompensation,
+    /**
+     * Run the drivetrain in its own fast loop, instead of in the scheduler.
+     */
+    HighRateDrive,
+    /**
+     * Run the shooter pivot and amp arm profiles on their motor controllers
+     * (Smart Motion) instead of on the RIO.
+     */
+    OutboardPositionServo
 }
@@ -0,0 +1,199 @@
+package org.team100.lib.geometry;
+
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Shoot-on-the-move firing solutions, precomputed on a grid of range, radial
+ * velocity, and tangential velocity, and served by trilinear interpolation,
+ * without allocation.
+ *
+ * The model starts with the stationary solution, elevation as a function of
+ * range, at a fixed muzzle speed. The shooter runs at that speed all the time,
+ * so the moving solution keeps it: the muzzle speed in the output is always
+ * the stationary one. The yaw lead cancels the tangential velocity, so the
+ * shot stays on the line of sight, and the elevation is solved so that the
+ * shot crosses the target range at the same height as the stationary shot.
+ * This ignores drag, like the stationary table does.
+ *
+ * Velocities are expressed relative to the line of sight from the robot to the
+ * target: radial velocity is positive towards the target, and tangential
+ * velocity is positive to the left (counterclockwise) of the line of sight.
+ *
+ * Inputs outside the grid are clamped.
+ */
+public class FiringSolutionTable {
+    /** Index of pivot (elevation) angle in the output, radians */
+    public static final int kPivot = 0;
+    /** Index of yaw lead in the output, radians, added to the bearing. */
+    public static final int kYawLead = 1;
+    /** Index of muzzle speed in the output, m/s */
+    public static final int kSpeed = 2;
+    private static final double kG = 9.81;
+    private static final int kMaxIterations = 30;
+
+    private final double m_minRange;
+    private final double m_rangeStep;
+    private final int m_rangeCount;
+    private final double m_maxSpeed;
+    private final double m_speedStep;
+    private final int m_speedCount;
+    /** Flattened [range][radial][tangential][3] */
+    private final double[] m_grid;
+
+    /**
+     * @param elevation     stationary elevation, radians, as a function of range,
+     *                      meters.
+     * @param muzzleSpeed   stationary muzzle speed, m/s.
+     * @param minRange      grid extent, meters
+     * @param maxRange      grid extent, meters
+     * @param rangeStep     grid resolution, meters
+     * @param maxRobotSpeed grid extent, radial and tangential velocity are
+     *                      within plus or minus this, m/s
+     * @param speedStep     grid resolution, m/s
+     */
+    public FiringSolutionTable(
+            DoubleUnaryOperator elevation,
+            double muzzleSpeed,
+            double minRange,
+            double maxRange,
+            double rangeStep,
+            double maxRobotSpeed,
+            double speedStep) {
+        if (maxRange <= minRange || rangeStep <= 0 || maxRobotSpeed <= 0 || speedStep <= 0)
+            throw new IllegalArgumentException("bad grid dimensions");
+        m_minRange = minRange;
+        m_rangeStep = rangeStep;
+        m_rangeCount = (int) Math.ceil((maxRange - minRange) / rangeStep) + 1;
+        m_maxSpeed = maxRobotSpeed;
+        m_speedStep = speedStep;
+        m_speedCount = (int) Math.ceil(2 * maxRobotSpeed / speedStep) + 1;
+        m_grid = new double[m_rangeCount * m_speedCount * m_speedCount * 3];
+        double[] out = new double[3];
+        int idx = 0;
+        for (int i = 0; i < m_rangeCount; ++i) {
+            double range = minRange + i * rangeStep;
+            double theta = elevation.applyAsDouble(range);
+            for (int j = 0; j < m_speedCount; ++j) {
+                double radial = -maxRobotSpeed + j * speedStep;
+                for (int k = 0; k < m_speedCount; ++k) {
+                    double tangential = -maxRobotSpeed + k * speedStep;
+                    solve(range, theta, muzzleSpeed, radial, tangential, out);
+                    m_grid[idx++] = out[kPivot];
+                    m_grid[idx++] = out[kYawLead];
+                    m_grid[idx++] = out[kSpeed];
+                }
+            }
+        }
+    }
+
+    /**
+     * Exact solution, for one stationary elevation and robot velocity.
+     *
+     * If the target can't be reached at this muzzle speed, e.g. the robot is
+     * moving sideways faster than the horizontal muzzle speed, the result is
+     * the closest elevation the solver found.
+     *
+     * @param range        distance to the target, meters
+     * @param elevationRad stationary elevation at this range
+     * @param muzzleSpeed  stationary muzzle speed, m/s
+     * @param radial       robot velocity towards the target, m/s
+     * @param tangential   robot velocity to the left of the target, m/s
+     * @param out          {pivot, yaw lead, speed}
+     */
+    public static void solve(
+            double range,
+            double elevationRad,
+            double muzzleSpeed,
+            double radial,
+            double tangential,
+            double[] out) {
+        // the height of the stationary shot at the target
+        double goal = height(range, elevationRad, muzzleSpeed, 0, 0);
+        // Newton's method, starting from the stationary elevation, which is
+        // on the rising side of height vs elevation.
+        double theta = elevationRad;
+        double h = 1e-6;
+        for (int i = 0; i < kMaxIterations; ++i) {
+            double f = height(range, theta, muzzleSpeed, radial, tangential) - goal;
+            double df = (height(range, theta + h, muzzleSpeed, radial, tangential)
+                    - height(range, theta - h, muzzleSpeed, radial, tangential)) / (2 * h);
+            if (!Double.isFinite(f) || !Double.isFinite(df) || df <= 0)
+                break;
+            double step = f / df;
+            theta = Math.max(0, Math.min(Math.PI / 2, theta - step));
+            if (Math.abs(step) < 1e-10)
+                break;
+        }
+        double horizontal = muzzleSpeed * Math.cos(theta);
+        out[kPivot] = theta;
+        out[kYawLead] = Math.atan2(-tangential, Math.sqrt(Math.max(0,
+                horizontal * horizontal - tangential * tangential)));
+        out[kSpeed] = muzzleSpeed;
+    }
+
+    /**
+     * Interpolated solution.
+     *
+     * @param range      distance to the target, meters
+     * @param radial     robot velocity towards the target, m/s
+     * @param tangential robot velocity to the left of the target, m/s
+     * @param out        {pivot, yaw lead, speed}
+     */
+    public void get(double range, double radial, double tangential, double[] out) {
+        double fi = clamp((range - m_minRange) / m_rangeStep, m_rangeCount - 1);
+        double fj = clamp((radial + m_maxSpeed) / m_speedStep, m_speedCount - 1);
+        double fk = clamp((tangential + m_maxSpeed) / m_speedStep, m_speedCount - 1);
+        int i = Math.min((int) fi, m_rangeCount - 2);
+        int j = Math.min((int) fj, m_speedCount - 2);
+        int k = Math.min((int) fk, m_speedCount - 2);
+        double di = fi - i;
+        double dj = fj - j;
+        double dk = fk - k;
+        int strideK = 3;
+        int strideJ = m_speedCount * strideK;
+        int strideI = m_speedCount * strideJ;
+        int base = i * strideI + j * strideJ + k * strideK;
+        for (int c = 0; c < 3; ++c) {
+            int b = base + c;
+            double c00 = lerp(m_grid[b], m_grid[b + strideK], dk);
+            double c01 = lerp(m_grid[b + strideJ], m_grid[b + strideJ + strideK], dk);
+            double c10 = lerp(m_grid[b + strideI], m_grid[b + strideI + strideK], dk);
+            double c11 = lerp(m_grid[b + strideI + strideJ], m_grid[b + strideI + strideJ + strideK], dk);
+            out[c] = lerp(lerp(c00, c01, dj), lerp(c10, c11, dj), di);
+        }
+    }
+
+    /**
+     * Height of the shot when it has travelled the range along the line of
+     * sight, aimed to cancel the tangential velocity. NaN if it never gets
+     * there.
+     */
+    private static double height(
+            double range,
+            double theta,
+            double muzzleSpeed,
+            double radial,
+            double tangential) {
+        double horizontal = muzzleSpeed * Math.cos(theta);
+        double across = horizontal * horizontal - tangential * tangential;
+        if (across <= 0)
+            return Double.NaN;
+        double along = Math.sqrt(across) + radial;
+        if (along <= 0)
+            return Double.NaN;
+        double t = range / along;
+        return muzzleSpeed * Math.sin(theta) * t - 0.5 * kG * t * t;
+    }
+
+    private static double clamp(double x, double max) {
+        if (x < 0)
+            return 0;
+        if (x > max)
+            return max;
+        return x;
+    }
+
+    private static double lerp(double a, double b, double t) {
+        return a + (b - a) * t;
+    }
+}
@@ -103,6 +103,15 @@ public class Pose2dWithMotion {
                 -getCurvature(), -getDCurvatureDs());
     }
 
+    /** Mirror across the line y = width / 2, e.g. the field centerline. */
+    public Pose2dWithMotion mirror(double widthM) {
+        Pose2d pose = getPose();
+        return new Pose2dWithMotion(
+                new Pose2d(pose.getX(), widthM - pose.getY(), pose.getRotation().unaryMinus()),
+                GeometryUtil.mirror(m_fieldRelativeMotionDirection),
+                -getCurvature(), -getDCurvatureDs());
+    }
+
     /** Radians per meter. */
     public double getCurvature() {
         return m_curvatureRad_M;
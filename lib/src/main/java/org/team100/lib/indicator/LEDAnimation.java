@@ -0,0 +1,143 @@
+package org.team100.lib.indicator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.team100.lib.indicator.LEDIndicator.State;
+import org.team100.lib.telemetry.MorseCode;
+
+import edu.wpi.first.wpilibj.RobotBase;
+import edu.wpi.first.wpilibj.util.Color;
+
+/**
+ * A table of frames for one strip, indexed by time, computed once.
+ *
+ * Each frame is one packed 0xRRGGBB int per LED, and frames that look the
+ * same are the same array, so LEDIndicator can tell that nothing changed
+ * without looking at the pixels.
+ */
+public class LEDAnimation {
+    private final int m_length;
+    private final int[][] m_frames;
+    private final int[] m_hashes;
+    private final long m_frameUs;
+    private final boolean m_loop;
+
+    /**
+     * @param frames  each one the length of the strip
+     * @param frameUs how long each frame lasts
+     * @param loop    start over at the end, otherwise keep the last frame.
+     */
+    LEDAnimation(int length, int[][] frames, long frameUs, boolean loop) {
+        if (frames.length == 0)
+            throw new IllegalArgumentException("no frames");
+        if (frameUs <= 0)
+            throw new IllegalArgumentException("frame duration must be positive");
+        for (int[] frame : frames) {
+            if (frame.length != length)
+                throw new IllegalArgumentException("frame length must be " + length);
+        }
+        m_length = length;
+        m_frames = frames;
+        m_hashes = new int[frames.length];
+        for (int i = 0; i < frames.length; ++i) {
+            m_hashes[i] = Arrays.hashCode(frames[i]);
+        }
+        m_frameUs = frameUs;
+        m_loop = loop;
+    }
+
+    public static LEDAnimation solid(State s, int length) {
+        return new LEDAnimation(length, new int[][] { fill(s, length) }, Long.MAX_VALUE, false);
+    }
+
+    /** Black, then the color, each for the duration. */
+    public static LEDAnimation flash(State s, long durationUs, int length) {
+        return new LEDAnimation(length, new int[][] { fill(State.BLACK, length), fill(s, length) },
+                durationUs, true);
+    }
+
+    /** A rainbow that moves three hue steps per frame, 60 frames around. */
+    public static LEDAnimation rainbow(int length, long frameUs) {
+        int[][] frames = new int[60][length];
+        for (int f = 0; f < frames.length; ++f) {
+            for (int i = 0; i < length; ++i) {
+                int hue = (3 * f + (i * 180 / length)) % 180;
+                frames[f][i] = pack(Color.fromHSV(hue, 255, 128));
+            }
+        }
+        return new LEDAnimation(length, frames, frameUs, true);
+    }
+
+    /**
+     * One frame per dit, with a word gap at the end before it starts over.
+     *
+     * @param ditUs duration of a dit
+     */
+    public static LEDAnimation morse(String message, State s, long ditUs, int length) {
+        int[] on = fill(s, length);
+        int[] off = fill(State.BLACK, length);
+        List<int[]> frames = new ArrayList<>();
+        MorseCode code = new MorseCode(message);
+        for (MorseCode.State m = code.nextState(); m != MorseCode.State.END; m = code.nextState()) {
+            for (int i = 0; i < m.length; ++i) {
+                frames.add(m.output ? on : off);
+            }
+        }
+        for (int i = 0; i < MorseCode.State.WORD_DELIMITER.length; ++i) {
+            frames.add(off);
+        }
+        return new LEDAnimation(length, frames.toArray(new int[0][]), ditUs, true);
+    }
+
+    public int getLength() {
+        return m_length;
+    }
+
+    public long getFrameUs() {
+        return m_frameUs;
+    }
+
+    public int size() {
+        return m_frames.length;
+    }
+
+    /** @param elapsedUs time since the animation started */
+    int index(long elapsedUs) {
+        long i = Math.max(0, elapsedUs) / m_frameUs;
+        if (m_loop)
+            return (int) (i % m_frames.length);
+        return (int) Math.min(i, m_frames.length - 1);
+    }
+
+    int[] frame(int index) {
+        return m_frames[index];
+    }
+
+    int hash(int index) {
+        return m_hashes[index];
+    }
+
+    ////////////////////////////////////
+
+    private static int[] fill(State s, int length) {
+        int[] frame = new int[length];
+        // the state color is already in strip order.
+        Arrays.fill(frame, packRaw(s.color));
+        return frame;
+    }
+
+    /** Swap to the strip's red-blue-green order, like State does. */
+    private static int pack(Color color) {
+        if (RobotBase.isSimulation())
+            return packRaw(color);
+        return packRaw(new Color(color.red, color.blue, color.green));
+    }
+
+    private static int packRaw(Color color) {
+        return ((int) (color.red * 255) << 16)
+                | ((int) (color.green * 255) << 8)
+                | (int) (color.blue * 255);
+    }
+}
@@ -1,8 +1,10 @@
 package org.team100.lib.indicator;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import edu.wpi.first.wpilibj.AddressableLED;
 import edu.wpi.first.wpilibj.AddressableLEDBuffer;
@@ -19,6 +21,12 @@ import edu.wpi.first.wpilibj.util.Color;
  * 
  * Note these strips use a different order: red-blue-green, not
  * red-green-blue, so the colors need some fixing up.
+ * 
+ * Everything shown on a strip is an LEDAnimation, a table of frames computed
+ * once; a solid color is just one frame. Setting the same thing again does
+ * nothing, and periodic() only sends the buffer to the strip when some frame
+ * actually changed, which is rarely, since the data goes out over the wire
+ * for every LED every time.
  */
 public class LEDIndicator {
     /**
@@ -37,7 +45,7 @@ public class LEDIndicator {
          * This "color" is what we tell the LED strip to make it display the actual
          * desired color.
          */
-        private final Color color;
+        final Color color;
 
         /**
          * @param color the correct RGB color
@@ -53,53 +61,130 @@ public class LEDIndicator {
         }
     }
 
-    private final AddressableLED led;
+    /** Where the buffer goes. The real one is the AddressableLED. */
+    interface Output {
+        void setData(AddressableLEDBuffer buffer);
+    }
+
+    private static class Strip {
+        private final LEDStrip m_strip;
+        private final Map<State, LEDAnimation> m_solids;
+        private final Map<State, LEDAnimation> m_flashes;
+        private LEDAnimation m_animation;
+        private long m_startUs;
+        /** The frame in the buffer now, null if none. */
+        private int[] m_shown;
+        private int m_shownHash;
+
+        private Strip(LEDStrip strip) {
+            m_strip = strip;
+            m_solids = new EnumMap<>(State.class);
+            m_flashes = new EnumMap<>(State.class);
+        }
+    }
+
+    private final Output m_output;
     private final AddressableLEDBuffer buffer;
-    private final List<LEDStrip> leds = new ArrayList<>();
+    private final List<Strip> m_strips = new ArrayList<>();
+    /** Some strip has changed since the last push. */
+    private boolean m_dirty;
 
     public LEDIndicator(int port, LEDStrip... strips) {
-        Collections.addAll(leds, strips);
-        int length = leds.stream().map(LEDStrip::getLength).reduce(0, Integer::sum);
-        led = new AddressableLED(port);
-        led.setLength(length);
-        buffer = new AddressableLEDBuffer(length);
-        led.setData(buffer);
-        led.start();
+        this(output(port, length(strips)), strips);
+    }
+
+    LEDIndicator(Output output, LEDStrip... strips) {
+        for (LEDStrip strip : strips) {
+            m_strips.add(new Strip(strip));
+        }
+        m_output = output;
+        buffer = new AddressableLEDBuffer(length(strips));
+        m_output.setData(buffer);
     }
 
     public void setStripSolid(int index, State s) {
-        setStripSolid(leds.get(index), s);
+        Strip strip = m_strips.get(index);
+        LEDAnimation solid = strip.m_solids.computeIfAbsent(
+                s, x -> LEDAnimation.solid(x, strip.m_strip.getLength()));
+        setStripAnimation(index, solid);
     }
 
-    /** This should be called periodically if you want flashing to work. */
+    /**
+     * Alternate black and the color, each for the duration. Calling this again
+     * with the same arguments keeps the same flash going.
+     */
     public void setStripFlashing(int index, State s, int durationMicrosec) {
-        if ((RobotController.getFPGATime() / durationMicrosec) % 2 == 0) {
-            setStripSolid(index, State.BLACK);
-        } else {
-            setStripSolid(index, s);
+        Strip strip = m_strips.get(index);
+        LEDAnimation flash = strip.m_flashes.get(s);
+        if (flash == null || flash.getFrameUs() != durationMicrosec) {
+            flash = LEDAnimation.flash(s, durationMicrosec, strip.m_strip.getLength());
+            strip.m_flashes.put(s, flash);
         }
+        setStripAnimation(index, flash);
     }
 
+    /** Start the animation, unless it's already running on this strip. */
+    public void setStripAnimation(int index, LEDAnimation animation) {
+        Strip strip = m_strips.get(index);
+        if (animation == strip.m_animation)
+            return;
+        if (animation.getLength() != strip.m_strip.getLength())
+            throw new IllegalArgumentException("animation length must be " + strip.m_strip.getLength());
+        strip.m_animation = animation;
+        strip.m_startUs = RobotController.getFPGATime();
+    }
+
+    /** Show the current frames, and send them if anything changed. */
     public void periodic() {
-        led.setData(buffer);
+        long nowUs = RobotController.getFPGATime();
+        for (Strip strip : m_strips) {
+            LEDAnimation animation = strip.m_animation;
+            if (animation == null)
+                continue;
+            int i = animation.index(nowUs - strip.m_startUs);
+            int[] frame = animation.frame(i);
+            if (frame == strip.m_shown)
+                continue;
+            int hash = animation.hash(i);
+            if (strip.m_shown != null && hash == strip.m_shownHash && Arrays.equals(frame, strip.m_shown)) {
+                // different animation, same picture.
+                strip.m_shown = frame;
+                continue;
+            }
+            write(strip.m_strip, frame);
+            strip.m_shown = frame;
+            strip.m_shownHash = hash;
+            m_dirty = true;
+        }
+        if (m_dirty) {
+            m_output.setData(buffer);
+            m_dirty = false;
+        }
     }
 
-    /////////////////////////////////
-    // work in progress
+    //////////////////////////////////
+    //
 
-    void setStripRainbow(LEDStrip strip) {
-        Patterns.rainbow(strip, buffer);
+    private void write(LEDStrip strip, int[] frame) {
+        int offset = strip.getOffset();
+        for (int i = 0; i < frame.length; ++i) {
+            int rgb = frame[i];
+            buffer.setRGB(offset + i, (rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+        }
     }
 
-    void setStripChase(LEDStrip strip) {
-        Color[] colors = { new Color(), new Color() };
-        Patterns.chase(colors, strip, buffer);
+    private static int length(LEDStrip... strips) {
+        int length = 0;
+        for (LEDStrip strip : strips) {
+            length = Math.max(length, strip.getOffset() + strip.getLength());
+        }
+        return length;
     }
 
-    //////////////////////////////////
-    //
-
-    private void setStripSolid(LEDStrip strip, State s) {
-        Patterns.solid(strip, buffer, s.color);
+    private static Output output(int port, int length) {
+        AddressableLED led = new AddressableLED(port);
+        led.setLength(length);
+        led.start();
+        return led::setData;
     }
 }
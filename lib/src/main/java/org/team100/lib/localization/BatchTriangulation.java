@@ -0,0 +1,209 @@
+package org.team100.lib.localization;
+
+import java.util.Arrays;
+
+/**
+ * Triangulates the robot position from all the tag bearings in one frame at
+ * once, rather than pairwise.
+ *
+ * Each tag, at known field position T_i, seen at field-relative bearing theta_i,
+ * defines a line through T_i that the robot should be on. The solution is the
+ * weighted least-squares point closest to all the lines: with n_i the unit
+ * normal to the bearing,
+ *
+ * <pre>
+ * minimize sum w_i (n_i . (X - T_i))^2
+ * A = sum w_i n_i n_i^T
+ * X = A^-1 sum w_i n_i n_i^T T_i
+ * </pre>
+ *
+ * The perpendicular error of each line is range times bearing error, so the
+ * weight is 1/(range * sigma)^2, and the covariance of the solution is A^-1.
+ *
+ * Lines with residuals larger than kOutlierSigmas are dropped and the solution
+ * is repeated, as long as at least two lines remain.
+ *
+ * This is mutable and reuses its arrays, so use one per thread.
+ */
+public class BatchTriangulation {
+    private static final double kOutlierSigmas = 3.0;
+    /** Nearly-parallel bearings make the solution meaningless. */
+    private static final double kMinDeterminant = 1e-9;
+
+    private final double m_bearingStdDevRad;
+
+    private double[] m_tagX;
+    private double[] m_tagY;
+    /** Unit normal to the bearing */
+    private double[] m_nx;
+    private double[] m_ny;
+    /** Inverse variance of the perpendicular error */
+    private double[] m_w;
+    private boolean[] m_inlier;
+    private int m_count;
+
+    // results
+    private double m_x;
+    private double m_y;
+    private double m_varX;
+    private double m_varY;
+    private double m_covXY;
+    private int m_inliers;
+
+    /**
+     * @param bearingStdDevRad expected error in bearing measurement
+     * @param capacity         initial number of tags, grows as needed
+     */
+    public BatchTriangulation(double bearingStdDevRad, int capacity) {
+        m_bearingStdDevRad = bearingStdDevRad;
+        m_tagX = new double[capacity];
+        m_tagY = new double[capacity];
+        m_nx = new double[capacity];
+        m_ny = new double[capacity];
+        m_w = new double[capacity];
+        m_inlier = new boolean[capacity];
+    }
+
+    /** Forget the previous frame. */
+    public void clear() {
+        m_count = 0;
+        m_inliers = 0;
+    }
+
+    /**
+     * Add one tag sighting.
+     *
+     * @param tagX       tag position in field coordinates
+     * @param tagY       tag position in field coordinates
+     * @param bearingRad field-relative direction from the robot to the tag
+     * @param rangeM     distance from the robot to the tag, for weighting
+     */
+    public void add(double tagX, double tagY, double bearingRad, double rangeM) {
+        if (m_count == m_tagX.length)
+            grow();
+        double sigma = Math.max(rangeM, 1e-3) * m_bearingStdDevRad;
+        m_tagX[m_count] = tagX;
+        m_tagY[m_count] = tagY;
+        m_nx[m_count] = -Math.sin(bearingRad);
+        m_ny[m_count] = Math.cos(bearingRad);
+        m_w[m_count] = 1 / (sigma * sigma);
+        m_inlier[m_count] = true;
+        m_count++;
+    }
+
+    /**
+     * Solve using all the sightings since clear().
+     *
+     * @return true if there is a solution; false if there are fewer than two
+     *         sightings or they're all nearly parallel.
+     */
+    public boolean solve() {
+        if (m_count < 2)
+            return false;
+        if (!solveInliers())
+            return false;
+        while (true) {
+            // drop the worst outlier, if any, and try again.
+            int worst = -1;
+            double worstZ = kOutlierSigmas;
+            for (int i = 0; i < m_count; ++i) {
+                if (!m_inlier[i])
+                    continue;
+                double residual = m_nx[i] * (m_x - m_tagX[i]) + m_ny[i] * (m_y - m_tagY[i]);
+                double z = Math.abs(residual) * Math.sqrt(m_w[i]);
+                if (z > worstZ) {
+                    worstZ = z;
+                    worst = i;
+                }
+            }
+            if (worst < 0 || m_inliers <= 2)
+                return true;
+            m_inlier[worst] = false;
+            if (!solveInliers()) {
+                // removing it made the problem degenerate, so keep it.
+                m_inlier[worst] = true;
+                return solveInliers();
+            }
+        }
+    }
+
+    /** Field-relative robot position, valid after solve() returns true. */
+    public double x() {
+        return m_x;
+    }
+
+    /** Field-relative robot position, valid after solve() returns true. */
+    public double y() {
+        return m_y;
+    }
+
+    /** Variance of x, m^2 */
+    public double varX() {
+        return m_varX;
+    }
+
+    /** Variance of y, m^2 */
+    public double varY() {
+        return m_varY;
+    }
+
+    /** Covariance of x and y, m^2 */
+    public double covXY() {
+        return m_covXY;
+    }
+
+    /** Number of sightings used in the solution. */
+    public int inliers() {
+        return m_inliers;
+    }
+
+    ///////////////////////////////////////
+
+    private boolean solveInliers() {
+        double a00 = 0;
+        double a01 = 0;
+        double a11 = 0;
+        double b0 = 0;
+        double b1 = 0;
+        int inliers = 0;
+        for (int i = 0; i < m_count; ++i) {
+            if (!m_inlier[i])
+                continue;
+            double w = m_w[i];
+            double nx = m_nx[i];
+            double ny = m_ny[i];
+            double wnx = w * nx;
+            double wny = w * ny;
+            a00 += wnx * nx;
+            a01 += wnx * ny;
+            a11 += wny * ny;
+            double d = nx * m_tagX[i] + ny * m_tagY[i];
+            b0 += wnx * d;
+            b1 += wny * d;
+            inliers++;
+        }
+        double det = a00 * a11 - a01 * a01;
+        // scale-free test: det relative to the trace squared.
+        double trace = a00 + a11;
+        if (inliers < 2 || det <= kMinDeterminant * trace * trace)
+            return false;
+        // covariance is A^-1
+        m_varX = a11 / det;
+        m_varY = a00 / det;
+        m_covXY = -a01 / det;
+        m_x = m_varX * b0 + m_covXY * b1;
+        m_y = m_covXY * b0 + m_varY * b1;
+        m_inliers = inliers;
+        return true;
+    }
+
+    private void grow() {
+        int n = 2 * m_tagX.length + 1;
+        m_tagX = Arrays.copyOf(m_tagX, n);
+        m_tagY = Arrays.copyOf(m_tagY, n);
+        m_nx = Arrays.copyOf(m_nx, n);
+        m_ny = Arrays.copyOf(m_ny, n);
+        m_w = Arrays.copyOf(m_w, n);
+        m_inlier = Arrays.copyOf(m_inlier, n);
+    }
+}
@@ -0,0 +1,251 @@
+package org.team100.lib.localization;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.team100.lib.config.Camera;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+/**
+ * Precomputed versions of the PoseEstimationHelper transforms.
+ *
+ * The camera offsets and the tag poses don't change during a match, so the
+ * fixed parts of the transform chain are stored here as primitive arrays,
+ * keyed by camera, alliance, and tag id, and the per-blip solve is a handful
+ * of multiply-adds, with no Pose3d/Transform3d/Rotation3d composition and no
+ * Optional.
+ *
+ * Composing the helper's transforms symbolically, with the tag at p_tag,
+ * rotation R_tag, the camera at p_c, rotation R_c, and the tag seen at t
+ * (x-forward) with rotation R_b:
+ *
+ * <pre>
+ * gyro:   robot = p_tag - R_gyro (R_c t + p_c)
+ * camera: robot = p_tag - R_tag R_b^T (t + R_c^T p_c)
+ * </pre>
+ *
+ * Note the gyro version doesn't depend on the tag rotation at all.
+ */
+public class PoseEstimationCache {
+    /** Tag ids in the layout are probed up to this. */
+    private static final int kMaxTagId = 32;
+
+    /** Camera offset: {px, py, pz, r00, r01, ... r22, qx, qy, qz} where q = R^T p */
+    private final Map<Camera, double[]> m_cameras = new EnumMap<>(Camera.class);
+    /** Tag pose indexed by id: {px, py, pz, r00, r01, ... r22}, null if absent. */
+    private final Map<Alliance, double[][]> m_tags = new EnumMap<>(Alliance.class);
+    /** Tag poses indexed by id, for logging. */
+    private final Map<Alliance, Pose2d[]> m_tagPoses = new EnumMap<>(Alliance.class);
+
+    public PoseEstimationCache(AprilTagFieldLayoutWithCorrectOrientation layout) {
+        for (Camera camera : Camera.values()) {
+            Transform3d offset = camera.getOffset();
+            double[] c = new double[15];
+            c[0] = offset.getX();
+            c[1] = offset.getY();
+            c[2] = offset.getZ();
+            toMatrix(offset.getRotation().getQuaternion(), c, 3);
+            // q = R^T p
+            c[12] = c[3] * c[0] + c[6] * c[1] + c[9] * c[2];
+            c[13] = c[4] * c[0] + c[7] * c[1] + c[10] * c[2];
+            c[14] = c[5] * c[0] + c[8] * c[1] + c[11] * c[2];
+            m_cameras.put(camera, c);
+        }
+        for (Alliance alliance : Alliance.values()) {
+            double[][] tags = new double[kMaxTagId + 1][];
+            Pose2d[] poses = new Pose2d[kMaxTagId + 1];
+            for (int id = 0; id <= kMaxTagId; ++id) {
+                Optional<Pose3d> pose = layout.getTagPose(alliance, id);
+                if (pose.isEmpty())
+                    continue;
+                Pose3d p = pose.get();
+                double[] tag = new double[12];
+                tag[0] = p.getX();
+                tag[1] = p.getY();
+                tag[2] = p.getZ();
+                toMatrix(p.getRotation().getQuaternion(), tag, 3);
+                tags[id] = tag;
+                poses[id] = p.toPose2d();
+            }
+            m_tags.put(alliance, tags);
+            m_tagPoses.put(alliance, poses);
+        }
+    }
+
+    /** @return true if the layout contains the tag. */
+    public boolean hasTag(Alliance alliance, int id) {
+        return tag(alliance, id) != null;
+    }
+
+    /** @return the tag pose in 2d, or null if the layout doesn't contain it. */
+    public Pose2d getTagPose2d(Alliance alliance, int id) {
+        if (id < 0 || id > kMaxTagId)
+            return null;
+        return m_tagPoses.get(alliance)[id];
+    }
+
+    /**
+     * Equivalent to the translation of
+     * PoseEstimationHelper.getRobotPoseInFieldCoords() with a threshold: if the
+     * tag is closer than the threshold, use the camera-derived tag rotation,
+     * otherwise use the gyro.
+     *
+     * @param out robot translation in field coordinates, {x, y, z}
+     * @return false if the tag is not in the layout, in which case out is
+     *         untouched.
+     */
+    public boolean getRobotTranslationInFieldCoords(
+            Camera camera,
+            Alliance alliance,
+            Blip24 blip,
+            double gyroYawRad,
+            double thresholdMeters,
+            double[] out) {
+        Transform3d b = blip.getPose();
+        double norm = Math.sqrt(b.getX() * b.getX() + b.getY() * b.getY() + b.getZ() * b.getZ());
+        if (norm < thresholdMeters)
+            return getRobotTranslationInFieldCoords(camera, alliance, blip, out);
+        return getRobotTranslationInFieldCoords(camera, alliance, blip, gyroYawRad, out);
+    }
+
+    /**
+     * Equivalent to the translation of
+     * PoseEstimationHelper.getRobotPoseInFieldCoords() using the gyro rotation,
+     * which is assumed to be pure yaw.
+     *
+     * @param out robot translation in field coordinates, {x, y, z}
+     * @return false if the tag is not in the layout, in which case out is
+     *         untouched.
+     */
+    public boolean getRobotTranslationInFieldCoords(
+            Camera camera,
+            Alliance alliance,
+            Blip24 blip,
+            double gyroYawRad,
+            double[] out) {
+        double[] tag = tag(alliance, blip.getId());
+        if (tag == null)
+            return false;
+        double[] c = m_cameras.get(camera);
+        Transform3d b = blip.getPose();
+        // z-forward to x-forward
+        double tx = b.getZ();
+        double ty = -b.getX();
+        double tz = -b.getY();
+        // v = R_c t + p_c
+        double vx = c[3] * tx + c[4] * ty + c[5] * tz + c[0];
+        double vy = c[6] * tx + c[7] * ty + c[8] * tz + c[1];
+        double vz = c[9] * tx + c[10] * ty + c[11] * tz + c[2];
+        // robot = p_tag - R_gyro v
+        double cos = Math.cos(gyroYawRad);
+        double sin = Math.sin(gyroYawRad);
+        out[0] = tag[0] - (cos * vx - sin * vy);
+        out[1] = tag[1] - (sin * vx + cos * vy);
+        out[2] = tag[2] - vz;
+        return true;
+    }
+
+    /**
+     * Equivalent to the translation of
+     * PoseEstimationHelper.getRobotPoseInFieldCoords() trusting the tag rotation
+     * from the camera.
+     *
+     * @param out robot translation in field coordinates, {x, y, z}
+     * @return false if the tag is not in the layout, in which case out is
+     *         untouched.
+     */
+    public boolean getRobotTranslationInFieldCoords(
+            Camera camera,
+            Alliance alliance,
+            Blip24 blip,
+            double[] out) {
+        double[] tag = tag(alliance, blip.getId());
+        if (tag == null)
+            return false;
+        double[] c = m_cameras.get(camera);
+        Transform3d b = blip.getPose();
+        // z-forward to x-forward
+        double tx = b.getZ();
+        double ty = -b.getX();
+        double tz = -b.getY();
+        // u = t + R_c^T p_c
+        double ux = tx + c[12];
+        double uy = ty + c[13];
+        double uz = tz + c[14];
+        // w = R_b^T u, with R_b from the x-forward quaternion.
+        Quaternion q = b.getRotation().getQuaternion();
+        double qw = q.getW();
+        double qx = q.getZ();
+        double qy = -q.getX();
+        double qz = -q.getY();
+        double s = 2 / (qw * qw + qx * qx + qy * qy + qz * qz);
+        double wx = (1 - s * (qy * qy + qz * qz)) * ux
+                + s * (qx * qy + qw * qz) * uy
+                + s * (qx * qz - qw * qy) * uz;
+        double wy = s * (qx * qy - qw * qz) * ux
+                + (1 - s * (qx * qx + qz * qz)) * uy
+                + s * (qy * qz + qw * qx) * uz;
+        double wz = s * (qx * qz + qw * qy) * ux
+                + s * (qy * qz - qw * qx) * uy
+                + (1 - s * (qx * qx + qy * qy)) * uz;
+        // robot = p_tag - R_tag w
+        out[0] = tag[0] - (tag[3] * wx + tag[4] * wy + tag[5] * wz);
+        out[1] = tag[1] - (tag[6] * wx + tag[7] * wy + tag[8] * wz);
+        out[2] = tag[2] - (tag[9] * wx + tag[10] * wy + tag[11] * wz);
+        return true;
+    }
+
+    /**
+     * Equivalent to the translation of PoseEstimationHelper.toTarget(), i.e. the
+     * tag position relative to the robot.
+     *
+     * @param out tag translation in robot coordinates, {x, y, z}
+     */
+    public void getTagInRobotCoords(Camera camera, Blip24 blip, double[] out) {
+        double[] c = m_cameras.get(camera);
+        Transform3d b = blip.getPose();
+        // z-forward to x-forward
+        double tx = b.getZ();
+        double ty = -b.getX();
+        double tz = -b.getY();
+        out[0] = c[3] * tx + c[4] * ty + c[5] * tz + c[0];
+        out[1] = c[6] * tx + c[7] * ty + c[8] * tz + c[1];
+        out[2] = c[9] * tx + c[10] * ty + c[11] * tz + c[2];
+    }
+
+    /////////////////////////////////////////////////
+
+    private double[] tag(Alliance alliance, int id) {
+        if (id < 0 || id > kMaxTagId)
+            return null;
+        return m_tags.get(alliance)[id];
+    }
+
+    /**
+     * Row-major rotation matrix from a quaternion, normalizing it the way
+     * Rotation3d does.
+     */
+    private static void toMatrix(Quaternion q, double[] out, int offset) {
+        double w = q.getW();
+        double x = q.getX();
+        double y = q.getY();
+        double z = q.getZ();
+        double n2 = w * w + x * x + y * y + z * z;
+        double s = n2 > 0 ? 2 / n2 : 0;
+        out[offset] = 1 - s * (y * y + z * z);
+        out[offset + 1] = s * (x * y - w * z);
+        out[offset + 2] = s * (x * z + w * y);
+        out[offset + 3] = s * (x * y + w * z);
+        out[offset + 4] = 1 - s * (x * x + z * z);
+        out[offset + 5] = s * (y * z - w * x);
+        out[offset + 6] = s * (x * z - w * y);
+        out[offset + 7] = s * (y * z + w * x);
+        out[offset + 8] = 1 - s * (x * x + y * y);
+    }
+}
@@ -22,9 +22,7 @@ import edu.wpi.first.cscore.CameraServerCvJNI;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.numbers.N1;
@@ -58,10 +56,8 @@ public class VisionDataProvider24 implements Glassy {
      * end-to-end latency of the camera, detection code, network tables, and rio
      * looping.
      * 
-     * Note this latency varies a little bit, depending on the relative timing of
-     * the camera frame and the rio loop.
-     * 
-     * TODO: use the correct timing instead of this average.
+     * This is only used for blips without a timestamp; otherwise the capture
+     * time comes from the NT timestamp and the camera's capture offset.
      */
     private static final double kTotalLatencySeconds = 0.075;
     /**
@@ -77,6 +73,14 @@ public class VisionDataProvider24 implements Glassy {
      * always use the camera.
      */
     private static final double kTagRotationBeliefThresholdMeters = 0;
+    /**
+     * Error in bearing to a tag, for weighting triangulation. This is a guess,
+     * about one pixel at the camera's field of view, not a calibration: it
+     * models pixel noise only, not tag-map, camera-mount, or gyro error, so
+     * the triangulated std devs are floored at the single-tag model, see
+     * triangulationStdDevs().
+     */
+    private static final double kBearingStdDevRad = 0.002;
     /** Discard results further than this from the previous one. */
     private static final double kVisionChangeToleranceMeters = 0.1;
     // private static final double kVisionChangeToleranceMeters = 1;
@@ -86,7 +90,7 @@ public class VisionDataProvider24 implements Glassy {
     private final DoubleFunction<Optional<Rotation2d>> rotationSupplier;
 
     private final SwerveDrivePoseEstimator100 poseEstimator;
-    private final AprilTagFieldLayoutWithCorrectOrientation layout;
+    private final PoseEstimationCache m_cache;
     private final String m_name;
 
     // for blip filtering
@@ -95,6 +99,12 @@ public class VisionDataProvider24 implements Glassy {
     // reuse the buffer since it takes some time to make
     private StructBuffer<Blip24> m_buf = StructBuffer.create(Blip24.struct);
 
+    // output of the cached solve, only used within estimateFromBlips.
+    private final double[] m_robotTranslation = new double[3];
+    // scratch for triangulate.
+    private final double[] m_tagInRobotCoords = new double[3];
+    private final BatchTriangulation m_triangulation = new BatchTriangulation(kBearingStdDevRad, 16);
+
     /**
      * @param layout
      * @param poseEstimator    can be null for testing.
@@ -107,7 +117,7 @@ public class VisionDataProvider24 implements Glassy {
             DoubleFunction<Optional<Rotation2d>> rotationSupplier) throws IOException {
         // load the JNI (used by PoseEstimationHelper)
         CameraServerCvJNI.forceLoad();
-        this.layout = layout;
+        m_cache = new PoseEstimationCache(layout);
         this.poseEstimator = poseEstimator;
         this.rotationSupplier = rotationSupplier;
         m_name = Names.name(this);
@@ -165,6 +175,7 @@ public class VisionDataProvider24 implements Glassy {
                     },
                     cameraSerialNumber,
                     blips,
+                    captureTime(v, Camera.get(cameraSerialNumber)),
                     alliance.get());
         } else {
             // this event is not for us
@@ -172,22 +183,68 @@ public class VisionDataProvider24 implements Glassy {
         }
     }
 
+    /**
+     * The instant the blips represent, in FPGA seconds.
+     * 
+     * The value timestamp is the time the camera published it, in the server
+     * timebase, and the RIO is the server, so that's the FPGA clock. The
+     * camera's capture offset covers the time from exposure to publication. NT
+     * delivery and listener queueing come after the timestamp, so they don't
+     * matter.
+     */
+    static double captureTime(NetworkTableValue v, Camera camera) {
+        long serverTimeUs = v.getServerTime();
+        if (serverTimeUs == 0) {
+            // not synchronized yet, so guess.
+            return Timer.getFPGATimestamp() - kTotalLatencySeconds;
+        }
+        return serverTimeUs * 1e-6 - camera.getCaptureOffsetS();
+    }
+
+    /**
+     * Uses the average latency instead of the frame's timestamp.
+     */
+    void estimateRobotPose(
+            final ObjDoubleConsumer<Pose2d> estimateConsumer,
+            Consumer<Translation2d> firingSolutionConsumer,
+            String cameraSerialNumber,
+            final Blip24[] blips,
+            Alliance alliance) {
+        estimateRobotPose(
+                estimateConsumer,
+                firingSolutionConsumer,
+                cameraSerialNumber,
+                blips,
+                Timer.getFPGATimestamp() - kTotalLatencySeconds,
+                alliance);
+    }
+
     /**
      * @param estimateConsumer   is the pose estimator but exposing it here makes it
      *                           easier to test.
      * @param cameraSerialNumber the camera identity, obtained from proc/cpuinfo
      * @param blips              all the targets the camera sees right now
+     * @param frameTime          capture time of the blips, FPGA seconds
      */
     void estimateRobotPose(
             final ObjDoubleConsumer<Pose2d> estimateConsumer,
             Consumer<Translation2d> firingSolutionConsumer,
             String cameraSerialNumber,
             final Blip24[] blips,
+            final double frameTime,
             Alliance alliance) {
-        final Transform3d cameraInRobotCoordinates = Camera.get(cameraSerialNumber).getOffset();
+        final Camera camera = Camera.get(cameraSerialNumber);
+        final Transform3d cameraInRobotCoordinates = camera.getOffset();
+
+        t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Frame Age",
+                Timer.getFPGATimestamp() - frameTime);
+
+        if (poseEstimator != null && !poseEstimator.hasHistory(frameTime)) {
+            // the odometry for this frame is gone, so it can't be replayed.
+            t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Stale", true);
+            return;
+        }
 
-        // Estimated instant represented by the blips
-        final double frameTime = Timer.getFPGATimestamp() - kTotalLatencySeconds;
         Optional<Rotation2d> optionalGyroRotation = rotationSupplier.apply(frameTime);
 
         if (optionalGyroRotation.isEmpty()) {
@@ -201,7 +258,7 @@ public class VisionDataProvider24 implements Glassy {
                 estimateConsumer,
                 cameraSerialNumber,
                 blips,
-                cameraInRobotCoordinates,
+                camera,
                 frameTime,
                 gyroRotation,
                 alliance);
@@ -211,7 +268,7 @@ public class VisionDataProvider24 implements Glassy {
                     estimateConsumer,
                     cameraSerialNumber,
                     blips,
-                    cameraInRobotCoordinates,
+                    camera,
                     frameTime,
                     gyroRotation,
                     alliance);
@@ -256,45 +313,46 @@ public class VisionDataProvider24 implements Glassy {
         }
     }
 
+    /**
+     * Uses the precomputed transforms in PoseEstimationCache, so each blip costs
+     * a few multiply-adds rather than a chain of Pose3d compositions.
+     */
     private void estimateFromBlips(
             final ObjDoubleConsumer<Pose2d> estimateConsumer,
             final String cameraSerialNumber,
             final Blip24[] blips,
-            final Transform3d cameraInRobotCoordinates,
+            final Camera camera,
             final double frameTime,
             final Rotation2d gyroRotation,
             Alliance alliance) {
         for (Blip24 blip : blips) {
 
-            // this is just for logging
-            Rotation3d tagRotation = PoseEstimationHelper.blipToRotation(blip);
-            t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Blip Tag Rotation", tagRotation.getAngle());
+            // this is just for logging. the z-forward to x-forward conversion
+            // doesn't change the angle.
+            t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Blip Tag Rotation",
+                    blip.getPose().getRotation().getAngle());
 
-            Optional<Pose3d> tagInFieldCoordsOptional = layout.getTagPose(alliance, blip.getId());
-            if (!tagInFieldCoordsOptional.isPresent())
+            if (!m_cache.hasTag(alliance, blip.getId()))
                 continue;
 
             if(blip.getPose().getTranslation().getNorm() > 4.5){
                 return;
             }
 
-            // Gyro only produces yaw so use zero roll and zero pitch
-            Rotation3d robotRotationInFieldCoordsFromGyro = new Rotation3d(
-                    0, 0, gyroRotation.getRadians());
-
-            Pose3d tagInFieldCoords = tagInFieldCoordsOptional.get();
-            t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Blip Tag In Field Cords", tagInFieldCoords.toPose2d());
+            t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Blip Tag In Field Cords",
+                    m_cache.getTagPose2d(alliance, blip.getId()));
 
-            Pose3d robotPoseInFieldCoords = PoseEstimationHelper.getRobotPoseInFieldCoords(
-                    cameraInRobotCoordinates,
-                    tagInFieldCoords,
+            // Gyro only produces yaw so use zero roll and zero pitch
+            m_cache.getRobotTranslationInFieldCoords(
+                    camera,
+                    alliance,
                     blip,
-                    robotRotationInFieldCoordsFromGyro,
-                    kTagRotationBeliefThresholdMeters);
+                    gyroRotation.getRadians(),
+                    kTagRotationBeliefThresholdMeters,
+                    m_robotTranslation);
 
-            Translation2d robotTranslationInFieldCoords = robotPoseInFieldCoords.getTranslation().toTranslation2d();
-
-            Pose2d currentRobotinFieldCoords = new Pose2d(robotTranslationInFieldCoords, gyroRotation);
+            Pose2d currentRobotinFieldCoords = new Pose2d(
+                    m_robotTranslation[0], m_robotTranslation[1], gyroRotation);
 
             t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Blip Pose", currentRobotinFieldCoords);
 
@@ -321,73 +379,63 @@ public class VisionDataProvider24 implements Glassy {
         }
     }
 
+    /**
+     * If multiple tags are in view, triangulate all of them at once to get
+     * another (perhaps more accurate) estimate, with its own covariance.
+     */
     private void triangulate(
             ObjDoubleConsumer<Pose2d> estimateConsumer,
             final String cameraSerialNumber,
             Blip24[] blips,
-            Transform3d cameraInRobotCoordinates,
+            Camera camera,
             double frameTime,
             Rotation2d gyroRotation,
             Alliance alliance) {
-        // if multiple tags are in view, triangulate to get another (perhaps more
-        // accurate) estimate
-        for (int i = 0; i < blips.length - 1; i++) {
-            Blip24 b0 = blips[i];
-            for (int j = i + 1; j < blips.length; ++j) {
-                Blip24 b1 = blips[j];
-
-                Optional<Pose3d> tagInFieldCordsOptional0 = layout.getTagPose(alliance, b0.getId());
-                Optional<Pose3d> tagInFieldCordsOptional1 = layout.getTagPose(alliance, b1.getId());
-
-                if (!tagInFieldCordsOptional0.isPresent())
-                    continue;
-                if (!tagInFieldCordsOptional1.isPresent())
-                    continue;
-
-                Translation2d T0 = tagInFieldCordsOptional0.get().getTranslation().toTranslation2d();
-                Translation2d T1 = tagInFieldCordsOptional1.get().getTranslation().toTranslation2d();
-
-                // in camera frame
-                Transform3d t0 = PoseEstimationHelper.blipToTransform(b0);
-                Transform3d t1 = PoseEstimationHelper.blipToTransform(b1);
-
-                // in robot frame
-                Transform3d rf0 = t0.plus(cameraInRobotCoordinates);
-                Transform3d rf1 = t1.plus(cameraInRobotCoordinates);
-
-                // in 2d
-                Translation2d tr0 = rf0.getTranslation().toTranslation2d();
-                Translation2d tr1 = rf1.getTranslation().toTranslation2d();
-
-                // rotations
-                Rotation2d r0 = tr0.getAngle();
-                Rotation2d r1 = tr1.getAngle();
-
-                Translation2d X = TriangulationHelper.solve(T0, T1, r0, r1);
-                Pose2d currentRobotinFieldCoords = new Pose2d(X, gyroRotation);
-
-                t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Triangulate Pose", currentRobotinFieldCoords);
-
-                if (lastRobotInFieldCoords != null) {
-                    double distanceM = GeometryUtil.distance(lastRobotInFieldCoords, currentRobotinFieldCoords);
-                    if (distanceM <= kVisionChangeToleranceMeters) {
-                        // this hard limit excludes false positives, which were a bigger problem in 2023
-                        // due to the coarse tag family used. in 2024 this might not be an issue.
-                        if (Experiments.instance.enabled(Experiment.HeedVision)) {
-                            if (poseEstimator != null)
-                                poseEstimator.setVisionMeasurementStdDevs(visionMeasurementStdDevs(distanceM));
-                            estimateConsumer.accept(currentRobotinFieldCoords, frameTime);
-                        }
-                    } else {
-                        // System.out.println("triangulation too far");
-                        // System.out.println("IGNORE " + currentRobotinFieldCoords);
-                        // System.out.println("previous " + lastRobotInFieldCoords);
-                        // System.out.println("distance " + distanceM);
-                    }
+        if (blips.length < 2)
+            return;
+        m_triangulation.clear();
+        double nearestRangeM = Double.MAX_VALUE;
+        for (Blip24 blip : blips) {
+            Pose2d tag = m_cache.getTagPose2d(alliance, blip.getId());
+            if (tag == null)
+                continue;
+            m_cache.getTagInRobotCoords(camera, blip, m_tagInRobotCoords);
+            double bearingRad = gyroRotation.getRadians()
+                    + Math.atan2(m_tagInRobotCoords[1], m_tagInRobotCoords[0]);
+            double rangeM = Math.hypot(m_tagInRobotCoords[0], m_tagInRobotCoords[1]);
+            m_triangulation.add(tag.getX(), tag.getY(), bearingRad, rangeM);
+            nearestRangeM = Math.min(nearestRangeM, rangeM);
+        }
+        if (!m_triangulation.solve())
+            return;
+
+        Pose2d currentRobotinFieldCoords = new Pose2d(
+                m_triangulation.x(), m_triangulation.y(), gyroRotation);
+
+        t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Triangulate Pose", currentRobotinFieldCoords);
+        t.log(Level.DEBUG, m_name, cameraSerialNumber + "/Triangulate Inliers", m_triangulation.inliers());
+
+        if (lastRobotInFieldCoords != null) {
+            double distanceM = GeometryUtil.distance(lastRobotInFieldCoords, currentRobotinFieldCoords);
+            if (distanceM <= kVisionChangeToleranceMeters) {
+                // this hard limit excludes false positives, which were a bigger problem in 2023
+                // due to the coarse tag family used. in 2024 this might not be an issue.
+                if (Experiments.instance.enabled(Experiment.HeedVision)) {
+                    if (poseEstimator != null)
+                        poseEstimator.setVisionMeasurementStdDevs(triangulationStdDevs(
+                                m_triangulation.varX(),
+                                m_triangulation.varY(),
+                                nearestRangeM));
+                    estimateConsumer.accept(currentRobotinFieldCoords, frameTime);
                 }
-                lastRobotInFieldCoords = currentRobotinFieldCoords;
+            } else {
+                // System.out.println("triangulation too far");
+                // System.out.println("IGNORE " + currentRobotinFieldCoords);
+                // System.out.println("previous " + lastRobotInFieldCoords);
+                // System.out.println("distance " + distanceM);
             }
         }
+        lastRobotInFieldCoords = currentRobotinFieldCoords;
     }
 
     /** This is an educated guess. */
@@ -396,6 +444,19 @@ public class VisionDataProvider24 implements Glassy {
         return VecBuilder.fill(stddev, stddev, Double.MAX_VALUE);
     }
 
+    /**
+     * The triangulation covariance reflects only the bearing noise, which is
+     * a few millimeters at typical range, so never claim better than the
+     * single-tag model at the range of the nearest tag.
+     */
+    static Matrix<N3, N1> triangulationStdDevs(double varX, double varY, double nearestRangeM) {
+        Matrix<N3, N1> floor = visionMeasurementStdDevs(nearestRangeM);
+        return VecBuilder.fill(
+                Math.max(Math.sqrt(varX), floor.get(0, 0)),
+                Math.max(Math.sqrt(varY), floor.get(1, 0)),
+                Double.MAX_VALUE);
+    }
+
     @Override
     public String getGlassName() {
         return "VisionDataProvider24";
@@ -0,0 +1,137 @@
+package org.team100.lib.motion.components;
+
+import org.team100.lib.controller.State100;
+import org.team100.lib.encoder.Encoder100;
+import org.team100.lib.motor.ProfiledMotor100;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.units.Measure100;
+import org.team100.lib.util.Names;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Passthrough to outboard profiled position control.
+ * 
+ * Unlike PositionServo, there's no profile or PID here: the motor controller
+ * runs both, so the RIO just sends the goal and reads back the setpoint.
+ */
+public class OutboardPositionServo<T extends Measure100> implements PositionServoInterface<T> {
+    private final Telemetry t = Telemetry.get();
+    private final ProfiledMotor100<T> m_motor;
+    private final Encoder100<T> m_encoder;
+    private final double m_positionTolerance;
+    private final double m_velocityTolerance;
+    private final String m_name;
+    private final T m_instance;
+
+    private double m_goal;
+
+    /**
+     * @param name              may not start with a slash
+     * @param encoder           should be the motor's own encoder, since the
+     *                          goal is in its frame
+     * @param positionTolerance for atSetpoint() and atGoal()
+     * @param velocityTolerance for atSetpoint() and atGoal()
+     */
+    public OutboardPositionServo(
+            String name,
+            ProfiledMotor100<T> motor,
+            Encoder100<T> encoder,
+            double positionTolerance,
+            double velocityTolerance,
+            T instance) {
+        if (name.startsWith("/"))
+            throw new IllegalArgumentException();
+        m_motor = motor;
+        m_encoder = encoder;
+        m_positionTolerance = positionTolerance;
+        m_velocityTolerance = velocityTolerance;
+        m_name = Names.append(name, this);
+        m_instance = instance;
+    }
+
+    /** The onboard profile starts from the current state, so just forget the goal. */
+    @Override
+    public void reset() {
+        m_goal = m_encoder.getPosition();
+    }
+
+    @Override
+    public void setPosition(double goal) {
+        setPosition(goal, 0);
+    }
+
+    /**
+     * @param goal                For distance, use meters, For angle, use radians.
+     * @param feedForwardTorqueNm passthrough to the motor.
+     */
+    @Override
+    public void setPosition(double goal, double feedForwardTorqueNm) {
+        // the motor works in accumulated turns, so use the unwrapped measurement,
+        // and the modulus closest to it.
+        double measurement = m_encoder.getPosition();
+        m_goal = m_instance.modulus(goal - measurement) + measurement;
+        m_motor.setProfiledPosition(m_goal, feedForwardTorqueNm);
+        t.log(Level.DEBUG, m_name, "Goal", m_goal);
+    }
+
+    /** Direct velocity control for testing */
+    @Override
+    public void setVelocity(double velocity) {
+        m_motor.setVelocity(velocity, 0);
+    }
+
+    @Override
+    public double getPosition() {
+        return m_instance.modulus(m_encoder.getPosition());
+    }
+
+    @Override
+    public double getVelocity() {
+        return m_encoder.getRate();
+    }
+
+    /** True if the measurement is near the onboard setpoint. */
+    @Override
+    public boolean atSetpoint() {
+        State100 setpoint = m_motor.getProfileSetpoint();
+        return MathUtil.isNear(setpoint.x(), m_encoder.getPosition(), m_positionTolerance)
+                && MathUtil.isNear(setpoint.v(), m_encoder.getRate(), m_velocityTolerance);
+    }
+
+    @Override
+    public boolean atGoal() {
+        State100 setpoint = m_motor.getProfileSetpoint();
+        return atSetpoint()
+                && MathUtil.isNear(m_goal, setpoint.x(), m_positionTolerance)
+                && MathUtil.isNear(0, setpoint.v(), m_velocityTolerance);
+    }
+
+    @Override
+    public double getGoal() {
+        return m_goal;
+    }
+
+    @Override
+    public void stop() {
+        m_motor.stop();
+    }
+
+    @Override
+    public void close() {
+        m_encoder.close();
+    }
+
+    /** for testing only */
+    @Override
+    public State100 getSetpoint() {
+        return m_motor.getProfileSetpoint();
+    }
+
+    @Override
+    public void periodic() {
+        m_encoder.periodic();
+        m_motor.periodic();
+    }
+}
@@ -12,9 +12,12 @@ import org.team100.lib.encoder.turning.NeoTurningEncoder;
 import org.team100.lib.encoder.turning.NeoVortexTurningEncoder;
 import org.team100.lib.motor.MotorPhase;
 import org.team100.lib.motor.SimulatedMotor;
+import org.team100.lib.motor.SimulatedProfiledMotor;
 import org.team100.lib.motor.drive.Falcon6DriveMotor;
 import org.team100.lib.motor.drive.NeoDriveMotor;
 import org.team100.lib.motor.drive.NeoVortexDriveMotor;
+import org.team100.lib.motor.position.Falcon6ProfiledMotor;
+import org.team100.lib.motor.position.NeoProfiledMotor;
 import org.team100.lib.motor.turning.NeoTurningMotor;
 import org.team100.lib.motor.turning.NeoVortexTurningMotor;
 import org.team100.lib.profile.TrapezoidProfile100;
@@ -305,6 +308,103 @@ public class ServoFactory {
                 Distance100.instance);
     }
 
+    /**
+     * Position control using REV Smart Motion: the SparkMax runs the profile, and
+     * follows its velocity with the onboard velocity PID.
+     * 
+     * @param toleranceRad      position tolerance for atGoal(), mechanism rad
+     * @param toleranceRad_S    velocity tolerance for atGoal(), mechanism rad/s
+     * @param velocityConstants onboard velocity feedback, duty cycle per motor
+     *                          RPM of velocity error
+     */
+    public static PositionServoInterface<Angle100> neoOutboardAngleServo(
+            String name,
+            int canId,
+            MotorPhase motorPhase,
+            int currentLimit,
+            SysParam param,
+            double toleranceRad,
+            double toleranceRad_S,
+            PIDConstants velocityConstants) {
+        NeoProfiledMotor motor = new NeoProfiledMotor(
+                name,
+                canId,
+                motorPhase,
+                currentLimit,
+                param.gearRatio(),
+                param.maxVelM_S(),
+                param.maxAccelM_S2(),
+                toleranceRad,
+                velocityConstants);
+        return new OutboardPositionServo<>(
+                name,
+                motor,
+                motor,
+                toleranceRad,
+                toleranceRad_S,
+                Angle100.instance);
+    }
+
+    /**
+     * Position control using Phoenix 6 Motion Magic: the TalonFX runs the profile
+     * and the feedback, and reports the setpoint.
+     * 
+     * @param toleranceRad      position tolerance for atGoal(), mechanism rad
+     * @param toleranceRad_S    velocity tolerance for atGoal(), mechanism rad/s
+     * @param positionConstants onboard feedback, volts per mechanism rotation
+     */
+    public static PositionServoInterface<Angle100> falconOutboardAngleServo(
+            String name,
+            int canId,
+            MotorPhase motorPhase,
+            int currentLimit,
+            SysParam param,
+            double toleranceRad,
+            double toleranceRad_S,
+            PIDConstants positionConstants) {
+        Falcon6ProfiledMotor motor = new Falcon6ProfiledMotor(
+                name,
+                canId,
+                motorPhase,
+                currentLimit,
+                param.gearRatio(),
+                param.maxVelM_S(),
+                param.maxAccelM_S2(),
+                positionConstants);
+        return new OutboardPositionServo<>(
+                name,
+                motor,
+                motor,
+                toleranceRad,
+                toleranceRad_S,
+                Angle100.instance);
+    }
+
+    /**
+     * Simulated outboard position control: the simulated motor runs the same
+     * profile the real one would.
+     */
+    public static PositionServoInterface<Angle100> simulatedOutboardAngleServo(
+            String name,
+            SysParam param) {
+        SimulatedProfiledMotor<Angle100> motor = new SimulatedProfiledMotor<>(
+                name,
+                new TrapezoidProfile100(param.maxVelM_S(), param.maxAccelM_S2(), 0.05));
+        SimulatedEncoder<Angle100> encoder = new SimulatedEncoder<>(
+                name,
+                motor,
+                1,
+                0, // minimum hard stop
+                2); // maximum hard stop
+        return new OutboardPositionServo<>(
+                name,
+                motor,
+                encoder,
+                0.05,
+                0.05,
+                Angle100.instance);
+    }
+
     private ServoFactory() {
         //
     }
@@ -0,0 +1,264 @@
+package org.team100.lib.motion.drivetrain;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.team100.lib.copies.SwerveDrivePoseEstimator100;
+import org.team100.lib.dashboard.Glassy;
+import org.team100.lib.sensors.HeadingInterface;
+import org.team100.lib.swerve.SwerveSetpoint;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.util.Names;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Runs the drivetrain faster than the scheduler, on its own thread.
+ *
+ * The loop owns the modules, the setpoint generator (inside SwerveLocal), and
+ * the odometry update. Commands still run at 50 Hz; instead of driving the
+ * modules, they post a goal to the mailbox, and the loop applies the latest
+ * goal every cycle, with the latest heading and its own dt. So a field-relative
+ * goal is turned into robot-relative speeds with the heading of each loop
+ * cycle, not the heading from the start of the scheduler cycle.
+ *
+ * The mailbox is just an AtomicReference: posting never blocks, and the loop
+ * only ever sees a whole goal. Measurements go the other way the same way: at
+ * the end of each cycle the loop publishes a DriveMeasurement, and nothing
+ * else touches the modules. Each goal and pose reset gets a sequence number,
+ * which the measurement echoes, so a caller can tell whether the loop has
+ * seen its goal yet.
+ */
+public class DriveLoop implements Glassy {
+    /** 200 Hz */
+    public static final double kDefaultPeriodS = 0.005;
+    /** Just below the HAL's own threads. */
+    private static final int kPriority = 40;
+
+    /**
+     * Something for the modules to do, applied every loop cycle until the next
+     * one is posted. Goals are called on the loop thread.
+     */
+    public interface Goal {
+        /**
+         * @param local         the modules and setpoint generator
+         * @param heading       current heading
+         * @param gyroRateRad_S current gyro rate
+         * @param dt            time since the last cycle
+         */
+        void apply(SwerveLocal local, Rotation2d heading, double gyroRateRad_S, double dt);
+    }
+
+    private static final Goal kStop = (local, heading, rate, dt) -> local.stop();
+
+    private record Posted(Goal goal, long seq) {
+    }
+
+    private record PoseReset(Pose2d pose, long seq) {
+    }
+
+    private final Telemetry t = Telemetry.get();
+    private final HeadingInterface m_heading;
+    private final SwerveDrivePoseEstimator100 m_poseEstimator;
+    private final SwerveLocal m_swerveLocal;
+    private final double m_periodS;
+    private final String m_name;
+    private final AtomicLong m_seq;
+    private final AtomicReference<Posted> m_goal;
+    /** The setpoint generator's memory is reset on the loop thread. */
+    private final AtomicReference<SwerveSetpoint> m_resetSetpoint;
+    /** So is the pose estimator's, since it needs the module positions. */
+    private final AtomicReference<PoseReset> m_resetPose;
+    private final AtomicReference<DriveMeasurement> m_measurement;
+    private final Notifier m_notifier;
+
+    private boolean m_prioritySet;
+    private double m_prevTimeS;
+    /** Loop thread only. */
+    private long m_resetSeq;
+
+    public DriveLoop(
+            HeadingInterface heading,
+            SwerveDrivePoseEstimator100 poseEstimator,
+            SwerveLocal swerveLocal,
+            double periodS) {
+        m_heading = heading;
+        m_poseEstimator = poseEstimator;
+        m_swerveLocal = swerveLocal;
+        m_periodS = periodS;
+        m_name = Names.name(this);
+        m_seq = new AtomicLong();
+        m_goal = new AtomicReference<>(new Posted(kStop, 0));
+        m_resetSetpoint = new AtomicReference<>();
+        m_resetPose = new AtomicReference<>();
+        // the loop isn't running yet, so it's ok to measure here.
+        m_measurement = new AtomicReference<>(measure(
+                poseEstimator.getEstimatedPosition(), heading.getHeadingRateNWU(), periodS, 0));
+        m_notifier = new Notifier(this::run);
+        m_notifier.setName("DriveLoop Notifier");
+        m_prevTimeS = Timer.getFPGATimestamp();
+    }
+
+    /** Vision measurements wait for the loop, so the loop never waits for them. */
+    public void start() {
+        m_poseEstimator.setDeferVision(true);
+        m_prevTimeS = Timer.getFPGATimestamp();
+        m_notifier.startPeriodic(m_periodS);
+    }
+
+    public void stop() {
+        m_notifier.stop();
+        m_poseEstimator.setDeferVision(false);
+    }
+
+    public void close() {
+        m_notifier.close();
+        m_poseEstimator.setDeferVision(false);
+    }
+
+    /**
+     * Replaces the current goal. Never blocks.
+     * 
+     * @return the sequence number of this goal
+     */
+    public long post(Goal goal) {
+        long seq = m_seq.incrementAndGet();
+        m_goal.set(new Posted(goal, seq));
+        return seq;
+    }
+
+    /** The sequence number of the most recent goal or reset. */
+    public long getSeq() {
+        return m_seq.get();
+    }
+
+    /** Drive at these field-relative speeds, re-rotated every cycle. */
+    public void postFieldRelative(Twist2d twist) {
+        post((local, heading, rate, dt) -> local.setChassisSpeeds(
+                ChassisSpeeds.fromFieldRelativeSpeeds(twist.dx, twist.dy, twist.dtheta, heading),
+                rate,
+                dt));
+    }
+
+    public void postRobotRelative(ChassisSpeeds speeds) {
+        post((local, heading, rate, dt) -> local.setChassisSpeeds(speeds, rate, dt));
+    }
+
+    /** Skips the setpoint generator. */
+    public void postNormally(ChassisSpeeds speeds) {
+        post((local, heading, rate, dt) -> local.setChassisSpeedsNormally(speeds, rate, dt));
+    }
+
+    public void postRawModuleStates(SwerveModuleState[] states) {
+        post((local, heading, rate, dt) -> local.setRawModuleStates(states));
+    }
+
+    public void postStop() {
+        post(kStop);
+    }
+
+    /** Applied at the start of the next cycle. */
+    public void resetSetpoint(SwerveSetpoint setpoint) {
+        m_resetSetpoint.set(setpoint);
+    }
+
+    /**
+     * Applied at the start of the next cycle.
+     * 
+     * @return the sequence number of this reset
+     */
+    public long resetPose(Pose2d pose) {
+        long seq = m_seq.incrementAndGet();
+        m_resetPose.set(new PoseReset(pose, seq));
+        return seq;
+    }
+
+    /** Everything measured in the latest cycle. */
+    public DriveMeasurement getMeasurement() {
+        return m_measurement.get();
+    }
+
+    /** The pose from the latest cycle. */
+    public Pose2d getPose() {
+        return m_measurement.get().pose();
+    }
+
+    @Override
+    public String getGlassName() {
+        return "DriveLoop";
+    }
+
+    ///////////////////////////////////////////////////////
+
+    private void run() {
+        if (!m_prioritySet) {
+            // each Notifier has its own thread, so this only affects the loop.
+            Threads.setCurrentThreadPriority(true, kPriority);
+            m_prioritySet = true;
+        }
+        step();
+    }
+
+    /**
+     * One cycle: sense, then act, like periodic() followed by the commands, but
+     * with the real dt. Package-private for testing.
+     */
+    void step() {
+        double now = Timer.getFPGATimestamp();
+        double dt = now - m_prevTimeS;
+        m_prevTimeS = now;
+        if (dt <= 0 || dt > 5 * m_periodS) {
+            // first cycle, or the loop was stopped.
+            dt = m_periodS;
+        }
+
+        m_swerveLocal.periodic();
+        Rotation2d heading = m_heading.getHeadingNWU();
+        double gyroRateRad_S = m_heading.getHeadingRateNWU();
+        PoseReset reset = m_resetPose.getAndSet(null);
+        if (reset != null) {
+            m_poseEstimator.resetPosition(heading, m_swerveLocal.positions(), reset.pose());
+            m_resetSeq = reset.seq();
+        }
+        Pose2d pose = m_poseEstimator.update(heading, m_swerveLocal.positions());
+
+        SwerveSetpoint setpoint = m_resetSetpoint.getAndSet(null);
+        if (setpoint != null)
+            m_swerveLocal.resetSetpoint(setpoint);
+
+        Posted posted = m_goal.get();
+        posted.goal().apply(m_swerveLocal, pose.getRotation(), gyroRateRad_S, dt);
+
+        m_measurement.set(measure(pose, gyroRateRad_S, dt, posted.seq()));
+
+        t.log(Level.TRACE, m_name, "dt", dt);
+        t.log(Level.TRACE, m_name, "elapsed", Timer.getFPGATimestamp() - now);
+    }
+
+    /** Reads the modules, so only on the loop thread, or before it starts. */
+    private DriveMeasurement measure(Pose2d pose, double gyroRateRad_S, double dt, long goalSeq) {
+        double[] speedsM_S = new double[4];
+        double[] anglesRad = new double[4];
+        double[] robotSpeeds = new double[3];
+        m_swerveLocal.measure(gyroRateRad_S, dt, speedsM_S, anglesRad, robotSpeeds);
+        return new DriveMeasurement(
+                pose,
+                speedsM_S,
+                anglesRad,
+                robotSpeeds,
+                m_swerveLocal.positions(),
+                m_swerveLocal.getDesiredStates(),
+                m_swerveLocal.atSetpoint(),
+                m_swerveLocal.atGoal(),
+                goalSeq,
+                m_resetSeq);
+    }
+}
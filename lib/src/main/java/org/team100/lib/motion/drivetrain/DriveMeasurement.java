@@ -0,0 +1,124 @@
+package org.team100.lib.motion.drivetrain;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Everything DriveLoop measured in one cycle, published as a whole at the end
+ * of the cycle, so that nothing outside the loop thread touches the modules.
+ *
+ * Immutable: the constructor copies its inputs, and the object accessors
+ * return copies.
+ */
+public final class DriveMeasurement {
+    private final Pose2d m_pose;
+    private final double[] m_moduleSpeedsM_S;
+    private final double[] m_moduleAnglesRad;
+    private final double[] m_robotSpeeds;
+    private final SwerveModulePosition[] m_positions;
+    private final SwerveModuleState[] m_desiredStates;
+    private final boolean[] m_atSetpoint;
+    private final boolean[] m_atGoal;
+    private final long m_goalSeq;
+    private final long m_resetSeq;
+
+    /**
+     * @param pose            odometry
+     * @param moduleSpeedsM_S measured, length 4
+     * @param moduleAnglesRad measured, length 4
+     * @param robotSpeeds     robot-relative {vx, vy, omega} implied by the
+     *                        module states
+     * @param positions       module positions
+     * @param desiredStates   after this cycle's goal was applied
+     * @param atSetpoint      after this cycle's goal was applied
+     * @param atGoal          after this cycle's goal was applied
+     * @param goalSeq         which posted goal was applied
+     * @param resetSeq        the latest pose reset applied
+     */
+    DriveMeasurement(
+            Pose2d pose,
+            double[] moduleSpeedsM_S,
+            double[] moduleAnglesRad,
+            double[] robotSpeeds,
+            SwerveModulePosition[] positions,
+            SwerveModuleState[] desiredStates,
+            boolean[] atSetpoint,
+            boolean[] atGoal,
+            long goalSeq,
+            long resetSeq) {
+        m_pose = pose;
+        m_moduleSpeedsM_S = moduleSpeedsM_S.clone();
+        m_moduleAnglesRad = moduleAnglesRad.clone();
+        m_robotSpeeds = robotSpeeds.clone();
+        m_positions = copy(positions);
+        m_desiredStates = copy(desiredStates);
+        m_atSetpoint = atSetpoint.clone();
+        m_atGoal = atGoal.clone();
+        m_goalSeq = goalSeq;
+        m_resetSeq = resetSeq;
+    }
+
+    public Pose2d pose() {
+        return m_pose;
+    }
+
+    /** Module speed, m/s, in the usual order: FL, FR, RL, RR. */
+    public double moduleSpeedM_S(int i) {
+        return m_moduleSpeedsM_S[i];
+    }
+
+    /** Module angle, rad, in the usual order: FL, FR, RL, RR. */
+    public double moduleAngleRad(int i) {
+        return m_moduleAnglesRad[i];
+    }
+
+    /** Robot-relative speed, index 0, 1, 2 for vx, vy, omega. */
+    public double robotSpeed(int i) {
+        return m_robotSpeeds[i];
+    }
+
+    public SwerveModulePosition[] positions() {
+        return copy(m_positions);
+    }
+
+    public SwerveModuleState[] desiredStates() {
+        return copy(m_desiredStates);
+    }
+
+    public boolean[] atSetpoint() {
+        return m_atSetpoint.clone();
+    }
+
+    public boolean[] atGoal() {
+        return m_atGoal.clone();
+    }
+
+    /** The sequence number of the goal applied in this cycle. */
+    public long goalSeq() {
+        return m_goalSeq;
+    }
+
+    /** The sequence number of the latest pose reset applied. */
+    public long resetSeq() {
+        return m_resetSeq;
+    }
+
+    ////////////////////////////////////////////
+
+    private static SwerveModulePosition[] copy(SwerveModulePosition[] p) {
+        SwerveModulePosition[] result = new SwerveModulePosition[p.length];
+        for (int i = 0; i < p.length; ++i) {
+            result[i] = new SwerveModulePosition(p[i].distanceMeters, p[i].angle);
+        }
+        return result;
+    }
+
+    private static SwerveModuleState[] copy(SwerveModuleState[] s) {
+        SwerveModuleState[] result = new SwerveModuleState[s.length];
+        for (int i = 0; i < s.length; ++i) {
+            result[i] = new SwerveModuleState(s[i].speedMetersPerSecond, s[i].angle);
+        }
+        return result;
+    }
+}
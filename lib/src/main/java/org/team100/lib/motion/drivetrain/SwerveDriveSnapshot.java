@@ -0,0 +1,191 @@
+package org.team100.lib.motion.drivetrain;
+
+import org.team100.lib.controller.State100;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/**
+ * Drivetrain state, measured once per cycle by SwerveDriveSubsystem and filled
+ * in place, so that every consumer sees the same self-consistent values without
+ * redoing the forward kinematics.
+ *
+ * The primitive accessors don't allocate. The object accessors (pose, twists,
+ * SwerveState) are built lazily, at most once per cycle, and the same instance
+ * is returned until the next update, so consumers may hold on to them.
+ *
+ * Acceleration is not the raw finite difference of velocity, which is very
+ * noisy; it's low-pass filtered with a single-pole IIR. Velocity starts at
+ * zero, i.e. the robot is assumed to start at rest.
+ */
+public class SwerveDriveSnapshot {
+    /** Time constant of the acceleration filter. */
+    private static final double kAccelTimeConstantS = 0.02;
+
+    private final double[] m_moduleSpeedsM_S = new double[4];
+    private final double[] m_moduleAnglesRad = new double[4];
+    /** Robot-relative {vx, vy, omega} */
+    private final double[] m_robotSpeeds = new double[3];
+    /** Field-relative {vx, vy, omega} */
+    private final double[] m_fieldVelocity = new double[3];
+    /** Field-relative {ax, ay, alpha}, filtered */
+    private final double[] m_fieldAccel = new double[3];
+
+    private Pose2d m_pose = new Pose2d();
+
+    // lazily constructed views, cleared on update.
+    private Twist2d m_velocityView;
+    private Twist2d m_accelView;
+    private SwerveState m_stateView;
+
+    /**
+     * Measure everything, once.
+     *
+     * @param pose          estimated pose, from odometry
+     * @param gyroRateRad_S for veering correction
+     * @param dt            since the previous update, for discretization and
+     *                      acceleration
+     * @param local         source of module states
+     */
+    void update(Pose2d pose, double gyroRateRad_S, double dt, SwerveLocal local) {
+        local.measure(gyroRateRad_S, dt, m_moduleSpeedsM_S, m_moduleAnglesRad, m_robotSpeeds);
+        integrate(pose, dt);
+    }
+
+    /**
+     * Copy what DriveLoop measured, without touching the modules.
+     *
+     * @param m  the latest measurement from the loop
+     * @param dt since the previous update, for acceleration
+     */
+    void update(DriveMeasurement m, double dt) {
+        for (int i = 0; i < 4; ++i) {
+            m_moduleSpeedsM_S[i] = m.moduleSpeedM_S(i);
+            m_moduleAnglesRad[i] = m.moduleAngleRad(i);
+        }
+        for (int i = 0; i < 3; ++i) {
+            m_robotSpeeds[i] = m.robotSpeed(i);
+        }
+        integrate(m.pose(), dt);
+    }
+
+    /**
+     * Forget velocity and acceleration, e.g. when the pose is reset.
+     */
+    void reset(Pose2d pose) {
+        m_pose = pose;
+        for (int i = 0; i < 3; ++i) {
+            m_robotSpeeds[i] = 0;
+            m_fieldVelocity[i] = 0;
+            m_fieldAccel[i] = 0;
+        }
+        clearViews();
+    }
+
+    public Pose2d pose() {
+        return m_pose;
+    }
+
+    /** Robot-relative speed, m/s */
+    public double vx() {
+        return m_robotSpeeds[0];
+    }
+
+    /** Robot-relative speed, m/s */
+    public double vy() {
+        return m_robotSpeeds[1];
+    }
+
+    /** rad/s */
+    public double omega() {
+        return m_robotSpeeds[2];
+    }
+
+    /** Module speed, m/s, in the usual order: FL, FR, RL, RR. */
+    public double moduleSpeedM_S(int i) {
+        return m_moduleSpeedsM_S[i];
+    }
+
+    /** Module angle, rad, in the usual order: FL, FR, RL, RR. */
+    public double moduleAngleRad(int i) {
+        return m_moduleAnglesRad[i];
+    }
+
+    /** Field-relative velocity {vx, vy, omega}. Do not modify. */
+    double[] fieldVelocity() {
+        return m_fieldVelocity;
+    }
+
+    /** Field-relative acceleration {ax, ay, alpha}. Do not modify. */
+    double[] fieldAcceleration() {
+        return m_fieldAccel;
+    }
+
+    /** Robot-relative speeds. A new instance each time, since it's mutable. */
+    public ChassisSpeeds speeds() {
+        return new ChassisSpeeds(m_robotSpeeds[0], m_robotSpeeds[1], m_robotSpeeds[2]);
+    }
+
+    /** Measured module states. New instances each time, since they're mutable. */
+    public SwerveModuleState[] moduleStates() {
+        return new SwerveModuleState[] {
+                new SwerveModuleState(m_moduleSpeedsM_S[0], new Rotation2d(m_moduleAnglesRad[0])),
+                new SwerveModuleState(m_moduleSpeedsM_S[1], new Rotation2d(m_moduleAnglesRad[1])),
+                new SwerveModuleState(m_moduleSpeedsM_S[2], new Rotation2d(m_moduleAnglesRad[2])),
+                new SwerveModuleState(m_moduleSpeedsM_S[3], new Rotation2d(m_moduleAnglesRad[3]))
+        };
+    }
+
+    /** Field-relative velocity, m/s and rad/s. */
+    public Twist2d velocity() {
+        if (m_velocityView == null)
+            m_velocityView = new Twist2d(m_fieldVelocity[0], m_fieldVelocity[1], m_fieldVelocity[2]);
+        return m_velocityView;
+    }
+
+    /** Field-relative acceleration, m/s^2 and rad/s^2, filtered. */
+    public Twist2d acceleration() {
+        if (m_accelView == null)
+            m_accelView = new Twist2d(m_fieldAccel[0], m_fieldAccel[1], m_fieldAccel[2]);
+        return m_accelView;
+    }
+
+    /** Field-relative pose, velocity, and acceleration. */
+    public SwerveState state() {
+        if (m_stateView == null)
+            m_stateView = new SwerveState(
+                    new State100(m_pose.getX(), m_fieldVelocity[0], m_fieldAccel[0]),
+                    new State100(m_pose.getY(), m_fieldVelocity[1], m_fieldAccel[1]),
+                    new State100(m_pose.getRotation().getRadians(), m_fieldVelocity[2], m_fieldAccel[2]));
+        return m_stateView;
+    }
+
+    private void integrate(Pose2d pose, double dt) {
+        m_pose = pose;
+        double cos = pose.getRotation().getCos();
+        double sin = pose.getRotation().getSin();
+        double vx = m_robotSpeeds[0] * cos - m_robotSpeeds[1] * sin;
+        double vy = m_robotSpeeds[0] * sin + m_robotSpeeds[1] * cos;
+        double omega = m_robotSpeeds[2];
+
+        if (dt > 0) {
+            double alpha = dt / (kAccelTimeConstantS + dt);
+            m_fieldAccel[0] += alpha * ((vx - m_fieldVelocity[0]) / dt - m_fieldAccel[0]);
+            m_fieldAccel[1] += alpha * ((vy - m_fieldVelocity[1]) / dt - m_fieldAccel[1]);
+            m_fieldAccel[2] += alpha * ((omega - m_fieldVelocity[2]) / dt - m_fieldAccel[2]);
+        }
+        m_fieldVelocity[0] = vx;
+        m_fieldVelocity[1] = vy;
+        m_fieldVelocity[2] = omega;
+        clearViews();
+    }
+
+    private void clearViews() {
+        m_velocityView = null;
+        m_accelView = null;
+        m_stateView = null;
+    }
+}
@@ -13,6 +13,7 @@ import org.team100.lib.swerve.SwerveSetpoint;
 import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
 import org.team100.lib.util.Names;
+import org.team100.lib.util.Util;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Twist2d;
@@ -29,6 +30,8 @@ public class SwerveDriveSubsystem extends Subsystem100 {
     // multiply field-relative speeds for medium and slow modes.
     private static final double kMedium = 0.5;
     private static final double kSlow = 0.15;
+    // steer-at-rest goals closer than this are the same goal.
+    private static final double kSteerTolerance = 1e-3;
 
     private final Telemetry t = Telemetry.get();
     private final HeadingInterface m_heading;
@@ -37,12 +40,15 @@ public class SwerveDriveSubsystem extends Subsystem100 {
     private final Supplier<DriverControl.Speed> m_speed;
     private final String m_name;
 
-    private ChassisSpeeds m_prevSpeeds;
     // maintained in periodic.
-    private Pose2d m_pose;
-    private Twist2d m_velocity;
-    private Twist2d m_accel;
-    private SwerveState m_state;
+    private final SwerveDriveSnapshot m_snapshot;
+    // null unless the high-rate loop is running.
+    private DriveLoop m_loop;
+    // loop measurements older than the latest pose reset are ignored.
+    private long m_resetSeq;
+    // the steer-at-rest goal in the loop, and its sequence number.
+    private Twist2d m_steerTwist;
+    private long m_steerSeq;
 
     public SwerveDriveSubsystem(
             HeadingInterface heading,
@@ -54,11 +60,7 @@ public class SwerveDriveSubsystem extends Subsystem100 {
         m_swerveLocal = swerveLocal;
         m_speed = speed;
         m_name = Names.name(this);
-        m_prevSpeeds = new ChassisSpeeds();
-        m_pose = new Pose2d();
-        m_velocity = new Twist2d();
-        m_accel = new Twist2d();
-        m_state = new SwerveState();
+        m_snapshot = new SwerveDriveSnapshot();
 
         stop();
         // @joel: this needs to be exactly "/field/.type" for glass.
@@ -67,6 +69,24 @@ public class SwerveDriveSubsystem extends Subsystem100 {
         t.log(Level.INFO, "field", ".type", "Field2d");
     }
 
+    /**
+     * Hand the modules and odometry to a loop on its own thread, running at
+     * the given period. After this, the actuator methods post goals to the loop
+     * instead of driving the modules, and the observers read only what the loop
+     * publishes; nothing on this thread touches the modules.
+     */
+    public void startLoop(double periodS) {
+        if (m_loop != null)
+            return;
+        useLoop(new DriveLoop(m_heading, m_poseEstimator, m_swerveLocal, periodS));
+        m_loop.start();
+    }
+
+    /** Use the loop without starting it; the test steps it. */
+    void useLoop(DriveLoop loop) {
+        m_loop = loop;
+    }
+
     /**
      * Runs the action on initialize and never ends; this is useful for commands
      * that set something once, and then lock out the default command, so it should
@@ -85,55 +105,75 @@ public class SwerveDriveSubsystem extends Subsystem100 {
     public void periodic100(double dt) {
         // the order of these calls is important
         // since the odometry depends on the module state
-        // and acceleration depends on odometry...
-        m_swerveLocal.periodic();
-        updatePosition();
-        updateVelocity(dt);
-        updateAcceleration(dt);
-        updateState();
+        // and velocity depends on odometry...
+        double gyroRateRad_S = m_heading.getHeadingRateNWU();
+        if (m_loop == null) {
+            m_swerveLocal.periodic();
+            m_snapshot.update(updatePosition(), gyroRateRad_S, dt, m_swerveLocal);
+        } else {
+            // the loop updates the modules and odometry.
+            DriveMeasurement m = m_loop.getMeasurement();
+            // until the loop applies a pose reset, keep the reset snapshot.
+            if (m.resetSeq() >= m_resetSeq)
+                m_snapshot.update(m, dt);
+        }
+        Pose2d pose = m_snapshot.pose();
 
         t.log(Level.TRACE, m_name, "GYRO OFFSET", m_poseEstimator.getGyroOffset());
-        t.log(Level.DEBUG, m_name, "pose", m_pose);
-        t.log(Level.TRACE, m_name, "Tur Deg", m_pose.getRotation().getDegrees());
+        t.log(Level.DEBUG, m_name, "pose", pose);
+        t.log(Level.TRACE, m_name, "Tur Deg", pose.getRotation().getDegrees());
 
         t.log(Level.TRACE, m_name, "pose array",
-                new double[] { m_pose.getX(), m_pose.getY(), m_pose.getRotation().getRadians() });
-        t.log(Level.TRACE, m_name, "velocity", m_velocity);
-        t.log(Level.TRACE, m_name, "acceleration", m_accel);
-        t.log(Level.DEBUG, m_name, "state", m_state);
+                new double[] { pose.getX(), pose.getY(), pose.getRotation().getRadians() });
+        t.log(Level.TRACE, m_name, "velocity", m_snapshot.fieldVelocity());
+        t.log(Level.TRACE, m_name, "acceleration", m_snapshot.fieldAcceleration());
+        t.log(Level.DEBUG, m_name, "state", m_snapshot.state());
 
         // Update the Field2d widget
         // the name "field" is used by Field2d.
         // the name "robot" can be anything.
         t.log(Level.INFO, "field", "robot", new double[] {
-                m_pose.getX(),
-                m_pose.getY(),
-                m_pose.getRotation().getDegrees()
+                pose.getX(),
+                pose.getY(),
+                pose.getRotation().getDegrees()
         });
 
-        t.log(Level.DEBUG, m_name, "heading rate rad_s", m_heading.getHeadingRateNWU());
+        t.log(Level.DEBUG, m_name, "heading rate rad_s", gyroRateRad_S);
 
     }
 
     /**
-     * The robot-relative speed implied by the module states.
-     * 
-     * @param dt for discretization
+     * The robot-relative speed implied by the module states, snapshot from
+     * periodic(), discretized with the periodic dt.
      */
-    public ChassisSpeeds speeds(double dt) {
-        return m_swerveLocal.speeds(m_heading.getHeadingRateNWU(), dt);
+    public ChassisSpeeds speeds() {
+        return m_snapshot.speeds();
     }
 
-    /** @return current measurements */
+    /** @return measurements snapshot from periodic() */
     public SwerveModuleState[] moduleStates() {
-        return m_swerveLocal.states();
+        return m_snapshot.moduleStates();
+    }
+
+    /**
+     * Everything measured in periodic(), for consumers that want primitives
+     * without allocation.
+     */
+    public SwerveDriveSnapshot getSnapshot() {
+        return m_snapshot;
     }
 
     public SwerveModuleState[] desiredStates() {
+        if (m_loop != null)
+            return m_loop.getMeasurement().desiredStates();
         return m_swerveLocal.getDesiredStates();
     }
 
     public void resetSetpoint(SwerveSetpoint setpoint) {
+        if (m_loop != null) {
+            m_loop.resetSetpoint(setpoint);
+            return;
+        }
         m_swerveLocal.resetSetpoint(setpoint);
     }
 
@@ -160,11 +200,15 @@ public class SwerveDriveSubsystem extends Subsystem100 {
         t.log(Level.TRACE, m_name, "skill level", driverSkillLevel);
         twist = GeometryUtil.scale(twist, driverSkillLevel.scale());
 
+        if (m_loop != null) {
+            m_loop.postFieldRelative(twist);
+            return;
+        }
         ChassisSpeeds targetChassisSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(
                 twist.dx,
                 twist.dy,
                 twist.dtheta,
-                m_pose.getRotation());
+                m_snapshot.pose().getRotation());
         m_swerveLocal.setChassisSpeeds(targetChassisSpeeds, m_heading.getHeadingRateNWU(), kDtSec);
     }
 
@@ -173,12 +217,31 @@ public class SwerveDriveSubsystem extends Subsystem100 {
      * beginning of trajectories, like the "square" project or any other case where
      * the new direction happens not to be aligned with the wheels.
      * 
+     * With the loop running, the answer is false until the loop has applied
+     * this goal and measured the wheels at it; posting the same goal again
+     * doesn't start over.
+     * 
      * @return true if aligned
      * 
      */
     public boolean steerAtRest(Twist2d twist, double kDtSec) {
+        if (m_loop != null) {
+            if (m_steerTwist == null
+                    || m_steerSeq != m_loop.getSeq()
+                    || !near(m_steerTwist, twist)) {
+                // a new goal, or something else was posted since.
+                m_steerTwist = twist;
+                m_steerSeq = m_loop.post((local, heading, rate, dt) -> local.steerAtRest(
+                        ChassisSpeeds.fromFieldRelativeSpeeds(twist.dx, twist.dy, twist.dtheta, heading),
+                        rate,
+                        dt));
+                return false;
+            }
+            DriveMeasurement m = m_loop.getMeasurement();
+            return m.goalSeq() == m_steerSeq && Util.all(m.atGoal());
+        }
         ChassisSpeeds targetChassisSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(
-                twist.dx, twist.dy, twist.dtheta, m_pose.getRotation());
+                twist.dx, twist.dy, twist.dtheta, m_snapshot.pose().getRotation());
         return m_swerveLocal.steerAtRest(targetChassisSpeeds, m_heading.getHeadingRateNWU(), kDtSec);
     }
 
@@ -197,43 +260,75 @@ public class SwerveDriveSubsystem extends Subsystem100 {
         t.log(Level.TRACE, m_name, "skill level", driverSkillLevel);
         speeds = speeds.times(driverSkillLevel.scale());
 
+        if (m_loop != null) {
+            m_loop.postRobotRelative(speeds);
+            return;
+        }
         m_swerveLocal.setChassisSpeeds(speeds, m_heading.getHeadingRateNWU(), kDtSec);
     }
 
     public void setChassisSpeedsNormally(ChassisSpeeds speeds, double kDtSec) {
+        if (m_loop != null) {
+            m_loop.postNormally(speeds);
+            return;
+        }
         m_swerveLocal.setChassisSpeedsNormally(speeds, m_heading.getHeadingRateNWU(), kDtSec);
     }
 
     /** Does not desaturate. */
     public void setRawModuleStates(SwerveModuleState[] states) {
+        if (m_loop != null) {
+            m_loop.postRawModuleStates(states);
+            return;
+        }
         m_swerveLocal.setRawModuleStates(states);
     }
 
     /** Make an X, stopped. */
     public void defense() {
+        if (m_loop != null) {
+            m_loop.post((local, heading, rate, dt) -> local.defense());
+            return;
+        }
         m_swerveLocal.defense();
     }
 
     /** Wheels ahead, stopped, for testing. */
     public void steer0() {
+        if (m_loop != null) {
+            m_loop.post((local, heading, rate, dt) -> local.steer0());
+            return;
+        }
         m_swerveLocal.steer0();
     }
 
     /** Wheels at 90 degrees, stopped, for testing. */
     public void steer90() {
+        if (m_loop != null) {
+            m_loop.post((local, heading, rate, dt) -> local.steer90());
+            return;
+        }
         m_swerveLocal.steer90();
     }
 
     public void stop() {
+        if (m_loop != null) {
+            m_loop.postStop();
+            return;
+        }
         m_swerveLocal.stop();
     }
 
     public void resetPose(Pose2d robotPose) {
+        if (m_loop != null) {
+            // the estimator needs the module positions, so the loop does it.
+            m_resetSeq = m_loop.resetPose(robotPose);
+            m_snapshot.reset(robotPose);
+            return;
+        }
         m_poseEstimator.resetPosition(m_heading.getHeadingNWU(), m_swerveLocal.positions(), robotPose);
-        m_pose = robotPose;
         // TODO: should we really assume we're motionless when we call this??
-        m_velocity = new Twist2d();
-        m_accel = new Twist2d();
+        m_snapshot.reset(robotPose);
     }
 
     ///////////////////////////////////////////////////////////////
@@ -243,7 +338,7 @@ public class SwerveDriveSubsystem extends Subsystem100 {
 
     /** Pose snapshot from periodic(). */
     public Pose2d getPose() {
-        return m_pose;
+        return m_snapshot.pose();
     }
 
     /**
@@ -256,18 +351,18 @@ public class SwerveDriveSubsystem extends Subsystem100 {
      * @return a twist where the values are speeds in meters and radians per second
      */
     public Twist2d getVelocity() {
-        return m_velocity;
+        return m_snapshot.velocity();
     }
 
     /**
      * Field-relative acceleration. This is intended for tuning. Snapshot from
-     * periodic.
+     * periodic, low-pass filtered.
      * 
      * @return a twist where the values are accelerations in meters and radians per
      *         second squared
      */
     public Twist2d getAcceleration() {
-        return m_accel;
+        return m_snapshot.acceleration();
     }
 
     /**
@@ -275,25 +370,33 @@ public class SwerveDriveSubsystem extends Subsystem100 {
      * snapshot from periodic, is field relative
      */
     public SwerveState getState() {
-        return m_state;
+        return m_snapshot.state();
     }
 
     /** The controllers are on the profiles. */
     public boolean[] atSetpoint() {
+        if (m_loop != null)
+            return m_loop.getMeasurement().atSetpoint();
         return m_swerveLocal.atSetpoint();
     }
 
     /** The profiles setpoints are at their goals. */
     public boolean[] atGoal() {
+        if (m_loop != null)
+            return m_loop.getMeasurement().atGoal();
         return m_swerveLocal.atGoal();
     }
 
     /** for testing only */
     public SwerveModulePosition[] positions() {
+        if (m_loop != null)
+            return m_loop.getMeasurement().positions();
         return m_swerveLocal.positions();
     }
 
     public void close() {
+        if (m_loop != null)
+            m_loop.close();
         m_swerveLocal.close();
     }
 
@@ -314,34 +417,14 @@ public class SwerveDriveSubsystem extends Subsystem100 {
      * which is why we update it once in periodic, so that the various derivatives
      * of odometry are self-consistent.
      */
-    private void updatePosition() {
+    private Pose2d updatePosition() {
         m_poseEstimator.update(m_heading.getHeadingNWU(), m_swerveLocal.positions());
-        m_pose = m_poseEstimator.getEstimatedPosition();
-    }
-
-    private void updateVelocity(double dt) {
-        ChassisSpeeds speeds = m_swerveLocal.speeds(m_heading.getHeadingRateNWU(), dt);
-        ChassisSpeeds field = ChassisSpeeds.fromRobotRelativeSpeeds(
-                speeds, m_pose.getRotation());
-        m_velocity = new Twist2d(field.vxMetersPerSecond, field.vyMetersPerSecond, field.omegaRadiansPerSecond);
-
-    }
-
-    private void updateAcceleration(double dt) {
-        ChassisSpeeds speeds = m_swerveLocal.speeds(m_heading.getHeadingRateNWU(), dt);
-        if (m_prevSpeeds == null) {
-            m_prevSpeeds = speeds;
-            m_accel = GeometryUtil.kTwist2dIdentity;
-            return;
-        }
-        ChassisSpeeds accel = speeds.minus(m_prevSpeeds);
-        m_prevSpeeds = speeds;
-        ChassisSpeeds field = ChassisSpeeds.fromFieldRelativeSpeeds(accel, m_pose.getRotation());
-        Twist2d deltaV = new Twist2d(field.vxMetersPerSecond, field.vyMetersPerSecond, field.omegaRadiansPerSecond);
-        m_accel = GeometryUtil.scale(deltaV, 1.0 / dt);
+        return m_poseEstimator.getEstimatedPosition();
     }
 
-    private void updateState() {
-        m_state = new SwerveState(m_pose, m_velocity, m_accel);
+    private static boolean near(Twist2d a, Twist2d b) {
+        return Math.abs(a.dx - b.dx) < kSteerTolerance
+                && Math.abs(a.dy - b.dy) < kSteerTolerance
+                && Math.abs(a.dtheta - b.dtheta) < kSteerTolerance;
     }
 }
@@ -181,6 +181,26 @@ public class SwerveLocal implements Glassy {
         return m_swerveKinodynamics.toChassisSpeedsWithDiscretization(gyroRateRad_S, dt, states);
     }
 
+    /**
+     * Measures module states and the robot-relative speed they imply, without
+     * allocating.
+     * 
+     * @param gyroRateRad_S gyro rate
+     * @param dt            for discretization
+     * @param speedsM_S     output module speeds, length 4
+     * @param anglesRad     output module angles, length 4
+     * @param speeds        output robot-relative {vx, vy, omega}
+     */
+    public void measure(
+            double gyroRateRad_S,
+            double dt,
+            double[] speedsM_S,
+            double[] anglesRad,
+            double[] speeds) {
+        m_modules.states(speedsM_S, anglesRad);
+        m_swerveKinodynamics.toChassisSpeedsWithDiscretization(gyroRateRad_S, dt, speedsM_S, anglesRad, speeds);
+    }
+
     public SwerveModulePosition[] positions() {
         return m_modules.positions();
     }
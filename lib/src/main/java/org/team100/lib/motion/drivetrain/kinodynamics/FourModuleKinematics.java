@@ -0,0 +1,322 @@
+package org.team100.lib.motion.drivetrain.kinodynamics;
+
+import org.team100.lib.motion.drivetrain.VeeringCorrection;
+
+/**
+ * Swerve kinematics for exactly four modules, unrolled, using primitive arrays.
+ *
+ * This does the same math as SwerveDriveKinematics and the discretization and
+ * veering correction in SwerveKinodynamics, but without matrices and without
+ * allocating anything: all the outputs go into caller-owned buffers.
+ *
+ * Chassis speeds are double[3] in the order {vx, vy, omega}, in m/s and rad/s.
+ *
+ * Module states are two double[4] arrays, speeds in m/s and angles in radians,
+ * in the usual module order: front left, front right, rear left, rear right.
+ *
+ * Unlike SwerveDriveKinematics, this class keeps no heading memory. If the
+ * desired speed is exactly zero, the angle buffer is left untouched, so a
+ * caller that reuses its buffer gets the same "keep the previous heading"
+ * behavior.
+ *
+ * Instances are immutable and may be shared across threads, as long as each
+ * thread uses its own buffers.
+ */
+public final class FourModuleKinematics {
+    // module locations, meters
+    private final double m_x0;
+    private final double m_y0;
+    private final double m_x1;
+    private final double m_y1;
+    private final double m_x2;
+    private final double m_y2;
+    private final double m_x3;
+    private final double m_y3;
+
+    /**
+     * Forward kinematics: the pseudo-inverse of the inverse kinematics matrix,
+     * 3 rows by 8 columns, row-major. Columns alternate x and y components of
+     * each module velocity.
+     */
+    private final double[] m_fwd = new double[24];
+
+    /**
+     * Module locations relative to the robot center, meters.
+     */
+    public FourModuleKinematics(
+            double x0, double y0,
+            double x1, double y1,
+            double x2, double y2,
+            double x3, double y3) {
+        m_x0 = x0;
+        m_y0 = y0;
+        m_x1 = x1;
+        m_y1 = y1;
+        m_x2 = x2;
+        m_y2 = y2;
+        m_x3 = x3;
+        m_y3 = y3;
+        double[] x = { x0, x1, x2, x3 };
+        double[] y = { y0, y1, y2, y3 };
+
+        // The inverse kinematics matrix A has two rows per module:
+        // [1, 0, -y] and [0, 1, x]. The pseudo-inverse is (A^T A)^-1 A^T.
+        double sx = 0;
+        double sy = 0;
+        double sr = 0;
+        for (int i = 0; i < 4; ++i) {
+            sx += x[i];
+            sy += y[i];
+            sr += x[i] * x[i] + y[i] * y[i];
+        }
+        // A^T A, symmetric.
+        double a00 = 4;
+        double a01 = 0;
+        double a02 = -sy;
+        double a11 = 4;
+        double a12 = sx;
+        double a22 = sr;
+        // its inverse, by cofactors.
+        double c00 = a11 * a22 - a12 * a12;
+        double c01 = a02 * a12 - a01 * a22;
+        double c02 = a01 * a12 - a02 * a11;
+        double c11 = a00 * a22 - a02 * a02;
+        double c12 = a01 * a02 - a00 * a12;
+        double c22 = a00 * a11 - a01 * a01;
+        double det = a00 * c00 + a01 * c01 + a02 * c02;
+        if (Math.abs(det) < 1e-12)
+            throw new IllegalArgumentException("degenerate module layout");
+        double[][] inv = {
+                { c00 / det, c01 / det, c02 / det },
+                { c01 / det, c11 / det, c12 / det },
+                { c02 / det, c12 / det, c22 / det } };
+        for (int r = 0; r < 3; ++r) {
+            for (int i = 0; i < 4; ++i) {
+                // column for the x component of module i is A^T column [1, 0, -y]
+                m_fwd[r * 8 + 2 * i] = inv[r][0] - inv[r][2] * y[i];
+                // column for the y component is [0, 1, x]
+                m_fwd[r * 8 + 2 * i + 1] = inv[r][1] + inv[r][2] * x[i];
+            }
+        }
+    }
+
+    /**
+     * Inverse kinematics, chassis speeds => module states, without
+     * discretization.
+     *
+     * @param vx        m/s
+     * @param vy        m/s
+     * @param omega     rad/s
+     * @param speedsM_S output, module speeds
+     * @param anglesRad output, module angles. If the input is exactly zero, this
+     *                  is left as it was.
+     */
+    public void toModuleStates(
+            double vx,
+            double vy,
+            double omega,
+            double[] speedsM_S,
+            double[] anglesRad) {
+        if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+            speedsM_S[0] = 0;
+            speedsM_S[1] = 0;
+            speedsM_S[2] = 0;
+            speedsM_S[3] = 0;
+            return;
+        }
+        module(0, vx - omega * m_y0, vy + omega * m_x0, speedsM_S, anglesRad);
+        module(1, vx - omega * m_y1, vy + omega * m_x1, speedsM_S, anglesRad);
+        module(2, vx - omega * m_y2, vy + omega * m_x2, speedsM_S, anglesRad);
+        module(3, vx - omega * m_y3, vy + omega * m_x3, speedsM_S, anglesRad);
+    }
+
+    /**
+     * Inverse kinematics with veering correction and discretization, the same as
+     * SwerveKinodynamics.toSwerveModuleStates().
+     *
+     * @param speeds        chassis speeds {vx, vy, omega}, not modified
+     * @param gyroRateRad_S current gyro rate, or the trajectory gyro rate
+     * @param dt            time to aim for
+     * @param scratch       a double[3] used for intermediate results, may be the
+     *                      same array as speeds if you don't need it anymore.
+     * @param speedsM_S     output, module speeds
+     * @param anglesRad     output, module angles
+     */
+    public void toModuleStates(
+            double[] speeds,
+            double gyroRateRad_S,
+            double dt,
+            double[] scratch,
+            double[] speedsM_S,
+            double[] anglesRad) {
+        double angle = VeeringCorrection.correctionRad(gyroRateRad_S);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        double vx = speeds[0];
+        double vy = speeds[1];
+        // rotate by -angle
+        discretize(vx * cos + vy * sin, -vx * sin + vy * cos, speeds[2], dt, scratch);
+        toModuleStates(scratch[0], scratch[1], scratch[2], speedsM_S, anglesRad);
+    }
+
+    /**
+     * Forward kinematics, module states => chassis speeds. Least squares, like
+     * SwerveDriveKinematics. Does not do inverse discretization.
+     *
+     * @param speedsM_S module speeds
+     * @param anglesRad module angles
+     * @param out       output chassis speeds {vx, vy, omega}
+     */
+    public void toChassisSpeeds(double[] speedsM_S, double[] anglesRad, double[] out) {
+        double u0 = speedsM_S[0] * Math.cos(anglesRad[0]);
+        double v0 = speedsM_S[0] * Math.sin(anglesRad[0]);
+        double u1 = speedsM_S[1] * Math.cos(anglesRad[1]);
+        double v1 = speedsM_S[1] * Math.sin(anglesRad[1]);
+        double u2 = speedsM_S[2] * Math.cos(anglesRad[2]);
+        double v2 = speedsM_S[2] * Math.sin(anglesRad[2]);
+        double u3 = speedsM_S[3] * Math.cos(anglesRad[3]);
+        double v3 = speedsM_S[3] * Math.sin(anglesRad[3]);
+        double[] f = m_fwd;
+        out[0] = f[0] * u0 + f[1] * v0 + f[2] * u1 + f[3] * v1
+                + f[4] * u2 + f[5] * v2 + f[6] * u3 + f[7] * v3;
+        out[1] = f[8] * u0 + f[9] * v0 + f[10] * u1 + f[11] * v1
+                + f[12] * u2 + f[13] * v2 + f[14] * u3 + f[15] * v3;
+        out[2] = f[16] * u0 + f[17] * v0 + f[18] * u1 + f[19] * v1
+                + f[20] * u2 + f[21] * v2 + f[22] * u3 + f[23] * v3;
+    }
+
+    /**
+     * Forward kinematics with inverse discretization and veering correction, the
+     * same as SwerveKinodynamics.toChassisSpeedsWithDiscretization().
+     *
+     * @param gyroRateRad_S gyro rate
+     * @param dt            for discretization
+     * @param speedsM_S     module speeds
+     * @param anglesRad     module angles
+     * @param out           output chassis speeds {vx, vy, omega}
+     */
+    public void toChassisSpeedsWithDiscretization(
+            double gyroRateRad_S,
+            double dt,
+            double[] speedsM_S,
+            double[] anglesRad,
+            double[] out) {
+        toChassisSpeeds(speedsM_S, anglesRad, out);
+        // exp of the discrete twist
+        double dx = out[0] * dt;
+        double dy = out[1] * dt;
+        double dtheta = out[2] * dt;
+        double sinTheta = Math.sin(dtheta);
+        double cosTheta = Math.cos(dtheta);
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1 - cosTheta) / dtheta;
+        }
+        double vx = (dx * s - dy * c) / dt;
+        double vy = (dx * c + dy * s) / dt;
+        double omega = Math.atan2(sinTheta, cosTheta) / dt;
+
+        // This is the opposite direction from the inverse.
+        double angle = VeeringCorrection.correctionRad(gyroRateRad_S);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        out[0] = vx * cos - vy * sin;
+        out[1] = vx * sin + vy * cos;
+        out[2] = omega;
+    }
+
+    /**
+     * The same as ChassisSpeeds.discretize(): find the twist that, held for dt,
+     * produces the same pose change as the chassis speeds would if the
+     * translation and rotation were done one after the other.
+     *
+     * @param out output chassis speeds {vx, vy, omega}
+     */
+    public static void discretize(double vx, double vy, double omega, double dt, double[] out) {
+        double sinTheta = Math.sin(omega * dt);
+        double cosTheta = Math.cos(omega * dt);
+        double dtheta = Math.atan2(sinTheta, cosTheta);
+        double halfDtheta = dtheta / 2.0;
+        double cosMinusOne = cosTheta - 1;
+        double halfThetaByTanOfHalfDtheta;
+        if (Math.abs(cosMinusOne) < 1e-9) {
+            halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDtheta = -(halfDtheta * sinTheta) / cosMinusOne;
+        }
+        double tx = vx * dt;
+        double ty = vy * dt;
+        // rotate by (halfThetaByTanOfHalfDtheta, -halfDtheta), which is not a unit
+        // vector, so this also scales.
+        out[0] = (tx * halfThetaByTanOfHalfDtheta + ty * halfDtheta) / dt;
+        out[1] = (ty * halfThetaByTanOfHalfDtheta - tx * halfDtheta) / dt;
+        out[2] = dtheta / dt;
+    }
+
+    /**
+     * Maintain translation and rotation proportionality but slow to a feasible
+     * velocity, assuming the robot has an infinite number of wheels on a circular
+     * frame. The same as SwerveKinodynamics.analyticDesaturation(Twist2d).
+     *
+     * @param maxV     m/s
+     * @param maxOmega rad/s
+     * @param speeds   {vx, vy, omega}, modified in place.
+     */
+    public static void analyticDesaturation(double maxV, double maxOmega, double[] speeds) {
+        double xySpeed = Math.hypot(speeds[0], speeds[1]);
+        double omegaForSpeed = maxOmega * Math.max(0, (1 - xySpeed / maxV));
+        if (Math.abs(speeds[2]) <= omegaForSpeed) {
+            return;
+        }
+        if (xySpeed < 1e-12) {
+            speeds[0] = 0;
+            speeds[1] = 0;
+            speeds[2] = maxOmega;
+            return;
+        }
+        if (Math.abs(speeds[2]) < 1e-12) {
+            double xyAngle = Math.atan2(speeds[1], speeds[0]);
+            speeds[0] = maxV * Math.cos(xyAngle);
+            speeds[1] = maxV * Math.sin(xyAngle);
+            speeds[2] = 0;
+            return;
+        }
+        double v = maxOmega * xySpeed * maxV / (maxOmega * xySpeed + Math.abs(speeds[2]) * maxV);
+        double vRatio = v / xySpeed;
+        speeds[0] *= vRatio;
+        speeds[1] *= vRatio;
+        speeds[2] *= vRatio;
+    }
+
+    /**
+     * The same as SwerveDriveKinematics.desaturateWheelSpeeds(): if any module
+     * is too fast, scale them all down.
+     *
+     * @param speedsM_S module speeds, modified in place.
+     * @param maxM_S    max module speed
+     */
+    public static void desaturateWheelSpeeds(double[] speedsM_S, double maxM_S) {
+        double max = Math.max(
+                Math.max(Math.abs(speedsM_S[0]), Math.abs(speedsM_S[1])),
+                Math.max(Math.abs(speedsM_S[2]), Math.abs(speedsM_S[3])));
+        if (max > maxM_S) {
+            double ratio = maxM_S / max;
+            speedsM_S[0] *= ratio;
+            speedsM_S[1] *= ratio;
+            speedsM_S[2] *= ratio;
+            speedsM_S[3] *= ratio;
+        }
+    }
+
+    private static void module(int i, double x, double y, double[] speedsM_S, double[] anglesRad) {
+        double speed = Math.hypot(x, y);
+        speedsM_S[i] = speed;
+        // Rotation2d(x, y) yields zero for very short vectors.
+        anglesRad[i] = speed > 1e-6 ? Math.atan2(y, x) : 0.0;
+    }
+}
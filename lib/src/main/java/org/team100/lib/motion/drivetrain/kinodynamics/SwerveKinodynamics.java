@@ -49,6 +49,7 @@ public class SwerveKinodynamics implements Glassy {
     private final double m_radius;
     private final double m_vcg;
     private final SwerveDriveKinematics m_kinematics;
+    private final FourModuleKinematics m_kernel;
     private final double m_MaxCapsizeAccelM_S2;
 
     // configured inputs
@@ -99,6 +100,7 @@ public class SwerveKinodynamics implements Glassy {
         // distance from center to wheel
         m_radius = Math.hypot(track / 2, m_wheelbase / 2);
         m_kinematics = get(m_fronttrack, m_backtrack, m_wheelbase, frontoffset);
+        m_kernel = kernel(m_fronttrack, m_backtrack, m_wheelbase, frontoffset);
         // fulcrum is the distance from the center to the nearest edge.
         double fulcrum = Math.min(m_fronttrack / 2, m_wheelbase / 2);
         m_MaxCapsizeAccelM_S2 = 9.8 * (fulcrum / m_vcg);
@@ -159,6 +161,7 @@ public class SwerveKinodynamics implements Glassy {
         // distance from center to wheel
         m_radius = Math.hypot((fronttrack+backtrack) / 4, m_wheelbase / 2);
         m_kinematics = get(m_fronttrack, m_backtrack, m_wheelbase, m_frontoffset);
+        m_kernel = kernel(m_fronttrack, m_backtrack, m_wheelbase, m_frontoffset);
         // fulcrum is the distance from the center to the nearest edge.
         double fulcrum = Math.min(m_fronttrack / 2, m_wheelbase / 2);
         m_MaxCapsizeAccelM_S2 = 9.8 * (fulcrum / m_vcg);
@@ -301,6 +304,16 @@ public class SwerveKinodynamics implements Glassy {
                 new Translation2d(frontoffset-wheelbase, -backtrack / 2));
     }
 
+    /** The same module layout as get(), for the primitive-array kernel. */
+    private static FourModuleKinematics kernel(double fronttrack, double backtrack, double wheelbase,
+            double frontoffset) {
+        return new FourModuleKinematics(
+                frontoffset, fronttrack / 2,
+                frontoffset, -fronttrack / 2,
+                frontoffset - wheelbase, backtrack / 2,
+                frontoffset - wheelbase, -backtrack / 2);
+    }
+
     public void resetHeadings(Rotation2d... moduleHeadings) {
         m_kinematics.resetHeadings(moduleHeadings);
     }
@@ -369,6 +382,63 @@ public class SwerveKinodynamics implements Glassy {
                 angle.unaryMinus());
     }
 
+    /**
+     * Allocation-free version of toSwerveModuleStates(), using primitive arrays
+     * and caller-owned buffers. See FourModuleKinematics for the array layout.
+     * 
+     * Note this does not use or update the heading memory of the WPILib
+     * kinematics: if the speed is zero, the angles buffer is left alone.
+     * 
+     * @param speeds        chassis speeds {vx, vy, omega}
+     * @param gyroRateRad_S current gyro rate, or the trajectory gyro rate
+     * @param dt            time to aim for
+     * @param scratch       double[3] for intermediate results
+     * @param speedsM_S     output module speeds
+     * @param anglesRad     output module angles
+     */
+    public void toSwerveModuleStates(
+            double[] speeds,
+            double gyroRateRad_S,
+            double dt,
+            double[] scratch,
+            double[] speedsM_S,
+            double[] anglesRad) {
+        m_kernel.toModuleStates(speeds, gyroRateRad_S, dt, scratch, speedsM_S, anglesRad);
+    }
+
+    /**
+     * Allocation-free version of toChassisSpeeds(), using primitive arrays.
+     * 
+     * @param out output chassis speeds {vx, vy, omega}
+     */
+    public void toChassisSpeeds(double[] speedsM_S, double[] anglesRad, double[] out) {
+        m_kernel.toChassisSpeeds(speedsM_S, anglesRad, out);
+    }
+
+    /**
+     * Allocation-free version of toChassisSpeedsWithDiscretization(), using
+     * primitive arrays.
+     * 
+     * @param out output chassis speeds {vx, vy, omega}
+     */
+    public void toChassisSpeedsWithDiscretization(
+            double gyroRateRad_S,
+            double dt,
+            double[] speedsM_S,
+            double[] anglesRad,
+            double[] out) {
+        m_kernel.toChassisSpeedsWithDiscretization(gyroRateRad_S, dt, speedsM_S, anglesRad, out);
+    }
+
+    /**
+     * Allocation-free version of analyticDesaturation(Twist2d).
+     * 
+     * @param speeds {vx, vy, omega}, modified in place.
+     */
+    public void analyticDesaturation(double[] speeds) {
+        FourModuleKinematics.analyticDesaturation(getMaxDriveVelocityM_S(), getMaxAngleSpeedRad_S(), speeds);
+    }
+
     public SwerveDrivePoseEstimator newPoseEstimator(
             Rotation2d gyroAngle,
             SwerveModulePosition[] modulePositions,
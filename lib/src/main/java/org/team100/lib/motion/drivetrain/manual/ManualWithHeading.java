@@ -43,6 +43,10 @@ public class ManualWithHeading implements FieldRelativeDriver {
     private final PIDController m_thetaController;
     private final PIDController m_omegaController;
     private final String m_name;
+    /** Scratch for the clipped input. */
+    private final Twist2d m_clipped = new Twist2d();
+    /** Scratch for the scaled input in snap mode. */
+    private final Twist2d m_scaled = new Twist2d();
 
     public final TrapezoidProfile100 m_profile;
     Rotation2d m_goal = null;
@@ -96,7 +100,7 @@ public class ManualWithHeading implements FieldRelativeDriver {
         Pose2d currentPose = state.pose();
 
         // clip the input to the unit circle
-        Twist2d clipped = DriveUtil.clampTwist(twist1_1, 1.0);
+        Twist2d clipped = DriveUtil.clampTwist(twist1_1, 1.0, m_clipped);
 
         Rotation2d currentRotation = currentPose.getRotation();
         double headingMeasurement = currentRotation.getRadians();
@@ -108,7 +112,8 @@ public class ManualWithHeading implements FieldRelativeDriver {
             // we're not in snap mode, so it's pure manual
             t.log(Level.TRACE, m_name, "mode", "free");
 
-            // scale to max in both translation and rotation
+            // scale to max in both translation and rotation.
+            // this is returned, maybe, so it can't be scratch.
             Twist2d twistM_S = DriveUtil.scale(
                     clipped,
                     m_swerveKinodynamics.getMaxDriveVelocityM_S(),
@@ -118,25 +123,27 @@ public class ManualWithHeading implements FieldRelativeDriver {
             return m_swerveKinodynamics.analyticDesaturation(twistM_S);
         }
 
-        // take the short path
-        m_goal = new Rotation2d(
-                Math100.getMinDistance(headingMeasurement, m_goal.getRadians()));
+        // take the short path; usually it's already short.
+        double goalRad = Math100.getMinDistance(headingMeasurement, m_goal.getRadians());
+        if (goalRad != m_goal.getRadians())
+            m_goal = new Rotation2d(goalRad);
 
         // use the modulus closest to the measurement
-        m_thetaSetpoint = new State100(
-                Math100.getMinDistance(headingMeasurement, m_thetaSetpoint.x()),
-                m_thetaSetpoint.v());
+        double setpointRad = Math100.getMinDistance(headingMeasurement, m_thetaSetpoint.x());
+        if (setpointRad != m_thetaSetpoint.x())
+            m_thetaSetpoint = new State100(setpointRad, m_thetaSetpoint.v());
 
         // in snap mode we take dx and dy from the user, and use the profile for dtheta.
         // the omega goal in snap mode is always zero.
-        State100 goalState = new State100(m_goal.getRadians(), 0);
+        State100 goalState = new State100(goalRad, 0);
         m_thetaSetpoint = m_profile.calculate(kDtSec, m_thetaSetpoint, goalState);
 
         // this is user input
         Twist2d twistM_S = DriveUtil.scale(
                 clipped,
                 m_swerveKinodynamics.getMaxDriveVelocityM_S(),
-                m_swerveKinodynamics.getMaxAngleSpeedRad_S());
+                m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
+                m_scaled);
         
         // the snap overrides the user input for omega.
         double thetaFF = m_thetaSetpoint.v();
@@ -149,7 +156,7 @@ public class ManualWithHeading implements FieldRelativeDriver {
                 thetaFF + thetaFB + omegaFB,
                 -m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
                 m_swerveKinodynamics.getMaxAngleSpeedRad_S());
-        Twist2d twistWithSnapM_S = new Twist2d(twistM_S.dx, twistM_S.dy, omega);
+        twistM_S.dtheta = omega;
 
         t.log(Level.TRACE, m_name, "mode", "snap");
         t.log(Level.TRACE, m_name, "theta setpoint", m_thetaSetpoint);
@@ -159,9 +166,8 @@ public class ManualWithHeading implements FieldRelativeDriver {
         t.log(Level.TRACE, m_name, "error/omega", m_thetaSetpoint.v() - headingRate);
 
         // desaturate the end result to feasibility by preferring the rotation over
-        // translation
-        twistWithSnapM_S = m_swerveKinodynamics.preferRotation(twistWithSnapM_S);
-        return twistWithSnapM_S;
+        // translation. this makes a new twist, so the scratch doesn't escape.
+        return m_swerveKinodynamics.preferRotation(twistM_S);
     }
 
     @Override
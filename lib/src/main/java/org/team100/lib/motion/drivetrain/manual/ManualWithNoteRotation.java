@@ -54,6 +54,11 @@ public class ManualWithNoteRotation implements ChassisSpeedDriver {
     private final PIDController m_omegaController;
     private final String m_name;
     private final TrapezoidProfile100 m_profile;
+    /** Scratch for the clipped input. */
+    private final Twist2d m_clipped = new Twist2d();
+    /** For the field widget, reused. */
+    private final double[] m_targetArray = new double[3];
+    private final double[] m_ballArray = new double[3];
     State100 m_thetaSetpoint;
     Translation2d m_ball;
     Translation2d m_ballV;
@@ -101,11 +106,10 @@ public class ManualWithNoteRotation implements ChassisSpeedDriver {
     public ChassisSpeeds apply(SwerveState state, Twist2d input) {
         // clip the input to the unit circle
         Optional<Translation2d> target = m_target.get();
-        Twist2d clipped = DriveUtil.clampTwist(input, 1.0);
+        Twist2d clipped = DriveUtil.clampTwist(input, 1.0, m_clipped);
         if (!target.isPresent()) {
-            Twist2d twistWithLock = new Twist2d(clipped.dx, clipped.dy, clipped.dtheta);
             // desaturate to feasibility by preferring the rotational velocity.
-            twistWithLock = m_swerveKinodynamics.preferRotation(twistWithLock);
+            Twist2d twistWithLock = m_swerveKinodynamics.preferRotation(clipped);
 
             m_prevPose = state.pose();
             ChassisSpeeds scaled = DriveUtil.scaleChassisSpeeds(
@@ -123,19 +127,20 @@ public class ManualWithNoteRotation implements ChassisSpeedDriver {
         Rotation2d bearing = TargetUtil.bearing(currentTranslation, target.get()).plus(GeometryUtil.kRotation180);
         // take the short path
         double measurement = currentRotation.getRadians();
-        bearing = new Rotation2d(
-                Math100.getMinDistance(measurement, bearing.getRadians()));
+        double bearingRad = Math100.getMinDistance(measurement, bearing.getRadians());
+        if (bearingRad != bearing.getRadians())
+            bearing = new Rotation2d(bearingRad);
 
         // make sure the setpoint uses the modulus close to the measurement.
-        m_thetaSetpoint = new State100(
-                Math100.getMinDistance(measurement, m_thetaSetpoint.x()),
-                m_thetaSetpoint.v());
+        double setpointRad = Math100.getMinDistance(measurement, m_thetaSetpoint.x());
+        if (setpointRad != m_thetaSetpoint.x())
+            m_thetaSetpoint = new State100(setpointRad, m_thetaSetpoint.v());
 
         // the goal omega should match the target's apparent motion
         double targetMotion = TargetUtil.targetMotion(state, target.get());
         t.log(Level.TRACE, m_name, "apparent motion", targetMotion);
 
-        State100 goal = new State100(bearing.getRadians(), targetMotion);
+        State100 goal = new State100(bearingRad, targetMotion);
 
         m_thetaSetpoint = m_profile.calculate(kDtSec, m_thetaSetpoint, goal);
         double thetaFF = m_thetaSetpoint.v();
@@ -157,10 +162,9 @@ public class ManualWithNoteRotation implements ChassisSpeedDriver {
                 m_swerveKinodynamics.getMaxAngleSpeedRad_S());
 
         // this name needs to be exactly "/field/target" for glass.
-        t.log(Level.DEBUG, "field", "target", new double[] {
-                target.get().getX(),
-                target.get().getY(),
-                0 });
+        m_targetArray[0] = target.get().getX();
+        m_targetArray[1] = target.get().getY();
+        t.log(Level.DEBUG, "field", "target", m_targetArray);
 
         // this is just for simulation
         if (m_trigger.getAsBoolean()) {
@@ -172,24 +176,23 @@ public class ManualWithNoteRotation implements ChassisSpeedDriver {
         if (m_ball != null) {
             m_ball = m_ball.plus(m_ballV);
             // this name needs to be exactly "/field/ball" for glass.
-            t.log(Level.TRACE, "field", "ball", new double[] {
-                    m_ball.getX(),
-                    m_ball.getY(),
-                    0 });
+            m_ballArray[0] = m_ball.getX();
+            m_ballArray[1] = m_ball.getY();
+            t.log(Level.TRACE, "field", "ball", m_ballArray);
         }
-        Twist2d twistWithLock = new Twist2d(clipped.dx, clipped.dy, omega);
+        clipped.dtheta = omega;
         // desaturate to feasibility by preferring the rotational velocity.
-        twistWithLock = m_swerveKinodynamics.preferRotation(twistWithLock);
+        Twist2d twistWithLock = m_swerveKinodynamics.preferRotation(clipped);
 
         m_prevPose = state.pose();
         ChassisSpeeds scaled = DriveUtil.scaleChassisSpeeds(
                 twistWithLock,
                 m_swerveKinodynamics.getMaxDriveVelocityM_S(),
                 m_swerveKinodynamics.getMaxAngleSpeedRad_S() * kRotationSpeed);
-        ChassisSpeeds withRot = new ChassisSpeeds(scaled.vxMetersPerSecond, scaled.vyMetersPerSecond,
-                twistWithLock.dtheta);
+        // keep the unscaled rotation
+        scaled.omegaRadiansPerSecond = twistWithLock.dtheta;
         // desaturate to feasibility
-        ChassisSpeeds speeds = m_swerveKinodynamics.analyticDesaturation(withRot);
+        ChassisSpeeds speeds = m_swerveKinodynamics.analyticDesaturation(scaled);
         return speeds;
     }
 
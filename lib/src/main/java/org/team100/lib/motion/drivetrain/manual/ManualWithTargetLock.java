@@ -51,6 +51,13 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
     private final PIDController m_omegaController;
     private final String m_name;
     private final TrapezoidProfile100 m_profile;
+    /** Scratch for the clipped input. */
+    private final Twist2d m_clipped = new Twist2d();
+    /** Scratch for the scaled input. */
+    private final Twist2d m_scaled = new Twist2d();
+    /** For the field widget, reused. */
+    private final double[] m_targetArray = new double[3];
+    private final double[] m_ballArray = new double[3];
     State100 m_thetaSetpoint;
     Translation2d m_ball;
     Translation2d m_ballV;
@@ -98,7 +105,7 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
     @Override
     public Twist2d apply(SwerveState state, Twist2d input) {
         // clip the input to the unit circle
-        Twist2d clipped = DriveUtil.clampTwist(input, 1.0);
+        Twist2d clipped = DriveUtil.clampTwist(input, 1.0, m_clipped);
         Rotation2d currentRotation = state.pose().getRotation();
         double headingRate = m_heading.getHeadingRateNWU();
 
@@ -108,19 +115,20 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
 
         // take the short path
         double measurement = currentRotation.getRadians();
-        bearing = new Rotation2d(
-                Math100.getMinDistance(measurement, bearing.getRadians()));
+        double bearingRad = Math100.getMinDistance(measurement, bearing.getRadians());
+        if (bearingRad != bearing.getRadians())
+            bearing = new Rotation2d(bearingRad);
 
         // make sure the setpoint uses the modulus close to the measurement.
-        m_thetaSetpoint = new State100(
-                Math100.getMinDistance(measurement, m_thetaSetpoint.x()),
-                m_thetaSetpoint.v());
+        double setpointRad = Math100.getMinDistance(measurement, m_thetaSetpoint.x());
+        if (setpointRad != m_thetaSetpoint.x())
+            m_thetaSetpoint = new State100(setpointRad, m_thetaSetpoint.v());
 
         // the goal omega should match the target's apparent motion
         double targetMotion = TargetUtil.targetMotion(state, target);
         t.log(Level.TRACE, m_name, "apparent motion", targetMotion);
 
-        State100 goal = new State100(bearing.getRadians(), targetMotion);
+        State100 goal = new State100(bearingRad, targetMotion);
 
         m_thetaSetpoint = m_profile.calculate(kDtSec, m_thetaSetpoint, goal);
 
@@ -128,7 +136,8 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
         Twist2d scaledInput = DriveUtil.scale(
                 clipped,
                 m_swerveKinodynamics.getMaxDriveVelocityM_S(),
-                m_swerveKinodynamics.getMaxAngleSpeedRad_S());
+                m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
+                m_scaled);
 
         double thetaFF = m_thetaSetpoint.v();
 
@@ -147,16 +156,16 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
                 thetaFF + thetaFB + omegaFB,
                 -m_swerveKinodynamics.getMaxAngleSpeedRad_S(),
                 m_swerveKinodynamics.getMaxAngleSpeedRad_S());
-        Twist2d twistWithLockM_S = new Twist2d(scaledInput.dx, scaledInput.dy, omega);
+        scaledInput.dtheta = omega;
 
         // desaturate to feasibility by preferring the rotational velocity.
-        twistWithLockM_S = m_swerveKinodynamics.preferRotation(twistWithLockM_S);
+        // this makes a new twist, so the scratch doesn't escape.
+        Twist2d twistWithLockM_S = m_swerveKinodynamics.preferRotation(scaledInput);
 
         // this name needs to be exactly "/field/target" for glass.
-        t.log(Level.TRACE, "field", "target", new double[] {
-                target.getX(),
-                target.getY(),
-                0 });
+        m_targetArray[0] = target.getX();
+        m_targetArray[1] = target.getY();
+        t.log(Level.TRACE, "field", "target", m_targetArray);
 
         // this is just for simulation
         if (m_trigger.getAsBoolean()) {
@@ -168,10 +177,9 @@ public class ManualWithTargetLock implements FieldRelativeDriver {
         if (m_ball != null) {
             m_ball = m_ball.plus(m_ballV);
             // this name needs to be exactly "/field/ball" for glass.
-            t.log(Level.TRACE, "field", "ball", new double[] {
-                    m_ball.getX(),
-                    m_ball.getY(),
-                    0 });
+            m_ballArray[0] = m_ball.getX();
+            m_ballArray[1] = m_ball.getY();
+            t.log(Level.TRACE, "field", "ball", m_ballArray);
         }
 
         m_prevPose = state.pose();
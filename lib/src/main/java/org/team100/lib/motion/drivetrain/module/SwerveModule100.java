@@ -119,6 +119,16 @@ public class SwerveModule100 implements Glassy {
         return new SwerveModuleState(m_driveServo.getVelocity(), new Rotation2d(m_turningServo.getPosition()));
     }
 
+    /** @return current drive speed, m/s, without allocating */
+    double getVelocityM_S() {
+        return m_driveServo.getVelocity();
+    }
+
+    /** @return current steering angle, rad, without allocating */
+    double getAngleRad() {
+        return m_turningServo.getPosition();
+    }
+
     SwerveModulePosition getPosition() {
         return new SwerveModulePosition(m_driveServo.getDistance(), new Rotation2d(m_turningServo.getPosition()));
     }
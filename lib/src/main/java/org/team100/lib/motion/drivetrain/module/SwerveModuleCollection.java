@@ -194,6 +194,24 @@ public class SwerveModuleCollection {
         };
     }
 
+    /**
+     * Current measurements, written into the supplied arrays, in the order FL,
+     * FR, RL, RR.
+     * 
+     * @param speedsM_S output, length 4
+     * @param anglesRad output, length 4
+     */
+    public void states(double[] speedsM_S, double[] anglesRad) {
+        speedsM_S[0] = m_frontLeft.getVelocityM_S();
+        speedsM_S[1] = m_frontRight.getVelocityM_S();
+        speedsM_S[2] = m_rearLeft.getVelocityM_S();
+        speedsM_S[3] = m_rearRight.getVelocityM_S();
+        anglesRad[0] = m_frontLeft.getAngleRad();
+        anglesRad[1] = m_frontRight.getAngleRad();
+        anglesRad[2] = m_rearLeft.getAngleRad();
+        anglesRad[3] = m_rearRight.getAngleRad();
+    }
+
     public boolean[] atSetpoint() {
         return new boolean[] {
                 m_frontLeft.atSetpoint(),
@@ -0,0 +1,37 @@
+package org.team100.lib.motor;
+
+import org.team100.lib.controller.State100;
+import org.team100.lib.units.Measure100;
+
+/**
+ * A motor that runs a position profile itself, e.g. Phoenix 6 Motion Magic or
+ * REV Smart Motion.
+ * 
+ * The RIO just sends the goal, once per cycle or less, and the motor controller
+ * computes the setpoints and runs the feedback at its own (much faster) rate,
+ * so there's no RIO-side profile or PID, and no extra 20 ms of latency.
+ */
+public interface ProfiledMotor100<T extends Measure100> extends Motor100<T> {
+
+    /**
+     * Closed-loop profiled position control, with the constraints set at
+     * construction.
+     * 
+     * @param goal                position, T, with zero velocity at the end.
+     * @param feedForwardTorqueNm for gravity compensation, applied on top of the
+     *                            onboard feedback.
+     */
+    void setProfiledPosition(double goal, double feedForwardTorqueNm);
+
+    /**
+     * The current setpoint of the onboard profile, T and T/s, as reported by the
+     * motor controller. Motor controllers that don't report it should return the
+     * measured state.
+     */
+    State100 getProfileSetpoint();
+
+    @Override
+    default String getGlassName() {
+        return "ProfiledMotor100";
+    }
+}
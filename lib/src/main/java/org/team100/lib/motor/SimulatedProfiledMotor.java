@@ -0,0 +1,102 @@
+package org.team100.lib.motor;
+
+import org.team100.lib.controller.State100;
+import org.team100.lib.profile.Profile100;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.units.Measure100;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Simulated motor that runs the profile "onboard," in periodic(), the way the
+ * real motor controller would, and follows the setpoint exactly.
+ * 
+ * Relies on Timer.getFPGATimestamp(), so use SimHooks.stepTiming() in tests.
+ */
+public class SimulatedProfiledMotor<T extends Measure100>
+        extends SimulatedMotor<T>
+        implements ProfiledMotor100<T> {
+    private final Telemetry t = Telemetry.get();
+    private final String m_name;
+    private final Profile100 m_profile;
+
+    /** The onboard profile state, which is also the motor state. */
+    private State100 m_setpoint = new State100(0, 0);
+    /** Null when not in profiled mode. */
+    private State100 m_goal;
+    private double m_time = Timer.getFPGATimestamp();
+
+    /**
+     * @param name    may not start with slash
+     * @param profile mirrors the onboard profile constraints
+     */
+    public SimulatedProfiledMotor(String name, Profile100 profile) {
+        super(name);
+        m_name = name;
+        m_profile = profile;
+    }
+
+    /**
+     * @param goal                sets the onboard goal
+     * @param feedForwardTorqueNm ignored
+     */
+    @Override
+    public void setProfiledPosition(double goal, double feedForwardTorqueNm) {
+        m_goal = new State100(goal, 0);
+        t.log(Level.TRACE, m_name, "goal", goal);
+    }
+
+    @Override
+    public State100 getProfileSetpoint() {
+        return m_setpoint;
+    }
+
+    @Override
+    public void setDutyCycle(double output) {
+        m_goal = null;
+        super.setDutyCycle(output);
+    }
+
+    @Override
+    public void setVelocity(double velocity, double accel) {
+        m_goal = null;
+        super.setVelocity(velocity, accel);
+    }
+
+    @Override
+    public void setVelocity(double velocity, double accel, double torque) {
+        m_goal = null;
+        super.setVelocity(velocity, accel, torque);
+    }
+
+    @Override
+    public void stop() {
+        m_goal = null;
+        m_setpoint = new State100(m_setpoint.x(), 0);
+        super.stop();
+    }
+
+    /** Advance the onboard profile, or just integrate the velocity. */
+    @Override
+    public void periodic() {
+        double now = Timer.getFPGATimestamp();
+        double dt = now - m_time;
+        m_time = now;
+        if (dt <= 0)
+            return;
+        if (m_goal == null) {
+            double v = getVelocity();
+            m_setpoint = new State100(m_setpoint.x() + v * dt, v);
+            return;
+        }
+        m_setpoint = m_profile.calculate(dt, m_setpoint, m_goal);
+        super.setVelocity(m_setpoint.v(), 0);
+        t.log(Level.TRACE, m_name, "setpoint", m_setpoint);
+    }
+
+    @Override
+    public String getGlassName() {
+        return "SimulatedProfiledMotor";
+    }
+}
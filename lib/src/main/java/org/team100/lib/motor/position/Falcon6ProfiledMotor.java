@@ -0,0 +1,237 @@
+package org.team100.lib.motor.position;
+
+import org.team100.lib.config.PIDConstants;
+import org.team100.lib.controller.State100;
+import org.team100.lib.motor.MotorPhase;
+import org.team100.lib.motor.MotorWithEncoder100;
+import org.team100.lib.motor.ProfiledMotor100;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.units.Angle100;
+import org.team100.lib.util.Names;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
+import com.ctre.phoenix6.configs.CurrentLimitsConfigs;
+import com.ctre.phoenix6.configs.FeedbackConfigs;
+import com.ctre.phoenix6.configs.MotionMagicConfigs;
+import com.ctre.phoenix6.configs.MotorOutputConfigs;
+import com.ctre.phoenix6.configs.Slot0Configs;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfigurator;
+import com.ctre.phoenix6.controls.DutyCycleOut;
+import com.ctre.phoenix6.controls.MotionMagicVoltage;
+import com.ctre.phoenix6.controls.VelocityVoltage;
+import com.ctre.phoenix6.hardware.TalonFX;
+import com.ctre.phoenix6.signals.InvertedValue;
+import com.ctre.phoenix6.signals.NeutralModeValue;
+
+/**
+ * PHOENIX 6 VERSION
+ * 
+ * Rotary mechanism position using Motion Magic, i.e. the TalonFX runs the
+ * trapezoid profile and the position feedback at 1 kHz, and reports the
+ * profile setpoint back.
+ * 
+ * The sensor-to-mechanism ratio is the gear ratio, so the TalonFX works in
+ * mechanism rotations; this class converts to radians.
+ * 
+ * The control requests are mutated and reused, to avoid allocating every
+ * cycle.
+ */
+public class Falcon6ProfiledMotor implements MotorWithEncoder100<Angle100>, ProfiledMotor100<Angle100> {
+    /**
+     * Motor resistance, Kraken. Falcon is 0.03.
+     * https://store.ctr-electronics.com/content/datasheet/Motor%20Performance%20Analysis%20Report.pdf
+     */
+    private static final double kROhms = 0.025;
+    /**
+     * Motor torque constant, Kraken. Falcon is 0.018.
+     * https://store.ctr-electronics.com/content/datasheet/Motor%20Performance%20Analysis%20Report.pdf
+     */
+    private static final double kTNm_amp = 0.019;
+    /** Velocity feedforward, volts per motor rev per second, about 12V / 100 rps. */
+    private static final double kVVolts_Rev_S = 0.12;
+
+    private final Telemetry t = Telemetry.get();
+    private final TalonFX m_motor;
+    private final double m_gearRatio;
+    private final String m_name;
+    private final StatusSignal<Double> m_position;
+    private final StatusSignal<Double> m_velocity;
+    private final StatusSignal<Double> m_reference;
+    private final StatusSignal<Double> m_referenceSlope;
+    private final MotionMagicVoltage m_motionMagic = new MotionMagicVoltage(0);
+    private final VelocityVoltage m_velocityVoltage = new VelocityVoltage(0);
+    private final DutyCycleOut m_dutyCycle = new DutyCycleOut(0);
+
+    /** Mechanism rotations, updated in periodic(). */
+    private double m_positionRot;
+    /** Mechanism rotations per second, updated in periodic(). */
+    private double m_velocityRot_S;
+    /** Onboard setpoint, mechanism rotations, updated in periodic(). */
+    private double m_referenceRot;
+    /** Onboard setpoint velocity, mechanism rotations/s, updated in periodic(). */
+    private double m_referenceRot_S;
+
+    /**
+     * @param gearRatio         motor revolutions per mechanism revolution
+     * @param maxVelRad_S       profile cruise speed, mechanism rad/s
+     * @param maxAccelRad_S2    profile acceleration, mechanism rad/s^2
+     * @param positionConstants onboard feedback, volts per mechanism rotation
+     */
+    public Falcon6ProfiledMotor(
+            String name,
+            int canId,
+            MotorPhase motorPhase,
+            int currentLimit,
+            double gearRatio,
+            double maxVelRad_S,
+            double maxAccelRad_S2,
+            PIDConstants positionConstants) {
+        if (name.startsWith("/"))
+            throw new IllegalArgumentException();
+        m_motor = new TalonFX(canId);
+        m_gearRatio = gearRatio;
+
+        TalonFXConfigurator talonFXConfigurator = m_motor.getConfigurator();
+        talonFXConfigurator.apply(new TalonFXConfiguration());
+
+        MotorOutputConfigs motorConfigs = new MotorOutputConfigs();
+        motorConfigs.NeutralMode = NeutralModeValue.Brake;
+        if (motorPhase == MotorPhase.FORWARD) {
+            motorConfigs.Inverted = InvertedValue.CounterClockwise_Positive;
+        } else {
+            motorConfigs.Inverted = InvertedValue.Clockwise_Positive;
+        }
+        talonFXConfigurator.apply(motorConfigs);
+
+        CurrentLimitsConfigs currentConfigs = new CurrentLimitsConfigs();
+        currentConfigs.SupplyCurrentLimit = currentLimit;
+        currentConfigs.SupplyCurrentLimitEnable = true;
+        talonFXConfigurator.apply(currentConfigs);
+
+        FeedbackConfigs feedbackConfigs = new FeedbackConfigs();
+        feedbackConfigs.SensorToMechanismRatio = gearRatio;
+        talonFXConfigurator.apply(feedbackConfigs);
+
+        // in mechanism rotations, because of the sensor ratio above.
+        Slot0Configs slot0Configs = new Slot0Configs();
+        slot0Configs.kV = kVVolts_Rev_S * gearRatio;
+        slot0Configs.kP = positionConstants.getP();
+        slot0Configs.kI = positionConstants.getI();
+        slot0Configs.kD = positionConstants.getD();
+        talonFXConfigurator.apply(slot0Configs, 0.050);
+
+        MotionMagicConfigs motionMagicConfigs = new MotionMagicConfigs();
+        motionMagicConfigs.MotionMagicCruiseVelocity = maxVelRad_S / (2 * Math.PI);
+        motionMagicConfigs.MotionMagicAcceleration = maxAccelRad_S2 / (2 * Math.PI);
+        talonFXConfigurator.apply(motionMagicConfigs);
+
+        m_position = m_motor.getPosition();
+        m_velocity = m_motor.getVelocity();
+        m_reference = m_motor.getClosedLoopReference();
+        m_referenceSlope = m_motor.getClosedLoopReferenceSlope();
+        BaseStatusSignal.setUpdateFrequencyForAll(50, m_position, m_velocity, m_reference, m_referenceSlope);
+
+        m_name = Names.append(name, this);
+        t.log(Level.TRACE, m_name, "Device ID", m_motor.getDeviceID());
+    }
+
+    @Override
+    public void setProfiledPosition(double goalRad, double feedForwardTorqueNm) {
+        double torqueFFVolts = feedForwardTorqueNm / kTNm_amp * kROhms;
+        m_motionMagic.Position = goalRad / (2 * Math.PI);
+        m_motionMagic.FeedForward = torqueFFVolts;
+        m_motor.setControl(m_motionMagic);
+        t.log(Level.TRACE, m_name, "goal (rot)", m_motionMagic.Position);
+        t.log(Level.TRACE, m_name, "torque feedforward volts", torqueFFVolts);
+    }
+
+    /** The onboard profile setpoint, reported by the TalonFX. */
+    @Override
+    public State100 getProfileSetpoint() {
+        return new State100(m_referenceRot * 2 * Math.PI, m_referenceRot_S * 2 * Math.PI);
+    }
+
+    @Override
+    public void setDutyCycle(double output) {
+        m_dutyCycle.Output = output;
+        m_motor.setControl(m_dutyCycle);
+        t.log(Level.TRACE, m_name, "desired duty cycle [-1,1]", output);
+    }
+
+    /**
+     * Velocity feedforward plus the position gains applied to velocity error,
+     * which is rough; this motor is tuned for position.
+     */
+    @Override
+    public void setVelocity(double outputRad_S, double accelRad_S2) {
+        setVelocity(outputRad_S, accelRad_S2, 0);
+    }
+
+    @Override
+    public void setVelocity(double outputRad_S, double accelRad_S2, double torqueNm) {
+        m_velocityVoltage.Velocity = outputRad_S / (2 * Math.PI);
+        m_velocityVoltage.Acceleration = accelRad_S2 / (2 * Math.PI);
+        m_velocityVoltage.FeedForward = torqueNm / kTNm_amp * kROhms;
+        m_motor.setControl(m_velocityVoltage);
+    }
+
+    @Override
+    public double getTorque() {
+        return m_motor.getTorqueCurrent().getValueAsDouble() * kTNm_amp;
+    }
+
+    @Override
+    public void stop() {
+        m_motor.stopMotor();
+    }
+
+    @Override
+    public void close() {
+        m_motor.close();
+    }
+
+    //////////////////////////
+    // encoder methods
+
+    /** Mechanism position in radians. */
+    @Override
+    public Double getPosition() {
+        return m_positionRot * 2 * Math.PI;
+    }
+
+    /** Mechanism velocity in rad/s. */
+    @Override
+    public double getRate() {
+        return m_velocityRot_S * 2 * Math.PI;
+    }
+
+    @Override
+    public void reset() {
+        m_motor.setPosition(0);
+        m_positionRot = 0;
+    }
+
+    /**
+     * Update measurements, all four signals in one call.
+     */
+    @Override
+    public void periodic() {
+        BaseStatusSignal.refreshAll(m_position, m_velocity, m_reference, m_referenceSlope);
+        m_positionRot = m_position.getValueAsDouble();
+        m_velocityRot_S = m_velocity.getValueAsDouble();
+        m_referenceRot = m_reference.getValueAsDouble();
+        m_referenceRot_S = m_referenceSlope.getValueAsDouble();
+        t.log(Level.TRACE, m_name, "position (rot)", m_positionRot);
+        t.log(Level.TRACE, m_name, "velocity (rot_s)", m_velocityRot_S);
+        t.log(Level.TRACE, m_name, "reference (rot)", m_referenceRot);
+        t.log(Level.TRACE, m_name, "reference (rot_s)", m_referenceRot_S);
+    }
+
+    @Override
+    public String getGlassName() {
+        return "Falcon6ProfiledMotor";
+    }
+}
@@ -0,0 +1,227 @@
+package org.team100.lib.motor.position;
+
+import org.team100.lib.config.PIDConstants;
+import org.team100.lib.controller.State100;
+import org.team100.lib.motor.MotorPhase;
+import org.team100.lib.motor.MotorWithEncoder100;
+import org.team100.lib.motor.ProfiledMotor100;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.units.Angle100;
+import org.team100.lib.util.Names;
+import org.team100.lib.util.Util;
+
+import com.revrobotics.CANSparkBase.ControlType;
+import com.revrobotics.CANSparkLowLevel.MotorType;
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.AccelStrategy;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
+
+/**
+ * Rotary mechanism position using REV Neo Smart Motion, i.e. the SparkMax runs
+ * the trapezoid profile, and follows the profile velocity with its velocity
+ * PID: the slot gains are velocity gains, in duty cycle per RPM of velocity
+ * error, and kFF comes from the free speed. There's no position feedback
+ * beyond what the velocity loop integrates.
+ * 
+ * Smart Motion doesn't report its setpoint, so getProfileSetpoint() returns the
+ * measurement.
+ * 
+ * Position and velocity are mechanism radians, using the gear ratio.
+ * 
+ * The gains are a guess. Calibrate them before using this.
+ */
+public class NeoProfiledMotor implements MotorWithEncoder100<Angle100>, ProfiledMotor100<Angle100> {
+    /**
+     * Motor resistance https://www.revrobotics.com/rev-21-1650/
+     */
+    private static final double kROhms = 0.114;
+    /**
+     * Motor torque constant https://www.revrobotics.com/rev-21-1650/
+     */
+    private static final double kTNm_amp = 0.028;
+    /**
+     * Free speed, for the Smart Motion velocity feedforward, which is duty cycle
+     * per RPM.
+     */
+    private static final double kFreeSpeedRPM = 5676;
+    /** Smart Motion slot. */
+    private static final int kSlot = 0;
+
+    private final Telemetry t = Telemetry.get();
+    private final CANSparkMax m_motor;
+    private final RelativeEncoder m_encoder;
+    private final SparkPIDController m_pidController;
+    private final double m_gearRatio;
+    private final String m_name;
+
+    /** Current position measurement in motor revolutions, obtained in periodic(). */
+    private double m_encoderPosition;
+    /** Current velocity measurement in RPM, obtained in periodic(). */
+    private double m_encoderVelocity;
+
+    /**
+     * @param gearRatio         motor revolutions per mechanism revolution
+     * @param maxVelRad_S       profile cruise speed, mechanism rad/s
+     * @param maxAccelRad_S2    profile acceleration, mechanism rad/s^2
+     * @param toleranceRad      allowed error at the goal, mechanism rad
+     * @param velocityConstants onboard velocity feedback, duty cycle per motor
+     *                          RPM of velocity error
+     */
+    public NeoProfiledMotor(
+            String name,
+            int canId,
+            MotorPhase motorPhase,
+            int currentLimit,
+            double gearRatio,
+            double maxVelRad_S,
+            double maxAccelRad_S2,
+            double toleranceRad,
+            PIDConstants velocityConstants) {
+        if (name.startsWith("/"))
+            throw new IllegalArgumentException();
+        m_motor = new CANSparkMax(canId, MotorType.kBrushless);
+        require(m_motor.restoreFactoryDefaults());
+        m_motor.setInverted(motorPhase == MotorPhase.REVERSE);
+        require(m_motor.setSmartCurrentLimit(currentLimit));
+        m_motor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, 20);
+        m_encoder = m_motor.getEncoder();
+        m_gearRatio = gearRatio;
+
+        m_pidController = m_motor.getPIDController();
+        require(m_pidController.setPositionPIDWrappingEnabled(false));
+        require(m_pidController.setP(velocityConstants.getP(), kSlot));
+        require(m_pidController.setI(velocityConstants.getI(), kSlot));
+        require(m_pidController.setD(velocityConstants.getD(), kSlot));
+        require(m_pidController.setIZone(velocityConstants.getIZone(), kSlot));
+        require(m_pidController.setFF(1 / kFreeSpeedRPM, kSlot));
+        require(m_pidController.setOutputRange(-1, 1, kSlot));
+        require(m_pidController.setSmartMotionAccelStrategy(AccelStrategy.kTrapezoidal, kSlot));
+        require(m_pidController.setSmartMotionMaxVelocity(motorRPM(maxVelRad_S), kSlot));
+        require(m_pidController.setSmartMotionMaxAccel(motorRPM(maxAccelRad_S2), kSlot));
+        require(m_pidController.setSmartMotionMinOutputVelocity(0, kSlot));
+        require(m_pidController.setSmartMotionAllowedClosedLoopError(motorRev(toleranceRad), kSlot));
+
+        m_name = Names.append(name, this);
+        t.log(Level.TRACE, m_name, "Device ID", m_motor.getDeviceId());
+    }
+
+    @Override
+    public void setProfiledPosition(double goalRad, double feedForwardTorqueNm) {
+        double torqueFFVolts = feedForwardTorqueNm / kTNm_amp * kROhms;
+        m_pidController.setReference(
+                motorRev(goalRad), ControlType.kSmartMotion, kSlot, torqueFFVolts, ArbFFUnits.kVoltage);
+        t.log(Level.TRACE, m_name, "goal (rev)", motorRev(goalRad));
+        t.log(Level.TRACE, m_name, "torque feedforward volts", torqueFFVolts);
+    }
+
+    /** Smart Motion doesn't report the setpoint, so this is the measurement. */
+    @Override
+    public State100 getProfileSetpoint() {
+        return new State100(getPosition(), getRate());
+    }
+
+    @Override
+    public void setDutyCycle(double output) {
+        m_motor.set(output);
+        t.log(Level.TRACE, m_name, "desired duty cycle [-1,1]", output);
+    }
+
+    /**
+     * Open loop, velocity feedforward only: the onboard slot is configured for
+     * Smart Motion.
+     * 
+     * @param accelRad_S2 ignored
+     */
+    @Override
+    public void setVelocity(double outputRad_S, double accelRad_S2) {
+        m_motor.set(motorRPM(outputRad_S) / kFreeSpeedRPM);
+    }
+
+    /**
+     * Open loop, velocity feedforward only: the onboard slot is configured for
+     * Smart Motion.
+     * 
+     * @param accelRad_S2 ignored
+     */
+    @Override
+    public void setVelocity(double outputRad_S, double accelRad_S2, double torqueNm) {
+        double torqueFFVolts = torqueNm / kTNm_amp * kROhms;
+        m_motor.setVoltage(motorRPM(outputRad_S) / kFreeSpeedRPM * 12 + torqueFFVolts);
+    }
+
+    @Override
+    public double getTorque() {
+        return m_motor.getOutputCurrent() * kTNm_amp;
+    }
+
+    @Override
+    public void stop() {
+        m_motor.stopMotor();
+    }
+
+    @Override
+    public void close() {
+        m_motor.close();
+    }
+
+    //////////////////////////
+    // encoder methods
+
+    /** Mechanism position in radians. */
+    @Override
+    public Double getPosition() {
+        return m_encoderPosition * 2 * Math.PI / m_gearRatio;
+    }
+
+    /** Mechanism velocity in rad/s. */
+    @Override
+    public double getRate() {
+        return m_encoderVelocity / 60 * 2 * Math.PI / m_gearRatio;
+    }
+
+    @Override
+    public void reset() {
+        m_encoder.setPosition(0);
+        m_encoderPosition = 0;
+    }
+
+    /**
+     * Update measurements.
+     */
+    @Override
+    public void periodic() {
+        m_encoderPosition = m_encoder.getPosition();
+        m_encoderVelocity = m_encoder.getVelocity();
+        t.log(Level.TRACE, m_name, "position (rev)", m_encoderPosition);
+        t.log(Level.TRACE, m_name, "velocity (rev_s)", m_encoderVelocity / 60);
+        t.log(Level.TRACE, m_name, "current (A)", m_motor.getOutputCurrent());
+        t.log(Level.TRACE, m_name, "duty cycle", m_motor.getAppliedOutput());
+    }
+
+    @Override
+    public String getGlassName() {
+        return "NeoProfiledMotor";
+    }
+
+    /////////////////////////////////////////////////////////////////
+
+    /** Mechanism radians to motor revolutions. */
+    private double motorRev(double rad) {
+        return rad / (2 * Math.PI) * m_gearRatio;
+    }
+
+    /** Mechanism rad/s to motor RPM (or rad/s^2 to RPM/s). */
+    private double motorRPM(double rad_S) {
+        return motorRev(rad_S) * 60;
+    }
+
+    private void require(REVLibError responseCode) {
+        if (responseCode != REVLibError.kOk)
+            Util.warn("NeoProfiledMotor received response code " + responseCode.name());
+    }
+}
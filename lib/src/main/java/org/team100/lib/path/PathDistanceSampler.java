@@ -56,4 +56,18 @@ public class PathDistanceSampler {
     public double getMinDistance() {
         return 0.0;
     }
+
+    /** Number of points in the underlying path. */
+    public int length() {
+        return m_distances.length;
+    }
+
+    /**
+     * Distance along the path of the point at the specified index.
+     * 
+     * @return meters
+     */
+    public double getDistance(int index) {
+        return m_distances[index];
+    }
 }
@@ -0,0 +1,725 @@
+package org.team100.lib.planner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * RRT* in field position (x, y), with straight-line cost, which keeps its tree
+ * from one robot cycle to the next instead of starting over.
+ *
+ * Each cycle, the caller should:
+ * <ol>
+ * <li>{@link #reroot(double, double)} at the robot position, which reverses
+ * the edges between the robot and the old root, so the rest of the tree is
+ * kept.
+ * <li>{@link #updateObstacles()}, which removes only the subtrees hanging from
+ * edges that the moved obstacles now block.
+ * <li>{@link #plan(long)} until the deadline.
+ * </ol>
+ *
+ * Nodes live in parallel primitive arrays with a fixed capacity, and the
+ * neighbor search uses a uniform grid with cells as wide as the rewiring
+ * radius, so the loop doesn't allocate. When the arrays are full, the subtrees
+ * that can't beat the best route (path cost plus straight-line distance to the
+ * goal) are dropped.
+ *
+ * Every edge is shorter than the rewiring radius, which is what makes the
+ * obstacle update local: a moved obstacle can only block edges of nodes within
+ * (obstacle radius + robot radius + rewiring radius) of it.
+ */
+public class AnytimeRRTStar {
+    /** Robot moves shorter than this keep the old root. */
+    private static final double kMinRerootM = 0.05;
+    private static final double kGoalBias = 0.05;
+    /** Obstacle moves shorter than this are ignored. */
+    private static final double kObstacleToleranceM = 1e-6;
+    /** Slots that sampling leaves free, for rerooting. */
+    private static final int kReserve = 1;
+
+    private final Arena m_arena;
+    private final double m_robotRadiusM;
+    private final double m_stepM;
+    private final double m_radiusM;
+    private final int m_capacity;
+    private final Random m_random;
+
+    // allowed robot-center positions
+    private final double m_loX;
+    private final double m_loY;
+    private final double m_hiX;
+    private final double m_hiY;
+
+    // nodes
+    private final double[] m_x;
+    private final double[] m_y;
+    /** Path length from the root. */
+    private final double[] m_cost;
+    private final int[] m_parent;
+    private final int[] m_firstChild;
+    private final int[] m_nextSibling;
+    private final boolean[] m_alive;
+    private final int[] m_free;
+    private int m_freeCount;
+    private int m_root;
+
+    // grid index
+    private final double m_gridX;
+    private final double m_gridY;
+    private final int m_cols;
+    private final int m_rows;
+    private final int[] m_cellHead;
+    private final int[] m_nextInCell;
+    private final int[] m_prevInCell;
+    private final int[] m_cell;
+
+    // obstacles as of the last update
+    private double[] m_obsX;
+    private double[] m_obsY;
+    private double[] m_obsR;
+    private int m_obsCount;
+
+    private boolean m_hasGoal;
+    private double m_goalX;
+    private double m_goalY;
+    private int m_best;
+    private double m_bestCost;
+    /** Best cost at the last pruning, so full trees don't rescan for nothing. */
+    private double m_prunedCost;
+
+    // scratch
+    private final int[] m_stack;
+    private int[] m_near;
+    private int m_nearCount;
+
+    /**
+     * @param arena       field bounds and obstacles
+     * @param robotRadiusM obstacles and walls are inflated by this much
+     * @param stepM       longest extension towards each sample
+     * @param radiusM     rewiring radius, at least stepM
+     * @param capacity    maximum number of nodes
+     * @param seed        for the sampler
+     */
+    public AnytimeRRTStar(
+            Arena arena,
+            double robotRadiusM,
+            double stepM,
+            double radiusM,
+            int capacity,
+            int seed) {
+        if (stepM > radiusM)
+            throw new IllegalArgumentException("step must not exceed radius");
+        m_arena = arena;
+        m_robotRadiusM = robotRadiusM;
+        m_stepM = stepM;
+        m_radiusM = radiusM;
+        m_capacity = capacity;
+        m_random = new Random(seed);
+
+        Translation2d min = arena.min();
+        Translation2d max = arena.max();
+        m_loX = min.getX() + robotRadiusM;
+        m_loY = min.getY() + robotRadiusM;
+        m_hiX = max.getX() - robotRadiusM;
+        m_hiY = max.getY() - robotRadiusM;
+
+        m_x = new double[capacity];
+        m_y = new double[capacity];
+        m_cost = new double[capacity];
+        m_parent = new int[capacity];
+        m_firstChild = new int[capacity];
+        m_nextSibling = new int[capacity];
+        m_alive = new boolean[capacity];
+        m_free = new int[capacity];
+
+        m_gridX = min.getX();
+        m_gridY = min.getY();
+        m_cols = Math.max(1, (int) Math.ceil((max.getX() - min.getX()) / radiusM));
+        m_rows = Math.max(1, (int) Math.ceil((max.getY() - min.getY()) / radiusM));
+        m_cellHead = new int[m_cols * m_rows];
+        m_nextInCell = new int[capacity];
+        m_prevInCell = new int[capacity];
+        m_cell = new int[capacity];
+
+        m_obsX = new double[0];
+        m_obsY = new double[0];
+        m_obsR = new double[0];
+
+        m_stack = new int[capacity];
+        m_near = new int[64];
+        clear();
+    }
+
+    /**
+     * Throw away the tree and start a new one at (x, y), or at the nearest point
+     * in bounds, if the robot is closer to a wall than its radius.
+     */
+    public void reset(double x, double y) {
+        clear();
+        m_root = add(clampX(x), clampY(y), -1, 0);
+        updateBest();
+    }
+
+    public void setGoal(double x, double y) {
+        m_hasGoal = true;
+        m_goalX = x;
+        m_goalY = y;
+        m_prunedCost = Double.POSITIVE_INFINITY;
+        updateBest();
+    }
+
+    /**
+     * Make (x, y) the root, keeping the rest of the tree: the nearest node with
+     * a clear edge becomes the child of the new root, and the edges between it
+     * and the old root are reversed. All the costs change, so this is linear in
+     * the size of the tree. Like reset(), the root is kept in bounds.
+     *
+     * @return false if there was no clear edge, so the tree was started over.
+     */
+    public boolean reroot(double x, double y) {
+        x = clampX(x);
+        y = clampY(y);
+        if (m_root < 0) {
+            reset(x, y);
+            return false;
+        }
+        if (Math.hypot(x - m_x[m_root], y - m_y[m_root]) < kMinRerootM)
+            return true;
+        if (m_freeCount == 0)
+            prune();
+        if (m_freeCount == 0) {
+            reset(x, y);
+            return false;
+        }
+        near(x, y, m_radiusM);
+        int anchor = -1;
+        double anchorDist = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < m_nearCount; ++k) {
+            int n = m_near[k];
+            double d = Math.hypot(m_x[n] - x, m_y[n] - y);
+            if (d < anchorDist && clear(x, y, m_x[n], m_y[n])) {
+                anchor = n;
+                anchorDist = d;
+            }
+        }
+        if (anchor < 0) {
+            reset(x, y);
+            return false;
+        }
+        int root = add(x, y, -1, 0);
+        int child = root;
+        int n = anchor;
+        while (n >= 0) {
+            int oldParent = m_parent[n];
+            detach(n);
+            attach(n, child);
+            child = n;
+            n = oldParent;
+        }
+        m_root = root;
+        propagate(root);
+        updateBest();
+        return true;
+    }
+
+    /**
+     * Read the obstacles from the arena, and remove the subtrees below edges
+     * blocked by obstacles that moved (or appeared) since the last update.
+     *
+     * @return number of nodes removed
+     */
+    public int updateObstacles() {
+        int count = m_arena.obstacleCount();
+        if (count > m_obsX.length) {
+            m_obsX = Arrays.copyOf(m_obsX, count);
+            m_obsY = Arrays.copyOf(m_obsY, count);
+            m_obsR = Arrays.copyOf(m_obsR, count);
+        }
+        int oldCount = m_obsCount;
+        m_obsCount = count;
+        boolean changed = count != oldCount;
+        int removed = 0;
+        for (int i = 0; i < count; ++i) {
+            double x = m_arena.obstacleX(i);
+            double y = m_arena.obstacleY(i);
+            double r = m_arena.obstacleRadius(i);
+            boolean moved = i >= oldCount
+                    || Math.abs(x - m_obsX[i]) > kObstacleToleranceM
+                    || Math.abs(y - m_obsY[i]) > kObstacleToleranceM
+                    || Math.abs(r - m_obsR[i]) > kObstacleToleranceM;
+            m_obsX[i] = x;
+            m_obsY[i] = y;
+            m_obsR[i] = r;
+            if (moved && m_root >= 0) {
+                changed = true;
+                removed += invalidate(i);
+            }
+        }
+        if (changed) {
+            // the last edge to the goal isn't in the tree, so check it again
+            m_prunedCost = Double.POSITIVE_INFINITY;
+            updateBest();
+        }
+        return removed;
+    }
+
+    /**
+     * Sample until the deadline.
+     *
+     * @param deadlineNs in System.nanoTime() units
+     * @return the number of samples
+     */
+    public int plan(long deadlineNs) {
+        int steps = 0;
+        while (System.nanoTime() < deadlineNs) {
+            step();
+            ++steps;
+        }
+        updateBest();
+        return steps;
+    }
+
+    /**
+     * One sample: extend towards it from the nearest node, choose the cheapest
+     * clear parent nearby, and rewire the neighbors through the new node if
+     * that's cheaper for them.
+     *
+     * @return true if a node was added
+     */
+    public boolean step() {
+        if (m_root < 0)
+            return false;
+        if (m_freeCount <= kReserve) {
+            prune();
+            if (m_freeCount <= kReserve)
+                return false;
+        }
+        double sx;
+        double sy;
+        if (m_hasGoal && m_random.nextDouble() < kGoalBias) {
+            sx = m_goalX;
+            sy = m_goalY;
+        } else {
+            sx = m_loX + (m_hiX - m_loX) * m_random.nextDouble();
+            sy = m_loY + (m_hiY - m_loY) * m_random.nextDouble();
+        }
+        int nearest = nearest(sx, sy);
+        double dx = sx - m_x[nearest];
+        double dy = sy - m_y[nearest];
+        double d = Math.hypot(dx, dy);
+        if (d < 1e-6)
+            return false;
+        if (d > m_stepM) {
+            sx = m_x[nearest] + dx * m_stepM / d;
+            sy = m_y[nearest] + dy * m_stepM / d;
+        }
+
+        near(sx, sy, m_radiusM);
+        int parent = -1;
+        double cost = Double.POSITIVE_INFINITY;
+        for (int k = 0; k < m_nearCount; ++k) {
+            int n = m_near[k];
+            double c = m_cost[n] + Math.hypot(sx - m_x[n], sy - m_y[n]);
+            if (c < cost && clear(m_x[n], m_y[n], sx, sy)) {
+                parent = n;
+                cost = c;
+            }
+        }
+        if (parent < 0)
+            return false;
+        int q = add(sx, sy, parent, cost);
+
+        for (int k = 0; k < m_nearCount; ++k) {
+            int n = m_near[k];
+            if (n == parent || n == m_root)
+                continue;
+            double c = cost + Math.hypot(sx - m_x[n], sy - m_y[n]);
+            if (c < m_cost[n] - 1e-9 && clear(sx, sy, m_x[n], m_y[n])) {
+                detach(n);
+                attach(n, q);
+                m_cost[n] = c;
+                propagate(n);
+            }
+        }
+
+        if (m_hasGoal) {
+            double c = cost + Math.hypot(m_goalX - sx, m_goalY - sy);
+            if (c < m_bestCost
+                    && Math.hypot(m_goalX - sx, m_goalY - sy) <= m_radiusM
+                    && clear(sx, sy, m_goalX, m_goalY)) {
+                m_best = q;
+                m_bestCost = c;
+            }
+        }
+        return true;
+    }
+
+    public boolean hasRoute() {
+        return m_best >= 0;
+    }
+
+    /** Length of the best route, or infinity if there isn't one. */
+    public double bestCost() {
+        return m_bestCost;
+    }
+
+    /** Number of nodes in the tree. */
+    public int size() {
+        return m_capacity - m_freeCount;
+    }
+
+    /**
+     * Waypoints from the root to the goal through the tree, or empty if there's
+     * no route yet.
+     */
+    public List<Translation2d> route() {
+        List<Translation2d> result = new ArrayList<>();
+        if (m_best < 0)
+            return result;
+        result.add(new Translation2d(m_goalX, m_goalY));
+        for (int n = m_best; n >= 0; n = m_parent[n]) {
+            result.add(new Translation2d(m_x[n], m_y[n]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * The route with corners cut wherever the straight line is clear, which is
+     * what the trajectory should follow: the tree is full of little zigzags.
+     */
+    public List<Translation2d> shortcut() {
+        List<Translation2d> route = route();
+        if (route.size() < 3)
+            return route;
+        List<Translation2d> result = new ArrayList<>();
+        result.add(route.get(0));
+        int i = 0;
+        while (i < route.size() - 1) {
+            Translation2d a = route.get(i);
+            int j = route.size() - 1;
+            while (j > i + 1) {
+                Translation2d b = route.get(j);
+                if (clear(a.getX(), a.getY(), b.getX(), b.getY()))
+                    break;
+                --j;
+            }
+            result.add(route.get(j));
+            i = j;
+        }
+        return result;
+    }
+
+    /**
+     * The nearest point in bounds, i.e. at least the robot radius from the
+     * walls. This is where the tree is rooted, for a robot at (x, y).
+     */
+    public Translation2d inside(double x, double y) {
+        return new Translation2d(clampX(x), clampY(y));
+    }
+
+    /**
+     * True if the robot can drive the straight segment: it stays in bounds and
+     * clear of the obstacles as of the last update.
+     */
+    public boolean clear(double x0, double y0, double x1, double y1) {
+        if (!inBounds(x0, y0) || !inBounds(x1, y1))
+            return false;
+        for (int i = 0; i < m_obsCount; ++i) {
+            if (blocks(i, x0, y0, x1, y1))
+                return false;
+        }
+        return true;
+    }
+
+    /** Squared distance from the point (px, py) to the segment. */
+    static double segmentDistSq(double px, double py, double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double len2 = dx * dx + dy * dy;
+        double t = 0;
+        if (len2 > 0)
+            t = Math.max(0, Math.min(1, ((px - x0) * dx + (py - y0) * dy) / len2));
+        double ex = x0 + t * dx - px;
+        double ey = y0 + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    //////////////////////////////////////////////////////
+    // for testing
+
+    int root() {
+        return m_root;
+    }
+
+    int capacity() {
+        return m_capacity;
+    }
+
+    boolean alive(int n) {
+        return m_alive[n];
+    }
+
+    int parent(int n) {
+        return m_parent[n];
+    }
+
+    double x(int n) {
+        return m_x[n];
+    }
+
+    double y(int n) {
+        return m_y[n];
+    }
+
+    double cost(int n) {
+        return m_cost[n];
+    }
+
+    //////////////////////////////////////////////////////
+
+    private void clear() {
+        Arrays.fill(m_alive, false);
+        Arrays.fill(m_cellHead, -1);
+        m_freeCount = 0;
+        for (int i = m_capacity - 1; i >= 0; --i) {
+            m_free[m_freeCount++] = i;
+        }
+        m_root = -1;
+        m_best = -1;
+        m_bestCost = Double.POSITIVE_INFINITY;
+        m_prunedCost = Double.POSITIVE_INFINITY;
+    }
+
+    private double clampX(double x) {
+        return Math.max(m_loX, Math.min(m_hiX, x));
+    }
+
+    private double clampY(double y) {
+        return Math.max(m_loY, Math.min(m_hiY, y));
+    }
+
+    private boolean inBounds(double x, double y) {
+        return x >= m_loX && x <= m_hiX && y >= m_loY && y <= m_hiY;
+    }
+
+    private boolean blocks(int i, double x0, double y0, double x1, double y1) {
+        double r = m_obsR[i] + m_robotRadiusM;
+        return segmentDistSq(m_obsX[i], m_obsY[i], x0, y0, x1, y1) < r * r;
+    }
+
+    /** Remove the subtrees below edges blocked by obstacle i. */
+    private int invalidate(int i) {
+        near(m_obsX[i], m_obsY[i], m_obsR[i] + m_robotRadiusM + m_radiusM);
+        int removed = 0;
+        for (int k = 0; k < m_nearCount; ++k) {
+            int n = m_near[k];
+            if (!m_alive[n] || n == m_root)
+                continue;
+            int p = m_parent[n];
+            if (blocks(i, m_x[p], m_y[p], m_x[n], m_y[n]))
+                removed += removeSubtree(n);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove the subtrees that can't beat the best route. Path cost plus
+     * straight-line distance never decreases going down the tree, so the whole
+     * subtree goes.
+     */
+    private void prune() {
+        if (m_best < 0 || m_bestCost >= m_prunedCost)
+            return;
+        m_prunedCost = m_bestCost;
+        for (int n = 0; n < m_capacity; ++n) {
+            if (!m_alive[n] || n == m_root)
+                continue;
+            double h = Math.hypot(m_goalX - m_x[n], m_goalY - m_y[n]);
+            if (m_cost[n] + h > m_bestCost + 1e-9)
+                removeSubtree(n);
+        }
+    }
+
+    private void updateBest() {
+        m_best = -1;
+        m_bestCost = Double.POSITIVE_INFINITY;
+        if (!m_hasGoal || m_root < 0)
+            return;
+        near(m_goalX, m_goalY, m_radiusM);
+        for (int k = 0; k < m_nearCount; ++k) {
+            int n = m_near[k];
+            double c = m_cost[n] + Math.hypot(m_goalX - m_x[n], m_goalY - m_y[n]);
+            if (c < m_bestCost && clear(m_x[n], m_y[n], m_goalX, m_goalY)) {
+                m_best = n;
+                m_bestCost = c;
+            }
+        }
+    }
+
+    private int add(double x, double y, int parent, double cost) {
+        int n = m_free[--m_freeCount];
+        m_x[n] = x;
+        m_y[n] = y;
+        m_cost[n] = cost;
+        m_firstChild[n] = -1;
+        m_alive[n] = true;
+        m_parent[n] = -1;
+        m_nextSibling[n] = -1;
+        if (parent >= 0)
+            attach(n, parent);
+        gridInsert(n);
+        return n;
+    }
+
+    private void attach(int n, int parent) {
+        m_parent[n] = parent;
+        m_nextSibling[n] = m_firstChild[parent];
+        m_firstChild[parent] = n;
+    }
+
+    private void detach(int n) {
+        int p = m_parent[n];
+        if (p < 0)
+            return;
+        if (m_firstChild[p] == n) {
+            m_firstChild[p] = m_nextSibling[n];
+        } else {
+            int c = m_firstChild[p];
+            while (m_nextSibling[c] != n)
+                c = m_nextSibling[c];
+            m_nextSibling[c] = m_nextSibling[n];
+        }
+        m_parent[n] = -1;
+        m_nextSibling[n] = -1;
+    }
+
+    /** @return number of nodes removed */
+    private int removeSubtree(int n) {
+        detach(n);
+        int removed = 0;
+        int top = 0;
+        m_stack[top++] = n;
+        while (top > 0) {
+            int i = m_stack[--top];
+            for (int c = m_firstChild[i]; c >= 0; c = m_nextSibling[c]) {
+                m_stack[top++] = c;
+            }
+            m_alive[i] = false;
+            gridRemove(i);
+            m_free[m_freeCount++] = i;
+            if (i == m_best) {
+                m_best = -1;
+                m_bestCost = Double.POSITIVE_INFINITY;
+            }
+            ++removed;
+        }
+        return removed;
+    }
+
+    /** Recompute the costs below n from the cost of n. */
+    private void propagate(int n) {
+        int top = 0;
+        m_stack[top++] = n;
+        while (top > 0) {
+            int i = m_stack[--top];
+            for (int c = m_firstChild[i]; c >= 0; c = m_nextSibling[c]) {
+                m_cost[c] = m_cost[i] + Math.hypot(m_x[c] - m_x[i], m_y[c] - m_y[i]);
+                m_stack[top++] = c;
+            }
+        }
+    }
+
+    private int col(double x) {
+        return Math.max(0, Math.min(m_cols - 1, (int) Math.floor((x - m_gridX) / m_radiusM)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(m_rows - 1, (int) Math.floor((y - m_gridY) / m_radiusM)));
+    }
+
+    private void gridInsert(int n) {
+        int cell = row(m_y[n]) * m_cols + col(m_x[n]);
+        m_cell[n] = cell;
+        int head = m_cellHead[cell];
+        m_prevInCell[n] = -1;
+        m_nextInCell[n] = head;
+        if (head >= 0)
+            m_prevInCell[head] = n;
+        m_cellHead[cell] = n;
+    }
+
+    private void gridRemove(int n) {
+        int prev = m_prevInCell[n];
+        int next = m_nextInCell[n];
+        if (prev >= 0)
+            m_nextInCell[prev] = next;
+        else
+            m_cellHead[m_cell[n]] = next;
+        if (next >= 0)
+            m_prevInCell[next] = prev;
+    }
+
+    /** Fill m_near with the nodes within r of (x, y). */
+    private void near(double x, double y, double r) {
+        m_nearCount = 0;
+        int c0 = col(x - r);
+        int c1 = col(x + r);
+        int r0 = row(y - r);
+        int r1 = row(y + r);
+        double r2 = r * r;
+        for (int row = r0; row <= r1; ++row) {
+            for (int col = c0; col <= c1; ++col) {
+                for (int n = m_cellHead[row * m_cols + col]; n >= 0; n = m_nextInCell[n]) {
+                    double dx = m_x[n] - x;
+                    double dy = m_y[n] - y;
+                    if (dx * dx + dy * dy <= r2) {
+                        if (m_nearCount == m_near.length)
+                            m_near = Arrays.copyOf(m_near, 2 * m_near.length);
+                        m_near[m_nearCount++] = n;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Search rings of cells outwards from (x, y). Nodes in ring k+1 are at least k
+     * cells away, so stop when the best is closer than that.
+     */
+    private int nearest(double x, double y) {
+        int cx = col(x);
+        int cy = row(y);
+        int best = -1;
+        double bestD2 = Double.POSITIVE_INFINITY;
+        int rings = Math.max(m_cols, m_rows);
+        for (int k = 0; k <= rings; ++k) {
+            for (int row = cy - k; row <= cy + k; ++row) {
+                if (row < 0 || row >= m_rows)
+                    continue;
+                int colStep = (row == cy - k || row == cy + k) ? 1 : 2 * k;
+                for (int col = cx - k; col <= cx + k; col += colStep) {
+                    if (col < 0 || col >= m_cols)
+                        continue;
+                    for (int n = m_cellHead[row * m_cols + col]; n >= 0; n = m_nextInCell[n]) {
+                        double dx = m_x[n] - x;
+                        double dy = m_y[n] - y;
+                        double d2 = dx * dx + dy * dy;
+                        if (d2 < bestD2) {
+                            best = n;
+                            bestD2 = d2;
+                        }
+                    }
+                }
+            }
+            double reach = k * m_radiusM;
+            if (best >= 0 && bestD2 <= reach * reach)
+                break;
+        }
+        return best;
+    }
+}
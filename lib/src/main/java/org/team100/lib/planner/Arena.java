@@ -0,0 +1,29 @@
+package org.team100.lib.planner;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * The drivable part of the field, and the obstacles in it.
+ * 
+ * Obstacles are circles, e.g. other robots seen by the camera, or the circle
+ * around a fixed field element. Obstacles may move between calls; the planner
+ * reads them once per cycle.
+ * 
+ * The primitive accessors are there so the planner can check lots of segments
+ * without making a Translation2d for each one.
+ */
+public interface Arena {
+    /** Lower-left corner of the drivable rectangle. */
+    Translation2d min();
+
+    /** Upper-right corner of the drivable rectangle. */
+    Translation2d max();
+
+    int obstacleCount();
+
+    double obstacleX(int i);
+
+    double obstacleY(int i);
+
+    double obstacleRadius(int i);
+}
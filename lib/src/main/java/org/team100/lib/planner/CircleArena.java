@@ -0,0 +1,64 @@
+package org.team100.lib.planner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * A rectangle with circular obstacles, which can be moved, e.g. by a camera
+ * tracking other robots.
+ */
+public class CircleArena implements Arena {
+    private final Translation2d m_min;
+    private final Translation2d m_max;
+    private final List<double[]> m_obstacles;
+
+    public CircleArena(Translation2d min, Translation2d max) {
+        m_min = min;
+        m_max = max;
+        m_obstacles = new ArrayList<>();
+    }
+
+    /** @return the index of the new obstacle */
+    public int add(double x, double y, double radius) {
+        m_obstacles.add(new double[] { x, y, radius });
+        return m_obstacles.size() - 1;
+    }
+
+    public void move(int i, double x, double y) {
+        double[] obstacle = m_obstacles.get(i);
+        obstacle[0] = x;
+        obstacle[1] = y;
+    }
+
+    @Override
+    public Translation2d min() {
+        return m_min;
+    }
+
+    @Override
+    public Translation2d max() {
+        return m_max;
+    }
+
+    @Override
+    public int obstacleCount() {
+        return m_obstacles.size();
+    }
+
+    @Override
+    public double obstacleX(int i) {
+        return m_obstacles.get(i)[0];
+    }
+
+    @Override
+    public double obstacleY(int i) {
+        return m_obstacles.get(i)[1];
+    }
+
+    @Override
+    public double obstacleRadius(int i) {
+        return m_obstacles.get(i)[2];
+    }
+}
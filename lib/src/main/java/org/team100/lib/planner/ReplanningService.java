@@ -0,0 +1,216 @@
+package org.team100.lib.planner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.team100.lib.dashboard.Glassy;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.timing.TimingConstraint;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.TrajectoryPlanner;
+import org.team100.lib.util.Names;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Keeps a collision-free trajectory to the goal up to date while the robot
+ * drives and the obstacles move, using a fixed slice of each robot cycle.
+ *
+ * Call {@link #update(Pose2d, double)} once per cycle. It reroots the tree at
+ * the robot, drops the parts of the tree that moved obstacles now block, and
+ * samples until the budget runs out. If the route changed, it makes a new
+ * Trajectory100 and bumps the version, so the follower knows to pick it up.
+ *
+ * Trajectory generation can't be interrupted, so the service remembers how
+ * long the last one took, and only starts one if that much budget is left,
+ * unless the old trajectory is blocked.
+ */
+public class ReplanningService implements Glassy {
+    private static final Telemetry t = Telemetry.get();
+    /** Waypoints closer than this are the same. */
+    private static final double kWaypointToleranceM = 0.05;
+    /** Routes shorter than this don't need a trajectory. */
+    private static final double kArrivedM = 0.1;
+
+    private final String m_name;
+    private final AnytimeRRTStar m_tree;
+    private final TrajectoryPlanner m_planner;
+    private final List<TimingConstraint> m_constraints;
+    private final double m_maxVelM_S;
+    private final double m_maxAccelM_S_S;
+    private final long m_budgetNs;
+
+    private Rotation2d m_goalHeading;
+    /** The waypoints behind the current trajectory, without the start. */
+    private List<Translation2d> m_published;
+    private Trajectory100 m_trajectory;
+    private int m_version;
+    private long m_generateNs;
+
+    /**
+     * @param tree        the tree, which owns the arena
+     * @param planner     makes trajectories from the waypoints
+     * @param constraints for the trajectories
+     * @param budgetS     compute time per cycle
+     */
+    public ReplanningService(
+            AnytimeRRTStar tree,
+            TrajectoryPlanner planner,
+            List<TimingConstraint> constraints,
+            double maxVelM_S,
+            double maxAccelM_S_S,
+            double budgetS) {
+        m_name = Names.name(this);
+        m_tree = tree;
+        m_planner = planner;
+        m_constraints = constraints;
+        m_maxVelM_S = maxVelM_S;
+        m_maxAccelM_S_S = maxAccelM_S_S;
+        m_budgetNs = (long) (budgetS * 1e9);
+        m_published = List.of();
+    }
+
+    public void setGoal(Pose2d goal) {
+        m_goalHeading = goal.getRotation();
+        m_tree.setGoal(goal.getX(), goal.getY());
+        // force a new trajectory
+        m_published = List.of();
+    }
+
+    /**
+     * Run one slice of planning, and publish a new trajectory if the route
+     * changed.
+     *
+     * @param robot  current pose
+     * @param speedM_S current speed, for the start of the trajectory
+     */
+    public void update(Pose2d robot, double speedM_S) {
+        long startNs = System.nanoTime();
+        long deadlineNs = startNs + m_budgetNs;
+        if (!m_tree.reroot(robot.getX(), robot.getY()))
+            t.log(Level.DEBUG, m_name, "reset", true);
+        int removed = m_tree.updateObstacles();
+        boolean blocked = !m_published.isEmpty() && !stillClear(robot);
+        int steps = m_tree.plan(deadlineNs - m_generateNs);
+
+        List<Translation2d> waypoints = m_tree.shortcut();
+        if (waypoints.isEmpty()) {
+            if (m_trajectory != null) {
+                m_trajectory = null;
+                m_published = List.of();
+                ++m_version;
+            }
+        } else if (blocked || changed(waypoints)) {
+            if (blocked || System.nanoTime() + m_generateNs < deadlineNs) {
+                long genStartNs = System.nanoTime();
+                publish(robot, speedM_S, waypoints);
+                m_generateNs = System.nanoTime() - genStartNs;
+            }
+        }
+
+        t.log(Level.DEBUG, m_name, "nodes", m_tree.size());
+        t.log(Level.DEBUG, m_name, "removed", removed);
+        t.log(Level.DEBUG, m_name, "steps", steps);
+        t.log(Level.DEBUG, m_name, "cost", m_tree.bestCost());
+        t.log(Level.DEBUG, m_name, "version", m_version);
+        t.log(Level.DEBUG, m_name, "elapsed ms", (System.nanoTime() - startNs) / 1e6);
+    }
+
+    /** The latest trajectory from the robot to the goal, or null if none. */
+    public Trajectory100 getTrajectory() {
+        return m_trajectory;
+    }
+
+    /** Changes every time the trajectory changes. */
+    public int getVersion() {
+        return m_version;
+    }
+
+    @Override
+    public String getGlassName() {
+        return "ReplanningService";
+    }
+
+    //////////////////////////////////////////////////////
+
+    /**
+     * True if the published route is still clear, from the robot on. A robot
+     * closer to a wall than its radius starts from the nearest point in bounds,
+     * like the tree does.
+     */
+    private boolean stillClear(Pose2d robot) {
+        Translation2d start = m_tree.inside(robot.getX(), robot.getY());
+        double x = start.getX();
+        double y = start.getY();
+        for (Translation2d p : m_published) {
+            if (!m_tree.clear(x, y, p.getX(), p.getY()))
+                return false;
+            x = p.getX();
+            y = p.getY();
+        }
+        return true;
+    }
+
+    /**
+     * True if the route differs from the published one, ignoring the start,
+     * which moves with the robot.
+     */
+    private boolean changed(List<Translation2d> waypoints) {
+        if (waypoints.size() - 1 != m_published.size())
+            return true;
+        for (int i = 1; i < waypoints.size(); ++i) {
+            if (waypoints.get(i).getDistance(m_published.get(i - 1)) > kWaypointToleranceM)
+                return true;
+        }
+        return false;
+    }
+
+    private void publish(Pose2d robot, double speedM_S, List<Translation2d> route) {
+        // the trajectory starts at the robot, not at the root.
+        List<Translation2d> points = new ArrayList<>();
+        points.add(robot.getTranslation());
+        for (int i = 1; i < route.size(); ++i) {
+            Translation2d p = route.get(i);
+            Translation2d last = points.get(points.size() - 1);
+            if (p.getDistance(last) > kArrivedM)
+                points.add(p);
+            else if (i == route.size() - 1 && points.size() > 1)
+                // the goal replaces a waypoint right next to it
+                points.set(points.size() - 1, p);
+        }
+        m_published = new ArrayList<>(route.subList(1, route.size()));
+        ++m_version;
+        if (points.size() < 2 || points.get(0).getDistance(points.get(1)) < kArrivedM) {
+            m_trajectory = null;
+            return;
+        }
+        List<Pose2d> poses = new ArrayList<>();
+        List<Rotation2d> headings = new ArrayList<>();
+        for (int i = 0; i < points.size(); ++i) {
+            // course points to the next waypoint, or away from the previous one
+            Translation2d course = i < points.size() - 1
+                    ? points.get(i + 1).minus(points.get(i))
+                    : points.get(i).minus(points.get(i - 1));
+            poses.add(new Pose2d(points.get(i), course.getAngle()));
+            headings.add(i == 0 ? robot.getRotation() : m_goalHeading);
+        }
+        try {
+            m_trajectory = m_planner.generateTrajectory(
+                    false,
+                    poses,
+                    headings,
+                    m_constraints,
+                    Math.min(Math.abs(speedM_S), m_maxVelM_S),
+                    0,
+                    m_maxVelM_S,
+                    m_maxAccelM_S_S);
+        } catch (IllegalArgumentException e) {
+            Util.warn("replanning: no trajectory for the route: " + e.getMessage());
+            m_trajectory = null;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.team100.lib.planner;
+
+/**
+ * The planner package finds collision-free routes across the field while the
+ * robot is moving.
+ * 
+ * The tree search is geometric, in (x, y) only; the timing of the route comes
+ * from the trajectory package, which turns the route waypoints into a
+ * Trajectory100 that the drive controllers already know how to follow.
+ * 
+ * The search is "anytime": it runs for a fixed slice of each robot cycle, keeps
+ * its tree between cycles, and always has the best route found so far.
+ */
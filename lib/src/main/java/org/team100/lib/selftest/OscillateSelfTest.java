@@ -27,6 +27,7 @@ public class OscillateSelfTest extends Command {
     private boolean prevOscillateTheta;
     private boolean prevOscillateDirect;
     private Pose2d m_initial;
+    private double maxDistance;
 
     /**
      * 
@@ -64,11 +65,14 @@ public class OscillateSelfTest extends Command {
         Experiments.instance.testOverride(Experiment.OscillateTheta, m_rotation);
         Experiments.instance.testOverride(Experiment.OscillateDirect, m_direct);
         terminate = false;
+        maxDistance = 0;
     }
 
     @Override
     public void execute() {
-        if (GeometryUtil.distance(m_drivetrain.getPose(), m_initial) > kMaxDistance) {
+        double distance = GeometryUtil.distance(m_drivetrain.getPose(), m_initial);
+        maxDistance = Math.max(maxDistance, distance);
+        if (distance > kMaxDistance) {
             m_listener.fail(this, "Too far from initial pose");
             terminate = true;
         }
@@ -84,6 +88,7 @@ public class OscillateSelfTest extends Command {
         // put it back the way it was
         Experiments.instance.testOverride(Experiment.OscillateTheta, prevOscillateTheta);
         Experiments.instance.testOverride(Experiment.OscillateDirect, prevOscillateDirect);
+        m_listener.metric(this, "max distance", maxDistance);
         m_listener.pass(this, "There are no assertions.");
     }
 
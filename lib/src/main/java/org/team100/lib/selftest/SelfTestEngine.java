@@ -0,0 +1,159 @@
+package org.team100.lib.selftest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * Runs self-test cases concurrently where it can.
+ *
+ * Running every case one after the other takes minutes, mostly waiting for
+ * one mechanism while the others sit idle. Instead, each case depends on
+ * every earlier case that shares a subsystem with it, and a case starts as
+ * soon as everything it depends on is done. So the drive cases still run in
+ * the order they were added, but the intake and shooter spin up while the
+ * drivetrain is busy.
+ *
+ * A case with no requirements at all, like the battery check, runs right
+ * away.
+ *
+ * Like SequentialCommandGroup, a case starts in the same cycle its
+ * predecessor finishes, and runs its first execute() in the next cycle.
+ *
+ * The start and elapsed time of each case goes to the listener, for the
+ * report.
+ */
+public class SelfTestEngine extends Command {
+    private enum State {
+        PENDING, RUNNING, DONE
+    }
+
+    private static class Node {
+        private final Command m_observer;
+        private final SelfTestCase m_case;
+        private final Set<Subsystem> m_requirements;
+        private final List<Node> m_after;
+        private State m_state;
+
+        private Node(Command observer, SelfTestCase testCase) {
+            m_observer = observer;
+            m_case = testCase;
+            m_requirements = testCase.getRequirements();
+            m_after = new ArrayList<>();
+            m_state = State.PENDING;
+        }
+
+        private boolean ready() {
+            for (Node n : m_after) {
+                if (n.m_state != State.DONE)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private final SelfTestListener m_listener;
+    private final List<Node> m_nodes;
+
+    public SelfTestEngine(SelfTestListener listener) {
+        m_listener = listener;
+        m_nodes = new ArrayList<>();
+    }
+
+    /**
+     * Add a case to the graph: it runs after every case added earlier that
+     * shares a subsystem with it.
+     *
+     * @param observer the test assertions, also the name of the case
+     * @param commands the system under test
+     */
+    public void addCase(Command observer, Command... commands) {
+        Node node = new Node(observer, new SelfTestCase(observer, commands));
+        for (Node earlier : m_nodes) {
+            if (!Collections.disjoint(earlier.m_requirements, node.m_requirements))
+                node.m_after.add(earlier);
+        }
+        m_nodes.add(node);
+        addRequirements(node.m_requirements.toArray(new Subsystem[0]));
+    }
+
+    /** The longest chain of dependent cases, in number of cases. */
+    public int depth() {
+        int[] depth = new int[m_nodes.size()];
+        int max = 0;
+        for (int i = 0; i < m_nodes.size(); ++i) {
+            // earlier nodes only depend on earlier nodes.
+            for (Node n : m_nodes.get(i).m_after) {
+                depth[i] = Math.max(depth[i], depth[m_nodes.indexOf(n)]);
+            }
+            depth[i] += 1;
+            max = Math.max(max, depth[i]);
+        }
+        return max;
+    }
+
+    @Override
+    public void initialize() {
+        for (Node node : m_nodes) {
+            node.m_state = State.PENDING;
+        }
+        startReady(Timer.getFPGATimestamp());
+    }
+
+    @Override
+    public void execute() {
+        double nowS = Timer.getFPGATimestamp();
+        for (Node node : m_nodes) {
+            if (node.m_state != State.RUNNING)
+                continue;
+            node.m_case.execute();
+            if (node.m_case.isFinished()) {
+                node.m_case.end(false);
+                node.m_state = State.DONE;
+                m_listener.finished(node.m_observer, nowS, false);
+            }
+        }
+        startReady(nowS);
+    }
+
+    @Override
+    public boolean isFinished() {
+        for (Node node : m_nodes) {
+            if (node.m_state != State.DONE)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        double nowS = Timer.getFPGATimestamp();
+        for (Node node : m_nodes) {
+            if (node.m_state != State.RUNNING)
+                continue;
+            node.m_case.end(true);
+            node.m_state = State.DONE;
+            m_listener.finished(node.m_observer, nowS, true);
+        }
+    }
+
+    ///////////////////////////////////////////////////////
+
+    private void startReady(double nowS) {
+        for (Node node : m_nodes) {
+            if (node.m_state != State.PENDING || !node.ready())
+                continue;
+            Util.println("\nRunning " + node.m_observer.getName() + "...");
+            m_listener.started(node.m_observer, nowS);
+            node.m_state = State.RUNNING;
+            node.m_case.initialize();
+        }
+    }
+}
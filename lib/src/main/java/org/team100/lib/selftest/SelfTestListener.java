@@ -1,33 +1,112 @@
 package org.team100.lib.selftest;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.team100.lib.util.ExcludeFromJacocoGeneratedReport;
 import org.team100.lib.util.Util;
 
 import edu.wpi.first.wpilibj2.command.Command;
 
-/** Collects test results. */
+/**
+ * Collects test results.
+ * 
+ * Besides the pass/fail messages, each case gets a structured result, with
+ * its timing (filled in by SelfTestEngine) and whatever metrics the case
+ * reports, e.g. time-to-speed or velocity ripple.
+ */
 @ExcludeFromJacocoGeneratedReport
 public class SelfTestListener {
     private static final String kReset = "\033[0m";
     private static final String kGreen = "\033[1;92m";
     private static final String kRed = "\033[1;91m";
+
+    /** The outcome of one case, keyed by its observer command. */
+    public static class Result {
+        public final String name;
+        public int passes;
+        public int failures;
+        public boolean interrupted;
+        /** Engine time, NaN if the case never started. */
+        public double startS = Double.NaN;
+        public double elapsedS = Double.NaN;
+        public final Map<String, Double> metrics = new LinkedHashMap<>();
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        public boolean passed() {
+            return failures == 0 && passes > 0 && !interrupted;
+        }
+
+        String outcome() {
+            if (interrupted)
+                return "INTERRUPTED";
+            if (failures > 0)
+                return "FAIL";
+            if (passes > 0)
+                return "PASS";
+            return "NO RESULT";
+        }
+    }
+
     boolean success = true;
     List<String> outcomes = new ArrayList<>();
+    final Map<Command, Result> results = new LinkedHashMap<>();
 
     public void fail(Command command, String format, Object... vars) {
         success = false;
         String msg = kRed + command.getName() + " FAILED: " + kReset + String.format(format, vars);
         Util.println(msg);
         outcomes.add(msg);
+        result(command).failures++;
     }
 
     public void pass(Command command, String format, Object... vars) {
         String msg = kGreen + command.getName() + " PASSED: " + kReset + String.format(format, vars);
         Util.println(msg);
         outcomes.add(msg);
+        result(command).passes++;
+    }
+
+    /** Record a measurement, e.g. time-to-speed, for the report. */
+    public void metric(Command command, String name, double value) {
+        result(command).metrics.put(name, value);
+    }
+
+    public List<Result> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * One line per case, with timing and metrics, and the total: the sum of
+     * the case durations is what running them one at a time would take.
+     */
+    public String report() {
+        StringBuilder b = new StringBuilder();
+        double serialS = 0;
+        double firstS = Double.POSITIVE_INFINITY;
+        double lastS = Double.NEGATIVE_INFINITY;
+        for (Result r : results.values()) {
+            b.append(String.format("%-50s %-11s start %7.3f elapsed %7.3f",
+                    r.name, r.outcome(), r.startS, r.elapsedS));
+            for (Map.Entry<String, Double> m : r.metrics.entrySet()) {
+                b.append(String.format(" %s %.3f", m.getKey(), m.getValue()));
+            }
+            b.append("\n");
+            if (!Double.isNaN(r.elapsedS)) {
+                serialS += r.elapsedS;
+                firstS = Math.min(firstS, r.startS);
+                lastS = Math.max(lastS, r.startS + r.elapsedS);
+            }
+        }
+        if (lastS >= firstS) {
+            b.append(String.format("wall time %.3f s, one at a time %.3f s\n", lastS - firstS, serialS));
+        }
+        return b.toString();
     }
 
     public String summary() {
@@ -45,6 +124,23 @@ public class SelfTestListener {
         return b.toString();
     }
 
+    void started(Command command, double startS) {
+        Result r = result(command);
+        r.startS = startS;
+    }
+
+    void finished(Command command, double endS, boolean interrupted) {
+        Result r = result(command);
+        r.elapsedS = endS - r.startS;
+        r.interrupted = interrupted;
+        if (interrupted)
+            success = false;
+    }
+
+    private Result result(Command command) {
+        return results.computeIfAbsent(command, c -> new Result(c.getName()));
+    }
+
     private void pass(StringBuilder b) {
         b.append(kGreen);
         b.append("\n");
@@ -0,0 +1,63 @@
+package org.team100.lib.selftest;
+
+/**
+ * Running statistics of a sampled signal, for self-test metrics like the
+ * ripple of a flywheel at speed. Uses Welford's method, so there's no array
+ * of samples to keep.
+ */
+public class SignalStats {
+    private int m_count;
+    private double m_mean;
+    private double m_m2;
+    private double m_min = Double.POSITIVE_INFINITY;
+    private double m_max = Double.NEGATIVE_INFINITY;
+
+    public void add(double x) {
+        ++m_count;
+        double delta = x - m_mean;
+        m_mean += delta / m_count;
+        m_m2 += delta * (x - m_mean);
+        m_min = Math.min(m_min, x);
+        m_max = Math.max(m_max, x);
+    }
+
+    public void reset() {
+        m_count = 0;
+        m_mean = 0;
+        m_m2 = 0;
+        m_min = Double.POSITIVE_INFINITY;
+        m_max = Double.NEGATIVE_INFINITY;
+    }
+
+    public int count() {
+        return m_count;
+    }
+
+    /** NaN if empty. */
+    public double mean() {
+        if (m_count == 0)
+            return Double.NaN;
+        return m_mean;
+    }
+
+    /** Population standard deviation, NaN if empty. */
+    public double stddev() {
+        if (m_count == 0)
+            return Double.NaN;
+        return Math.sqrt(m_m2 / m_count);
+    }
+
+    /** NaN if empty. */
+    public double min() {
+        if (m_count == 0)
+            return Double.NaN;
+        return m_min;
+    }
+
+    /** NaN if empty. */
+    public double max() {
+        if (m_count == 0)
+            return Double.NaN;
+        return m_max;
+    }
+}
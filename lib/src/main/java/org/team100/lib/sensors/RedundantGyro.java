@@ -2,13 +2,13 @@ package org.team100.lib.sensors;
 
 import org.team100.lib.telemetry.Telemetry;
 import org.team100.lib.telemetry.Telemetry.Level;
+import org.team100.lib.util.Housekeeping;
 import org.team100.lib.util.Names;
 import org.team100.lib.util.Util;
 
 import com.kauailabs.navx.frc.AHRS;
 
 import edu.wpi.first.wpilibj.I2C;
-import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.SerialPort;
 import edu.wpi.first.wpilibj.Timer;
 
@@ -19,7 +19,6 @@ public class RedundantGyro implements RedundantGyroInterface {
     private final Telemetry t = Telemetry.get();
     private final AHRS m_gyro1;
     private final AHRS m_gyro2;
-    private final Notifier periodicLogger;
     private final String m_name;
 
     public RedundantGyro() {
@@ -43,10 +42,8 @@ public class RedundantGyro implements RedundantGyroInterface {
         m_gyro1.zeroYaw();
         m_gyro2.zeroYaw();
 
-        // periodic notifier so we can see it without any command running
-        periodicLogger = new Notifier(this::logStuff);
-        periodicLogger.setName("Gyro Periodic Logger Notifier");
-        periodicLogger.startPeriodic(1);
+        // periodic task so we can see it without any command running
+        Housekeeping.get().register("Gyro Logger", 1, this::logStuff);
     }
 
     /**
@@ -14,6 +14,7 @@ import org.team100.lib.motion.arm.ArmAngles;
 import org.team100.lib.motion.drivetrain.SwerveState;
 import org.team100.lib.timing.TimedPose;
 import org.team100.lib.trajectory.TrajectorySamplePoint;
+import org.team100.lib.util.Housekeeping;
 import org.team100.lib.util.Util;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -39,7 +40,6 @@ import edu.wpi.first.networktables.StringArrayTopic;
 import edu.wpi.first.networktables.StringPublisher;
 import edu.wpi.first.networktables.StringTopic;
 import edu.wpi.first.wpilibj.DataLogManager;
-import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
@@ -88,8 +88,6 @@ public class Telemetry {
     private final NetworkTableInstance inst;
     private final Map<String, Publisher> pubs;
     private final SendableChooser<Level> m_levelChooser;
-    // avoids hitting sendable chooser mutex so often.
-    private final Notifier m_levelUpdater;
     private Level m_level;
 
     /**
@@ -116,9 +114,8 @@ public class Telemetry {
 
         SmartDashboard.putData(m_levelChooser);
         updateLevel();
-        m_levelUpdater = new Notifier(this::updateLevel);
-        m_levelUpdater.setName("Telemetry Level Updater Notifier");
-        m_levelUpdater.startPeriodic(1);
+        // avoids hitting sendable chooser mutex so often.
+        Housekeeping.get().register("Telemetry Level", 1, this::updateLevel);
         DataLogManager.start();
     }
 
@@ -10,6 +10,8 @@ import org.team100.lib.util.Util;
 
 public class TimingUtil {
     private static final double kEpsilon = 1e-6;
+    /** Bisection passes in the adaptive parameterization. */
+    private static final int kMaxRefinements = 12;
 
     public static Trajectory100 timeParameterizeTrajectory(
             boolean reverse,
@@ -34,6 +36,128 @@ public class TimingUtil {
         }
     }
 
+    /**
+     * Coarse-to-fine time parameterization.
+     *
+     * Instead of sampling the path every step_size, start with the path's own
+     * points, which the spline generator has already placed according to
+     * curvature, so the interpolated pose error is bounded by the spline
+     * tolerances. Add points so that no step is longer than max_step, then
+     * repeatedly bisect any step where the piecewise-constant-acceleration
+     * schedule at the midpoint differs from the velocity actually allowed there
+     * (by the constraints and by the neighboring states) by more than
+     * velocity_tolerance. Steps are never bisected below min_step.
+     *
+     * Straight, unconstrained sections end up with a few points, sharp turns and
+     * constraint boundaries end up with many.
+     *
+     * @param min_step           meters, the shortest step, e.g. the dense step.
+     * @param max_step           meters, the longest step.
+     * @param velocity_tolerance m/s, allowed deviation of the schedule.
+     */
+    public static Trajectory100 timeParameterizeTrajectoryAdaptive(
+            boolean reverse,
+            final PathDistanceSampler distance_view,
+            double min_step,
+            double max_step,
+            double velocity_tolerance,
+            final List<TimingConstraint> constraints,
+            double start_velocity,
+            double end_velocity,
+            double max_velocity,
+            double max_abs_acceleration) {
+        try {
+            List<Double> distances = new ArrayList<>();
+            distances.add(0.0);
+            for (int i = 1; i < distance_view.length(); ++i) {
+                double d0 = distance_view.getDistance(i - 1);
+                double d1 = distance_view.getDistance(i);
+                int steps = (int) Math.ceil((d1 - d0) / max_step);
+                for (int j = 1; j < steps; ++j) {
+                    distances.add(d0 + j * (d1 - d0) / steps);
+                }
+                if (d1 - d0 > kEpsilon) {
+                    distances.add(d1);
+                }
+            }
+            List<Pose2dWithMotion> states = new ArrayList<>(distances.size());
+            for (double d : distances) {
+                states.add(distance_view.sample(d).state());
+            }
+            for (int pass = 0; pass < kMaxRefinements; ++pass) {
+                Trajectory100 trajectory = timeParameterizeTrajectory(reverse, states, constraints, start_velocity,
+                        end_velocity, max_velocity, max_abs_acceleration);
+                List<Double> refined = new ArrayList<>(2 * distances.size());
+                List<Pose2dWithMotion> refinedStates = new ArrayList<>(2 * distances.size());
+                refined.add(distances.get(0));
+                refinedStates.add(states.get(0));
+                for (int i = 1; i < distances.size(); ++i) {
+                    double d0 = distances.get(i - 1);
+                    double d1 = distances.get(i);
+                    if (d1 - d0 >= 2 * min_step) {
+                        double mid = (d0 + d1) / 2;
+                        Pose2dWithMotion midState = distance_view.sample(mid).state();
+                        if (velocityError(reverse, trajectory.getPoint(i - 1).state(),
+                                trajectory.getPoint(i).state(), midState, (d1 - d0) / 2,
+                                constraints, max_velocity, max_abs_acceleration) > velocity_tolerance) {
+                            refined.add(mid);
+                            refinedStates.add(midState);
+                        }
+                    }
+                    refined.add(d1);
+                    refinedStates.add(states.get(i));
+                }
+                if (refined.size() == distances.size()) {
+                    return trajectory;
+                }
+                distances = refined;
+                states = refinedStates;
+            }
+            return timeParameterizeTrajectory(reverse, states, constraints, start_velocity,
+                    end_velocity, max_velocity, max_abs_acceleration);
+        } catch (TimingException e) {
+            Util.warn("Timing exception");
+            return new Trajectory100();
+        }
+    }
+
+    /**
+     * Difference between the scheduled speed at the midpoint of a step and the
+     * speed actually allowed there: the constraint limit at the midpoint, and
+     * what's reachable from both ends of the step.
+     *
+     * @param half half the step length, meters.
+     */
+    private static double velocityError(
+            boolean reverse,
+            TimedPose p0,
+            TimedPose p1,
+            Pose2dWithMotion mid,
+            double half,
+            List<TimingConstraint> constraints,
+            double max_velocity,
+            double max_abs_acceleration) {
+        final double v0 = Math.abs(p0.velocityM_S());
+        final double v1 = Math.abs(p1.velocityM_S());
+        final double a0 = reverse ? -p0.acceleration() : p0.acceleration();
+        final double scheduled = Math.sqrt(Math.max(0.0, v0 * v0 + 2.0 * a0 * half));
+
+        double allowed = max_velocity;
+        double max_accel = max_abs_acceleration;
+        double min_accel = -max_abs_acceleration;
+        for (final TimingConstraint constraint : constraints) {
+            allowed = Math.min(allowed, constraint.getMaxVelocity(mid));
+            final TimingConstraint.MinMaxAcceleration min_max_accel = constraint.getMinMaxAcceleration(
+                    mid, (reverse ? -1.0 : 1.0) * scheduled);
+            min_accel = Math.max(min_accel, reverse ? -min_max_accel.getMaxAccel() : min_max_accel.getMinAccel());
+            max_accel = Math.min(max_accel, reverse ? -min_max_accel.getMinAccel() : min_max_accel.getMaxAccel());
+        }
+        // reachable accelerating from the start, and decelerating into the end.
+        allowed = Math.min(allowed, Math.sqrt(v0 * v0 + 2.0 * Math.max(0.0, max_accel) * half));
+        allowed = Math.min(allowed, Math.sqrt(v1 * v1 - 2.0 * Math.min(0.0, min_accel) * half));
+        return Math.abs(allowed - scheduled);
+    }
+
     private static Trajectory100 timeParameterizeTrajectory(
             boolean reverse,
             final List<Pose2dWithMotion> states,
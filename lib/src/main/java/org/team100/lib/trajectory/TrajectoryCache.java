@@ -0,0 +1,274 @@
+package org.team100.lib.trajectory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.team100.lib.timing.TimedPose;
+import org.team100.lib.timing.TimingConstraint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Remembers planned trajectories, so that each distinct leg is planned once.
+ *
+ * The key is the planning request itself: the waypoints and headings, which
+ * already reflect the alliance and the endpoints, the constraint list, and the
+ * velocity and acceleration limits. Poses are compared at micrometer and
+ * microradian resolution, so requests computed slightly differently still
+ * match.
+ *
+ * The red and blue sides of the field are mirror images across the centerline
+ * y = fieldWidth / 2, so if the mirror image of a request has already been
+ * planned, the mirrored trajectory is returned instead of planning again. This
+ * assumes that the constraints are symmetric, which is true of the drive,
+ * centripetal, and yaw constraints, but not of region constraints.
+ *
+ * This is safe to use from multiple threads, so planning can happen in the
+ * background. The map holds a task per request, and the task runs on the
+ * thread that created it, outside the map, so planning one leg never holds
+ * up callers asking for another.
+ */
+public class TrajectoryCache {
+    /** Key resolution, meters or (for sin and cos) unitless. */
+    private static final double kResolution = 1e-6;
+
+    /** A planning request. Equality uses rounded values. */
+    public static final class Request {
+        private final List<Pose2d> m_waypoints;
+        private final List<Rotation2d> m_headings;
+        private final List<TimingConstraint> m_constraints;
+        private final double m_maxVelM_S;
+        private final double m_maxAccelM_S_S;
+        /** Rounded values for equality and hashing. */
+        private final long[] m_key;
+        private final int m_hash;
+
+        public Request(
+                List<Pose2d> waypoints,
+                List<Rotation2d> headings,
+                List<TimingConstraint> constraints,
+                double maxVelM_S,
+                double maxAccelM_S_S) {
+            if (waypoints.size() != headings.size())
+                throw new IllegalArgumentException("waypoints and headings must be the same size");
+            m_waypoints = waypoints;
+            m_headings = headings;
+            m_constraints = constraints;
+            m_maxVelM_S = maxVelM_S;
+            m_maxAccelM_S_S = maxAccelM_S_S;
+            int n = waypoints.size();
+            m_key = new long[6 * n + 2];
+            int k = 0;
+            for (int i = 0; i < n; ++i) {
+                Pose2d p = waypoints.get(i);
+                Rotation2d h = headings.get(i);
+                m_key[k++] = round(p.getX());
+                m_key[k++] = round(p.getY());
+                m_key[k++] = round(p.getRotation().getCos());
+                m_key[k++] = round(p.getRotation().getSin());
+                m_key[k++] = round(h.getCos());
+                m_key[k++] = round(h.getSin());
+            }
+            m_key[k++] = round(maxVelM_S);
+            m_key[k++] = round(maxAccelM_S_S);
+            m_hash = 31 * Arrays.hashCode(m_key) + System.identityHashCode(constraints);
+        }
+
+        /** The same request, mirrored across y = fieldWidth / 2. */
+        public Request mirror(double fieldWidthM) {
+            List<Pose2d> waypoints = new ArrayList<>(m_waypoints.size());
+            for (Pose2d p : m_waypoints) {
+                waypoints.add(TrajectoryCache.mirror(p, fieldWidthM));
+            }
+            List<Rotation2d> headings = new ArrayList<>(m_headings.size());
+            for (Rotation2d h : m_headings) {
+                headings.add(h.unaryMinus());
+            }
+            return new Request(waypoints, headings, m_constraints, m_maxVelM_S, m_maxAccelM_S_S);
+        }
+
+        public List<Pose2d> waypoints() {
+            return m_waypoints;
+        }
+
+        public List<Rotation2d> headings() {
+            return m_headings;
+        }
+
+        public List<TimingConstraint> constraints() {
+            return m_constraints;
+        }
+
+        public double maxVelM_S() {
+            return m_maxVelM_S;
+        }
+
+        public double maxAccelM_S_S() {
+            return m_maxAccelM_S_S;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Request))
+                return false;
+            Request other = (Request) obj;
+            // constraints are compared by identity, they don't implement equals.
+            return m_constraints == other.m_constraints
+                    && Arrays.equals(m_key, other.m_key);
+        }
+
+        @Override
+        public int hashCode() {
+            return m_hash;
+        }
+
+        private static long round(double x) {
+            return Math.round(x / kResolution);
+        }
+    }
+
+    private final TrajectoryPlanner m_planner;
+    private final double m_fieldWidthM;
+    private final Map<Request, FutureTask<Trajectory100>> m_trajectories;
+    private final AtomicInteger m_hits;
+    private final AtomicInteger m_mirrors;
+    private final AtomicInteger m_plans;
+
+    /**
+     * @param planner     makes the trajectories on a miss
+     * @param fieldWidthM the mirror line is half of this
+     */
+    public TrajectoryCache(TrajectoryPlanner planner, double fieldWidthM) {
+        m_planner = planner;
+        m_fieldWidthM = fieldWidthM;
+        m_trajectories = new ConcurrentHashMap<>();
+        m_hits = new AtomicInteger();
+        m_mirrors = new AtomicInteger();
+        m_plans = new AtomicInteger();
+    }
+
+    /**
+     * Return the trajectory for the request, planning it (or mirroring its twin)
+     * if necessary. If another thread is already planning the same request,
+     * wait for it instead.
+     */
+    public Trajectory100 get(Request request) {
+        FutureTask<Trajectory100> task = m_trajectories.get(request);
+        if (task == null) {
+            FutureTask<Trajectory100> mine = new FutureTask<>(() -> make(request));
+            task = m_trajectories.putIfAbsent(request, mine);
+            if (task == null) {
+                mine.run();
+                return join(request, mine);
+            }
+        }
+        m_hits.incrementAndGet();
+        return join(request, task);
+    }
+
+    /** True if get() would return immediately. */
+    public boolean contains(Request request) {
+        FutureTask<Trajectory100> task = m_trajectories.get(request);
+        return task != null && task.isDone();
+    }
+
+    /** Number of requests satisfied from the cache. */
+    public int hits() {
+        return m_hits.get();
+    }
+
+    /** Number of requests satisfied by mirroring. */
+    public int mirrors() {
+        return m_mirrors.get();
+    }
+
+    /** Number of requests that required planning. */
+    public int plans() {
+        return m_plans.get();
+    }
+
+    public int size() {
+        return m_trajectories.size();
+    }
+
+    public void clear() {
+        m_trajectories.clear();
+    }
+
+    /** Mirror across y = fieldWidth / 2. Time, speed, and accel are unchanged. */
+    public static Trajectory100 mirror(Trajectory100 trajectory, double fieldWidthM) {
+        List<TimedPose> states = new ArrayList<>(trajectory.length());
+        for (TrajectoryPoint point : trajectory.getPoints()) {
+            TimedPose state = point.state();
+            states.add(new TimedPose(
+                    state.state().mirror(fieldWidthM),
+                    state.getTimeS(),
+                    state.velocityM_S(),
+                    state.acceleration()));
+        }
+        return new Trajectory100(states);
+    }
+
+    ///////////////////////////////////////
+
+    private Trajectory100 make(Request request) {
+        // Use the twin only if it's finished; waiting for it could deadlock
+        // with a thread planning the twin, which would wait for this one.
+        Request mirrored = request.mirror(m_fieldWidthM);
+        FutureTask<Trajectory100> twin = m_trajectories.get(mirrored);
+        if (twin != null && twin.isDone()) {
+            m_mirrors.incrementAndGet();
+            return mirror(join(mirrored, twin), m_fieldWidthM);
+        }
+        m_plans.incrementAndGet();
+        return m_planner.generateTrajectory(
+                false,
+                request.waypoints(),
+                request.headings(),
+                request.constraints(),
+                request.maxVelM_S(),
+                request.maxAccelM_S_S());
+    }
+
+    /**
+     * Wait for the task, ignoring interrupts, since the task is always running
+     * or done. If planning failed, forget the request, so the next caller tries
+     * again, and rethrow.
+     */
+    private Trajectory100 join(Request request, FutureTask<Trajectory100> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            m_trajectories.remove(request, task);
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Pose2d mirror(Pose2d p, double fieldWidthM) {
+        return new Pose2d(
+                new Translation2d(p.getX(), fieldWidthM - p.getY()),
+                p.getRotation().unaryMinus());
+    }
+}
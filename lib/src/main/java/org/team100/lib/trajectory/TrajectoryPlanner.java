@@ -22,9 +22,27 @@ public class TrajectoryPlanner {
     private static final double kMaxDx = 0.0127; // m
     private static final double kMaxDy = 0.0127; // m
     private static final double kMaxDTheta = Math.toRadians(1.0);
+    /** Longest step for adaptive sampling, even on a straight line. */
+    private static final double kMaxStepM = 0.5;
+    /** Allowed deviation of the adaptive schedule from the dense one. */
+    private static final double kVelocityToleranceM_S = 0.02;
 
+    private final boolean m_adaptive;
+
+    /** Samples every trajectory densely, every kMaxDx, regardless of curvature. */
     public TrajectoryPlanner() {
-        //
+        this(false);
+    }
+
+    /**
+     * @param adaptive if true, sample coarse-to-fine: few points on straight
+     *                 sections, many in tight turns and near constraint
+     *                 boundaries, with the same pose tolerance as the dense
+     *                 sampling and bounded velocity deviation. This is much
+     *                 cheaper to generate and to sample.
+     */
+    public TrajectoryPlanner(boolean adaptive) {
+        m_adaptive = adaptive;
     }
 
     public Trajectory100 generateTrajectory(
@@ -95,6 +113,19 @@ public class TrajectoryPlanner {
 
         // Generate the timed trajectory.
         PathDistanceSampler distance_view = new PathDistanceSampler(trajectory);
+        if (m_adaptive) {
+            return TimingUtil.timeParameterizeTrajectoryAdaptive(
+                    reversed,
+                    distance_view,
+                    kMaxDx,
+                    kMaxStepM,
+                    kVelocityToleranceM_S,
+                    constraints,
+                    start_vel,
+                    end_vel,
+                    max_vel,
+                    max_accel);
+        }
         return TimingUtil.timeParameterizeTrajectory(
                 reversed,
                 distance_view,
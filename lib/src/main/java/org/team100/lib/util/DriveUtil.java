@@ -21,6 +21,18 @@ public class DriveUtil {
                 maxRot * MathUtil.clamp(twist.dtheta, -1, 1));
     }
 
+    /**
+     * Same as above, into the supplied twist, which may be the input.
+     * 
+     * @return out
+     */
+    public static Twist2d scale(Twist2d twist, double maxSpeed, double maxRot, Twist2d out) {
+        out.dx = maxSpeed * MathUtil.clamp(twist.dx, -1, 1);
+        out.dy = maxSpeed * MathUtil.clamp(twist.dy, -1, 1);
+        out.dtheta = maxRot * MathUtil.clamp(twist.dtheta, -1, 1);
+        return out;
+    }
+
     /**
      * This makes no attempt to address infeasibilty, it just multiplies.
      * 
@@ -61,6 +73,23 @@ public class DriveUtil {
         return new Twist2d(ratio * input.dx, ratio * input.dy, input.dtheta);
     }
 
+    /**
+     * Same as above, into the supplied twist, so the manual drivers can clip
+     * without allocating.
+     * 
+     * @return out
+     */
+    public static Twist2d clampTwist(Twist2d input, double maxMagnitude, Twist2d out) {
+        double hyp = Math.hypot(input.dx, input.dy);
+        double ratio = 1;
+        if (hyp >= 1e-12)
+            ratio = Math.min(hyp, maxMagnitude) / hyp;
+        out.dx = ratio * input.dx;
+        out.dy = ratio * input.dy;
+        out.dtheta = input.dtheta;
+        return out;
+    }
+
     /** crash the robot in simulation or just substitute zero in prod */
     public static void checkSpeeds(ChassisSpeeds speeds) {
         try {
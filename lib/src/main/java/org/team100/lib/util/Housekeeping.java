@@ -0,0 +1,166 @@
+package org.team100.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.team100.lib.dashboard.Glassy;
+import org.team100.lib.telemetry.Telemetry;
+import org.team100.lib.telemetry.Telemetry.Level;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Runs low-priority periodic work, like HID rediscovery and slow logging, on
+ * the main thread, in the time left over at the end of robotPeriodic().
+ *
+ * This replaces a Notifier per component: each Notifier is a thread that can
+ * wake up in the middle of the control loop and preempt it.
+ *
+ * Each cycle gets a budget, the smaller of kMaxBudgetS and the time left
+ * before kSlackFraction of the loop period. Due tasks run most-overdue first,
+ * as long as the estimate of their cost fits in what's left; the rest wait
+ * for the next cycle. If the loop is always tight, a task that's more than
+ * kStarvedPeriods late runs anyway, one per cycle.
+ *
+ * The cost of each task is logged, so we can see which housekeeping is
+ * expensive.
+ *
+ * Every robot using lib must call run() at the end of robotPeriodic(), or
+ * none of this happens.
+ */
+public class Housekeeping implements Glassy {
+    private static final double kMaxBudgetS = 0.002;
+    /** Leave the end of the period for the scheduler and NT. */
+    private static final double kSlackFraction = 0.75;
+    private static final int kStarvedPeriods = 5;
+    private static final Housekeeping instance = new Housekeeping(TimedRobot.kDefaultPeriod);
+
+    static class Task {
+        final String m_name;
+        final double m_periodS;
+        final Runnable m_runnable;
+        double m_dueS;
+        /** Smoothed cost, used to decide whether it fits. */
+        double m_estimateS;
+        double m_lastS;
+        double m_maxS;
+        int m_runs;
+        int m_deferrals;
+
+        Task(String name, double periodS, Runnable runnable, double dueS) {
+            m_name = name;
+            m_periodS = periodS;
+            m_runnable = runnable;
+            m_dueS = dueS;
+        }
+    }
+
+    private final double m_loopPeriodS;
+    private final List<Task> m_tasks;
+    private final String m_name;
+    // Telemetry registers a task in its constructor, so look it up later.
+    private Telemetry t;
+
+    Housekeeping(double loopPeriodS) {
+        m_loopPeriodS = loopPeriodS;
+        m_tasks = new ArrayList<>();
+        m_name = Names.name(this);
+    }
+
+    public static Housekeeping get() {
+        return instance;
+    }
+
+    /**
+     * Run the task about once every period, starting one period from now.
+     * Tasks run on the main thread, so they don't need to be thread-safe.
+     *
+     * Nothing runs unless the robot calls run() at the end of every
+     * robotPeriodic(). Telemetry level updates, the gyro logger, and HID
+     * rediscovery are registered here, so every robot built on lib must make
+     * that call.
+     *
+     * @param periodS must be positive, otherwise the task would always be due.
+     */
+    public synchronized void register(String name, double periodS, Runnable task) {
+        if (periodS <= 0)
+            throw new IllegalArgumentException("housekeeping period must be positive: " + name);
+        m_tasks.add(new Task(name, periodS, task, Timer.getFPGATimestamp() + periodS));
+    }
+
+    /**
+     * Call this at the end of robotPeriodic().
+     *
+     * @param cycleStartS the time robotPeriodic() started.
+     */
+    public synchronized void run(double cycleStartS) {
+        long startNs = System.nanoTime();
+        double nowS = Timer.getFPGATimestamp();
+        double budgetS = Math.min(kMaxBudgetS, cycleStartS + kSlackFraction * m_loopPeriodS - nowS);
+        long deadlineNs = startNs + (long) (Math.max(0, budgetS) * 1e9);
+        boolean starvedRan = false;
+        while (true) {
+            double leftS = (deadlineNs - System.nanoTime()) / 1e9;
+            Task next = null;
+            for (Task task : m_tasks) {
+                if (task.m_dueS > nowS || task.m_estimateS > leftS)
+                    continue;
+                if (next == null || task.m_dueS < next.m_dueS)
+                    next = task;
+            }
+            if (next == null && !starvedRan) {
+                starvedRan = true;
+                for (Task task : m_tasks) {
+                    if (nowS - task.m_dueS < kStarvedPeriods * task.m_periodS)
+                        continue;
+                    if (next == null || task.m_dueS < next.m_dueS)
+                        next = task;
+                }
+            }
+            if (next == null)
+                break;
+            execute(next, nowS);
+        }
+        for (Task task : m_tasks) {
+            if (task.m_dueS <= nowS)
+                ++task.m_deferrals;
+        }
+    }
+
+    @Override
+    public String getGlassName() {
+        return "Housekeeping";
+    }
+
+    //////////////////////////////////////////////////
+
+    /** For testing. */
+    synchronized List<Task> getTasks() {
+        return m_tasks;
+    }
+
+    private void execute(Task task, double nowS) {
+        long startNs = System.nanoTime();
+        try {
+            task.m_runnable.run();
+        } catch (RuntimeException e) {
+            Util.warn("housekeeping task " + task.m_name + " failed: " + e.getMessage());
+        }
+        double elapsedS = (System.nanoTime() - startNs) / 1e9;
+        task.m_lastS = elapsedS;
+        task.m_maxS = Math.max(task.m_maxS, elapsedS);
+        task.m_estimateS = task.m_runs == 0 ? elapsedS : 0.8 * task.m_estimateS + 0.2 * elapsedS;
+        ++task.m_runs;
+        // keep the phase, unless it's far behind.
+        task.m_dueS += task.m_periodS;
+        if (task.m_dueS <= nowS)
+            task.m_dueS = nowS + task.m_periodS;
+
+        if (t == null)
+            t = Telemetry.get();
+        t.log(Level.DEBUG, m_name, task.m_name + "/ms", elapsedS * 1000);
+        t.log(Level.DEBUG, m_name, task.m_name + "/max ms", task.m_maxS * 1000);
+        t.log(Level.DEBUG, m_name, task.m_name + "/deferrals", task.m_deferrals);
+    }
+}
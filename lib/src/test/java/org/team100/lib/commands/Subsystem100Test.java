@@ -0,0 +1,72 @@
+package org.team100.lib.commands;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.testing.Timeless;
+
+class Subsystem100Test implements Timeless {
+    private static final double kDelta = 0.001;
+
+    private static class Counter extends Subsystem100 {
+        int runs;
+        double dt;
+
+        Counter() {
+            super();
+        }
+
+        Counter(double periodS, int phase) {
+            super(periodS, phase);
+        }
+
+        @Override
+        public void periodic100(double dt) {
+            ++runs;
+            this.dt = dt;
+        }
+
+        @Override
+        public String getGlassName() {
+            return "Counter";
+        }
+    }
+
+    @Test
+    void testEveryTick() {
+        Counter c = new Counter();
+        for (int i = 0; i < 10; ++i) {
+            stepTime(0.02);
+            c.periodic();
+        }
+        assertEquals(10, c.runs);
+        assertEquals(0.02, c.dt, kDelta);
+        assertEquals(1, c.getTicks());
+    }
+
+    /** Every fifth tick, starting with the third, with the dt since the last run. */
+    @Test
+    void testRate() {
+        Counter c = new Counter(0.1, 2);
+        assertEquals(5, c.getTicks());
+        for (int i = 0; i < 3; ++i) {
+            stepTime(0.02);
+            c.periodic();
+        }
+        assertEquals(1, c.runs);
+        for (int i = 0; i < 17; ++i) {
+            stepTime(0.02);
+            c.periodic();
+        }
+        assertEquals(4, c.runs);
+        assertEquals(0.1, c.dt, kDelta);
+        assertTrue(c.getMaxS() >= c.getAverageS());
+    }
+
+    @Test
+    void testPhase() {
+        assertThrows(IllegalArgumentException.class, () -> new Counter(0.1, 5));
+    }
+}
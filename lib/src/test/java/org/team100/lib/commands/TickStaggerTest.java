@@ -0,0 +1,71 @@
+package org.team100.lib.commands;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class TickStaggerTest {
+    private static final boolean dump = false;
+
+    @Test
+    void testSpread() {
+        TickStagger s = new TickStagger();
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(i, s.assign(5));
+        }
+        for (int slot = 0; slot < TickStagger.kSlots; ++slot) {
+            assertEquals(1, s.load(slot));
+        }
+    }
+
+    @Test
+    void testMixed() {
+        TickStagger s = new TickStagger();
+        assertEquals(0, s.assign(2));
+        // the odd ticks are free
+        assertEquals(1, s.assign(4));
+        assertEquals(3, s.assign(4));
+        assertEquals(1, peak(s));
+    }
+
+    /**
+     * Something like the comp robot: six subsystems every tick, the LEDs
+     * every other tick, the amp every fifth, the climber every tenth.
+     */
+    @Test
+    void testComp() {
+        TickStagger staggered = new TickStagger();
+        TickStagger aligned = new TickStagger();
+        for (int i = 0; i < 6; ++i) {
+            staggered.assign(1);
+            aligned.add(1, 0);
+        }
+        for (int ticks : new int[] { 2, 5, 10 }) {
+            staggered.assign(ticks);
+            aligned.add(ticks, 0);
+        }
+        if (dump)
+            System.out.printf("peak staggered %d aligned %d average %.2f\n",
+                    peak(staggered), peak(aligned), average(staggered));
+        assertEquals(8, peak(staggered));
+        assertEquals(9, peak(aligned));
+        // instead of 9 every tick.
+        assertEquals(6.8, average(staggered), 1e-9);
+    }
+
+    private static int peak(TickStagger s) {
+        int peak = 0;
+        for (int slot = 0; slot < TickStagger.kSlots; ++slot) {
+            peak = Math.max(peak, s.load(slot));
+        }
+        return peak;
+    }
+
+    private static double average(TickStagger s) {
+        double total = 0;
+        for (int slot = 0; slot < TickStagger.kSlots; ++slot) {
+            total += s.load(slot);
+        }
+        return total / TickStagger.kSlots;
+    }
+}
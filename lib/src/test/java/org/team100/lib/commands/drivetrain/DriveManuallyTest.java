@@ -2,24 +2,36 @@ package org.team100.lib.commands.drivetrain;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 import org.junit.jupiter.api.Test;
+import org.team100.lib.commands.drivetrain.DriveManually.Mode;
 import org.team100.lib.motion.drivetrain.Fixtured;
 import org.team100.lib.motion.drivetrain.SwerveDriveSubsystem;
 import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.motion.drivetrain.manual.FieldManualWithNoteRotation;
 import org.team100.lib.motion.drivetrain.manual.ManualChassisSpeeds;
 import org.team100.lib.motion.drivetrain.manual.ManualFieldRelativeSpeeds;
+import org.team100.lib.motion.drivetrain.manual.ManualWithHeading;
+import org.team100.lib.motion.drivetrain.manual.ManualWithNoteRotation;
+import org.team100.lib.motion.drivetrain.manual.ManualWithTargetLock;
 import org.team100.lib.motion.drivetrain.manual.SimpleManualModuleStates;
 
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Twist2d;
 
 class DriveManuallyTest extends Fixtured {
-    String desiredMode = null;
+    private static final boolean dump = false;
+    Mode desiredMode = null;
     Twist2d desiredTwist = new Twist2d(1, 0, 0);
 
-
     @Test
     void testSimple() {
         Supplier<Twist2d> twistSupplier = () -> desiredTwist;
@@ -28,35 +40,124 @@ class DriveManuallyTest extends Fixtured {
 
         DriveManually command = new DriveManually(twistSupplier, robotDrive);
 
-
-        command.register("MODULE_STATE", false,
+        command.register(Mode.MODULE_STATE, false,
                 new SimpleManualModuleStates("foo", swerveKinodynamics));
 
-        command.register("ROBOT_RELATIVE_CHASSIS_SPEED", false,
+        command.register(Mode.ROBOT_RELATIVE_CHASSIS_SPEED, false,
                 new ManualChassisSpeeds("foo", swerveKinodynamics));
 
-        command.register("FIELD_RELATIVE_TWIST", false,
+        command.register(Mode.FIELD_RELATIVE_TWIST, false,
                 new ManualFieldRelativeSpeeds("foo", swerveKinodynamics));
 
         command.overrideMode(() -> desiredMode);
 
         command.initialize();
 
-        desiredMode = "MODULE_STATE";
+        desiredMode = Mode.MODULE_STATE;
         command.execute();
 
         robotDrive.periodic();
-        assertEquals(1, robotDrive.speeds(0.02).vxMetersPerSecond, 0.001);
+        assertEquals(1, robotDrive.speeds().vxMetersPerSecond, 0.001);
 
-        desiredMode = "ROBOT_RELATIVE_CHASSIS_SPEED";
+        desiredMode = Mode.ROBOT_RELATIVE_CHASSIS_SPEED;
         command.execute();
         // assertEquals(1, robotDrive.speeds().vxMetersPerSecond, 0.001);
 
-        desiredMode = "FIELD_RELATIVE_TWIST";
+        desiredMode = Mode.FIELD_RELATIVE_TWIST;
         command.execute();
         // assertEquals(1, robotDrive.twist.dx, 0.001);
 
         command.end(false);
     }
 
+    /** A mode without a driver stops. */
+    @Test
+    void testUnregistered() {
+        SwerveDriveSubsystem robotDrive = fixture.drive;
+        DriveManually command = new DriveManually(() -> desiredTwist, robotDrive);
+        command.register(Mode.MODULE_STATE, false,
+                new SimpleManualModuleStates("foo", SwerveKinodynamicsFactory.forTest()));
+        command.overrideMode(() -> desiredMode);
+        command.initialize();
+
+        desiredMode = Mode.MODULE_STATE;
+        command.execute();
+        robotDrive.periodic();
+        assertEquals(1, robotDrive.speeds().vxMetersPerSecond, 0.001);
+
+        desiredMode = Mode.LOCKED;
+        command.execute();
+        robotDrive.periodic();
+        assertEquals(0, robotDrive.speeds().vxMetersPerSecond, 0.001);
+        command.end(false);
+    }
+
+    /**
+     * One execute per mode, timed, with the bytes allocated per cycle. The
+     * drivers themselves allocate only what they return, and the immutable
+     * geometry the profile and the drivetrain need; the rest is the
+     * drivetrain.
+     *
+     * For a "before" row, run the same loop on the string-keyed DriveManually,
+     * with Mode.values() replaced by the mode names. Counting from the source,
+     * and at 40 bytes per three-double object or array, the scratch objects
+     * save per cycle: none for the three simple modes (only the dispatch
+     * changed), 200 bytes for SNAPS, and 240 bytes for each of the note and
+     * lock modes, plus 40 more while a ball is in flight.
+     */
+    @Test
+    void testBenchmark() {
+        SwerveDriveSubsystem robotDrive = fixture.drive;
+        SwerveKinodynamics swerveKinodynamics = SwerveKinodynamicsFactory.forTest();
+        PIDController thetaController = new PIDController(3.5, 0, 0);
+        thetaController.enableContinuousInput(-Math.PI, Math.PI);
+        PIDController omegaController = new PIDController(3.5, 0, 0);
+        Translation2d target = new Translation2d(5, 5);
+        Supplier<Optional<Translation2d>> note = () -> Optional.of(target);
+
+        DriveManually command = new DriveManually(() -> desiredTwist, robotDrive);
+        command.register(Mode.MODULE_STATE, false,
+                new SimpleManualModuleStates("foo", swerveKinodynamics));
+        command.register(Mode.ROBOT_RELATIVE_CHASSIS_SPEED, false,
+                new ManualChassisSpeeds("foo", swerveKinodynamics));
+        command.register(Mode.ROBOT_RELATIVE_FACING_NOTE, false,
+                new ManualWithNoteRotation("foo", swerveKinodynamics, fixture.heading,
+                        note, thetaController, omegaController, () -> false));
+        command.register(Mode.FIELD_RELATIVE_TWIST, false,
+                new ManualFieldRelativeSpeeds("foo", swerveKinodynamics));
+        command.register(Mode.SNAPS, false,
+                new ManualWithHeading("foo", swerveKinodynamics, fixture.heading,
+                        () -> Rotation2d.fromDegrees(90), thetaController, omegaController));
+        command.register(Mode.FIELD_RELATIVE_FACING_NOTE, false,
+                new FieldManualWithNoteRotation("foo", swerveKinodynamics, fixture.heading,
+                        note, thetaController, omegaController, () -> false));
+        command.register(Mode.LOCKED, false,
+                new ManualWithTargetLock("foo", swerveKinodynamics, fixture.heading,
+                        () -> target, thetaController, omegaController, () -> false));
+        command.overrideMode(() -> desiredMode);
+        command.initialize();
+
+        ThreadMXBean mx = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        final int warmup = 1000;
+        final int cycles = 10000;
+        desiredTwist = new Twist2d(0.5, 0.5, 0);
+        for (Mode mode : Mode.values()) {
+            desiredMode = mode;
+            for (int i = 0; i < warmup; ++i) {
+                command.execute100(0.02);
+            }
+            long startBytes = mx.getThreadAllocatedBytes(thread);
+            long startNs = System.nanoTime();
+            for (int i = 0; i < cycles; ++i) {
+                command.execute100(0.02);
+            }
+            double us = (System.nanoTime() - startNs) / 1e3 / cycles;
+            double bytes = (double) (mx.getThreadAllocatedBytes(thread) - startBytes) / cycles;
+            if (dump)
+                System.out.printf("%-30s %8.2f us %8.0f bytes\n", mode, us, bytes);
+            assertEquals(mode, command.currentManualMode);
+        }
+        command.end(false);
+    }
 }
@@ -0,0 +1,188 @@
+package org.team100.lib.geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.InterpolatingDoubleTreeMap;
+
+class FiringSolutionTableTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final double kMuzzleSpeedM_S = 20;
+    private static final double kG = 9.81;
+
+    /** Like the 2024 shooter table: steep up close, flat far away. */
+    private static double elevation(double rangeM) {
+        return 0.48 + 0.47 * Math.exp(-1.2 * (rangeM - 1.5));
+    }
+
+    private final FiringSolutionTable table = new FiringSolutionTable(
+            FiringSolutionTableTest::elevation, kMuzzleSpeedM_S, 1.5, 5.0, 0.05, 4, 0.5);
+
+    @Test
+    void testStationary() {
+        double[] out = new double[3];
+        for (double range = 1.5; range <= 5.0; range += 0.37) {
+            table.get(range, 0, 0, out);
+            assertEquals(elevation(range), out[FiringSolutionTable.kPivot], kDelta);
+            assertEquals(0, out[FiringSolutionTable.kYawLead], kDelta);
+            assertEquals(kMuzzleSpeedM_S, out[FiringSolutionTable.kSpeed], kDelta);
+        }
+    }
+
+    @Test
+    void testDirection() {
+        double[] out = new double[3];
+        // moving towards the target: the same speed, aimed higher
+        table.get(3, 2, 0, out);
+        assertTrue(out[FiringSolutionTable.kPivot] > elevation(3));
+        assertEquals(kMuzzleSpeedM_S, out[FiringSolutionTable.kSpeed], kDelta);
+        assertEquals(0, out[FiringSolutionTable.kYawLead], kDelta);
+        // moving away: lower
+        table.get(3, -2, 0, out);
+        assertTrue(out[FiringSolutionTable.kPivot] < elevation(3));
+        // moving left: aim right
+        table.get(3, 0, 2, out);
+        assertTrue(out[FiringSolutionTable.kYawLead] < 0);
+    }
+
+    @Test
+    void testClamped() {
+        double[] out = new double[3];
+        double[] edge = new double[3];
+        table.get(100, 100, -100, out);
+        table.get(5, 4, -4, edge);
+        assertEquals(edge[0], out[0], 1e-12);
+        assertEquals(edge[1], out[1], 1e-12);
+        assertEquals(edge[2], out[2], 1e-12);
+    }
+
+    /** The grid is close to the exact solution everywhere. */
+    @Test
+    void testInterpolation() {
+        Random random = new Random(0);
+        double[] out = new double[3];
+        double[] expected = new double[3];
+        for (int i = 0; i < 10000; ++i) {
+            double range = 1.5 + 3.5 * random.nextDouble();
+            double radial = 8 * random.nextDouble() - 4;
+            double tangential = 8 * random.nextDouble() - 4;
+            table.get(range, radial, tangential, out);
+            FiringSolutionTable.solve(range, elevation(range), kMuzzleSpeedM_S, radial, tangential, expected);
+            assertEquals(expected[0], out[0], 0.002);
+            assertEquals(expected[1], out[1], 0.002);
+            assertEquals(expected[2], out[2], 0.01);
+        }
+    }
+
+    /**
+     * Brute-force ballistic reference: fly the note from the moving robot, with
+     * the table's pivot and speed together, and compare with the stationary
+     * shot at the target range. The speed is the one the roller actually runs.
+     */
+    @Test
+    void testBallistic() {
+        Random random = new Random(1);
+        double[] out = new double[3];
+        for (int i = 0; i < 200; ++i) {
+            double range = 1.5 + 3.5 * random.nextDouble();
+            double radial = 8 * random.nextDouble() - 4;
+            double tangential = 8 * random.nextDouble() - 4;
+
+            // stationary shot: where is it when it crosses the target?
+            double theta = elevation(range);
+            double[] stationary = fly(
+                    kMuzzleSpeedM_S * Math.cos(theta), 0, kMuzzleSpeedM_S * Math.sin(theta), range);
+
+            // moving shot: relative launch plus robot velocity
+            table.get(range, radial, tangential, out);
+            assertEquals(kMuzzleSpeedM_S, out[FiringSolutionTable.kSpeed], kDelta);
+            double horizontal = out[FiringSolutionTable.kSpeed] * Math.cos(out[FiringSolutionTable.kPivot]);
+            double vertical = out[FiringSolutionTable.kSpeed] * Math.sin(out[FiringSolutionTable.kPivot]);
+            double yaw = out[FiringSolutionTable.kYawLead];
+            double[] moving = fly(
+                    horizontal * Math.cos(yaw) + radial,
+                    horizontal * Math.sin(yaw) + tangential,
+                    vertical,
+                    range);
+
+            // same lateral position (i.e. on target) and height.
+            assertEquals(0, moving[0], 0.01, "lateral miss");
+            assertEquals(stationary[1], moving[1], 0.01, "height");
+        }
+    }
+
+    /**
+     * Compare the grid with the exact solution and with the old path, a tree map
+     * lookup followed by Vector2d velocity correction.
+     */
+    @Test
+    void testBenchmark() {
+        InterpolatingDoubleTreeMap map = new InterpolatingDoubleTreeMap();
+        for (double range = 1.5; range <= 5.0; range += 0.5) {
+            map.put(range, elevation(range));
+        }
+        double[] out = new double[3];
+        int iterations = 1000000;
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                double angle = map.get(1.5 + i * 3e-6);
+                Vector2d stationary = new Vector2d(kMuzzleSpeedM_S, new Rotation2d(angle));
+                Vector2d moving = new Vector2d(0.3, 0);
+                sum += Vector2d.sub(stationary, moving).getTheta().getRadians();
+            }
+            long oldNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                table.get(1.5 + i * 3e-6, 0.3, -0.2, out);
+                sum += out[0];
+            }
+            long gridNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                double range = 1.5 + i * 3e-6;
+                FiringSolutionTable.solve(range, elevation(range), kMuzzleSpeedM_S, 0.3, -0.2, out);
+                sum += out[0];
+            }
+            long exactNs = System.nanoTime() - startTime;
+            if (dump)
+                Util.printf("round %d ns/op old %.1f grid %.1f exact %.1f\n",
+                        round, (double) oldNs / iterations, (double) gridNs / iterations,
+                        (double) exactNs / iterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(Double.isFinite(sum));
+    }
+
+    /**
+     * Integrate the flight until the note has travelled the range along the line
+     * of sight.
+     *
+     * @return {lateral, height, time}
+     */
+    private static double[] fly(double vx, double vy, double vz, double range) {
+        double dt = 1e-5;
+        double x = 0;
+        double y = 0;
+        double z = 0;
+        double t = 0;
+        while (x < range) {
+            x += vx * dt;
+            y += vy * dt;
+            z += vz * dt - 0.5 * kG * dt * dt;
+            vz -= kG * dt;
+            t += dt;
+        }
+        return new double[] { y, z, t };
+    }
+}
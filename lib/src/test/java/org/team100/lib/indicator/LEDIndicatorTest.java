@@ -0,0 +1,168 @@
+package org.team100.lib.indicator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.indicator.LEDIndicator.State;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.wpilibj.AddressableLEDBuffer;
+import edu.wpi.first.wpilibj.util.Color;
+
+class LEDIndicatorTest implements Timeless {
+    private static final boolean dump = false;
+    private static final double kPeriodS = 0.02;
+
+    /** Counts pushes, and keeps the last buffer. */
+    private static class Counter implements LEDIndicator.Output {
+        int pushes;
+        AddressableLEDBuffer last;
+
+        @Override
+        public void setData(AddressableLEDBuffer buffer) {
+            ++pushes;
+            last = buffer;
+        }
+    }
+
+    @Test
+    void testSolid() {
+        Counter c = new Counter();
+        LEDIndicator indicator = new LEDIndicator(c, new LEDStrip(10, 0), new LEDStrip(10, 10));
+        // the initial clear
+        assertEquals(1, c.pushes);
+        for (int i = 0; i < 10; ++i) {
+            indicator.setStripSolid(1, State.RED);
+            indicator.periodic();
+            stepTime(kPeriodS);
+        }
+        // only the first one changed anything.
+        assertEquals(2, c.pushes);
+        assertEquals(Color.kBlack, c.last.getLED(9));
+        assertEquals(State.RED.color, c.last.getLED(10));
+        assertEquals(State.RED.color, c.last.getLED(19));
+        indicator.setStripSolid(1, State.GREEN);
+        indicator.periodic();
+        assertEquals(3, c.pushes);
+        assertEquals(State.GREEN.color, c.last.getLED(19));
+    }
+
+    /** Solid black looks like nothing, so there's nothing to send. */
+    @Test
+    void testSamePicture() {
+        Counter c = new Counter();
+        LEDIndicator indicator = new LEDIndicator(c, new LEDStrip(10, 0));
+        indicator.setStripSolid(0, State.BLUE);
+        indicator.periodic();
+        assertEquals(2, c.pushes);
+        // the first frame of the flash is black.
+        indicator.setStripFlashing(0, State.BLUE, 80000);
+        indicator.periodic();
+        assertEquals(3, c.pushes);
+        indicator.setStripSolid(0, State.BLACK);
+        indicator.periodic();
+        assertEquals(3, c.pushes);
+    }
+
+    /** A flash sends one frame per half-period, not one per cycle. */
+    @Test
+    void testFlash() {
+        Counter c = new Counter();
+        LEDIndicator indicator = new LEDIndicator(c, new LEDStrip(10, 0));
+        for (int i = 0; i < 50; ++i) {
+            indicator.setStripFlashing(0, State.ORANGE, 80000);
+            indicator.periodic();
+            stepTime(kPeriodS);
+        }
+        // one second is 12.5 half-periods.
+        assertEquals(14, c.pushes);
+    }
+
+    @Test
+    void testMorse() {
+        // e is one dit, then the word gap.
+        LEDAnimation e = LEDAnimation.morse("e", State.RED, 100000, 4);
+        assertEquals(8, e.size());
+        assertEquals(0, e.index(0));
+        assertEquals(1, e.index(100000));
+        // loops
+        assertEquals(0, e.index(800000));
+        LEDAnimation sos = LEDAnimation.morse("sos", State.RED, 100000, 4);
+        // s is 5 dits, o is 11, plus two letter gaps and the word gap.
+        assertEquals(5 + 3 + 11 + 3 + 5 + 7, sos.size());
+        // the dits are all the same array.
+        assertSame(sos.frame(0), sos.frame(2));
+        assertSame(sos.frame(1), sos.frame(30));
+    }
+
+    @Test
+    void testRainbow() {
+        LEDAnimation rainbow = LEDAnimation.rainbow(160, 20000);
+        assertEquals(60, rainbow.size());
+        assertEquals(160, rainbow.getLength());
+        assertEquals(59, rainbow.index(59 * 20000));
+        assertEquals(0, rainbow.index(60 * 20000));
+    }
+
+    @Test
+    void testLength() {
+        LEDIndicator indicator = new LEDIndicator(new Counter(), new LEDStrip(10, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> indicator.setStripAnimation(0, LEDAnimation.rainbow(20, 20000)));
+    }
+
+    /**
+     * A match, with the comp LED logic: disabled flashing orange, then the
+     * alliance color, then the shooter and feeder states changing every few
+     * seconds in auton and teleop, with a morse message at the end. Before,
+     * every cycle sent the whole buffer.
+     */
+    @Test
+    void testMatch() {
+        Counter c = new Counter();
+        LEDIndicator indicator = new LEDIndicator(c, new LEDStrip(160, 0));
+        LEDAnimation message = LEDAnimation.morse("gg", State.PURPLE, 100000, 160);
+        int cycles = 0;
+        long totalNs = 0;
+        long maxNs = 0;
+        for (int i = 0; i < 9000; ++i) {
+            double t = i * kPeriodS;
+            long startNs = System.nanoTime();
+            if (t < 10) {
+                // no alliance yet
+                indicator.setStripFlashing(0, State.ORANGE, 80000);
+            } else if (t < 20) {
+                indicator.setStripSolid(0, State.RED);
+            } else if (t < 170) {
+                // the robot state changes every couple of seconds.
+                int phase = (int) (t / 2) % 3;
+                if (phase == 0) {
+                    indicator.setStripSolid(0, State.PURPLE);
+                } else if (phase == 1) {
+                    indicator.setStripSolid(0, State.RED);
+                } else {
+                    indicator.setStripSolid(0, State.GREEN);
+                }
+            } else {
+                indicator.setStripAnimation(0, message);
+            }
+            indicator.periodic();
+            long elapsedNs = System.nanoTime() - startNs;
+            if (cycles > 100) {
+                // skip warmup
+                totalNs += elapsedNs;
+                maxNs = Math.max(maxNs, elapsedNs);
+            }
+            ++cycles;
+            stepTime(kPeriodS);
+        }
+        if (dump)
+            System.out.printf("cycles %d setData %d mean %.1f us max %.1f us\n",
+                    cycles, c.pushes, totalNs / 1e3 / (cycles - 100), maxNs / 1e3);
+        // 9000 before, one per cycle.
+        assertTrue(c.pushes < 300, "pushes " + c.pushes);
+    }
+}
@@ -0,0 +1,158 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+class BatchTriangulationTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final double kBearingStdDevRad = 0.002;
+
+    /** Same case as TriangulationTest.testSimple */
+    @Test
+    void testSimple() {
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 2);
+        b.add(1, -1, -Math.PI / 4, Math.sqrt(2));
+        b.add(1, 1, Math.PI / 4, Math.sqrt(2));
+        assertTrue(b.solve());
+        assertEquals(0, b.x(), kDelta);
+        assertEquals(0, b.y(), kDelta);
+        assertEquals(2, b.inliers());
+        // symmetric geometry, so no correlation, and the error is a few mm.
+        assertEquals(0, b.covXY(), 1e-9);
+        assertEquals(0.0028, Math.sqrt(b.varX()), 0.0001);
+        assertEquals(0.0028, Math.sqrt(b.varY()), 0.0001);
+    }
+
+    /** Agrees with the pairwise solution. */
+    @Test
+    void testMatchesPairwise() {
+        Random random = new Random(0);
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 2);
+        for (int i = 0; i < 100; ++i) {
+            double x = 8 * random.nextDouble();
+            double y = 8 * random.nextDouble();
+            Translation2d robot = new Translation2d(x, y);
+            Translation2d t0 = new Translation2d(16.5, 5 + random.nextDouble());
+            Translation2d t1 = new Translation2d(16.5, 2 + random.nextDouble());
+            Rotation2d r0 = t0.minus(robot).getAngle();
+            Rotation2d r1 = t1.minus(robot).getAngle();
+            Translation2d expected = TriangulationHelper.solve(t0, t1, r0, r1);
+            b.clear();
+            b.add(t0.getX(), t0.getY(), r0.getRadians(), t0.getDistance(robot));
+            b.add(t1.getX(), t1.getY(), r1.getRadians(), t1.getDistance(robot));
+            assertTrue(b.solve());
+            assertEquals(expected.getX(), b.x(), kDelta);
+            assertEquals(expected.getY(), b.y(), kDelta);
+        }
+    }
+
+    @Test
+    void testNoisy() {
+        Random random = new Random(1);
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 2);
+        double x = 3;
+        double y = 4;
+        add(b, random, x, y, 16, kBearingStdDevRad);
+        assertTrue(b.solve());
+        assertEquals(16, b.inliers());
+        // within three sigma
+        assertEquals(x, b.x(), 3 * Math.sqrt(b.varX()));
+        assertEquals(y, b.y(), 3 * Math.sqrt(b.varY()));
+    }
+
+    @Test
+    void testOutlier() {
+        Random random = new Random(2);
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 2);
+        double x = 3;
+        double y = 4;
+        add(b, random, x, y, 8, kBearingStdDevRad);
+        // a misidentified tag, way off.
+        b.add(16, 0, Math.atan2(4 - y, 16 - x), 13);
+        assertTrue(b.solve());
+        assertEquals(8, b.inliers());
+        assertEquals(x, b.x(), 3 * Math.sqrt(b.varX()));
+        assertEquals(y, b.y(), 3 * Math.sqrt(b.varY()));
+    }
+
+    @Test
+    void testDegenerate() {
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 2);
+        // not enough tags
+        assertFalse(b.solve());
+        b.add(1, 1, 0, 1);
+        assertFalse(b.solve());
+        // parallel bearings
+        b.add(2, 1, 0, 2);
+        assertFalse(b.solve());
+    }
+
+    /** Compare all-pairs TriangulationHelper with the batch solution. */
+    @Test
+    void testBenchmark() {
+        Random random = new Random(3);
+        BatchTriangulation b = new BatchTriangulation(kBearingStdDevRad, 16);
+        int iterations = 2000;
+        double sum = 0;
+        for (int n = 2; n <= 16; ++n) {
+            Translation2d robot = new Translation2d(3, 4);
+            Translation2d[] tags = new Translation2d[n];
+            Rotation2d[] bearings = new Rotation2d[n];
+            for (int i = 0; i < n; ++i) {
+                tags[i] = new Translation2d(16 * random.nextDouble(), 8 * random.nextDouble());
+                bearings[i] = tags[i].minus(robot).getAngle();
+            }
+            for (int round = 0; round < 2; ++round) {
+                long startTime = System.nanoTime();
+                for (int k = 0; k < iterations; ++k) {
+                    for (int i = 0; i < n - 1; ++i) {
+                        for (int j = i + 1; j < n; ++j) {
+                            Translation2d x = TriangulationHelper.solve(
+                                    tags[i], tags[j], bearings[i], bearings[j]);
+                            sum += x.getX();
+                        }
+                    }
+                }
+                long pairwiseNs = System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                for (int k = 0; k < iterations; ++k) {
+                    b.clear();
+                    for (int i = 0; i < n; ++i) {
+                        b.add(tags[i].getX(), tags[i].getY(), bearings[i].getRadians(),
+                                tags[i].getDistance(robot));
+                    }
+                    b.solve();
+                    sum += b.x();
+                }
+                long batchNs = System.nanoTime() - startTime;
+                if (dump && round == 1)
+                    Util.printf("tags %2d us/frame pairwise %7.2f batch %5.2f speedup %.1f\n",
+                            n, pairwiseNs / 1e3 / iterations, batchNs / 1e3 / iterations,
+                            (double) pairwiseNs / batchNs);
+            }
+        }
+        // keep the JIT from discarding the work
+        assertTrue(Double.isFinite(sum));
+    }
+
+    /** Add tags on the far wall, with noisy bearings. */
+    private static void add(BatchTriangulation b, Random random, double x, double y, int n, double noise) {
+        for (int i = 0; i < n; ++i) {
+            double tx = 16.5;
+            double ty = 8.0 * i / n;
+            double bearing = Math.atan2(ty - y, tx - x) + noise * random.nextGaussian();
+            b.add(tx, ty, bearing, Math.hypot(tx - x, ty - y));
+        }
+    }
+}
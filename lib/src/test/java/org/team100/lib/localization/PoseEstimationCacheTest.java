@@ -0,0 +1,190 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.config.Camera;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+/** Verify that the cache matches PoseEstimationHelper. */
+class PoseEstimationCacheTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 1e-9;
+
+    @Test
+    void testGyro() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        PoseEstimationCache cache = new PoseEstimationCache(layout);
+        Random random = new Random(0);
+        double[] out = new double[3];
+        for (Camera camera : Camera.values()) {
+            for (Alliance alliance : Alliance.values()) {
+                for (int id = 1; id <= 16; ++id) {
+                    Pose3d tagInFieldCoords = layout.getTagPose(alliance, id).get();
+                    for (int i = 0; i < 20; ++i) {
+                        Blip24 blip = randomBlip(random, id);
+                        double yaw = Math.PI * (2 * random.nextDouble() - 1);
+                        Pose3d expected = PoseEstimationHelper.getRobotPoseInFieldCoords(
+                                camera.getOffset(),
+                                tagInFieldCoords,
+                                blip,
+                                new Rotation3d(0, 0, yaw));
+                        assertTrue(cache.getRobotTranslationInFieldCoords(camera, alliance, blip, yaw, out));
+                        verify(expected, out);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testCamera() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        PoseEstimationCache cache = new PoseEstimationCache(layout);
+        Random random = new Random(1);
+        double[] out = new double[3];
+        for (Camera camera : Camera.values()) {
+            for (Alliance alliance : Alliance.values()) {
+                for (int id = 1; id <= 16; ++id) {
+                    Pose3d tagInFieldCoords = layout.getTagPose(alliance, id).get();
+                    for (int i = 0; i < 20; ++i) {
+                        Blip24 blip = randomBlip(random, id);
+                        Pose3d expected = PoseEstimationHelper.getRobotPoseInFieldCoords(
+                                camera.getOffset(),
+                                tagInFieldCoords,
+                                blip);
+                        assertTrue(cache.getRobotTranslationInFieldCoords(camera, alliance, blip, out));
+                        verify(expected, out);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testThreshold() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        PoseEstimationCache cache = new PoseEstimationCache(layout);
+        Random random = new Random(2);
+        double[] out = new double[3];
+        Camera camera = Camera.SHOOTER;
+        Pose3d tagInFieldCoords = layout.getTagPose(Alliance.Blue, 7).get();
+        for (int i = 0; i < 100; ++i) {
+            Blip24 blip = randomBlip(random, 7);
+            double yaw = Math.PI * (2 * random.nextDouble() - 1);
+            Pose3d expected = PoseEstimationHelper.getRobotPoseInFieldCoords(
+                    camera.getOffset(),
+                    tagInFieldCoords,
+                    blip,
+                    new Rotation3d(0, 0, yaw),
+                    2.5);
+            assertTrue(cache.getRobotTranslationInFieldCoords(camera, Alliance.Blue, blip, yaw, 2.5, out));
+            verify(expected, out);
+        }
+    }
+
+    @Test
+    void testTagInRobotCoords() throws IOException {
+        PoseEstimationCache cache = new PoseEstimationCache(new AprilTagFieldLayoutWithCorrectOrientation());
+        Random random = new Random(5);
+        double[] out = new double[3];
+        for (Camera camera : Camera.values()) {
+            for (int i = 0; i < 20; ++i) {
+                Blip24 blip = randomBlip(random, 7);
+                Transform3d expected = PoseEstimationHelper.toTarget(camera.getOffset(), blip);
+                cache.getTagInRobotCoords(camera, blip, out);
+                assertEquals(expected.getX(), out[0], kDelta);
+                assertEquals(expected.getY(), out[1], kDelta);
+                assertEquals(expected.getZ(), out[2], kDelta);
+            }
+        }
+    }
+
+    @Test
+    void testMissingTag() throws IOException {
+        PoseEstimationCache cache = new PoseEstimationCache(new AprilTagFieldLayoutWithCorrectOrientation());
+        assertTrue(cache.hasTag(Alliance.Red, 16));
+        assertFalse(cache.hasTag(Alliance.Red, 17));
+        assertFalse(cache.hasTag(Alliance.Red, -1));
+        assertFalse(cache.hasTag(Alliance.Red, 1000));
+        double[] out = new double[] { 1, 2, 3 };
+        assertFalse(cache.getRobotTranslationInFieldCoords(
+                Camera.A, Alliance.Red, randomBlip(new Random(3), 17), 0, out));
+        // untouched
+        assertEquals(1, out[0]);
+    }
+
+    /** Compare the per-blip cost of the helper and the cache. */
+    @Test
+    void testBenchmark() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        PoseEstimationCache cache = new PoseEstimationCache(layout);
+        Random random = new Random(4);
+        Blip24[] blips = new Blip24[100];
+        for (int i = 0; i < blips.length; ++i) {
+            blips[i] = randomBlip(random, 1 + random.nextInt(16));
+        }
+        Camera camera = Camera.SHOOTER;
+        Transform3d cameraInRobotCoords = camera.getOffset();
+        double[] out = new double[3];
+        int iterations = 1000;
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                for (Blip24 blip : blips) {
+                    Pose3d tag = layout.getTagPose(Alliance.Blue, blip.getId()).get();
+                    Pose3d p = PoseEstimationHelper.getRobotPoseInFieldCoords(
+                            cameraInRobotCoords, tag, blip, new Rotation3d(0, 0, 0.5), 0);
+                    sum += p.getX();
+                }
+            }
+            long helperNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                for (Blip24 blip : blips) {
+                    cache.getRobotTranslationInFieldCoords(camera, Alliance.Blue, blip, 0.5, 0, out);
+                    sum += out[0];
+                }
+            }
+            long cacheNs = System.nanoTime() - startTime;
+            int n = iterations * blips.length;
+            if (dump)
+                Util.printf("round %d ns/blip helper %.1f cache %.1f speedup %.1f\n",
+                        round, (double) helperNs / n, (double) cacheNs / n, (double) helperNs / cacheNs);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(Double.isFinite(sum));
+    }
+
+    /** A tag somewhere in front of the camera, z-forward, with some rotation. */
+    private static Blip24 randomBlip(Random random, int id) {
+        return new Blip24(id, new Transform3d(
+                new Translation3d(
+                        random.nextGaussian(),
+                        random.nextGaussian(),
+                        1 + 3 * random.nextDouble()),
+                new Rotation3d(
+                        0.3 * random.nextGaussian(),
+                        0.3 * random.nextGaussian(),
+                        0.3 * random.nextGaussian())));
+    }
+
+    private static void verify(Pose3d expected, double[] actual) {
+        assertEquals(expected.getX(), actual[0], kDelta);
+        assertEquals(expected.getY(), actual[1], kDelta);
+        assertEquals(expected.getZ(), actual[2], kDelta);
+    }
+}
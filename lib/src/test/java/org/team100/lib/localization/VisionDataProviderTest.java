@@ -1,6 +1,8 @@
 package org.team100.lib.localization;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -10,19 +12,26 @@ import java.util.function.DoubleFunction;
 import java.util.function.ObjDoubleConsumer;
 
 import org.junit.jupiter.api.Test;
+import org.team100.lib.copies.SwerveDrivePoseEstimator100;
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.GeometryUtil;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamicsFactory;
 import org.team100.lib.sensors.HeadingWithHistory;
 import org.team100.lib.sensors.MockHeading;
 import org.team100.lib.testing.Timeless;
 
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.Timer;
 
@@ -318,6 +327,19 @@ class VisionDataProviderTest implements Timeless {
 
     }
 
+    @Test
+    void testTriangulationStdDevs() {
+        // bearing noise alone says a few mm at 3 m; the floor says 0.3 m
+        Matrix<N3, N1> s = VisionDataProvider24.triangulationStdDevs(1e-5, 4e-5, 3);
+        assertEquals(0.3, s.get(0, 0), 1e-9);
+        assertEquals(0.3, s.get(1, 0), 1e-9);
+        assertEquals(Double.MAX_VALUE, s.get(2, 0), 1e-9);
+        // a worse triangulation is kept as is
+        s = VisionDataProvider24.triangulationStdDevs(0.25, 0.01, 1);
+        assertEquals(0.5, s.get(0, 0), 1e-9);
+        assertEquals(0.1, s.get(1, 0), 1e-9);
+    }
+
     @Test
     void testRotationInterpolation() {
         // just to be sure of what it's doing
@@ -726,4 +748,49 @@ class VisionDataProviderTest implements Timeless {
                 f -> {
                 }, "test3", tags, Alliance.Red);
     }
-}
\ No newline at end of file
+
+    /** Frames are applied at their own time, unless the odometry is gone. */
+    @Test
+    void testFrameTime() throws IOException {
+        SwerveModulePosition[] positions = new SwerveModulePosition[] {
+                new SwerveModulePosition(),
+                new SwerveModulePosition(),
+                new SwerveModulePosition(),
+                new SwerveModulePosition()
+        };
+        SwerveDrivePoseEstimator100 poseEstimator = SwerveKinodynamicsFactory.forTest().newPoseEstimator(
+                GeometryUtil.kRotationZero,
+                positions,
+                GeometryUtil.kPoseZero,
+                VecBuilder.fill(0.5, 0.5, 0.5),
+                VecBuilder.fill(0.1, 0.1, 0.4));
+        poseEstimator.updateWithTime(10, GeometryUtil.kRotationZero, positions);
+        poseEstimator.updateWithTime(11, GeometryUtil.kRotationZero, positions);
+        // the history is 1.5 s long
+        assertFalse(poseEstimator.hasHistory(9.4));
+        assertTrue(poseEstimator.hasHistory(9.6));
+
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        VisionDataProvider24 vdp = new VisionDataProvider24(
+                layout, poseEstimator, poseEstimator::getSampledRotation);
+        Blip24[] blips = new Blip24[] {
+                new Blip24(7, new Transform3d(new Translation3d(0, 0, 1), new Rotation3d()))
+        };
+        final List<Double> timeEstimate = new ArrayList<Double>();
+        ObjDoubleConsumer<Pose2d> estimateConsumer = (p, t) -> timeEstimate.add(t);
+
+        // too old
+        vdp.estimateRobotPose(estimateConsumer, f -> {
+        }, "foo", blips, 9, Alliance.Red);
+        vdp.estimateRobotPose(estimateConsumer, f -> {
+        }, "foo", blips, 9, Alliance.Red);
+        assertEquals(0, timeEstimate.size());
+
+        vdp.estimateRobotPose(estimateConsumer, f -> {
+        }, "foo", blips, 10.4, Alliance.Red);
+        vdp.estimateRobotPose(estimateConsumer, f -> {
+        }, "foo", blips, 10.5, Alliance.Red);
+        assertEquals(1, timeEstimate.size());
+        assertEquals(10.5, timeEstimate.get(0), kDelta);
+    }
+}
@@ -0,0 +1,72 @@
+package org.team100.lib.motion.components;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.controller.State100;
+import org.team100.lib.encoder.SimulatedEncoder;
+import org.team100.lib.motor.SimulatedProfiledMotor;
+import org.team100.lib.profile.TrapezoidProfile100;
+import org.team100.lib.testing.Timeless;
+import org.team100.lib.units.Distance100;
+
+class OutboardPositionServoTest implements Timeless {
+    private static final double kDelta = 0.001;
+    private static final double kDtS = 0.02;
+
+    /**
+     * The simulated motor runs the same profile the RIO would, so the setpoints
+     * should match the profile, and the servo should get to the goal.
+     */
+    @Test
+    void testProfile() {
+        TrapezoidProfile100 profile = new TrapezoidProfile100(1, 1, 0.05);
+        SimulatedProfiledMotor<Distance100> motor = new SimulatedProfiledMotor<>(
+                "test", new TrapezoidProfile100(1, 1, 0.05));
+        SimulatedEncoder<Distance100> encoder = new SimulatedEncoder<>("test", motor, 1, -10, 10);
+        OutboardPositionServo<Distance100> servo = new OutboardPositionServo<>(
+                "test", motor, encoder, 0.01, 0.01, Distance100.instance);
+        servo.reset();
+
+        State100 expected = new State100(0, 0);
+        State100 goal = new State100(1, 0);
+        for (int i = 0; i < 50; ++i) {
+            servo.setPosition(1);
+            stepTime(kDtS);
+            servo.periodic();
+            expected = profile.calculate(kDtS, expected, goal);
+            assertEquals(expected.x(), servo.getSetpoint().x(), kDelta);
+            assertEquals(expected.v(), servo.getSetpoint().v(), kDelta);
+        }
+        assertFalse(servo.atGoal());
+        for (int i = 0; i < 200; ++i) {
+            servo.setPosition(1);
+            stepTime(kDtS);
+            servo.periodic();
+        }
+        assertEquals(1, servo.getSetpoint().x(), kDelta);
+        assertEquals(1, servo.getPosition(), 0.01);
+        assertTrue(servo.atGoal());
+    }
+
+    /** Direct velocity control leaves the profile. */
+    @Test
+    void testVelocity() {
+        SimulatedProfiledMotor<Distance100> motor = new SimulatedProfiledMotor<>(
+                "test", new TrapezoidProfile100(1, 1, 0.05));
+        SimulatedEncoder<Distance100> encoder = new SimulatedEncoder<>("test", motor, 1, -10, 10);
+        OutboardPositionServo<Distance100> servo = new OutboardPositionServo<>(
+                "test", motor, encoder, 0.01, 0.01, Distance100.instance);
+        servo.reset();
+        servo.setPosition(1);
+        servo.setVelocity(0.5);
+        for (int i = 0; i < 10; ++i) {
+            stepTime(kDtS);
+            servo.periodic();
+        }
+        assertEquals(0.5, servo.getSetpoint().v(), kDelta);
+        assertEquals(0.1, servo.getSetpoint().x(), kDelta);
+    }
+}
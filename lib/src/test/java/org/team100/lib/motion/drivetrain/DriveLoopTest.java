@@ -0,0 +1,210 @@
+package org.team100.lib.motion.drivetrain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.GeometryUtil;
+import org.team100.lib.sensors.MockHeading;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+
+class DriveLoopTest extends Fixtured implements Timeless {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+
+    /** Posting doesn't touch the modules; the next cycle does. */
+    @Test
+    void testMailbox() {
+        Experiments.instance.testOverride(Experiment.UseSetpointGenerator, false);
+        DriveLoop loop = new DriveLoop(
+                fixture.heading, fixture.poseEstimator, fixture.swerveLocal, DriveLoop.kDefaultPeriodS);
+        stepTime(0.005);
+        loop.step();
+        assertEquals(0, fixture.collection.getDesiredStates()[0].speedMetersPerSecond, kDelta);
+
+        loop.postRobotRelative(new ChassisSpeeds(1, 0, 0));
+        assertEquals(0, fixture.collection.getDesiredStates()[0].speedMetersPerSecond, kDelta);
+
+        stepTime(0.005);
+        loop.step();
+        assertEquals(1, fixture.collection.getDesiredStates()[0].speedMetersPerSecond, kDelta);
+
+        // the goal persists
+        stepTime(0.005);
+        loop.step();
+        assertEquals(1, fixture.collection.getDesiredStates()[0].speedMetersPerSecond, kDelta);
+        loop.close();
+    }
+
+    /** While the loop runs, vision waits for the next cycle, on the loop thread. */
+    @Test
+    void testDeferredVision() {
+        DriveLoop loop = new DriveLoop(
+                fixture.heading, fixture.poseEstimator, fixture.swerveLocal, DriveLoop.kDefaultPeriodS);
+        for (int i = 0; i < 10; ++i) {
+            stepTime(0.005);
+            loop.step();
+        }
+        double x0 = fixture.poseEstimator.getEstimatedPosition().getX();
+        fixture.poseEstimator.setDeferVision(true);
+        fixture.poseEstimator.addVisionMeasurement(
+                new Pose2d(1, 0, GeometryUtil.kRotationZero), Timer.getFPGATimestamp() - 0.01);
+        // queued, not applied
+        assertEquals(x0, fixture.poseEstimator.getEstimatedPosition().getX(), 1e-9);
+        stepTime(0.005);
+        loop.step();
+        assertTrue(loop.getPose().getX() > x0 + 1e-3, "x " + loop.getPose().getX());
+        loop.close();
+    }
+
+    /** Each cycle publishes what it measured, and which goal it applied. */
+    @Test
+    void testMeasurement() {
+        DriveLoop loop = new DriveLoop(
+                fixture.heading, fixture.poseEstimator, fixture.swerveLocal, DriveLoop.kDefaultPeriodS);
+        assertEquals(0, loop.getMeasurement().goalSeq());
+        loop.postRobotRelative(new ChassisSpeeds(1, 0, 0));
+        long seq = loop.getSeq();
+        // not applied yet
+        assertEquals(0, loop.getMeasurement().goalSeq());
+        stepTime(0.005);
+        loop.step();
+        DriveMeasurement m = loop.getMeasurement();
+        assertEquals(seq, m.goalSeq());
+        assertEquals(4, m.positions().length);
+        // the copies are the caller's to keep
+        boolean[] atGoal = m.atGoal();
+        atGoal[0] = !atGoal[0];
+        assertEquals(!atGoal[0], m.atGoal()[0]);
+        loop.close();
+    }
+
+    /** The subsystem doesn't see the old pose after a reset. */
+    @Test
+    void testResetPose() {
+        DriveLoop loop = new DriveLoop(
+                fixture.heading, fixture.poseEstimator, fixture.swerveLocal, DriveLoop.kDefaultPeriodS);
+        SwerveDriveSubsystem drive = fixture.drive;
+        drive.useLoop(loop);
+        stepTime(0.005);
+        loop.step();
+        drive.resetPose(new Pose2d(1, 2, GeometryUtil.kRotationZero));
+        // the loop hasn't run, so its measurement is stale, and ignored.
+        stepTime(0.005);
+        drive.periodic();
+        assertEquals(1, drive.getPose().getX(), kDelta);
+        assertEquals(0, loop.getMeasurement().resetSeq());
+        stepTime(0.005);
+        loop.step();
+        drive.periodic();
+        assertEquals(1, drive.getPose().getX(), kDelta);
+        assertEquals(2, drive.getPose().getY(), kDelta);
+        assertTrue(loop.getMeasurement().resetSeq() > 0);
+        loop.close();
+    }
+
+    /**
+     * Steering isn't done until the loop has applied the new goal, even if the
+     * wheels were at rest at the old one.
+     */
+    @Test
+    void testSteerAtRest() {
+        DriveLoop loop = new DriveLoop(
+                fixture.heading, fixture.poseEstimator, fixture.swerveLocal, DriveLoop.kDefaultPeriodS);
+        SwerveDriveSubsystem drive = fixture.drive;
+        drive.useLoop(loop);
+        // at rest, at the stop goal.
+        for (int i = 0; i < 10; ++i) {
+            stepTime(0.005);
+            loop.step();
+        }
+        Twist2d sideways = new Twist2d(0, 1, 0);
+        assertFalse(drive.steerAtRest(sideways, 0.02));
+        // the loop hasn't seen it yet
+        assertFalse(drive.steerAtRest(sideways, 0.02));
+        int cycles = 0;
+        while (!drive.steerAtRest(sideways, 0.02) && cycles < 400) {
+            stepTime(0.005);
+            loop.step();
+            ++cycles;
+        }
+        if (dump)
+            System.out.printf("aligned after %d cycles\n", cycles);
+        assertTrue(cycles > 1, "cycles " + cycles);
+        assertTrue(cycles < 400, "never aligned");
+        assertEquals(Math.PI / 2, drive.desiredStates()[0].angle.getRadians(), kDelta);
+        loop.close();
+    }
+
+    /**
+     * Drive straight downfield while spinning. The field-relative goal is turned
+     * into module states once per cycle, so between cycles the robot turns
+     * under the wheels, and the actual direction of travel is wrong. Faster
+     * cycles make less error.
+     * 
+     * This hasn't been run; the expected numbers come from the model. The
+     * discretization aims the command at mid-cycle, so the direction error at
+     * time tau into a cycle of length dt is omega * (tau - dt/2), i.e. RMS
+     * omega * dt / sqrt(12): 0.017 m/s at 50 Hz, 0.004 m/s at 200 Hz, for
+     * 3 rad/s and 1 m/s. But the veering correction adds a fixed
+     * 0.025 * omega = 0.075 rad, meant for steering lag, which the desired
+     * states here don't have, so the totals are both dominated by it: about
+     * 0.078 m/s at 50 Hz and 0.077 m/s at 200 Hz. The residual at 200 Hz is
+     * nearly all that bias, which the loop rate can't fix.
+     */
+    @Test
+    void testTracking() {
+        double error50 = trackingError(0.02);
+        double error200 = trackingError(0.005);
+        if (dump)
+            System.out.printf("rms tracking error 50 Hz %.4f m/s (model 0.078) 200 Hz %.4f m/s (model 0.077)\n",
+                    error50, error200);
+        assertTrue(error200 < error50, "50 Hz " + error50 + " 200 Hz " + error200);
+    }
+
+    /**
+     * RMS field-relative velocity error, sampled every millisecond, of a 1 m/s
+     * goal while the heading turns at 3 rad/s.
+     */
+    private double trackingError(double periodS) {
+        Experiments.instance.testOverride(Experiment.UseSetpointGenerator, false);
+        double omega = 3;
+        MockHeading heading = new MockHeading();
+        heading.rate = omega;
+        DriveLoop loop = new DriveLoop(heading, fixture.poseEstimator, fixture.swerveLocal, periodS);
+        loop.postFieldRelative(new Twist2d(1, 0, omega));
+        int stepsPerCycle = (int) Math.round(periodS / 0.001);
+        double sumSq = 0;
+        int samples = 0;
+        double headingRad = 0;
+        for (int ms = 0; ms < 2000; ++ms) {
+            heading.rotation = new Rotation2d(headingRad);
+            if (ms % stepsPerCycle == 0)
+                loop.step();
+            if (ms > 100) {
+                // skip the first few cycles, the servos need to settle
+                ChassisSpeeds robot = fixture.swerveKinodynamics.toChassisSpeeds(
+                        fixture.collection.getDesiredStates());
+                double cos = Math.cos(headingRad);
+                double sin = Math.sin(headingRad);
+                double vx = robot.vxMetersPerSecond * cos - robot.vyMetersPerSecond * sin;
+                double vy = robot.vxMetersPerSecond * sin + robot.vyMetersPerSecond * cos;
+                sumSq += (vx - 1) * (vx - 1) + vy * vy;
+                ++samples;
+            }
+            stepTime(0.001);
+            headingRad += omega * 0.001;
+        }
+        loop.close();
+        return Math.sqrt(sumSq / samples);
+    }
+}
@@ -1,16 +1,27 @@
 package org.team100.lib.motion.drivetrain;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
+import org.team100.lib.geometry.GeometryUtil;
 import org.team100.lib.testing.Timeless;
+import org.team100.lib.util.Util;
+
+import com.sun.management.ThreadMXBean;
 
 import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 
 class SwerveDriveSubsystemTest extends Fixtured implements Timeless {
+    private static final boolean dump = false;
     private static final double kDelta = 0.001;
 
     @Test
@@ -38,8 +49,9 @@ class SwerveDriveSubsystemTest extends Fixtured implements Timeless {
         // until after periodic...
         assertEquals(0.02, fixture.collection.states()[0].speedMetersPerSecond);
 
-        // new state should be accelerating
-        verify(drive, 0.0006, 0.02, 1);
+        // new state should be accelerating; the raw acceleration is 1, filtered
+        // with a time constant of one cycle.
+        verify(drive, 0.0006, 0.02, 0.5);
 
         drive.setChassisSpeeds(new ChassisSpeeds(1, 0, 0), 0.02);
 
@@ -48,7 +60,7 @@ class SwerveDriveSubsystemTest extends Fixtured implements Timeless {
 
         // keep accelerating
 
-        verify(drive, 0.0015, 0.04, 1);
+        verify(drive, 0.0015, 0.04, 0.75);
 
         drive.setChassisSpeeds(new ChassisSpeeds(1, 0, 0), 0.02);
 
@@ -56,11 +68,101 @@ class SwerveDriveSubsystemTest extends Fixtured implements Timeless {
         drive.periodic();
 
         // keep accelerating
-        verify(drive, 0.002, 0.06, 1);
+        verify(drive, 0.002, 0.06, 0.875);
 
         drive.close();
     }
 
+    @Test
+    void testSnapshotIsConsistent() {
+        SwerveDriveSubsystem drive = fixture.drive;
+        drive.resetPose(new Pose2d());
+        stepTime(0.02);
+        drive.periodic();
+        drive.setChassisSpeeds(new ChassisSpeeds(1, 0, 0), 0.02);
+        stepTime(0.02);
+        drive.periodic();
+
+        SwerveDriveSnapshot snapshot = drive.getSnapshot();
+        assertEquals(0.02, snapshot.vx(), kDelta);
+        assertEquals(0.02, drive.speeds().vxMetersPerSecond, kDelta);
+        assertEquals(0.02, snapshot.moduleSpeedM_S(0), kDelta);
+        assertEquals(0.02, drive.moduleStates()[0].speedMetersPerSecond, kDelta);
+        // views are built once per cycle
+        assertSame(drive.getState(), drive.getState());
+        assertSame(drive.getVelocity(), drive.getVelocity());
+
+        // reset forgets motion
+        drive.resetPose(new Pose2d(1, 0, new Rotation2d()));
+        assertEquals(1, drive.getPose().getX(), kDelta);
+        assertEquals(0, drive.getVelocity().dx, kDelta);
+        assertEquals(0, drive.getAcceleration().dx, kDelta);
+    }
+
+    /**
+     * Compare the cost of the old update, which computed the forward kinematics
+     * twice and allocated several objects, with the snapshot.
+     */
+    @Test
+    void testBenchmark() {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        SwerveDriveSubsystem drive = fixture.drive;
+        SwerveLocal local = fixture.swerveLocal;
+        drive.setChassisSpeeds(new ChassisSpeeds(1, 0.5, 0.3), 0.02);
+        int iterations = 10000;
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long startBytes = bean.getThreadAllocatedBytes(tid);
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                // the old updateVelocity/updateAcceleration/updateState
+                Pose2d pose = drive.getPose();
+                ChassisSpeeds speeds = local.speeds(fixture.heading.getHeadingRateNWU(), 0.02);
+                ChassisSpeeds field = ChassisSpeeds.fromRobotRelativeSpeeds(speeds, pose.getRotation());
+                Twist2d velocity = new Twist2d(
+                        field.vxMetersPerSecond, field.vyMetersPerSecond, field.omegaRadiansPerSecond);
+                ChassisSpeeds speeds2 = local.speeds(fixture.heading.getHeadingRateNWU(), 0.02);
+                ChassisSpeeds accel = ChassisSpeeds.fromFieldRelativeSpeeds(
+                        speeds2.minus(speeds), pose.getRotation());
+                Twist2d a = GeometryUtil.scale(new Twist2d(
+                        accel.vxMetersPerSecond, accel.vyMetersPerSecond, accel.omegaRadiansPerSecond), 50);
+                SwerveState state = new SwerveState(pose, velocity, a);
+                sum += state.x().v();
+            }
+            long legacyNs = System.nanoTime() - startTime;
+            long legacyBytes = bean.getThreadAllocatedBytes(tid) - startBytes;
+
+            SwerveDriveSnapshot snapshot = drive.getSnapshot();
+            startBytes = bean.getThreadAllocatedBytes(tid);
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                snapshot.update(drive.getPose(), fixture.heading.getHeadingRateNWU(), 0.02, local);
+                sum += snapshot.vx();
+            }
+            long snapshotNs = System.nanoTime() - startTime;
+            long snapshotBytes = bean.getThreadAllocatedBytes(tid) - startBytes;
+
+            // the whole periodic, including odometry and logging
+            startBytes = bean.getThreadAllocatedBytes(tid);
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                drive.periodic100(0.02);
+                sum += drive.getState().x().v();
+            }
+            long periodicNs = System.nanoTime() - startTime;
+            long periodicBytes = bean.getThreadAllocatedBytes(tid) - startBytes;
+            if (dump)
+                Util.printf("round %d legacy %.0f ns %d B snapshot %.0f ns %d B periodic100 %.0f ns %d B\n",
+                        round,
+                        (double) legacyNs / iterations, legacyBytes / iterations,
+                        (double) snapshotNs / iterations, snapshotBytes / iterations,
+                        (double) periodicNs / iterations, periodicBytes / iterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(Double.isFinite(sum));
+    }
+
     private void verify(SwerveDriveSubsystem drive, double x, double v, double a) {
         assertEquals(x, drive.getPose().getX(), kDelta);        
         assertEquals(v, drive.getVelocity().dx, kDelta);
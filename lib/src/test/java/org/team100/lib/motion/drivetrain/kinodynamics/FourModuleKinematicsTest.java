@@ -0,0 +1,187 @@
+package org.team100.lib.motion.drivetrain.kinodynamics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+
+/** Verify that the primitive kernel matches the WPILib path. */
+class FourModuleKinematicsTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 1e-6;
+    private static final double kDt = 0.02;
+
+    private final SwerveKinodynamics limits = SwerveKinodynamicsFactory.get();
+
+    @Test
+    void testInverse() {
+        Random random = new Random(0);
+        double[] speeds = new double[3];
+        double[] scratch = new double[3];
+        double[] speedsM_S = new double[4];
+        double[] anglesRad = new double[4];
+        for (int i = 0; i < 1000; ++i) {
+            double vx = 2 * random.nextGaussian();
+            double vy = 2 * random.nextGaussian();
+            double omega = 3 * random.nextGaussian();
+            double gyroRate = random.nextGaussian();
+            SwerveModuleState[] expected = limits.toSwerveModuleStates(
+                    new ChassisSpeeds(vx, vy, omega), gyroRate, kDt);
+            speeds[0] = vx;
+            speeds[1] = vy;
+            speeds[2] = omega;
+            limits.toSwerveModuleStates(speeds, gyroRate, kDt, scratch, speedsM_S, anglesRad);
+            for (int j = 0; j < 4; ++j) {
+                assertEquals(expected[j].speedMetersPerSecond, speedsM_S[j], kDelta);
+                assertEquals(expected[j].angle.getRadians(), anglesRad[j], kDelta);
+            }
+            // input is not modified
+            assertEquals(vx, speeds[0], 0);
+        }
+    }
+
+    @Test
+    void testInverseAtRest() {
+        double[] scratch = new double[3];
+        double[] speedsM_S = new double[4];
+        double[] anglesRad = new double[4];
+        // moving sideways
+        limits.toSwerveModuleStates(new double[] { 0, 1, 0 }, 0, kDt, scratch, speedsM_S, anglesRad);
+        assertEquals(1, speedsM_S[0], kDelta);
+        assertEquals(Math.PI / 2, anglesRad[0], kDelta);
+        // stopping keeps the previous angle, like SwerveDriveKinematics does.
+        limits.toSwerveModuleStates(new double[] { 0, 0, 0 }, 0, kDt, scratch, speedsM_S, anglesRad);
+        for (int j = 0; j < 4; ++j) {
+            assertEquals(0, speedsM_S[j], kDelta);
+            assertEquals(Math.PI / 2, anglesRad[j], kDelta);
+        }
+    }
+
+    @Test
+    void testForward() {
+        Random random = new Random(1);
+        double[] speedsM_S = new double[4];
+        double[] anglesRad = new double[4];
+        double[] out = new double[3];
+        SwerveModuleState[] states = new SwerveModuleState[4];
+        for (int i = 0; i < 1000; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                speedsM_S[j] = 2 * random.nextGaussian();
+                anglesRad[j] = Math.PI * (2 * random.nextDouble() - 1);
+                states[j] = new SwerveModuleState(speedsM_S[j], new Rotation2d(anglesRad[j]));
+            }
+            ChassisSpeeds expected = limits.toChassisSpeeds(states);
+            limits.toChassisSpeeds(speedsM_S, anglesRad, out);
+            assertEquals(expected.vxMetersPerSecond, out[0], kDelta);
+            assertEquals(expected.vyMetersPerSecond, out[1], kDelta);
+            assertEquals(expected.omegaRadiansPerSecond, out[2], kDelta);
+
+            double gyroRate = random.nextGaussian();
+            expected = limits.toChassisSpeedsWithDiscretization(gyroRate, kDt, states);
+            limits.toChassisSpeedsWithDiscretization(gyroRate, kDt, speedsM_S, anglesRad, out);
+            assertEquals(expected.vxMetersPerSecond, out[0], kDelta);
+            assertEquals(expected.vyMetersPerSecond, out[1], kDelta);
+            assertEquals(expected.omegaRadiansPerSecond, out[2], kDelta);
+        }
+    }
+
+    @Test
+    void testDiscretize() {
+        Random random = new Random(2);
+        double[] out = new double[3];
+        for (int i = 0; i < 1000; ++i) {
+            double vx = 2 * random.nextGaussian();
+            double vy = 2 * random.nextGaussian();
+            double omega = 3 * random.nextGaussian();
+            ChassisSpeeds expected = ChassisSpeeds.discretize(vx, vy, omega, kDt);
+            FourModuleKinematics.discretize(vx, vy, omega, kDt, out);
+            assertEquals(expected.vxMetersPerSecond, out[0], kDelta);
+            assertEquals(expected.vyMetersPerSecond, out[1], kDelta);
+            assertEquals(expected.omegaRadiansPerSecond, out[2], kDelta);
+        }
+    }
+
+    @Test
+    void testDesaturation() {
+        Random random = new Random(3);
+        double[] speeds = new double[3];
+        for (int i = 0; i < 1000; ++i) {
+            double vx = 4 * random.nextGaussian();
+            double vy = 4 * random.nextGaussian();
+            double omega = 10 * random.nextGaussian();
+            Twist2d expected = limits.analyticDesaturation(new Twist2d(vx, vy, omega));
+            speeds[0] = vx;
+            speeds[1] = vy;
+            speeds[2] = omega;
+            limits.analyticDesaturation(speeds);
+            assertEquals(expected.dx, speeds[0], kDelta);
+            assertEquals(expected.dy, speeds[1], kDelta);
+            assertEquals(expected.dtheta, speeds[2], kDelta);
+        }
+    }
+
+    @Test
+    void testWheelDesaturation() {
+        Random random = new Random(4);
+        double[] speedsM_S = new double[4];
+        SwerveModuleState[] states = new SwerveModuleState[4];
+        for (int i = 0; i < 1000; ++i) {
+            for (int j = 0; j < 4; ++j) {
+                speedsM_S[j] = 6 * random.nextGaussian();
+                states[j] = new SwerveModuleState(speedsM_S[j], new Rotation2d());
+            }
+            SwerveDriveKinematics.desaturateWheelSpeeds(states, 4);
+            FourModuleKinematics.desaturateWheelSpeeds(speedsM_S, 4);
+            for (int j = 0; j < 4; ++j) {
+                assertEquals(states[j].speedMetersPerSecond, speedsM_S[j], kDelta);
+            }
+        }
+    }
+
+    /** Compare the cost of the WPILib path and the kernel. */
+    @Test
+    void testBenchmark() {
+        int iterations = 100000;
+        double[] speeds = new double[3];
+        double[] scratch = new double[3];
+        double[] speedsM_S = new double[4];
+        double[] anglesRad = new double[4];
+        double[] out = new double[3];
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                ChassisSpeeds in = new ChassisSpeeds(1 + i * 1e-6, 0.5, 0.3);
+                SwerveModuleState[] states = limits.toSwerveModuleStates(in, 0.3, kDt);
+                ChassisSpeeds speedsOut = limits.toChassisSpeedsWithDiscretization(0.3, kDt, states);
+                sum += speedsOut.vxMetersPerSecond;
+            }
+            long wpiNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                speeds[0] = 1 + i * 1e-6;
+                speeds[1] = 0.5;
+                speeds[2] = 0.3;
+                limits.toSwerveModuleStates(speeds, 0.3, kDt, scratch, speedsM_S, anglesRad);
+                limits.toChassisSpeedsWithDiscretization(0.3, kDt, speedsM_S, anglesRad, out);
+                sum += out[0];
+            }
+            long kernelNs = System.nanoTime() - startTime;
+            if (dump)
+                Util.printf("round %d ns/op WPI %.1f kernel %.1f speedup %.1f\n",
+                        round, (double) wpiNs / iterations, (double) kernelNs / iterations,
+                        (double) wpiNs / kernelNs);
+        }
+        // keep the JIT from discarding the work
+        assertEquals(true, sum > 0);
+    }
+}
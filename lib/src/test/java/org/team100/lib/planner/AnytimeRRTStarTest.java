@@ -0,0 +1,209 @@
+package org.team100.lib.planner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+class AnytimeRRTStarTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 1e-9;
+
+    /**
+     * A wall of robots across the middle with gaps at the top and bottom, and
+     * another robot off to the side, which later blocks the top gap.
+     */
+    private static CircleArena arena() {
+        CircleArena arena = new CircleArena(new Translation2d(0, 0), new Translation2d(16, 8));
+        arena.add(8, 3, 1);
+        arena.add(8, 5, 1);
+        arena.add(4, 1, 0.5);
+        return arena;
+    }
+
+    private static AnytimeRRTStar tree(Arena arena, int seed) {
+        AnytimeRRTStar tree = new AnytimeRRTStar(arena, 0.4, 0.5, 1.0, 5000, seed);
+        tree.updateObstacles();
+        tree.reset(1, 4);
+        tree.setGoal(15, 4);
+        return tree;
+    }
+
+    /** Every edge is clear, and every cost is the sum of the edges. */
+    private static void assertConsistent(AnytimeRRTStar tree) {
+        int count = 0;
+        for (int n = 0; n < tree.capacity(); ++n) {
+            if (!tree.alive(n))
+                continue;
+            ++count;
+            int p = tree.parent(n);
+            if (n == tree.root()) {
+                assertEquals(-1, p);
+                assertEquals(0, tree.cost(n), kDelta);
+                continue;
+            }
+            assertTrue(tree.alive(p));
+            assertTrue(tree.clear(tree.x(p), tree.y(p), tree.x(n), tree.y(n)));
+            double d = Math.hypot(tree.x(n) - tree.x(p), tree.y(n) - tree.y(p));
+            assertEquals(tree.cost(p) + d, tree.cost(n), kDelta);
+        }
+        assertEquals(tree.size(), count);
+    }
+
+    private static void assertClear(AnytimeRRTStar tree, List<Translation2d> route) {
+        for (int i = 1; i < route.size(); ++i) {
+            Translation2d a = route.get(i - 1);
+            Translation2d b = route.get(i);
+            assertTrue(tree.clear(a.getX(), a.getY(), b.getX(), b.getY()));
+        }
+    }
+
+    @Test
+    void testSegmentDist() {
+        assertEquals(1, AnytimeRRTStar.segmentDistSq(0, 1, -1, 0, 1, 0), kDelta);
+        assertEquals(2, AnytimeRRTStar.segmentDistSq(2, 1, -1, 0, 1, 0), kDelta);
+        assertEquals(1, AnytimeRRTStar.segmentDistSq(0, 1, 0, 0, 0, 0), kDelta);
+    }
+
+    @Test
+    void testRoute() {
+        AnytimeRRTStar tree = tree(arena(), 0);
+        assertFalse(tree.hasRoute());
+        for (int i = 0; i < 3000; ++i) {
+            tree.step();
+        }
+        assertTrue(tree.hasRoute());
+        assertTrue(tree.bestCost() >= 14);
+        List<Translation2d> route = tree.route();
+        assertEquals(1, route.get(0).getX(), kDelta);
+        assertEquals(15, route.get(route.size() - 1).getX(), kDelta);
+        assertClear(tree, route);
+        List<Translation2d> shortcut = tree.shortcut();
+        assertTrue(shortcut.size() <= route.size());
+        assertClear(tree, shortcut);
+        assertConsistent(tree);
+    }
+
+    /** Moving the root keeps the whole tree, with the new costs. */
+    @Test
+    void testReroot() {
+        AnytimeRRTStar tree = tree(arena(), 0);
+        for (int i = 0; i < 3000; ++i) {
+            tree.step();
+        }
+        int size = tree.size();
+        assertTrue(tree.reroot(1.5, 4.2));
+        assertEquals(size + 1, tree.size());
+        assertEquals(1.5, tree.x(tree.root()), kDelta);
+        assertConsistent(tree);
+        assertTrue(tree.hasRoute());
+        // tiny moves don't change anything.
+        assertTrue(tree.reroot(1.51, 4.2));
+        assertEquals(size + 1, tree.size());
+    }
+
+    /** A robot closer to the wall than its radius still plans, from just inside. */
+    @Test
+    void testStartNearWall() {
+        AnytimeRRTStar tree = tree(arena(), 0);
+        tree.reset(0.1, 4);
+        assertEquals(0.4, tree.x(tree.root()), kDelta);
+        assertEquals(4, tree.y(tree.root()), kDelta);
+        for (int i = 0; i < 3000; ++i) {
+            tree.step();
+        }
+        assertTrue(tree.hasRoute());
+        assertConsistent(tree);
+        // rerooting there keeps the tree.
+        assertTrue(tree.reroot(0.1, 4.5));
+        assertEquals(0.4, tree.x(tree.root()), kDelta);
+        assertTrue(tree.hasRoute());
+    }
+
+    /** Moving an obstacle only removes the nodes it blocks. */
+    @Test
+    void testInvalidation() {
+        CircleArena arena = arena();
+        AnytimeRRTStar tree = tree(arena, 0);
+        for (int i = 0; i < 3000; ++i) {
+            tree.step();
+        }
+        int size = tree.size();
+        // the gap at the top is now blocked
+        arena.move(2, 8, 7);
+        int removed = tree.updateObstacles();
+        assertTrue(removed > 0);
+        assertTrue(removed < size / 2, "removed " + removed);
+        assertEquals(size - removed, tree.size());
+        assertConsistent(tree);
+        // nothing moved, so nothing is removed.
+        assertEquals(0, tree.updateObstacles());
+        for (int i = 0; i < 3000; ++i) {
+            tree.step();
+        }
+        assertTrue(tree.hasRoute());
+        assertClear(tree, tree.route());
+        assertConsistent(tree);
+    }
+
+    /** When the arrays are full, the useless subtrees go. */
+    @Test
+    void testFull() {
+        AnytimeRRTStar tree = new AnytimeRRTStar(arena(), 0.4, 0.5, 1.0, 500, 0);
+        tree.updateObstacles();
+        tree.reset(1, 4);
+        tree.setGoal(15, 4);
+        int added = 0;
+        for (int i = 0; i < 20000; ++i) {
+            if (tree.step())
+                ++added;
+        }
+        assertTrue(tree.size() < 500);
+        assertTrue(added > 500);
+        assertTrue(tree.hasRoute());
+        assertConsistent(tree);
+    }
+
+    /**
+     * Time to a clear route after an obstacle moves across the current one, by
+     * fixing the tree, vs starting over.
+     */
+    @Test
+    void testLatency() {
+        int trials = dump ? 20 : 3;
+        long incrementalNs = 0;
+        long scratchNs = 0;
+        for (int trial = 0; trial < trials; ++trial) {
+            CircleArena arena = arena();
+            AnytimeRRTStar tree = tree(arena, trial);
+            for (int i = 0; i < 3000; ++i) {
+                tree.step();
+            }
+            assertTrue(tree.hasRoute());
+            arena.move(2, 8, 7);
+
+            long startNs = System.nanoTime();
+            tree.updateObstacles();
+            while (!tree.hasRoute()) {
+                tree.step();
+            }
+            incrementalNs += System.nanoTime() - startNs;
+
+            startNs = System.nanoTime();
+            AnytimeRRTStar scratch = tree(arena, trial);
+            while (!scratch.hasRoute()) {
+                scratch.step();
+            }
+            scratchNs += System.nanoTime() - startNs;
+        }
+        if (dump)
+            System.out.printf("incremental %.3f ms scratch %.3f ms\n",
+                    incrementalNs / 1e6 / trials, scratchNs / 1e6 / trials);
+        assertTrue(incrementalNs > 0);
+    }
+}
@@ -0,0 +1,103 @@
+package org.team100.lib.planner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.timing.TimingConstraint;
+import org.team100.lib.timing.TimingConstraintFactory;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.TrajectoryPlanner;
+import org.team100.lib.trajectory.TrajectoryPoint;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+class ReplanningServiceTest {
+    private static final boolean dump = false;
+    private static final double kBudgetS = 0.005;
+
+    private final SwerveKinodynamics limits = SwerveKinodynamicsFactory.get();
+    private final List<TimingConstraint> constraints = new TimingConstraintFactory(limits).allGood();
+
+    private ReplanningService service(CircleArena arena) {
+        AnytimeRRTStar tree = new AnytimeRRTStar(arena, 0.4, 0.5, 1.0, 5000, 0);
+        return new ReplanningService(
+                tree, new TrajectoryPlanner(true), constraints, 4, 4, kBudgetS);
+    }
+
+    private static void assertAvoids(CircleArena arena, Trajectory100 trajectory) {
+        for (TrajectoryPoint p : trajectory.getPoints()) {
+            Translation2d t = p.state().state().getPose().getTranslation();
+            for (int i = 0; i < arena.obstacleCount(); ++i) {
+                double d = Math.hypot(t.getX() - arena.obstacleX(i), t.getY() - arena.obstacleY(i));
+                assertTrue(d > arena.obstacleRadius(i), "hit " + i + " at " + t);
+            }
+        }
+    }
+
+    @Test
+    void testTrajectory() {
+        CircleArena arena = new CircleArena(new Translation2d(0, 0), new Translation2d(16, 8));
+        arena.add(8, 4, 1);
+        ReplanningService service = service(arena);
+        Pose2d robot = new Pose2d(2, 4, new Rotation2d());
+        assertNull(service.getTrajectory());
+        service.setGoal(new Pose2d(14, 4, new Rotation2d()));
+        for (int i = 0; i < 20; ++i) {
+            service.update(robot, 0);
+        }
+        Trajectory100 trajectory = service.getTrajectory();
+        assertNotNull(trajectory);
+        assertTrue(service.getVersion() > 0);
+        Pose2d end = trajectory.getLastPoint().state().state().getPose();
+        assertEquals(14, end.getX(), 0.01);
+        assertEquals(4, end.getY(), 0.01);
+        assertAvoids(arena, trajectory);
+
+        int version = service.getVersion();
+        // an obstacle moves across the route, so there's a new trajectory.
+        int blocker = arena.add(1, 1, 0.5);
+        service.update(robot, 0);
+        arena.move(blocker, 5, end.getY() + 0.1);
+        service.update(robot, 0);
+        assertTrue(service.getVersion() > version);
+        for (int i = 0; i < 20; ++i) {
+            service.update(robot, 0);
+        }
+        assertNotNull(service.getTrajectory());
+        assertAvoids(arena, service.getTrajectory());
+    }
+
+    /** Cycle time while the robot and an obstacle both move. */
+    @Test
+    void testBudget() {
+        CircleArena arena = new CircleArena(new Translation2d(0, 0), new Translation2d(16, 8));
+        arena.add(8, 4, 1);
+        int mover = arena.add(10, 6, 0.5);
+        ReplanningService service = service(arena);
+        service.setGoal(new Pose2d(14, 4, new Rotation2d()));
+        long worstNs = 0;
+        for (int i = 0; i < 100; ++i) {
+            // robot and obstacle drift along
+            Pose2d robot = new Pose2d(2 + 0.02 * i, 4, new Rotation2d());
+            arena.move(mover, 10, 6 - 0.02 * i);
+            long startNs = System.nanoTime();
+            service.update(robot, 1);
+            long elapsedNs = System.nanoTime() - startNs;
+            // skip warmup
+            if (i > 20)
+                worstNs = Math.max(worstNs, elapsedNs);
+        }
+        if (dump)
+            System.out.printf("worst cycle %.3f ms\n", worstNs / 1e6);
+        assertNotNull(service.getTrajectory());
+    }
+}
@@ -0,0 +1,190 @@
+package org.team100.lib.selftest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+class SelfTestEngineTest implements Timeless {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final double kPeriodS = 0.02;
+
+    /** Observes for a while, and always passes. */
+    private static class Observer extends Command {
+        private final SelfTestListener m_listener;
+        private final double m_durationS;
+        private final Timer m_timer;
+
+        Observer(String name, SelfTestListener listener, double durationS) {
+            setName(name);
+            m_listener = listener;
+            m_durationS = durationS;
+            m_timer = new Timer();
+        }
+
+        @Override
+        public void initialize() {
+            m_timer.restart();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return m_timer.get() > m_durationS;
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            m_listener.metric(this, "duration", m_timer.get());
+            m_listener.pass(this, "ok");
+        }
+    }
+
+    private final Subsystem m_drive = new Subsystem() {
+    };
+    private final Subsystem m_intake = new Subsystem() {
+    };
+    private final Subsystem m_amp = new Subsystem() {
+    };
+    private final Subsystem m_shooter = new Subsystem() {
+    };
+
+    /** Cases that share a subsystem run in order; the others run alongside. */
+    @Test
+    void testOrder() {
+        SelfTestListener listener = new SelfTestListener();
+        SelfTestEngine engine = new SelfTestEngine(listener);
+        engine.addCase(new Observer("drive 1", listener, 1), Commands.run(() -> {
+        }, m_drive));
+        engine.addCase(new Observer("intake", listener, 1), Commands.run(() -> {
+        }, m_intake));
+        engine.addCase(new Observer("drive 2", listener, 1), Commands.run(() -> {
+        }, m_drive));
+        engine.addCase(new Observer("battery", listener, 0));
+        assertEquals(2, engine.depth());
+        assertTrue(engine.getRequirements().contains(m_drive));
+        assertTrue(engine.getRequirements().contains(m_intake));
+
+        double startS = Timer.getFPGATimestamp();
+        run(engine);
+
+        List<SelfTestListener.Result> results = listener.getResults();
+        assertEquals(4, results.size());
+        SelfTestListener.Result drive1 = find(results, "drive 1");
+        SelfTestListener.Result intake = find(results, "intake");
+        SelfTestListener.Result drive2 = find(results, "drive 2");
+        SelfTestListener.Result battery = find(results, "battery");
+        assertEquals(startS, drive1.startS, kDelta);
+        assertEquals(startS, intake.startS, kDelta);
+        assertEquals(startS, battery.startS, kDelta);
+        // drive 2 starts when drive 1 ends
+        assertEquals(drive1.startS + drive1.elapsedS, drive2.startS, kDelta);
+        assertTrue(drive1.passed());
+        assertTrue(drive2.passed());
+        assertEquals(1.02, drive1.metrics.get("duration"), kDelta);
+        if (dump)
+            System.out.print(listener.report());
+    }
+
+    /** Stopping in the middle marks the running cases as interrupted. */
+    @Test
+    void testInterrupt() {
+        SelfTestListener listener = new SelfTestListener();
+        SelfTestEngine engine = new SelfTestEngine(listener);
+        engine.addCase(new Observer("drive 1", listener, 1), Commands.run(() -> {
+        }, m_drive));
+        engine.addCase(new Observer("drive 2", listener, 1), Commands.run(() -> {
+        }, m_drive));
+        engine.initialize();
+        stepTime(kPeriodS);
+        engine.execute();
+        engine.end(true);
+        List<SelfTestListener.Result> results = listener.getResults();
+        // drive 2 never started.
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).interrupted);
+        assertEquals(kPeriodS, results.get(0).elapsedS, kDelta);
+    }
+
+    /**
+     * The whole pit check, with the durations of the real cases: a long chain
+     * of drivetrain cases, and short mechanism cases that don't need the
+     * drivetrain. One at a time, the mechanisms add to the total; with the
+     * engine they hide under the drive cases.
+     */
+    @Test
+    void testWallTime() {
+        SequentialCommandGroup group = new SequentialCommandGroup();
+        pitCheck(new SelfTestListener(), (observer, treatment) -> group.addCommands(
+                new SelfTestCase(observer, treatment)));
+        double sequentialS = run(group);
+
+        SelfTestListener listener = new SelfTestListener();
+        SelfTestEngine engine = new SelfTestEngine(listener);
+        pitCheck(listener, engine::addCase);
+        double engineS = run(engine);
+
+        if (dump) {
+            System.out.print(listener.report());
+            System.out.printf("sequential %.3f s engine %.3f s\n", sequentialS, engineS);
+        }
+        // each case takes one cycle longer than its observer duration.
+        // one at a time, the sum of all of them.
+        assertEquals(56.2, sequentialS, kDelta);
+        // with the engine, just the drive chain.
+        assertEquals(51.12, engineS, kDelta);
+        for (SelfTestListener.Result r : listener.getResults()) {
+            assertTrue(r.passed(), r.name);
+        }
+    }
+
+    private void pitCheck(SelfTestListener listener, BiConsumer<Command, Command> sink) {
+        sink.accept(new Observer("battery", listener, 0), Commands.none());
+        sink.accept(new Observer("drive manually", listener, 2), Commands.run(() -> {
+        }, m_drive));
+        sink.accept(new Observer("defense", listener, 1), Commands.run(() -> {
+        }, m_drive));
+        for (int i = 0; i < 4; ++i) {
+            sink.accept(new Observer("oscillate " + i, listener, 12), Commands.run(() -> {
+            }, m_drive));
+        }
+        sink.accept(new Observer("intake", listener, 1), Commands.run(() -> {
+        }, m_intake));
+        sink.accept(new Observer("amp", listener, 3), Commands.run(() -> {
+        }, m_amp));
+        sink.accept(new Observer("shooter", listener, 1), Commands.run(() -> {
+        }, m_shooter));
+    }
+
+    private static SelfTestListener.Result find(List<SelfTestListener.Result> results, String name) {
+        for (SelfTestListener.Result r : results) {
+            if (r.name.equals(name))
+                return r;
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /** Runs the command the way the scheduler would, returns the elapsed time. */
+    private double run(Command command) {
+        double startS = Timer.getFPGATimestamp();
+        command.initialize();
+        for (int i = 0; i < 10000; ++i) {
+            stepTime(kPeriodS);
+            command.execute();
+            if (command.isFinished())
+                break;
+        }
+        command.end(false);
+        return Timer.getFPGATimestamp() - startS;
+    }
+}
@@ -0,0 +1,182 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.timing.TimedPose;
+import org.team100.lib.timing.TimingConstraint;
+import org.team100.lib.timing.TimingConstraintFactory;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class TrajectoryCacheTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final double kFieldWidthM = 8.221;
+    private static final double kDtS = 0.02;
+
+    private final SwerveKinodynamics limits = SwerveKinodynamicsFactory.get();
+    private final List<TimingConstraint> constraints = new TimingConstraintFactory(limits).allGood();
+
+    /** Subwoofer to note 3, like the four-note auto, blue side. */
+    private final TrajectoryCache.Request blue = new TrajectoryCache.Request(
+            List.of(
+                    new Pose2d(1.38, 5.57, Rotation2d.fromDegrees(-120)),
+                    new Pose2d(1.92, 4.84, Rotation2d.fromDegrees(-20)),
+                    new Pose2d(2.90, 4.11, Rotation2d.fromDegrees(-20))),
+            List.of(
+                    new Rotation2d(Math.PI),
+                    Rotation2d.fromDegrees(160),
+                    Rotation2d.fromDegrees(160)),
+            constraints, 2, 2);
+
+    @Test
+    void testHit() {
+        TrajectoryCache cache = new TrajectoryCache(new TrajectoryPlanner(), kFieldWidthM);
+        assertFalse(cache.contains(blue));
+        Trajectory100 t0 = cache.get(blue);
+        assertTrue(cache.contains(blue));
+        Trajectory100 t1 = cache.get(blue);
+        assertSame(t0, t1);
+        assertEquals(1, cache.plans());
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.mirrors());
+    }
+
+    /** Tiny differences in the request don't matter. */
+    @Test
+    void testRounding() {
+        TrajectoryCache cache = new TrajectoryCache(new TrajectoryPlanner(), kFieldWidthM);
+        Trajectory100 t0 = cache.get(blue);
+        List<Pose2d> waypoints = new ArrayList<>();
+        for (Pose2d p : blue.waypoints()) {
+            waypoints.add(new Pose2d(p.getX() + 1e-9, p.getY(), p.getRotation()));
+        }
+        // same angle, other side of the branch cut
+        List<Rotation2d> headings = List.of(
+                new Rotation2d(-Math.PI),
+                Rotation2d.fromDegrees(-200),
+                Rotation2d.fromDegrees(160));
+        TrajectoryCache.Request nearly = new TrajectoryCache.Request(waypoints, headings, constraints, 2, 2);
+        assertSame(t0, cache.get(nearly));
+        assertEquals(1, cache.plans());
+    }
+
+    /** Different limits or constraints are different legs. */
+    @Test
+    void testMiss() {
+        TrajectoryCache cache = new TrajectoryCache(new TrajectoryPlanner(), kFieldWidthM);
+        cache.get(blue);
+        cache.get(new TrajectoryCache.Request(blue.waypoints(), blue.headings(), constraints, 3, 2));
+        cache.get(new TrajectoryCache.Request(blue.waypoints(), blue.headings(), List.of(), 2, 2));
+        assertEquals(3, cache.plans());
+        assertEquals(3, cache.size());
+    }
+
+    /** The red leg is the mirror of the blue leg, and matches planning it. */
+    @Test
+    void testMirror() {
+        TrajectoryCache cache = new TrajectoryCache(new TrajectoryPlanner(), kFieldWidthM);
+        TrajectoryCache.Request red = blue.mirror(kFieldWidthM);
+        Trajectory100 blueTrajectory = cache.get(blue);
+        Trajectory100 mirrored = cache.get(red);
+        assertEquals(1, cache.plans());
+        assertEquals(1, cache.mirrors());
+        assertEquals(blueTrajectory.length(), mirrored.length());
+
+        Trajectory100 planned = new TrajectoryPlanner().generateTrajectory(
+                false, red.waypoints(), red.headings(), constraints, 2, 2);
+        TrajectoryTimeSampler plannedSampler = new TrajectoryTimeSampler(planned);
+        TrajectoryTimeSampler mirroredSampler = new TrajectoryTimeSampler(mirrored);
+        double duration = plannedSampler.getEndS();
+        assertEquals(duration, mirroredSampler.getEndS(), kDelta);
+        for (double t = 0; t < duration; t += kDtS) {
+            TimedPose expected = plannedSampler.sample(t).get().state();
+            TimedPose actual = mirroredSampler.sample(t).get().state();
+            Pose2d expectedPose = expected.state().getPose();
+            Pose2d actualPose = actual.state().getPose();
+            assertEquals(expected.velocityM_S(), actual.velocityM_S(), kDelta);
+            assertEquals(expectedPose.getX(), actualPose.getX(), kDelta);
+            assertEquals(expectedPose.getY(), actualPose.getY(), kDelta);
+            assertEquals(0, expectedPose.getRotation().minus(actualPose.getRotation()).getRadians(), kDelta);
+        }
+        // mirroring twice is the identity
+        assertEquals(blue, red.mirror(kFieldWidthM));
+    }
+
+    /** Callers asking for a leg that's being planned wait for it. */
+    @Test
+    void testConcurrent() throws Exception {
+        TrajectoryCache cache = new TrajectoryCache(new TrajectoryPlanner(), kFieldWidthM);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Trajectory100>> results = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                results.add(executor.submit(() -> cache.get(blue)));
+            }
+            Trajectory100 t0 = results.get(0).get();
+            for (Future<Trajectory100> result : results) {
+                assertSame(t0, result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, cache.plans());
+        assertEquals(3, cache.hits());
+        assertEquals(1, cache.size());
+    }
+
+    /** Compare planning, mirroring, and hits. */
+    @Test
+    void testBenchmark() {
+        TrajectoryPlanner planner = new TrajectoryPlanner();
+        TrajectoryCache.Request red = blue.mirror(kFieldWidthM);
+        int iterations = 10;
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                TrajectoryCache cache = new TrajectoryCache(planner, kFieldWidthM);
+                sum += cache.get(blue).length();
+                sum += cache.get(red).length();
+            }
+            long mirrorNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                sum += planner.generateTrajectory(
+                        false, blue.waypoints(), blue.headings(), constraints, 2, 2).length();
+                sum += planner.generateTrajectory(
+                        false, red.waypoints(), red.headings(), constraints, 2, 2).length();
+            }
+            long planNs = System.nanoTime() - startTime;
+
+            TrajectoryCache cache = new TrajectoryCache(planner, kFieldWidthM);
+            cache.get(blue);
+            startTime = System.nanoTime();
+            for (int i = 0; i < iterations; ++i) {
+                sum += cache.get(blue).length();
+            }
+            long hitNs = System.nanoTime() - startTime;
+            if (dump)
+                Util.printf("round %d ms/alliance-pair plan %.2f mirror %.2f hit us %.2f\n",
+                        round, planNs / 1e6 / iterations, mirrorNs / 1e6 / iterations,
+                        hitNs / 1e3 / iterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(sum > 0);
+    }
+}
@@ -0,0 +1,150 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.drivetrain.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.timing.TimedPose;
+import org.team100.lib.timing.TimingConstraint;
+import org.team100.lib.timing.TimingConstraintFactory;
+import org.team100.lib.util.Util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Compares adaptive sampling with the dense reference, using paths like the
+ * ones in the 2024 autos.
+ */
+class TrajectoryPlannerTest {
+    private static final boolean dump = false;
+    private static final double kDtS = 0.02;
+
+    private final SwerveKinodynamics limits = SwerveKinodynamicsFactory.get();
+    private final List<TimingConstraint> constraints = new TimingConstraintFactory(limits).allGood();
+
+    /** Straight line, like the tuning trajectory. */
+    private static final List<Pose2d> kStraight = List.of(
+            new Pose2d(2, 2, new Rotation2d()),
+            new Pose2d(5, 2, new Rotation2d()));
+    private static final List<Rotation2d> kStraightHeadings = List.of(
+            new Rotation2d(Math.PI),
+            new Rotation2d(Math.PI));
+
+    /** Subwoofer to center note through the stage, turning the whole way. */
+    private static final List<Pose2d> kThroughStage = List.of(
+            new Pose2d(1.38, 5.57, Rotation2d.fromDegrees(-20)),
+            new Pose2d(5.0, 4.2, Rotation2d.fromDegrees(-3)),
+            new Pose2d(8.27, 4.11, Rotation2d.fromDegrees(-3)));
+    private static final List<Rotation2d> kThroughStageHeadings = List.of(
+            new Rotation2d(Math.PI),
+            new Rotation2d(Math.PI),
+            Rotation2d.fromDegrees(150));
+
+    /** Note to note with a sharp reversal, like the adjacent-note autos. */
+    private static final List<Pose2d> kAdjacent = List.of(
+            new Pose2d(2.9, 7.0, Rotation2d.fromDegrees(-150)),
+            new Pose2d(2.0, 5.6, Rotation2d.fromDegrees(-90)),
+            new Pose2d(2.9, 4.1, Rotation2d.fromDegrees(-30)));
+    private static final List<Rotation2d> kAdjacentHeadings = List.of(
+            Rotation2d.fromDegrees(200),
+            new Rotation2d(Math.PI),
+            Rotation2d.fromDegrees(160));
+
+    @Test
+    void testStraight() {
+        Trajectory100 adaptive = verify(kStraight, kStraightHeadings);
+        // a straight line needs very few points.
+        assertTrue(adaptive.length() < 100, "length " + adaptive.length());
+    }
+
+    @Test
+    void testThroughStage() {
+        verify(kThroughStage, kThroughStageHeadings);
+    }
+
+    @Test
+    void testAdjacent() {
+        verify(kAdjacent, kAdjacentHeadings);
+    }
+
+    @Test
+    void testBenchmark() {
+        List<List<Pose2d>> paths = List.of(kStraight, kThroughStage, kAdjacent);
+        List<List<Rotation2d>> headings = List.of(kStraightHeadings, kThroughStageHeadings, kAdjacentHeadings);
+        TrajectoryPlanner dense = new TrajectoryPlanner();
+        TrajectoryPlanner adaptive = new TrajectoryPlanner(true);
+        int iterations = 20;
+        for (int i = 0; i < paths.size(); ++i) {
+            // warm up
+            dense.generateTrajectory(false, paths.get(i), headings.get(i), constraints, 2, 2);
+            adaptive.generateTrajectory(false, paths.get(i), headings.get(i), constraints, 2, 2);
+
+            long startTime = System.nanoTime();
+            Trajectory100 d = null;
+            for (int j = 0; j < iterations; ++j) {
+                d = dense.generateTrajectory(false, paths.get(i), headings.get(i), constraints, 2, 2);
+            }
+            long denseNs = (System.nanoTime() - startTime) / iterations;
+
+            startTime = System.nanoTime();
+            Trajectory100 a = null;
+            for (int j = 0; j < iterations; ++j) {
+                a = adaptive.generateTrajectory(false, paths.get(i), headings.get(i), constraints, 2, 2);
+            }
+            long adaptiveNs = (System.nanoTime() - startTime) / iterations;
+
+            assertTrue(a.length() < d.length());
+            if (dump)
+                Util.printf("path %d points dense %d adaptive %d time (ms) dense %.3f adaptive %.3f speedup %.1f\n",
+                        i, d.length(), a.length(), denseNs / 1e6, adaptiveNs / 1e6, (double) denseNs / adaptiveNs);
+        }
+    }
+
+    /**
+     * Plan the path both ways, and verify that the adaptive trajectory is
+     * smaller and follows the dense one closely.
+     */
+    private Trajectory100 verify(List<Pose2d> waypoints, List<Rotation2d> headings) {
+        Trajectory100 dense = new TrajectoryPlanner().generateTrajectory(
+                false, waypoints, headings, constraints, 2, 2);
+        Trajectory100 adaptive = new TrajectoryPlanner(true).generateTrajectory(
+                false, waypoints, headings, constraints, 2, 2);
+        assertFalse(dense.isEmpty());
+        assertFalse(adaptive.isEmpty());
+        assertTrue(adaptive.length() < dense.length(),
+                String.format("dense %d adaptive %d", dense.length(), adaptive.length()));
+
+        TrajectoryTimeSampler denseSampler = new TrajectoryTimeSampler(dense);
+        TrajectoryTimeSampler adaptiveSampler = new TrajectoryTimeSampler(adaptive);
+        double duration = denseSampler.getEndS();
+        assertEquals(duration, adaptiveSampler.getEndS(), 0.02 * duration);
+
+        double maxPositionError = 0;
+        double maxHeadingError = 0;
+        double maxVelocityError = 0;
+        for (double t = 0; t < duration; t += kDtS) {
+            TimedPose d = denseSampler.sample(t).get().state();
+            TimedPose a = adaptiveSampler.sample(t).get().state();
+            Translation2d dt = d.state().getPose().getTranslation();
+            Translation2d at = a.state().getPose().getTranslation();
+            maxPositionError = Math.max(maxPositionError, dt.getDistance(at));
+            maxHeadingError = Math.max(maxHeadingError, Math.abs(
+                    d.state().getHeading().minus(a.state().getHeading()).getRadians()));
+            maxVelocityError = Math.max(maxVelocityError, Math.abs(d.velocityM_S() - a.velocityM_S()));
+        }
+        if (dump)
+            Util.printf("dense %d adaptive %d position %.4f heading %.4f velocity %.4f\n",
+                    dense.length(), adaptive.length(), maxPositionError, maxHeadingError, maxVelocityError);
+        assertTrue(maxPositionError < 0.05, "position " + maxPositionError);
+        assertTrue(maxHeadingError < 0.05, "heading " + maxHeadingError);
+        assertTrue(maxVelocityError < 0.1, "velocity " + maxVelocityError);
+        return adaptive;
+    }
+}
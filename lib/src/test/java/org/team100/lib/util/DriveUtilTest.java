@@ -1,6 +1,7 @@
 package org.team100.lib.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.Test;
 
@@ -35,4 +36,31 @@ class DriveUtilTest {
         }
     }
 
+    @Test
+    void testClampTwistInPlace() {
+        Twist2d out = new Twist2d();
+        // clip to the unit circle.
+        Twist2d actual = DriveUtil.clampTwist(new Twist2d(1, 1, 0.5), 1, out);
+        assertSame(out, actual);
+        assertEquals(0.707, actual.dx, kDelta);
+        assertEquals(0.707, actual.dy, kDelta);
+        assertEquals(0.5, actual.dtheta, kDelta);
+        // zero is still zero, written to the output.
+        DriveUtil.clampTwist(new Twist2d(0, 0, 0.5), 1, out);
+        assertEquals(0, out.dx, kDelta);
+        assertEquals(0, out.dy, kDelta);
+        assertEquals(0.5, out.dtheta, kDelta);
+    }
+
+    @Test
+    void testScaleInPlace() {
+        Twist2d t = new Twist2d(0.5, -2, 1);
+        // the input can be the output.
+        Twist2d actual = DriveUtil.scale(t, 4, 2, t);
+        assertSame(t, actual);
+        assertEquals(2, t.dx, kDelta);
+        assertEquals(-4, t.dy, kDelta);
+        assertEquals(2, t.dtheta, kDelta);
+    }
+
 }
@@ -0,0 +1,106 @@
+package org.team100.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.wpilibj.Timer;
+
+class HousekeepingTest implements Timeless {
+    private static final double kPeriodS = 0.02;
+
+    private int m_fast;
+    private int m_slow;
+
+    @Test
+    void testPeriod() {
+        Housekeeping h = new Housekeeping(kPeriodS);
+        h.register("fast", 0.1, () -> ++m_fast);
+        h.register("slow", 1, () -> ++m_slow);
+        // stay away from the due times
+        stepTime(0.01);
+        for (int i = 0; i < 100; ++i) {
+            stepTime(kPeriodS);
+            h.run(Timer.getFPGATimestamp());
+        }
+        // two seconds
+        assertEquals(20, m_fast);
+        assertEquals(2, m_slow);
+    }
+
+    /** With no slack at all, due tasks wait. */
+    /** A task with no period would run forever. */
+    @Test
+    void testBadPeriod() {
+        Housekeeping h = new Housekeeping(kPeriodS);
+        assertThrows(IllegalArgumentException.class, () -> h.register("zero", 0, () -> ++m_fast));
+        assertThrows(IllegalArgumentException.class, () -> h.register("negative", -1, () -> ++m_fast));
+    }
+
+    @Test
+    void testTight() {
+        Housekeeping h = new Housekeeping(kPeriodS);
+        h.register("fast", 0.1, () -> ++m_fast);
+        stepTime(0.11);
+        // the cycle started a whole period ago
+        h.run(Timer.getFPGATimestamp() - kPeriodS);
+        assertEquals(0, m_fast);
+        assertEquals(1, h.getTasks().get(0).m_deferrals);
+        // then there's time
+        stepTime(kPeriodS);
+        h.run(Timer.getFPGATimestamp());
+        assertEquals(1, m_fast);
+    }
+
+    /** If the loop is always tight, starved tasks still run, one per cycle. */
+    @Test
+    void testStarved() {
+        Housekeeping h = new Housekeeping(kPeriodS);
+        h.register("a", 0.1, () -> ++m_fast);
+        h.register("b", 0.1, () -> ++m_slow);
+        stepTime(0.11);
+        for (int i = 0; i < 24; ++i) {
+            stepTime(kPeriodS);
+            h.run(Timer.getFPGATimestamp() - kPeriodS);
+        }
+        assertEquals(0, m_fast + m_slow);
+        stepTime(0.1);
+        h.run(Timer.getFPGATimestamp() - kPeriodS);
+        assertEquals(1, m_fast + m_slow);
+        stepTime(kPeriodS);
+        h.run(Timer.getFPGATimestamp() - kPeriodS);
+        assertEquals(1, m_fast);
+        assertEquals(1, m_slow);
+    }
+
+    /**
+     * A task that takes longer than the budget runs once, and then waits until
+     * it's starved, so the cheap one keeps going.
+     */
+    @Test
+    void testCost() {
+        Housekeeping h = new Housekeeping(kPeriodS);
+        h.register("expensive", 0.1, () -> {
+            ++m_slow;
+            long end = System.nanoTime() + 3000000;
+            while (System.nanoTime() < end) {
+                //
+            }
+        });
+        h.register("cheap", 0.1, () -> ++m_fast);
+        stepTime(0.01);
+        for (int i = 0; i < 10; ++i) {
+            stepTime(kPeriodS);
+            h.run(Timer.getFPGATimestamp());
+        }
+        Housekeeping.Task expensive = h.getTasks().get(0);
+        assertEquals(1, m_slow);
+        assertEquals(2, m_fast);
+        assertTrue(expensive.m_lastS >= 0.003);
+        assertTrue(expensive.m_maxS >= 0.003);
+        assertTrue(expensive.m_deferrals > 0);
+    }
+}
@@ -0,0 +1,213 @@
+package org.team100.log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * All the records for one entry, in time order, as primitive arrays.
+ *
+ * Scalar types are decoded into arrays of the same width. Everything else
+ * (strings, arrays, structs, msgpack) is kept as an offset and length into the
+ * mapped file, and decoded on demand.
+ */
+public final class Column {
+    public enum Type {
+        DOUBLE,
+        /** Widened to double. */
+        FLOAT,
+        INT64,
+        BOOLEAN,
+        /** Left in the file. */
+        RAW
+    }
+
+    private final String m_name;
+    private final String m_typeString;
+    private final String m_metadata;
+    private final Type m_type;
+    private final ByteBuffer m_buf;
+
+    final long[] m_timeUs;
+    final double[] m_doubles;
+    final long[] m_longs;
+    final boolean[] m_booleans;
+    final int[] m_offsets;
+    final int[] m_lengths;
+
+    Column(String name, String typeString, String metadata, ByteBuffer buf, int size) {
+        m_name = name;
+        m_typeString = typeString;
+        m_metadata = metadata;
+        m_type = type(typeString);
+        m_buf = buf;
+        m_timeUs = new long[size];
+        m_doubles = m_type == Type.DOUBLE || m_type == Type.FLOAT ? new double[size] : null;
+        m_longs = m_type == Type.INT64 ? new long[size] : null;
+        m_booleans = m_type == Type.BOOLEAN ? new boolean[size] : null;
+        m_offsets = m_type == Type.RAW ? new int[size] : null;
+        m_lengths = m_type == Type.RAW ? new int[size] : null;
+    }
+
+    static Type type(String typeString) {
+        switch (typeString) {
+            case "double":
+                return Type.DOUBLE;
+            case "float":
+                return Type.FLOAT;
+            case "int64":
+                return Type.INT64;
+            case "boolean":
+                return Type.BOOLEAN;
+            default:
+                return Type.RAW;
+        }
+    }
+
+    /**
+     * Decode the payload at the given position into row i. The payload size
+     * has already been checked against the file length.
+     */
+    void decode(int i, long timeUs, int pos, int size) {
+        m_timeUs[i] = timeUs;
+        switch (m_type) {
+            case DOUBLE:
+                m_doubles[i] = size == 8 ? m_buf.getDouble(pos) : Double.NaN;
+                break;
+            case FLOAT:
+                m_doubles[i] = size == 4 ? m_buf.getFloat(pos) : Double.NaN;
+                break;
+            case INT64:
+                m_longs[i] = size == 8 ? m_buf.getLong(pos) : 0;
+                break;
+            case BOOLEAN:
+                m_booleans[i] = size == 1 && m_buf.get(pos) != 0;
+                break;
+            default:
+                m_offsets[i] = pos;
+                m_lengths[i] = size;
+        }
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    /** The WPILOG type string, e.g. "double" or "struct:Pose2d". */
+    public String getTypeString() {
+        return m_typeString;
+    }
+
+    public String getMetadata() {
+        return m_metadata;
+    }
+
+    public Type getType() {
+        return m_type;
+    }
+
+    public int size() {
+        return m_timeUs.length;
+    }
+
+    public long getTimeUs(int i) {
+        return m_timeUs[i];
+    }
+
+    /** Any scalar type as a double; booleans are 0 or 1. */
+    public double getDouble(int i) {
+        switch (m_type) {
+            case DOUBLE:
+            case FLOAT:
+                return m_doubles[i];
+            case INT64:
+                return m_longs[i];
+            case BOOLEAN:
+                return m_booleans[i] ? 1 : 0;
+            default:
+                throw new IllegalStateException(m_name + " is not a scalar: " + m_typeString);
+        }
+    }
+
+    public long getLong(int i) {
+        if (m_type != Type.INT64)
+            throw new IllegalStateException(m_name + " is not int64: " + m_typeString);
+        return m_longs[i];
+    }
+
+    public boolean getBoolean(int i) {
+        if (m_type != Type.BOOLEAN)
+            throw new IllegalStateException(m_name + " is not boolean: " + m_typeString);
+        return m_booleans[i];
+    }
+
+    /**
+     * The payload of row i, as a little-endian view of the file, for structs
+     * and arrays. Doesn't copy.
+     */
+    public ByteBuffer getRaw(int i) {
+        if (m_type != Type.RAW)
+            throw new IllegalStateException(m_name + " is a scalar: " + m_typeString);
+        return m_buf.slice(m_offsets[i], m_lengths[i]).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public String getString(int i) {
+        ByteBuffer raw = getRaw(i);
+        byte[] b = new byte[raw.remaining()];
+        raw.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** For "double[]" and double-only structs like Pose2d. */
+    public double[] getDoubleArray(int i) {
+        ByteBuffer raw = getRaw(i);
+        double[] result = new double[raw.remaining() / 8];
+        raw.asDoubleBuffer().get(result);
+        return result;
+    }
+
+    /** Index of the first row at or after the time, or size() if none. */
+    public int lowerBound(long timeUs) {
+        int lo = 0;
+        int hi = m_timeUs.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_timeUs[mid] < timeUs)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** Index of the last row at or before the time, or -1 if none. */
+    public int atOrBefore(long timeUs) {
+        return lowerBound(timeUs + 1) - 1;
+    }
+
+    /**
+     * Sample-and-hold onto a regular grid, like the "pad" in log2df. Times
+     * before the first row are NaN.
+     *
+     * @param startUs  first sample time
+     * @param periodUs time between samples
+     * @param count    number of samples
+     */
+    public double[] resample(long startUs, long periodUs, int count) {
+        double[] result = new double[count];
+        int row = atOrBefore(startUs);
+        for (int k = 0; k < count; ++k) {
+            long timeUs = startUs + k * periodUs;
+            // the grid only goes forward, so just walk.
+            while (row + 1 < m_timeUs.length && m_timeUs[row + 1] <= timeUs)
+                ++row;
+            result[k] = row < 0 ? Double.NaN : getDouble(row);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return m_name + " (" + m_typeString + ", " + size() + ")";
+    }
+}
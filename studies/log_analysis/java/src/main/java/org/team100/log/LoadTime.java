@@ -0,0 +1,32 @@
+package org.team100.log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Time to load a log, to compare with loadtime.py.
+ *
+ * Usage: LoadTime file.wpilog [reps]
+ */
+public class LoadTime {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadTime <file> [reps]");
+            System.exit(1);
+        }
+        Path path = Path.of(args[0]);
+        int reps = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        for (int i = 0; i < reps; ++i) {
+            // the first one includes warmup and the page cache
+            long startNs = System.nanoTime();
+            WpiLog log = WpiLog.open(path);
+            long elapsedNs = System.nanoTime() - startNs;
+            long rows = 0;
+            for (Column c : log.getColumns()) {
+                rows += c.size();
+            }
+            System.out.printf("%d columns %d rows %.3f s\n",
+                    log.getColumns().size(), rows, elapsedNs / 1e9);
+        }
+    }
+}
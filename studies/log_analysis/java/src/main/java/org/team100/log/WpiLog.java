@@ -0,0 +1,358 @@
+package org.team100.log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a whole WPILOG file into columns, one per entry.
+ *
+ * This does the same job as scan.py, but the file is memory-mapped, and the
+ * records are decoded straight into primitive arrays, without making an object
+ * per record.
+ *
+ * Records have no sync marker, so the file can't be split blindly. Instead
+ * there are two passes:
+ *
+ * 1. A sequential pass reads only the record headers, handles the control
+ * records, and counts the records for each column in each chunk of the file.
+ *
+ * 2. The chunks are decoded in parallel. Each chunk knows where its rows go in
+ * each column, from the counts, so there's no locking, and the rows come out
+ * in file order.
+ *
+ * See
+ * https://github.com/wpilibsuite/allwpilib/blob/main/wpiutil/doc/datalog.adoc
+ */
+public final class WpiLog {
+    private static final byte[] kMagic = "WPILOG".getBytes(StandardCharsets.US_ASCII);
+    private static final int kControlStart = 0;
+    private static final int kControlFinish = 1;
+    private static final int kControlSetMetadata = 2;
+    /** Big enough to be worth a task. */
+    static final int kChunkBytes = 1 << 22;
+
+    private final int m_version;
+    private final String m_extraHeader;
+    private final List<Column> m_columns;
+    private final Map<String, Column> m_byName;
+
+    private WpiLog(int version, String extraHeader, List<Column> columns) {
+        m_version = version;
+        m_extraHeader = extraHeader;
+        m_columns = Collections.unmodifiableList(columns);
+        m_byName = new HashMap<>();
+        for (Column c : columns) {
+            // if an entry is restarted, the name refers to the latest one.
+            m_byName.put(c.getName(), c);
+        }
+    }
+
+    /** Map the file and read it. The mapping lives as long as the columns. */
+    public static WpiLog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("too big to map in one piece: " + path);
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), kChunkBytes);
+        }
+    }
+
+    /**
+     * @param chunkBytes approximate size of the parallel tasks; the tests use
+     *                   tiny ones.
+     */
+    static WpiLog read(ByteBuffer file, int chunkBytes) throws IOException {
+        ByteBuffer buf = file.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buf.limit();
+        if (limit < 12 || !buf.slice(0, 6).equals(ByteBuffer.wrap(kMagic)))
+            throw new IOException("not a WPILOG file");
+        int version = Short.toUnsignedInt(buf.getShort(6));
+        if (version < 0x0100)
+            throw new IOException("unsupported version " + Integer.toHexString(version));
+        int extraSize = buf.getInt(8);
+        if (extraSize < 0 || 12 + extraSize > limit)
+            throw new IOException("bad extra header size");
+        String extraHeader = string(buf, 12, extraSize);
+
+        Index index = new Index(buf, chunkBytes);
+        index.scan(12 + extraSize);
+
+        List<Column> columns = new ArrayList<>(index.m_starts.size());
+        int[] totals = new int[index.m_starts.size()];
+        for (Chunk chunk : index.m_chunks) {
+            chunk.m_rowOffsets = new int[chunk.m_counts.length];
+            for (int c = 0; c < chunk.m_counts.length; ++c) {
+                chunk.m_rowOffsets[c] = totals[c];
+                totals[c] += chunk.m_counts[c];
+            }
+        }
+        for (int c = 0; c < totals.length; ++c) {
+            String[] start = index.m_starts.get(c);
+            columns.add(new Column(start[0], start[1], index.m_metadata.get(c), buf, totals[c]));
+        }
+
+        Column[] columnArray = columns.toArray(new Column[0]);
+        IntStream.range(0, index.m_chunks.size()).parallel()
+                .forEach(i -> index.m_chunks.get(i).decode(buf, columnArray));
+
+        return new WpiLog(version, extraHeader, columns);
+    }
+
+    /** Most significant byte is major, so 1.0 is 0x0100. */
+    public int getVersion() {
+        return m_version;
+    }
+
+    public String getExtraHeader() {
+        return m_extraHeader;
+    }
+
+    /** Every column, in the order the entries were started. */
+    public List<Column> getColumns() {
+        return m_columns;
+    }
+
+    /** The latest column with this name, or null. */
+    public Column getColumn(String name) {
+        return m_byName.get(name);
+    }
+
+    /** The columns whose names start with the prefix, in start order. */
+    public List<Column> getColumns(String prefix) {
+        List<Column> result = new ArrayList<>();
+        for (Column c : m_columns) {
+            if (c.getName().startsWith(prefix))
+                result.add(c);
+        }
+        return result;
+    }
+
+    /** Earliest timestamp of any row, or Long.MAX_VALUE if there are none. */
+    public long getStartUs() {
+        long result = Long.MAX_VALUE;
+        for (Column c : m_columns) {
+            if (c.size() > 0)
+                result = Math.min(result, c.getTimeUs(0));
+        }
+        return result;
+    }
+
+    /** Latest timestamp of any row, or Long.MIN_VALUE if there are none. */
+    public long getEndUs() {
+        long result = Long.MIN_VALUE;
+        for (Column c : m_columns) {
+            if (c.size() > 0)
+                result = Math.max(result, c.getTimeUs(c.size() - 1));
+        }
+        return result;
+    }
+
+    /**
+     * Sample-and-hold of all the matching scalar columns onto the same grid,
+     * i.e. a data frame. Rows are samples, columns are in the order of
+     * {@link #getColumns(String)}, skipping the non-scalar ones.
+     */
+    public double[][] resample(String prefix, long startUs, long endUs, long periodUs) {
+        int count = (int) ((endUs - startUs) / periodUs) + 1;
+        List<Column> columns = new ArrayList<>();
+        for (Column c : getColumns(prefix)) {
+            if (c.getType() != Column.Type.RAW)
+                columns.add(c);
+        }
+        double[][] result = new double[count][columns.size()];
+        for (int j = 0; j < columns.size(); ++j) {
+            double[] series = columns.get(j).resample(startUs, periodUs, count);
+            for (int k = 0; k < count; ++k) {
+                result[k][j] = series[k];
+            }
+        }
+        return result;
+    }
+
+    ///////////////////////////////////////////////////////
+
+    static String string(ByteBuffer buf, int pos, int size) {
+        byte[] b = new byte[size];
+        buf.get(pos, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Unsigned little-endian integer of 1 to 8 bytes. */
+    static long varInt(ByteBuffer buf, int pos, int len) {
+        long val = 0;
+        for (int i = 0; i < len; ++i) {
+            val |= (buf.get(pos + i) & 0xffL) << (i * 8);
+        }
+        return val;
+    }
+
+    /** A run of records decoded by one task. */
+    static final class Chunk {
+        final int m_begin;
+        final int m_end;
+        /** Entry id to column index, as of the start of the chunk; -1 is none. */
+        final int[] m_entryToColumn;
+        /** Columns started before this chunk. */
+        final int m_firstColumn;
+        /** Records per column in this chunk. */
+        final int[] m_counts;
+        /** Where this chunk's rows start, in each column. */
+        int[] m_rowOffsets;
+
+        Chunk(int begin, int end, int[] entryToColumn, int firstColumn, int[] counts) {
+            m_begin = begin;
+            m_end = end;
+            m_entryToColumn = entryToColumn;
+            m_firstColumn = firstColumn;
+            m_counts = counts;
+        }
+
+        /**
+         * Replays the control records the same way the scan did, so the entry
+         * map stays right, and decodes the data records.
+         */
+        void decode(ByteBuffer buf, Column[] columns) {
+            int[] entryToColumn = m_entryToColumn.clone();
+            int nextColumn = m_firstColumn;
+            int[] rows = m_rowOffsets.clone();
+            int pos = m_begin;
+            while (pos < m_end) {
+                int header = buf.get(pos) & 0xff;
+                int entryLen = (header & 0x3) + 1;
+                int sizeLen = ((header >> 2) & 0x3) + 1;
+                int timestampLen = ((header >> 4) & 0x7) + 1;
+                int headerLen = 1 + entryLen + sizeLen + timestampLen;
+                int entry = (int) varInt(buf, pos + 1, entryLen);
+                int size = (int) varInt(buf, pos + 1 + entryLen, sizeLen);
+                int payload = pos + headerLen;
+                if (entry == 0) {
+                    int control = buf.get(payload) & 0xff;
+                    int target = buf.getInt(payload + 1);
+                    if (control == kControlStart) {
+                        entryToColumn = mapped(entryToColumn, target);
+                        entryToColumn[target] = nextColumn++;
+                    } else if (control == kControlFinish && target < entryToColumn.length) {
+                        entryToColumn[target] = -1;
+                    }
+                } else if (entry < entryToColumn.length && entryToColumn[entry] >= 0) {
+                    int c = entryToColumn[entry];
+                    long timeUs = varInt(buf, pos + 1 + entryLen + sizeLen, timestampLen);
+                    columns[c].decode(rows[c]++, timeUs, payload, size);
+                }
+                pos = payload + size;
+            }
+        }
+    }
+
+    /** Grow the entry map to fit the entry id. */
+    static int[] mapped(int[] entryToColumn, int entry) {
+        if (entry < entryToColumn.length)
+            return entryToColumn;
+        int[] result = Arrays.copyOf(entryToColumn, Math.max(entry + 1, entryToColumn.length * 2));
+        Arrays.fill(result, entryToColumn.length, result.length, -1);
+        return result;
+    }
+
+    /** The sequential header-only pass. */
+    static final class Index {
+        private final ByteBuffer m_buf;
+        private final int m_chunkBytes;
+        /** Name and type of each column. */
+        final List<String[]> m_starts = new ArrayList<>();
+        /** Latest metadata of each column. */
+        final List<String> m_metadata = new ArrayList<>();
+        final List<Chunk> m_chunks = new ArrayList<>();
+
+        Index(ByteBuffer buf, int chunkBytes) {
+            m_buf = buf;
+            m_chunkBytes = chunkBytes;
+        }
+
+        void scan(int pos) throws IOException {
+            ByteBuffer buf = m_buf;
+            int limit = buf.limit();
+            int[] entryToColumn = new int[0];
+            int chunkBegin = pos;
+            int[] chunkMap = entryToColumn;
+            int chunkFirstColumn = 0;
+            int[] counts = new int[16];
+            while (pos + 4 <= limit) {
+                if (pos - chunkBegin >= m_chunkBytes) {
+                    m_chunks.add(new Chunk(chunkBegin, pos, chunkMap, chunkFirstColumn, counts(counts)));
+                    chunkBegin = pos;
+                    chunkMap = entryToColumn.clone();
+                    chunkFirstColumn = m_starts.size();
+                    counts = new int[Math.max(16, m_starts.size())];
+                }
+                int header = buf.get(pos) & 0xff;
+                int entryLen = (header & 0x3) + 1;
+                int sizeLen = ((header >> 2) & 0x3) + 1;
+                int timestampLen = ((header >> 4) & 0x7) + 1;
+                int headerLen = 1 + entryLen + sizeLen + timestampLen;
+                if (pos + headerLen > limit)
+                    break;
+                int entry = (int) varInt(buf, pos + 1, entryLen);
+                long size = varInt(buf, pos + 1 + entryLen, sizeLen);
+                int payload = pos + headerLen;
+                if (payload + size > limit)
+                    // truncated, e.g. the robot lost power.
+                    break;
+                if (entry == 0) {
+                    if (size < 5)
+                        throw new IOException("bad control record at " + pos);
+                    int control = buf.get(payload) & 0xff;
+                    int target = buf.getInt(payload + 1);
+                    if (target < 0)
+                        throw new IOException("bad entry id at " + pos);
+                    if (control == kControlStart) {
+                        int namePos = payload + 5;
+                        String name = innerString(namePos);
+                        int typePos = namePos + 4 + buf.getInt(namePos);
+                        String type = innerString(typePos);
+                        int metadataPos = typePos + 4 + buf.getInt(typePos);
+                        m_starts.add(new String[] { name, type });
+                        m_metadata.add(innerString(metadataPos));
+                        entryToColumn = mapped(entryToColumn, target);
+                        entryToColumn[target] = m_starts.size() - 1;
+                    } else if (control == kControlFinish) {
+                        if (target < entryToColumn.length)
+                            entryToColumn[target] = -1;
+                    } else if (control == kControlSetMetadata) {
+                        if (target < entryToColumn.length && entryToColumn[target] >= 0)
+                            m_metadata.set(entryToColumn[target], innerString(payload + 5));
+                    }
+                } else if (entry < entryToColumn.length && entryToColumn[entry] >= 0) {
+                    int c = entryToColumn[entry];
+                    if (c >= counts.length)
+                        counts = Arrays.copyOf(counts, Math.max(c + 1, counts.length * 2));
+                    ++counts[c];
+                }
+                pos = payload + (int) size;
+            }
+            m_chunks.add(new Chunk(chunkBegin, pos, chunkMap, chunkFirstColumn, counts(counts)));
+        }
+
+        /** Trim or extend to the number of columns so far. */
+        private int[] counts(int[] counts) {
+            return Arrays.copyOf(counts, m_starts.size());
+        }
+
+        private String innerString(int pos) throws IOException {
+            int size = m_buf.getInt(pos);
+            if (size < 0 || pos + 4 + size > m_buf.limit())
+                throw new IOException("bad string at " + pos);
+            return string(m_buf, pos + 4, size);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.team100.log;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/** Writes WPILOG bytes for the tests, with the shortest headers, like DataLog. */
+class LogWriter {
+    private final ByteArrayOutputStream m_out = new ByteArrayOutputStream();
+
+    LogWriter(String extraHeader) {
+        byte[] extra = extraHeader.getBytes(StandardCharsets.UTF_8);
+        m_out.writeBytes("WPILOG".getBytes(StandardCharsets.US_ASCII));
+        writeInt(0x0100, 2);
+        writeInt(extra.length, 4);
+        m_out.writeBytes(extra);
+    }
+
+    void start(int entry, String name, String type, String metadata, long timeUs) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(0);
+        payload.writeBytes(le(entry, 4));
+        for (String s : new String[] { name, type, metadata }) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            payload.writeBytes(le(b.length, 4));
+            payload.writeBytes(b);
+        }
+        record(0, timeUs, payload.toByteArray());
+    }
+
+    void finish(int entry, long timeUs) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(1);
+        payload.writeBytes(le(entry, 4));
+        record(0, timeUs, payload.toByteArray());
+    }
+
+    void setMetadata(int entry, String metadata, long timeUs) {
+        byte[] b = metadata.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        payload.write(2);
+        payload.writeBytes(le(entry, 4));
+        payload.writeBytes(le(b.length, 4));
+        payload.writeBytes(b);
+        record(0, timeUs, payload.toByteArray());
+    }
+
+    void appendDouble(int entry, double value, long timeUs) {
+        record(entry, timeUs, le(Double.doubleToLongBits(value), 8));
+    }
+
+    void appendLong(int entry, long value, long timeUs) {
+        record(entry, timeUs, le(value, 8));
+    }
+
+    void appendBoolean(int entry, boolean value, long timeUs) {
+        record(entry, timeUs, new byte[] { (byte) (value ? 1 : 0) });
+    }
+
+    void appendString(int entry, String value, long timeUs) {
+        record(entry, timeUs, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    void appendDoubleArray(int entry, double[] value, long timeUs) {
+        ByteBuffer b = ByteBuffer.allocate(8 * value.length).order(ByteOrder.LITTLE_ENDIAN);
+        b.asDoubleBuffer().put(value);
+        record(entry, timeUs, b.array());
+    }
+
+    /** Append a partial record, like a log cut off by a brownout. */
+    void truncated() {
+        m_out.write(0);
+        m_out.write(1);
+    }
+
+    ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(m_out.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        return m_out.toByteArray();
+    }
+
+    private void record(int entry, long timeUs, byte[] payload) {
+        int entryLen = len(entry);
+        int sizeLen = len(payload.length);
+        int timestampLen = len(timeUs);
+        m_out.write((entryLen - 1) | (sizeLen - 1) << 2 | (timestampLen - 1) << 4);
+        m_out.writeBytes(le(entry, entryLen));
+        m_out.writeBytes(le(payload.length, sizeLen));
+        m_out.writeBytes(le(timeUs, timestampLen));
+        m_out.writeBytes(payload);
+    }
+
+    private void writeInt(long value, int len) {
+        m_out.writeBytes(le(value, len));
+    }
+
+    private static int len(long value) {
+        int len = 1;
+        while (len < 8 && (value >>> (8 * len)) != 0)
+            ++len;
+        return len;
+    }
+
+    private static byte[] le(long value, int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; ++i) {
+            b[i] = (byte) (value >>> (8 * i));
+        }
+        return b;
+    }
+}
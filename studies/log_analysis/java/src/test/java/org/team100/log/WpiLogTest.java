@@ -0,0 +1,261 @@
+package org.team100.log;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class WpiLogTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 1e-12;
+
+    @Test
+    void testTypes() throws IOException {
+        LogWriter w = new LogWriter("hello");
+        w.start(1, "/drive/x", "double", "", 0);
+        w.start(2, "/drive/count", "int64", "", 0);
+        w.start(3, "/drive/ok", "boolean", "", 0);
+        w.start(4, "/mode", "string", "", 0);
+        w.start(5, "/drive/pose", "struct:Pose2d", "", 0);
+        w.setMetadata(1, "meters", 5);
+        w.appendDouble(1, 1.5, 10);
+        w.appendLong(2, -7, 10);
+        w.appendBoolean(3, true, 10);
+        w.appendString(4, "auton", 10);
+        w.appendDoubleArray(5, new double[] { 1, 2, 0.5 }, 10);
+        w.appendDouble(1, 2.5, 300);
+        w.appendBoolean(3, false, 70000);
+
+        WpiLog log = WpiLog.read(w.toByteBuffer(), WpiLog.kChunkBytes);
+        assertEquals(0x0100, log.getVersion());
+        assertEquals("hello", log.getExtraHeader());
+        assertEquals(5, log.getColumns().size());
+
+        Column x = log.getColumn("/drive/x");
+        assertEquals(Column.Type.DOUBLE, x.getType());
+        assertEquals("meters", x.getMetadata());
+        assertEquals(2, x.size());
+        assertEquals(10, x.getTimeUs(0));
+        assertEquals(1.5, x.getDouble(0), kDelta);
+        assertEquals(300, x.getTimeUs(1));
+        assertEquals(2.5, x.getDouble(1), kDelta);
+
+        assertEquals(-7, log.getColumn("/drive/count").getLong(0));
+        assertEquals(-7, log.getColumn("/drive/count").getDouble(0), kDelta);
+
+        Column ok = log.getColumn("/drive/ok");
+        assertTrue(ok.getBoolean(0));
+        assertFalse(ok.getBoolean(1));
+        assertEquals(70000, ok.getTimeUs(1));
+
+        assertEquals("auton", log.getColumn("/mode").getString(0));
+
+        Column pose = log.getColumn("/drive/pose");
+        assertEquals(Column.Type.RAW, pose.getType());
+        assertEquals("struct:Pose2d", pose.getTypeString());
+        assertArrayEquals(new double[] { 1, 2, 0.5 }, pose.getDoubleArray(0), kDelta);
+        assertEquals(24, pose.getRaw(0).remaining());
+
+        assertThrows(IllegalStateException.class, () -> pose.getDouble(0));
+        assertThrows(IllegalStateException.class, () -> x.getRaw(0));
+
+        assertEquals(10, log.getStartUs());
+        assertEquals(70000, log.getEndUs());
+    }
+
+    @Test
+    void testNotALog() {
+        ByteBuffer buf = ByteBuffer.wrap("NOTALOG_____".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> WpiLog.read(buf, WpiLog.kChunkBytes));
+    }
+
+    /** A log cut off in the middle of a record keeps everything before. */
+    @Test
+    void testTruncated() throws IOException {
+        LogWriter w = new LogWriter("");
+        w.start(1, "x", "double", "", 0);
+        w.appendDouble(1, 1, 10);
+        w.appendDouble(1, 2, 20);
+        w.truncated();
+        WpiLog log = WpiLog.read(w.toByteBuffer(), WpiLog.kChunkBytes);
+        assertEquals(2, log.getColumn("x").size());
+    }
+
+    /** An entry id that's finished and started again makes a new column. */
+    @Test
+    void testRestart() throws IOException {
+        LogWriter w = new LogWriter("");
+        w.start(1, "a", "double", "", 0);
+        w.appendDouble(1, 1, 10);
+        w.finish(1, 20);
+        // ignored
+        w.appendDouble(1, 2, 30);
+        w.start(1, "b", "int64", "", 40);
+        w.appendLong(1, 3, 50);
+        WpiLog log = WpiLog.read(w.toByteBuffer(), 16);
+        assertEquals(1, log.getColumn("a").size());
+        assertEquals(1, log.getColumn("a").getDouble(0), kDelta);
+        assertEquals(1, log.getColumn("b").size());
+        assertEquals(3, log.getColumn("b").getLong(0));
+    }
+
+    /** Many records and restarts; tiny chunks give the same columns as one big one. */
+    @Test
+    void testChunks() throws IOException {
+        ByteBuffer buf = random(20000, 0).toByteBuffer();
+        WpiLog whole = WpiLog.read(buf, Integer.MAX_VALUE);
+        for (int chunkBytes : new int[] { 1, 64, 1000, 100000 }) {
+            WpiLog chunked = WpiLog.read(buf, chunkBytes);
+            assertEquals(whole.getColumns().size(), chunked.getColumns().size());
+            for (int c = 0; c < whole.getColumns().size(); ++c) {
+                Column expected = whole.getColumns().get(c);
+                Column actual = chunked.getColumns().get(c);
+                assertEquals(expected.getName(), actual.getName());
+                assertArrayEquals(expected.m_timeUs, actual.m_timeUs);
+                assertArrayEquals(expected.m_doubles, actual.m_doubles);
+                assertArrayEquals(expected.m_longs, actual.m_longs);
+                assertArrayEquals(expected.m_booleans, actual.m_booleans);
+            }
+        }
+    }
+
+    @Test
+    void testQuery() throws IOException {
+        LogWriter w = new LogWriter("");
+        w.start(1, "/drive/x", "double", "", 0);
+        w.start(2, "/drive/ok", "boolean", "", 0);
+        w.start(3, "/drive/pose", "struct:Pose2d", "", 0);
+        w.start(4, "/arm/angle", "double", "", 0);
+        w.appendDouble(1, 1, 100);
+        w.appendDouble(1, 2, 200);
+        w.appendDouble(1, 3, 300);
+        w.appendBoolean(2, true, 250);
+        WpiLog log = WpiLog.read(w.toByteBuffer(), WpiLog.kChunkBytes);
+
+        List<Column> drive = log.getColumns("/drive/");
+        assertEquals(3, drive.size());
+        assertEquals("/drive/x", drive.get(0).getName());
+        assertNull(log.getColumn("/nope"));
+
+        Column x = log.getColumn("/drive/x");
+        assertEquals(0, x.lowerBound(50));
+        assertEquals(1, x.lowerBound(200));
+        assertEquals(2, x.lowerBound(201));
+        assertEquals(3, x.lowerBound(301));
+        assertEquals(-1, x.atOrBefore(99));
+        assertEquals(1, x.atOrBefore(299));
+
+        double[] series = x.resample(50, 100, 4);
+        assertTrue(Double.isNaN(series[0]));
+        assertEquals(1, series[1], kDelta);
+        assertEquals(2, series[2], kDelta);
+        assertEquals(3, series[3], kDelta);
+
+        // the struct is skipped.
+        double[][] frame = log.resample("/drive/", 200, 300, 50);
+        assertEquals(3, frame.length);
+        assertEquals(2, frame[0].length);
+        assertEquals(2, frame[0][0], kDelta);
+        assertTrue(Double.isNaN(frame[0][1]));
+        assertEquals(2, frame[1][0], kDelta);
+        assertEquals(1, frame[1][1], kDelta);
+        assertEquals(3, frame[2][0], kDelta);
+    }
+
+    @Test
+    void testOpen() throws IOException {
+        Path path = Files.createTempFile("test", ".wpilog");
+        try {
+            Files.write(path, random(1000, 1).toByteArray());
+            WpiLog log = WpiLog.open(path);
+            assertTrue(log.getColumns().size() > 0);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Load time of a synthetic log shaped like ours: lots of DEBUG doubles at
+     * 50 Hz, some booleans and structs.
+     */
+    @Test
+    void testBenchmark() throws IOException {
+        int records = dump ? 10000000 : 10000;
+        byte[] bytes = random(records, 2).toByteArray();
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes).flip();
+        for (int i = 0; i < 5; ++i) {
+            long startNs = System.nanoTime();
+            WpiLog.read(buf, Integer.MAX_VALUE);
+            long sequentialNs = System.nanoTime() - startNs;
+            startNs = System.nanoTime();
+            WpiLog log = WpiLog.read(buf, WpiLog.kChunkBytes);
+            long parallelNs = System.nanoTime() - startNs;
+            if (dump)
+                System.out.printf("%d MB %d columns one chunk %.3f s chunked %.3f s\n",
+                        bytes.length >> 20, log.getColumns().size(), sequentialNs / 1e9, parallelNs / 1e9);
+        }
+    }
+
+    /**
+     * 200 entries of various types, with some finished and restarted, with
+     * timestamps going up by 20 ms per cycle.
+     */
+    private static LogWriter random(int records, int seed) {
+        Random random = new Random(seed);
+        LogWriter w = new LogWriter("");
+        int entries = 200;
+        for (int e = 1; e <= entries; ++e) {
+            w.start(e, "/entry/" + e, type(e), "", 0);
+        }
+        long timeUs = 0;
+        for (int i = 0; i < records; ++i) {
+            if (i % entries == 0)
+                timeUs += 20000;
+            int e = 1 + random.nextInt(entries);
+            if (random.nextInt(5000) == 0) {
+                w.finish(e, timeUs);
+                w.start(e, "/restarted/" + i, type(e), "", timeUs);
+            }
+            switch (type(e)) {
+                case "double":
+                    w.appendDouble(e, random.nextDouble(), timeUs);
+                    break;
+                case "int64":
+                    w.appendLong(e, random.nextLong(), timeUs);
+                    break;
+                case "boolean":
+                    w.appendBoolean(e, random.nextBoolean(), timeUs);
+                    break;
+                default:
+                    w.appendDoubleArray(e, new double[] { random.nextDouble(), random.nextDouble(), 0 }, timeUs);
+            }
+        }
+        return w;
+    }
+
+    private static String type(int entry) {
+        switch (entry % 10) {
+            case 0:
+                return "struct:Pose2d";
+            case 1:
+                return "boolean";
+            case 2:
+                return "int64";
+            default:
+                return "double";
+        }
+    }
+}
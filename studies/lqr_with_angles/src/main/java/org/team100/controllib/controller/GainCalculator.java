@@ -37,12 +37,26 @@ public class GainCalculator<States extends Num, Inputs extends Num, Outputs exte
         Matrix<Inputs, N1> kUZero = new Matrix<>(plant.inputs(), Nat.N1());
         Matrix<States, States> m_Q = StateSpaceUtil.makeCostMatrix(qelms);
         Matrix<Inputs, Inputs> m_R = StateSpaceUtil.makeCostMatrix(relms);
-        RandomVector<States> x = new RandomVector<>(new Matrix<>(plant.states(), Nat.N1()),
-                Variance.zero(plant.states()));
+        m_K = calculate(plant, m_Q, m_R, new Matrix<>(plant.states(), Nat.N1()), kUZero, dtSeconds);
+    }
+
+    /**
+     * Calculate LQR gain linearized around the operating point (x, u). This is
+     * expensive (Jacobians, discretization, and DARE), so don't do it in the
+     * control loop; see GainSchedule.
+     */
+    public static <States extends Num, Inputs extends Num, Outputs extends Num> Matrix<Inputs, States> calculate(
+            NonlinearPlant<States, Inputs, Outputs> plant,
+            Matrix<States, States> Q,
+            Matrix<Inputs, Inputs> R,
+            Matrix<States, N1> x,
+            Matrix<Inputs, N1> u,
+            double dtSeconds) {
+        RandomVector<States> xr = new RandomVector<>(x, Variance.zero(plant.states()));
         Matrix<States, States> A = Jacobian.numericalJacobianX(plant.states(), plant.states(), plant::f,
-                x, kUZero);
+                xr, u);
         Matrix<States, Inputs> B = Jacobian.numericalJacobianU(plant.states(), plant.inputs(), plant::f,
-                x, kUZero);
+                xr, u);
 
         var discABPair = Discretization.discretizeAB(A, B, dtSeconds);
         var discA = discABPair.getFirst();
@@ -57,14 +71,14 @@ public class GainCalculator<States extends Num, Inputs extends Num, Outputs exte
             throw new IllegalArgumentException(builder.toString());
         }
 
-        var S = DARE.dare(discA, discB, m_Q, m_R);
+        var S = DARE.dare(discA, discB, Q, R);
 
         // K = (BᵀSB + R)⁻¹BᵀSA
-        m_K = discB
+        return discB
                 .transpose()
                 .times(S)
                 .times(discB)
-                .plus(m_R)
+                .plus(R)
                 .solve(discB.transpose().times(S).times(discA));
     }
 
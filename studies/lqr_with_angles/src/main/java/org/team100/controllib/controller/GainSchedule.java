@@ -0,0 +1,175 @@
+package org.team100.controllib.controller;
+
+import org.team100.controllib.math.RandomVector;
+import org.team100.controllib.math.Variance;
+import org.team100.controllib.system.NonlinearPlant;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.Num;
+import edu.wpi.first.math.StateSpaceUtil;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.numbers.N1;
+
+/**
+ * LQR gains tabulated over a grid of operating points, and served by
+ * multilinear interpolation, without allocation.
+ *
+ * GainCalculator linearizes around zero, which is fine for well-behaved
+ * systems, but the linearization of the pendulum, for example, depends on its
+ * angle: near horizontal it's a double integrator, but near vertical, gravity
+ * either pulls it down or tips it over. Solving the DARE at the current state
+ * would fix that, but it takes far too long to do in the control loop, so
+ * instead, we solve it for every point on a grid, once, in the constructor.
+ *
+ * The grid spans some of the states (e.g. pendulum angle); the others are zero
+ * at each grid point. At each grid point, the input is the one that holds the
+ * state still, i.e. finvWrtU(x, 0), so the linearization is around an
+ * equilibrium.
+ *
+ * Lookups outside the grid are clamped.
+ */
+public class GainSchedule<States extends Num, Inputs extends Num, Outputs extends Num> {
+    private final int m_states;
+    private final int m_inputs;
+    /** Which states are scheduled */
+    private final int[] m_scheduled;
+    private final double[] m_min;
+    private final double[] m_step;
+    private final int[] m_points;
+    /** Distance between adjacent grid points in the table, per dimension. */
+    private final int[] m_stride;
+    /** Flattened [grid point][input][state] */
+    private final double[] m_table;
+    /** Scratch, to avoid allocation */
+    private final double[] m_frac;
+
+    /**
+     * @param plant     system to control
+     * @param qelms     state tolerances
+     * @param relms     control tolerances
+     * @param dtSeconds time step for discretization
+     * @param scheduled indices of the states to schedule on
+     * @param min       grid extent for each scheduled state
+     * @param max       grid extent for each scheduled state
+     * @param points    number of grid points for each scheduled state, at least 2
+     */
+    public GainSchedule(
+            NonlinearPlant<States, Inputs, Outputs> plant,
+            Vector<States> qelms,
+            Vector<Inputs> relms,
+            double dtSeconds,
+            int[] scheduled,
+            double[] min,
+            double[] max,
+            int[] points) {
+        int dims = scheduled.length;
+        if (dims == 0 || min.length != dims || max.length != dims || points.length != dims)
+            throw new IllegalArgumentException("grid dimensions must match");
+        m_states = plant.states().getNum();
+        m_inputs = plant.inputs().getNum();
+        m_scheduled = scheduled.clone();
+        m_min = min.clone();
+        m_step = new double[dims];
+        m_points = points.clone();
+        m_stride = new int[dims];
+        int gainSize = m_inputs * m_states;
+        int stride = gainSize;
+        for (int d = dims - 1; d >= 0; --d) {
+            if (points[d] < 2 || max[d] <= min[d])
+                throw new IllegalArgumentException("each grid dimension needs at least two distinct points");
+            m_step[d] = (max[d] - min[d]) / (points[d] - 1);
+            m_stride[d] = stride;
+            stride *= points[d];
+        }
+        m_table = new double[stride];
+        m_frac = new double[dims];
+
+        Matrix<States, States> Q = StateSpaceUtil.makeCostMatrix(qelms);
+        Matrix<Inputs, Inputs> R = StateSpaceUtil.makeCostMatrix(relms);
+        int gridPoints = stride / gainSize;
+        for (int g = 0; g < gridPoints; ++g) {
+            Matrix<States, N1> x = new Matrix<>(plant.states(), Nat.N1());
+            int rem = g;
+            for (int d = dims - 1; d >= 0; --d) {
+                int i = rem % points[d];
+                rem /= points[d];
+                x.set(scheduled[d], 0, min[d] + i * m_step[d]);
+            }
+            RandomVector<States> xr = plant.make(x, Variance.zero(plant.states()));
+            RandomVector<States> still = plant.make(
+                    new Matrix<>(plant.states(), Nat.N1()), Variance.zero(plant.states()));
+            Matrix<Inputs, N1> u = plant.finvWrtU(xr, still);
+            Matrix<Inputs, States> K = GainCalculator.calculate(plant, Q, R, x, u, dtSeconds);
+            System.arraycopy(K.getData(), 0, m_table, g * gainSize, gainSize);
+        }
+    }
+
+    /**
+     * Interpolated gain at the state x. Not thread-safe.
+     *
+     * @param x   current state
+     * @param out K, row-major, inputs x states
+     */
+    public void get(Matrix<States, N1> x, double[] out) {
+        int dims = m_scheduled.length;
+        int base = 0;
+        for (int d = 0; d < dims; ++d) {
+            double f = (x.get(m_scheduled[d], 0) - m_min[d]) / m_step[d];
+            int last = m_points[d] - 1;
+            if (f < 0)
+                f = 0;
+            if (f > last)
+                f = last;
+            int i = Math.min((int) f, last - 1);
+            m_frac[d] = f - i;
+            base += i * m_stride[d];
+        }
+        int gainSize = m_inputs * m_states;
+        for (int k = 0; k < gainSize; ++k) {
+            out[k] = 0;
+        }
+        // sum over the corners of the cell
+        for (int corner = 0; corner < (1 << dims); ++corner) {
+            double w = 1;
+            int offset = base;
+            for (int d = 0; d < dims; ++d) {
+                if ((corner & (1 << d)) != 0) {
+                    w *= m_frac[d];
+                    offset += m_stride[d];
+                } else {
+                    w *= 1 - m_frac[d];
+                }
+            }
+            if (w == 0)
+                continue;
+            for (int k = 0; k < gainSize; ++k) {
+                out[k] += w * m_table[offset + k];
+            }
+        }
+    }
+
+    /**
+     * Feedback control input, u = K(x) e, without allocation.
+     *
+     * @param x       current state, for the schedule
+     * @param error   r - x, e.g. from RandomVector.minus(), which wraps angles
+     * @param scratch at least inputs x states long
+     * @param u       output, at least inputs long
+     */
+    public void calculate(Matrix<States, N1> x, Matrix<States, N1> error, double[] scratch, double[] u) {
+        get(x, scratch);
+        for (int i = 0; i < m_inputs; ++i) {
+            double sum = 0;
+            for (int j = 0; j < m_states; ++j) {
+                sum += scratch[i * m_states + j] * error.get(j, 0);
+            }
+            u[i] = sum;
+        }
+    }
+
+    /** Number of gain matrices in the table. */
+    public int size() {
+        return m_table.length / (m_inputs * m_states);
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.opencv.core.Core;
+
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.MultiSubscriber;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.networktables.NetworkTablesJNI;
+import edu.wpi.first.networktables.PubSubOption;
+import edu.wpi.first.networktables.StructArrayPublisher;
+import edu.wpi.first.util.CombinedRuntimeLoader;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.util.struct.StructBuffer;
+
+/**
+ * Measures NT delivery latency, to check the vision capture-time compensation
+ * off-robot.
+ *
+ * A server instance and a client instance run in this process, on the same
+ * clock. The client is the "camera": it publishes a struct array at the frame
+ * rate, with keepDuplicates, like tag_finder24 does, and also a pile of
+ * doubles as fast as it can, for load. The server is the "robot": it listens
+ * the way VisionDataProvider24 does, and for each frame records the time from
+ * the value's server timestamp to the listener callback, which is the part of
+ * the latency that the timestamp accounts for.
+ *
+ * Every few seconds it prints the distribution, and the error of the
+ * server-time estimate, i.e. the listener time minus the timestamp, minus the
+ * true age computed from the publish time.
+ *
+ * Usage: LatencyHarness [frameRateHz] [loadTopics] [seconds]
+ */
+public class LatencyHarness {
+    /** Not the usual port, so a running sim doesn't get in the way. */
+    private static final int kPort = 5820;
+    private static final int kReportS = 5;
+    /** Tags in view, i.e. the length of the struct array. */
+    private static final int kBlips = 4;
+    private static final StructBuffer<Translation3d> m_buf = StructBuffer.create(Translation3d.struct);
+
+    /** Delivery latency samples, microseconds, written by the listener. */
+    private static final long[] m_delayUs = new long[100000];
+    /** Timestamp error samples, microseconds. */
+    private static final long[] m_errorUs = new long[100000];
+    private static int m_count;
+    /** The publish time of each frame, indexed by frame number. */
+    private static final long[] m_publishUs = new long[1 << 16];
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        double frameRateHz = args.length > 0 ? Double.parseDouble(args[0]) : 50;
+        int loadTopics = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        NetworkTablesJNI.Helper.setExtractOnStaticLoad(false);
+        WPIUtilJNI.Helper.setExtractOnStaticLoad(false);
+
+        CombinedRuntimeLoader.loadLibraries(
+                LatencyHarness.class,
+                "wpiutiljni",
+                "ntcorejni",
+                Core.NATIVE_LIBRARY_NAME);
+
+        NetworkTableInstance server = NetworkTableInstance.create();
+        server.startServer("latency.json", "", 0, kPort);
+        MultiSubscriber sub = new MultiSubscriber(
+                server, new String[] { "vision" }, PubSubOption.keepDuplicates(true));
+        server.addListener(sub, EnumSet.of(NetworkTableEvent.Kind.kValueAll), LatencyHarness::accept);
+
+        NetworkTableInstance client = NetworkTableInstance.create();
+        client.setServer("localhost", kPort);
+        client.startClient4("latency harness");
+        while (client.getServerTimeOffset().isEmpty()) {
+            Thread.sleep(100);
+        }
+        System.out.printf("frame rate %.0f Hz, load topics %d, time offset %d us\n",
+                frameRateHz, loadTopics, client.getServerTimeOffset().get());
+
+        StructArrayPublisher<Translation3d> blips = client.getStructArrayTopic(
+                "vision/harness/blips", Translation3d.struct).publish(PubSubOption.keepDuplicates(true));
+        DoublePublisher[] load = new DoublePublisher[loadTopics];
+        for (int i = 0; i < loadTopics; ++i) {
+            load[i] = client.getDoubleTopic("load/" + i).publish();
+        }
+
+        Translation3d[] frame = new Translation3d[kBlips];
+        long periodUs = (long) (1e6 / frameRateHz);
+        long endUs = WPIUtilJNI.now() + seconds * 1000000L;
+        long nextFrameUs = WPIUtilJNI.now();
+        long nextReportUs = WPIUtilJNI.now() + kReportS * 1000000L;
+        int frameNumber = 0;
+        int reportedFrames = 0;
+        while (WPIUtilJNI.now() < endUs) {
+            long nowUs = WPIUtilJNI.now();
+            if (nowUs >= nextFrameUs) {
+                // the frame number rides along as the x of each translation,
+                // which, unlike an angle, comes back exactly as sent.
+                for (int i = 0; i < kBlips; ++i) {
+                    frame[i] = new Translation3d(frameNumber, i, 0);
+                }
+                m_publishUs[frameNumber % m_publishUs.length] = WPIUtilJNI.now();
+                blips.set(frame);
+                // the camera flushes every frame.
+                client.flush();
+                ++frameNumber;
+                nextFrameUs += periodUs;
+            }
+            for (int i = 0; i < loadTopics; ++i) {
+                load[i].set(nowUs);
+            }
+            if (nowUs >= nextReportUs) {
+                report(frameNumber - reportedFrames);
+                reportedFrames = frameNumber;
+                nextReportUs += kReportS * 1000000L;
+            }
+            Thread.sleep(1);
+        }
+        report(frameNumber - reportedFrames);
+        client.close();
+        server.close();
+    }
+
+    private static void accept(NetworkTableEvent e) {
+        long nowUs = WPIUtilJNI.now();
+        NetworkTableValue v = e.valueData.value;
+        // the server timebase is the local clock.
+        long delayUs = nowUs - v.getServerTime();
+        Translation3d[] translations;
+        synchronized (m_buf) {
+            translations = m_buf.readArray(v.getRaw());
+        }
+        int frameNumber = (int) translations[0].getX();
+        long trueDelayUs = nowUs - m_publishUs[frameNumber % m_publishUs.length];
+        synchronized (m_delayUs) {
+            if (m_count < m_delayUs.length) {
+                m_delayUs[m_count] = delayUs;
+                m_errorUs[m_count] = delayUs - trueDelayUs;
+                ++m_count;
+            }
+        }
+    }
+
+    private static void report(int frames) {
+        long[] delay;
+        long[] error;
+        synchronized (m_delayUs) {
+            delay = Arrays.copyOf(m_delayUs, m_count);
+            error = Arrays.copyOf(m_errorUs, m_count);
+            m_count = 0;
+        }
+        if (delay.length == 0) {
+            System.out.println("no frames received");
+            return;
+        }
+        Arrays.sort(delay);
+        Arrays.sort(error);
+        System.out.printf(
+                "sent %d received %d delay ms p50 %.2f p90 %.2f p99 %.2f max %.2f error ms p50 %.2f max %.2f\n",
+                frames,
+                delay.length,
+                percentile(delay, 0.5) / 1e3,
+                percentile(delay, 0.9) / 1e3,
+                percentile(delay, 0.99) / 1e3,
+                delay[delay.length - 1] / 1e3,
+                percentile(error, 0.5) / 1e3,
+                Math.max(-error[0], error[error.length - 1]) / 1e3);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))];
+    }
+}
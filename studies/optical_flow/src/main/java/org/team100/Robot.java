@@ -1,17 +1,19 @@
 package org.team100;
 
+import org.team100.optical_flow.FlowBuffer;
+import org.team100.optical_flow.FlowReader;
 import org.team100.optical_flow.PMW3901;
 
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 
 public class Robot extends TimedRobot {
     // This creates an instance of the motion sensor.
     private final PMW3901 motion;
-
-    // These accumulate sensor counts.
-    private int accumX;
-    private int accumY;
+    // This reads it on its own thread.
+    private final FlowReader reader;
+    private final FlowBuffer.Sample sample;
 
     public Robot() {
         motion = new PMW3901(SPI.Port.kOnboardCS0, 3);
@@ -19,16 +21,15 @@ public class Robot extends TimedRobot {
         if (!motion.isGoodSensor()) {
             System.out.println("Motion Sensor Initialization failed!");
         }
+        reader = new FlowReader(motion, FlowReader.kDefaultPeriodS);
+        reader.start();
+        sample = new FlowBuffer.Sample();
     }
 
     @Override
     public void teleopPeriodic() {
-        PMW3901.Motion result = motion.readMotionCount();
-        if (result != null) {
-            accumX += result.getDeltaX();
-            accumY += result.getDeltaY();
-            System.out.printf(" %6d\t%6d\t%6d\t%6d\t%6d\t%6d\n",
-            result.getDeltaX(), result.getDeltaY(), accumX, accumY, result.getSqual(), result.getShutter());
+        if (reader.getBuffer().sample(Timer.getFPGATimestamp(), sample)) {
+            System.out.printf(" %8.0f\t%8.0f\t%6d\n", sample.x, sample.y, sample.rejectedAfter);
         }
     }
 }
@@ -0,0 +1,103 @@
+package org.team100.optical_flow;
+
+/**
+ * Timestamped ring buffer of accumulated flow counts, written by the reader
+ * thread and read by the robot loop.
+ * 
+ * The counts are running totals, so the motion over any interval is just the
+ * difference of two samples, and a missed query doesn't lose anything.
+ */
+public class FlowBuffer {
+    /** Counts at some instant. Callers supply the instance, so queries don't allocate. */
+    public static class Sample {
+        public double x;
+        public double y;
+        /**
+         * Total frames rejected up to the samples before and after this time.
+         * They differ if a rejected frame covers this time.
+         */
+        public long rejectedBefore;
+        public long rejectedAfter;
+    }
+
+    private final double[] m_timeS;
+    private final long[] m_x;
+    private final long[] m_y;
+    private final long[] m_rejected;
+    private final int m_mask;
+    /** How long the newest sample is still current. */
+    private final double m_holdS;
+    private int m_next;
+    private int m_size;
+
+    /**
+     * @param capacity rounded up to a power of two
+     * @param holdS    a query up to this long after the newest sample returns the
+     *                 newest sample, since the reader hasn't run yet.
+     */
+    public FlowBuffer(int capacity, double holdS) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        m_timeS = new double[size];
+        m_x = new long[size];
+        m_y = new long[size];
+        m_rejected = new long[size];
+        m_mask = size - 1;
+        m_holdS = holdS;
+    }
+
+    /** Timestamps must increase. */
+    public synchronized void add(double timeS, long x, long y, long rejected) {
+        m_timeS[m_next] = timeS;
+        m_x[m_next] = x;
+        m_y[m_next] = y;
+        m_rejected[m_next] = rejected;
+        m_next = (m_next + 1) & m_mask;
+        if (m_size <= m_mask)
+            ++m_size;
+    }
+
+    /**
+     * Counts at the given time, interpolated between samples.
+     * 
+     * @return false if the time isn't covered by the buffer.
+     */
+    public synchronized boolean sample(double timeS, Sample out) {
+        if (m_size == 0)
+            return false;
+        int oldest = (m_next - m_size) & m_mask;
+        int newest = (m_next - 1) & m_mask;
+        if (timeS < m_timeS[oldest])
+            return false;
+        if (timeS >= m_timeS[newest]) {
+            if (timeS - m_timeS[newest] > m_holdS)
+                return false;
+            out.x = m_x[newest];
+            out.y = m_y[newest];
+            out.rejectedBefore = m_rejected[newest];
+            out.rejectedAfter = m_rejected[newest];
+            return true;
+        }
+        // last sample at or before the time
+        int lo = 0;
+        int hi = m_size - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (m_timeS[(oldest + mid) & m_mask] <= timeS)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        int a = (oldest + lo) & m_mask;
+        int b = (oldest + hi) & m_mask;
+        double s = (timeS - m_timeS[a]) / (m_timeS[b] - m_timeS[a]);
+        out.x = m_x[a] + s * (m_x[b] - m_x[a]);
+        out.y = m_y[a] + s * (m_y[b] - m_y[a]);
+        out.rejectedBefore = m_rejected[a];
+        out.rejectedAfter = s == 0 ? m_rejected[a] : m_rejected[b];
+        return true;
+    }
+
+    public synchronized int size() {
+        return m_size;
+    }
+}
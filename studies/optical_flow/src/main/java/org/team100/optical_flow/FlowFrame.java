@@ -0,0 +1,18 @@
+package org.team100.optical_flow;
+
+/**
+ * One motion report from the sensor. Readers fill the same instance every
+ * time, so polling doesn't make garbage.
+ */
+public class FlowFrame {
+    /** True if the sensor saw motion since the last read. */
+    public boolean motion;
+    /** Counts since the last read, sensor x axis. */
+    public int deltaX;
+    /** Counts since the last read, sensor y axis. */
+    public int deltaY;
+    /** Surface quality, roughly the number of features in view. */
+    public int squal;
+    /** Exposure time, 13 bits; it goes up when the surface is dark or far away. */
+    public int shutter;
+}
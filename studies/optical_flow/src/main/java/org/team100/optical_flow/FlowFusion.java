@@ -0,0 +1,84 @@
+package org.team100.optical_flow;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform2d;
+
+/**
+ * Compares wheel odometry to optical flow every cycle, and when they disagree,
+ * i.e. the wheels are slipping, produces a pose measurement that follows the
+ * flow instead.
+ * 
+ * The measurement goes to the pose estimator the same way vision does:
+ * 
+ * <pre>
+ * fusion.update(now, poseEstimator.getEstimatedPosition())
+ *         .ifPresent(p -> poseEstimator.addVisionMeasurement(p, now, stdDevs));
+ * </pre>
+ * 
+ * Use small standard deviations, so the estimator takes most of the
+ * correction; the residual would look like slip next cycle.
+ */
+public class FlowFusion {
+    /** Disagreement per cycle that counts as slip; at 50 Hz this is 0.25 m/s. */
+    private static final double kSlipM = 0.005;
+
+    private final FlowOdometry m_odometry;
+    private Pose2d m_prevPose;
+    private double m_prevTimeS;
+    private boolean m_slipping;
+    private double m_slipM;
+
+    public FlowFusion(FlowOdometry odometry) {
+        m_odometry = odometry;
+    }
+
+    public void reset(double timeS, Pose2d pose) {
+        m_prevTimeS = timeS;
+        m_prevPose = pose;
+        m_slipping = false;
+    }
+
+    /**
+     * Call once per cycle, after the estimator update.
+     * 
+     * @param timeS    now
+     * @param estimate pose from the estimator, i.e. wheels and gyro
+     * @return a corrected pose for now, if the wheels slipped since the last
+     *         call.
+     */
+    public Optional<Pose2d> update(double timeS, Pose2d estimate) {
+        if (m_prevPose == null) {
+            reset(timeS, estimate);
+            return Optional.empty();
+        }
+        Transform2d wheels = estimate.minus(m_prevPose);
+        Optional<Transform2d> flow = m_odometry.getTransform(m_prevTimeS, timeS, wheels.getRotation());
+        if (flow.isEmpty()) {
+            // no opinion, trust the wheels.
+            reset(timeS, estimate);
+            return Optional.empty();
+        }
+        double error = wheels.getTranslation().getDistance(flow.get().getTranslation());
+        if (error <= kSlipM) {
+            reset(timeS, estimate);
+            return Optional.empty();
+        }
+        Pose2d corrected = m_prevPose.plus(flow.get());
+        reset(timeS, corrected);
+        m_slipping = true;
+        m_slipM += error;
+        return Optional.of(corrected);
+    }
+
+    /** True if the last update found slip. */
+    public boolean isSlipping() {
+        return m_slipping;
+    }
+
+    /** Total correction so far. */
+    public double getSlipM() {
+        return m_slipM;
+    }
+}
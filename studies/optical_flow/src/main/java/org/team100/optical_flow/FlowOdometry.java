@@ -0,0 +1,80 @@
+package org.team100.optical_flow;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Turns flow counts into robot motion.
+ * 
+ * The sensor sees the motion of the floor under the sensor, so if it's not at
+ * the center of the robot, turning in place looks like translation; this
+ * removes that part, using the rotation from the gyro.
+ */
+public class FlowOdometry {
+    /**
+     * Field of view over pixels, from the Bitcraze flow deck, 0.717 rad over
+     * 35 pixels.
+     */
+    private static final double kRadPerCount = 0.71674 / 35;
+
+    private final FlowBuffer m_buffer;
+    private final double m_scaleX;
+    private final double m_scaleY;
+    private final Rotation2d m_mount;
+    private final Translation2d m_offset;
+    private final FlowBuffer.Sample m_start;
+    private final FlowBuffer.Sample m_end;
+
+    /**
+     * @param buffer from the reader
+     * @param scaleX meters per count along the sensor x axis, signed, since a
+     *               downward-facing sensor sees the floor mirrored.
+     * @param scaleY meters per count along the sensor y axis, signed.
+     * @param mount  direction of the sensor x axis, robot-relative
+     * @param offset location of the sensor, robot-relative
+     */
+    public FlowOdometry(
+            FlowBuffer buffer,
+            double scaleX,
+            double scaleY,
+            Rotation2d mount,
+            Translation2d offset) {
+        m_buffer = buffer;
+        m_scaleX = scaleX;
+        m_scaleY = scaleY;
+        m_mount = mount;
+        m_offset = offset;
+        m_start = new FlowBuffer.Sample();
+        m_end = new FlowBuffer.Sample();
+    }
+
+    /** Nominal scale for a sensor this far from the floor; calibrate it by pushing. */
+    public static double metersPerCount(double heightM) {
+        return heightM * kRadPerCount;
+    }
+
+    /**
+     * Robot-relative motion of the center of the robot between the two times.
+     * 
+     * @param rotation robot rotation over the interval, from the gyro
+     * @return empty if the buffer doesn't cover the interval, or if the sensor
+     *         rejected any frames in it.
+     */
+    public Optional<Transform2d> getTransform(double startS, double endS, Rotation2d rotation) {
+        if (!m_buffer.sample(startS, m_start))
+            return Optional.empty();
+        if (!m_buffer.sample(endS, m_end))
+            return Optional.empty();
+        if (m_end.rejectedAfter != m_start.rejectedBefore)
+            return Optional.empty();
+        Translation2d sensor = new Translation2d(
+                m_scaleX * (m_end.x - m_start.x),
+                m_scaleY * (m_end.y - m_start.y)).rotateBy(m_mount);
+        // the sensor path includes the swing of the offset around the center.
+        Translation2d swing = m_offset.rotateBy(rotation).minus(m_offset);
+        return Optional.of(new Transform2d(sensor.minus(swing), rotation));
+    }
+}
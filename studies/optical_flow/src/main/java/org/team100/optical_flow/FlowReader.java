@@ -0,0 +1,87 @@
+package org.team100.optical_flow;
+
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Polls a flow sensor on its own thread, so the robot loop never waits for
+ * SPI.
+ * 
+ * Each poll gates the frame for quality, adds the good counts to the running
+ * totals, and records the totals in the buffer, with the time of the poll.
+ * The robot loop reads the buffer.
+ * 
+ * The SPI auto-accumulator doesn't fit this sensor: it reads one register per
+ * trigger, and the motion burst needs a pause after the address byte.
+ */
+public class FlowReader implements AutoCloseable {
+    /** 100 Hz, a little slower than the sensor frame rate. */
+    public static final double kDefaultPeriodS = 0.01;
+    /** One second of history at the default rate. */
+    private static final int kCapacity = 128;
+    /** Below this, with the shutter wide open, the counts are junk. */
+    private static final int kMinSqual = 0x19;
+    private static final int kSaturatedShutterUpper = 0x1f;
+    /** More than this in one poll is faster than the robot can go. */
+    private static final int kMaxCounts = 200;
+
+    private final FlowSensor m_sensor;
+    private final FlowBuffer m_buffer;
+    private final FlowFrame m_frame;
+    private final double m_periodS;
+    private final Notifier m_notifier;
+
+    // these are only touched by the reader thread.
+    private long m_x;
+    private long m_y;
+    private long m_rejected;
+
+    public FlowReader(FlowSensor sensor, double periodS) {
+        m_sensor = sensor;
+        // hold the newest sample for a couple of periods, in case the thread is late.
+        m_buffer = new FlowBuffer(kCapacity, 2 * periodS);
+        m_frame = new FlowFrame();
+        m_periodS = periodS;
+        m_notifier = new Notifier(this::poll);
+        m_notifier.setName("FlowReader Notifier");
+    }
+
+    public void start() {
+        m_notifier.startPeriodic(m_periodS);
+    }
+
+    public void stop() {
+        m_notifier.stop();
+    }
+
+    @Override
+    public void close() {
+        m_notifier.close();
+    }
+
+    public FlowBuffer getBuffer() {
+        return m_buffer;
+    }
+
+    /** Package-private for testing. */
+    void poll() {
+        double timeS = Timer.getFPGATimestamp();
+        if (!m_sensor.read(m_frame)) {
+            ++m_rejected;
+        } else if (m_frame.motion) {
+            if (good(m_frame)) {
+                m_x += m_frame.deltaX;
+                m_y += m_frame.deltaY;
+            } else {
+                ++m_rejected;
+            }
+        }
+        m_buffer.add(timeS, m_x, m_y, m_rejected);
+    }
+
+    static boolean good(FlowFrame frame) {
+        if (frame.squal < kMinSqual && (frame.shutter >> 8) == kSaturatedShutterUpper)
+            return false;
+        return Math.abs(frame.deltaX) <= kMaxCounts && Math.abs(frame.deltaY) <= kMaxCounts;
+    }
+}
@@ -0,0 +1,11 @@
+package org.team100.optical_flow;
+
+/** Something that reports optical flow: the real sensor or a simulation. */
+public interface FlowSensor {
+    /**
+     * Read the motion since the last read into the frame.
+     * 
+     * @return false if the sensor didn't answer.
+     */
+    boolean read(FlowFrame frame);
+}
@@ -4,40 +4,23 @@ import edu.wpi.first.wpilibj.DigitalOutput;
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.Timer;
 
-public class PMW3901 {
-    public static class Motion {
-        private final int deltaX;
-        private final int deltaY;
-        private final int squal;
-        private final int shutter;
-
-        public Motion(int deltaX, int deltaY, int squal, int shutter) {
-            this.deltaX = deltaX;
-            this.deltaY = deltaY;
-            this.squal = squal;
-            this.shutter = shutter;
-        }
-
-        public int getDeltaX() {
-            return deltaX;
-        }
-
-        public int getDeltaY() {
-            return deltaY;
-        }
-
-        public int getSqual() {
-            return squal;
-        }
-
-        public int getShutter() {
-            return shutter;
-        }
-    }
+/**
+ * Driver for the PMW3901.
+ * 
+ * Motion is read with the motion burst register, which returns all the motion
+ * registers in one transaction, instead of one transaction per register.
+ * Reads still wait for the sensor, so call read() from a dedicated thread,
+ * i.e. FlowReader, not from the robot loop.
+ */
+public class PMW3901 implements FlowSensor {
+    private static final byte kMotionBurst = (byte) 0x16;
+    private static final int kBurstBytes = 12;
 
     private final SPI spiFlow;
     private final DigitalOutput cs;
     private final boolean goodSensor;
+    private final byte[] m_burstAddress = new byte[] { kMotionBurst };
+    private final byte[] m_burst = new byte[kBurstBytes];
 
     public PMW3901(SPI.Port port, int chipSelectPort) {
         spiFlow = new SPI(port);
@@ -45,34 +28,30 @@ public class PMW3901 {
         goodSensor = initSequence(cs);
     }
 
-    public Motion readMotionCount() {
+    /**
+     * Motion burst read, datasheet section 7.1: Motion, Observation, Delta_X_L,
+     * Delta_X_H, Delta_Y_L, Delta_Y_H, SQUAL, RawData_Sum, Maximum_RawData,
+     * Minimum_RawData, Shutter_Upper, Shutter_Lower.
+     */
+    @Override
+    public boolean read(FlowFrame frame) {
         if (!goodSensor)
-            return null;
-
-        // Read the status register and test the motion bit to see if new data is
-        // available.
-        if ((registerRead((byte) 0x02) & 0x80) == 0x80) {
-            // Read the rest of the data registers in numerical order, and convert to ints.
-            byte dXL = registerRead((byte) 0x03);
-            byte dXH = registerRead((byte) 0x04);
-            byte dYL = registerRead((byte) 0x05);
-            byte dYH = registerRead((byte) 0x06);
-
-            int squal = 0 | registerRead((byte) 0x07);
-            int shutter = 0 | registerRead((byte) 0x0C);
-            int deltaX = (dXH << 8) | dXL & 0xff;
-            int deltaY = (dYH << 8) | dYL & 0xff;
-
-            if ((shutter == 31) && (squal < 25)) {
-                System.out.printf("**** BAD READING FROM FLOW SENSOR ****");
-                return null;
-            }
-
-            return new Motion(deltaX, deltaY, squal, shutter);
-        } else {
-            // No motion detected.
-            return null;
-        }
+            return false;
+        cs.set(false);
+        microSleep(50);
+        spiFlow.write(m_burstAddress, 1);
+        // tSRAD_MOTBR
+        microSleep(35);
+        int received = spiFlow.read(true, m_burst, kBurstBytes);
+        cs.set(true);
+        if (received != kBurstBytes)
+            return false;
+        frame.motion = (m_burst[0] & 0x80) == 0x80;
+        frame.deltaX = (short) ((m_burst[3] << 8) | (m_burst[2] & 0xff));
+        frame.deltaY = (short) ((m_burst[5] << 8) | (m_burst[4] & 0xff));
+        frame.squal = m_burst[6] & 0xff;
+        frame.shutter = ((m_burst[10] & 0x1f) << 8) | (m_burst[11] & 0xff);
+        return true;
     }
 
     /**
@@ -249,11 +228,14 @@ public class PMW3901 {
         return true;
     }
 
+    /**
+     * Spin, because Thread.sleep() rounds anything under a millisecond up to a
+     * whole millisecond.
+     */
     private void microSleep(int usec) {
-        try {
-            Thread.sleep(0, usec * 1000);
-        } catch (InterruptedException e) {
-            // ignore this exception
+        long end = System.nanoTime() + usec * 1000L;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
         }
     }
 
@@ -0,0 +1,53 @@
+package org.team100.optical_flow;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Simulated flow sensor: counts come from a velocity and the time since the
+ * last read, with the fractions carried over, like the real one.
+ */
+public class SimFlowSensor implements FlowSensor {
+    private final double m_metersPerCount;
+    private double m_vx;
+    private double m_vy;
+    private int m_squal;
+    private int m_shutter;
+    private double m_prevTimeS;
+    private double m_residueX;
+    private double m_residueY;
+
+    public SimFlowSensor(double metersPerCount) {
+        m_metersPerCount = metersPerCount;
+        m_squal = 100;
+        m_shutter = 0x100;
+        m_prevTimeS = Timer.getFPGATimestamp();
+    }
+
+    /** Sensor-relative velocity of the sensor over the floor. */
+    public void setVelocity(double vx, double vy) {
+        m_vx = vx;
+        m_vy = vy;
+    }
+
+    public void setQuality(int squal, int shutter) {
+        m_squal = squal;
+        m_shutter = shutter;
+    }
+
+    @Override
+    public boolean read(FlowFrame frame) {
+        double timeS = Timer.getFPGATimestamp();
+        double dt = timeS - m_prevTimeS;
+        m_prevTimeS = timeS;
+        double x = m_residueX + m_vx * dt / m_metersPerCount;
+        double y = m_residueY + m_vy * dt / m_metersPerCount;
+        frame.deltaX = (int) x;
+        frame.deltaY = (int) y;
+        m_residueX = x - frame.deltaX;
+        m_residueY = y - frame.deltaY;
+        frame.motion = frame.deltaX != 0 || frame.deltaY != 0;
+        frame.squal = m_squal;
+        frame.shutter = m_shutter;
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package org.team100.optical_flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+class FlowFusionTest {
+    private static final double kDelta = 0.001;
+    private static final double kMetersPerCount = 0.0001;
+    private static final double kPeriodS = 0.02;
+
+    private SimFlowSensor m_sensor;
+    private FlowReader m_reader;
+    private FlowFusion m_fusion;
+
+    @BeforeEach
+    void setup() {
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        m_sensor = new SimFlowSensor(kMetersPerCount);
+        m_reader = new FlowReader(m_sensor, FlowReader.kDefaultPeriodS);
+        m_fusion = new FlowFusion(new FlowOdometry(
+                m_reader.getBuffer(), kMetersPerCount, kMetersPerCount, new Rotation2d(), new Translation2d()));
+    }
+
+    @AfterEach
+    void teardown() {
+        m_reader.close();
+        SimHooks.resumeTiming();
+        HAL.shutdown();
+    }
+
+    /** The wheels and the floor agree. */
+    @Test
+    void testNoSlip() {
+        m_sensor.setVelocity(1, 0);
+        Pose2d pose = new Pose2d();
+        m_reader.poll();
+        assertTrue(m_fusion.update(Timer.getFPGATimestamp(), pose).isEmpty());
+        for (int i = 0; i < 10; ++i) {
+            pose = step(pose, 1);
+            assertTrue(m_fusion.update(Timer.getFPGATimestamp(), pose).isEmpty());
+            assertFalse(m_fusion.isSlipping());
+        }
+    }
+
+    /** The wheels spin at 1 m/s but the robot only goes 0.5 m/s. */
+    @Test
+    void testSlip() {
+        m_sensor.setVelocity(0.5, 0);
+        Pose2d pose = new Pose2d();
+        m_reader.poll();
+        m_fusion.update(Timer.getFPGATimestamp(), pose);
+        for (int i = 0; i < 10; ++i) {
+            pose = step(pose, 1);
+            Optional<Pose2d> corrected = m_fusion.update(Timer.getFPGATimestamp(), pose);
+            assertTrue(corrected.isPresent());
+            assertTrue(m_fusion.isSlipping());
+            // an estimator with tight std devs takes all of it.
+            pose = corrected.get();
+        }
+        assertEquals(0.1, pose.getX(), kDelta);
+        assertEquals(0.1, m_fusion.getSlipM(), kDelta);
+    }
+
+    /** Wheel odometry moving at this speed for one cycle, while the reader polls. */
+    private Pose2d step(Pose2d pose, double wheelSpeed) {
+        SimHooks.stepTiming(kPeriodS / 2);
+        m_reader.poll();
+        SimHooks.stepTiming(kPeriodS / 2);
+        m_reader.poll();
+        return new Pose2d(pose.getX() + wheelSpeed * kPeriodS, pose.getY(), pose.getRotation());
+    }
+}
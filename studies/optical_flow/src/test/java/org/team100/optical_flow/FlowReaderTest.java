@@ -0,0 +1,183 @@
+package org.team100.optical_flow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+class FlowReaderTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final double kMetersPerCount = 0.001;
+
+    @BeforeEach
+    void pauseTiming() {
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+    }
+
+    @AfterEach
+    void resumeTiming() {
+        SimHooks.resumeTiming();
+        HAL.shutdown();
+    }
+
+    @Test
+    void testBuffer() {
+        FlowBuffer buffer = new FlowBuffer(4, 0.1);
+        FlowBuffer.Sample sample = new FlowBuffer.Sample();
+        assertFalse(buffer.sample(0, sample));
+        // wraps around, so the first one is gone.
+        for (int i = 0; i < 5; ++i) {
+            buffer.add(i, 10 * i, -10 * i, i / 3);
+        }
+        assertEquals(4, buffer.size());
+        assertFalse(buffer.sample(0.5, sample));
+        assertTrue(buffer.sample(1, sample));
+        assertEquals(10, sample.x, kDelta);
+        assertTrue(buffer.sample(2.5, sample));
+        assertEquals(25, sample.x, kDelta);
+        assertEquals(-25, sample.y, kDelta);
+        assertEquals(0, sample.rejectedBefore);
+        assertEquals(1, sample.rejectedAfter);
+        // held a little while
+        assertTrue(buffer.sample(4.05, sample));
+        assertEquals(40, sample.x, kDelta);
+        assertFalse(buffer.sample(4.2, sample));
+    }
+
+    @Test
+    void testIntegrate() {
+        SimFlowSensor sensor = new SimFlowSensor(kMetersPerCount);
+        sensor.setVelocity(1, -0.5);
+        FlowReader reader = new FlowReader(sensor, FlowReader.kDefaultPeriodS);
+        reader.poll();
+        double startS = Timer.getFPGATimestamp();
+        for (int i = 0; i < 50; ++i) {
+            SimHooks.stepTiming(FlowReader.kDefaultPeriodS);
+            reader.poll();
+        }
+        double endS = Timer.getFPGATimestamp();
+        FlowOdometry odometry = new FlowOdometry(
+                reader.getBuffer(), kMetersPerCount, kMetersPerCount, new Rotation2d(), new Translation2d());
+        // half a second
+        assertEquals(0.5, odometry.getTransform(startS, endS, new Rotation2d()).get().getX(), 0.002);
+        assertEquals(-0.25, odometry.getTransform(startS, endS, new Rotation2d()).get().getY(), 0.002);
+        reader.close();
+    }
+
+    /** Frames from a surface the sensor can't see don't count, and spoil the interval. */
+    @Test
+    void testQuality() {
+        assertTrue(FlowReader.good(frame(10, 100, 0x100)));
+        assertFalse(FlowReader.good(frame(10, 10, 0x1f00)));
+        assertFalse(FlowReader.good(frame(1000, 100, 0x100)));
+
+        SimFlowSensor sensor = new SimFlowSensor(kMetersPerCount);
+        sensor.setVelocity(1, 0);
+        FlowReader reader = new FlowReader(sensor, FlowReader.kDefaultPeriodS);
+        FlowOdometry odometry = new FlowOdometry(
+                reader.getBuffer(), kMetersPerCount, kMetersPerCount, new Rotation2d(), new Translation2d());
+        reader.poll();
+        double startS = Timer.getFPGATimestamp();
+        SimHooks.stepTiming(0.1);
+        reader.poll();
+        double midS = Timer.getFPGATimestamp();
+        assertTrue(odometry.getTransform(startS, midS, new Rotation2d()).isPresent());
+        sensor.setQuality(10, 0x1f00);
+        SimHooks.stepTiming(0.1);
+        reader.poll();
+        double endS = Timer.getFPGATimestamp();
+        assertTrue(odometry.getTransform(midS, endS, new Rotation2d()).isEmpty());
+        assertTrue(odometry.getTransform(startS, endS, new Rotation2d()).isEmpty());
+        reader.close();
+    }
+
+    /**
+     * Spinning in place, a sensor off-center sees the floor go sideways; that's
+     * not translation of the robot.
+     */
+    @Test
+    void testSpin() {
+        double omega = 1;
+        double r = 0.3;
+        // fine resolution, so the rounding doesn't matter.
+        double scale = 0.0001;
+        SimFlowSensor sensor = new SimFlowSensor(scale);
+        sensor.setVelocity(0, omega * r);
+        FlowReader reader = new FlowReader(sensor, FlowReader.kDefaultPeriodS);
+        FlowOdometry odometry = new FlowOdometry(
+                reader.getBuffer(), scale, scale, new Rotation2d(), new Translation2d(r, 0));
+        reader.poll();
+        double startS = Timer.getFPGATimestamp();
+        SimHooks.stepTiming(0.02);
+        reader.poll();
+        double endS = Timer.getFPGATimestamp();
+        Transform2d t = odometry.getTransform(startS, endS, new Rotation2d(omega * 0.02)).get();
+        assertEquals(0, t.getX(), kDelta);
+        assertEquals(0, t.getY(), kDelta);
+        reader.close();
+    }
+
+    /**
+     * The old register-at-a-time read made seven transactions with three
+     * sleeps each, on the caller's thread, and Thread.sleep() rounds up to a
+     * millisecond. Now the caller only reads the buffer.
+     * 
+     * The old driver is gone, so the "old" side here is only its 21 sleeps, a
+     * stand-in and a lower bound, not the old read path itself.
+     */
+    @Test
+    void testCallerTime() throws InterruptedException {
+        SimFlowSensor sensor = new SimFlowSensor(kMetersPerCount);
+        FlowReader reader = new FlowReader(sensor, FlowReader.kDefaultPeriodS);
+        FlowOdometry odometry = new FlowOdometry(
+                reader.getBuffer(), kMetersPerCount, kMetersPerCount, new Rotation2d(), new Translation2d());
+        for (int i = 0; i < 100; ++i) {
+            SimHooks.stepTiming(FlowReader.kDefaultPeriodS);
+            reader.poll();
+        }
+        double endS = Timer.getFPGATimestamp();
+
+        int iterations = 10;
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            for (int j = 0; j < 21; ++j) {
+                Thread.sleep(0, 50000);
+            }
+        }
+        double sleepsS = (System.nanoTime() - startNs) / 1e9 / iterations;
+
+        iterations = 100000;
+        startNs = System.nanoTime();
+        for (int i = 0; i < iterations; ++i) {
+            odometry.getTransform(endS - 0.02, endS, new Rotation2d());
+        }
+        double newS = (System.nanoTime() - startNs) / 1e9 / iterations;
+        if (dump)
+            System.out.printf("caller time per cycle old (21 sleeps) %.3f ms new %.3f us\n",
+                    sleepsS * 1e3, newS * 1e6);
+        assertTrue(newS < sleepsS);
+        reader.close();
+    }
+
+    private static FlowFrame frame(int delta, int squal, int shutter) {
+        FlowFrame frame = new FlowFrame();
+        frame.motion = true;
+        frame.deltaX = delta;
+        frame.deltaY = delta;
+        frame.squal = squal;
+        frame.shutter = shutter;
+        return frame;
+    }
+}
@@ -1,6 +1,9 @@
 package frc.robot;
 
+import org.team100.lib.util.Housekeeping;
+
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
 /** This just shows that the sim UI and the persistent file both work. */
@@ -13,7 +16,10 @@ public class Robot extends TimedRobot {
 
     @Override
     public void robotPeriodic() {
+        double startS = Timer.getFPGATimestamp();
         m_robotContainer.doNothing();
         CommandScheduler.getInstance().run();
+        // last, so it only uses what's left of the cycle.
+        Housekeeping.get().run(startS);
     }
 }
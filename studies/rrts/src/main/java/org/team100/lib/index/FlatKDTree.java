@@ -0,0 +1,423 @@
+package org.team100.lib.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * KD tree in flat primitive arrays, for Euclidean distance.
+ *
+ * KDTree is a linked tree of KDNode objects, split at the midpoint of the model
+ * bounds, so it is never rebalanced, and each visit reads a Matrix. This one
+ * keeps the coordinates in one double[] per tree, in implicit tree order: the
+ * node for the range [lo, hi) is at the middle, its children are the ranges on
+ * either side, and it splits on the axis with the widest spread, at the median,
+ * so the trees are always balanced.
+ *
+ * Static trees can't take inserts, so new points go into a small buffer which
+ * is searched linearly, and when the buffer fills, it is merged with any trees
+ * no larger than itself, and rebuilt as one tree (the "logarithmic method").
+ * There are never more than log2(n) trees, and each point is rebuilt at most
+ * log2(n) times.
+ *
+ * Queries write into a reusable Result, so they allocate nothing.
+ *
+ * Any number of threads can query while one thread inserts. Everything a query
+ * can see is in an immutable snapshot, which the writer replaces after each
+ * batch; queries see the whole batch or none of it.
+ *
+ * The models in this study all use Euclidean distance; for anything else, use
+ * KDTree.
+ */
+public class FlatKDTree<V> {
+    /** Pending buffer size. */
+    private static final int kBuffer = 64;
+
+    /** Reusable query output. Distances are Euclidean, not squared. */
+    public static final class Result<V> {
+        private double[] _dist = new double[16];
+        private Object[] _values = new Object[16];
+        private int _size;
+
+        public int size() {
+            return _size;
+        }
+
+        public double dist(int i) {
+            return _dist[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value(int i) {
+            return (V) _values[i];
+        }
+
+        void clear(int capacity) {
+            if (_dist.length < capacity) {
+                _dist = new double[capacity];
+                _values = new Object[capacity];
+            }
+            Arrays.fill(_values, 0, _size, null);
+            _size = 0;
+        }
+
+        void add(double d2, Object value) {
+            if (_size == _dist.length) {
+                _dist = Arrays.copyOf(_dist, _size * 2);
+                _values = Arrays.copyOf(_values, _size * 2);
+            }
+            _dist[_size] = d2;
+            _values[_size] = value;
+            _size++;
+        }
+
+        /** Keep the k smallest, as a max-heap on squared distance. */
+        void offer(int k, double d2, Object value) {
+            if (_size < k) {
+                int i = _size++;
+                _dist[i] = d2;
+                _values[i] = value;
+                siftUp(i);
+            } else if (d2 < _dist[0]) {
+                _dist[0] = d2;
+                _values[0] = value;
+                siftDown(0, _size);
+            }
+        }
+
+        /** Squared distance to beat. */
+        double worst(int k) {
+            return _size < k ? Double.MAX_VALUE : _dist[0];
+        }
+
+        /** Heap to ascending order, and squared to plain distance. */
+        void sortAndRoot(boolean heap) {
+            if (heap) {
+                for (int end = _size - 1; end > 0; --end) {
+                    swap(0, end);
+                    siftDown(0, end);
+                }
+            }
+            for (int i = 0; i < _size; ++i) {
+                _dist[i] = Math.sqrt(_dist[i]);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (_dist[parent] >= _dist[i])
+                    return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            for (;;) {
+                int child = 2 * i + 1;
+                if (child >= end)
+                    return;
+                if (child + 1 < end && _dist[child + 1] > _dist[child])
+                    child++;
+                if (_dist[i] >= _dist[child])
+                    return;
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            double d = _dist[i];
+            _dist[i] = _dist[j];
+            _dist[j] = d;
+            Object v = _values[i];
+            _values[i] = _values[j];
+            _values[j] = v;
+        }
+    }
+
+    /** One balanced tree, never modified after it's built. */
+    private static final class Tree {
+        final int size;
+        final double[] coords;
+        final Object[] values;
+        final byte[] axes;
+
+        Tree(int size, double[] coords, Object[] values, byte[] axes) {
+            this.size = size;
+            this.coords = coords;
+            this.values = values;
+            this.axes = axes;
+        }
+    }
+
+    /** Everything a query can see. */
+    private static final class Snapshot {
+        /** Largest first. */
+        final Tree[] trees;
+        final double[] pending;
+        final Object[] pendingValues;
+        final int pendingSize;
+        final int size;
+
+        Snapshot(Tree[] trees, double[] pending, Object[] pendingValues, int pendingSize) {
+            this.trees = trees;
+            this.pending = pending;
+            this.pendingValues = pendingValues;
+            this.pendingSize = pendingSize;
+            int n = pendingSize;
+            for (Tree t : trees)
+                n += t.size;
+            size = n;
+        }
+    }
+
+    private final int m_dim;
+    private volatile Snapshot m_snapshot;
+
+    public FlatKDTree(int dim) {
+        if (dim < 1 || dim > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("bad dimension: " + dim);
+        m_dim = dim;
+        m_snapshot = new Snapshot(new Tree[0], new double[kBuffer * dim], new Object[kBuffer], 0);
+    }
+
+    public int dim() {
+        return m_dim;
+    }
+
+    public int size() {
+        return m_snapshot.size;
+    }
+
+    /** Insert one point; the coordinates are copied. */
+    public synchronized void add(double[] x, V value) {
+        Snapshot s = m_snapshot;
+        m_snapshot = append(s.trees, s.pending, s.pendingValues, s.pendingSize, x, 0, value);
+    }
+
+    /**
+     * Insert a batch. Queries running meanwhile see either none of it or all of
+     * it.
+     *
+     * @param coords row-major, values.size() x dim
+     */
+    public synchronized void addAll(double[] coords, List<V> values) {
+        if (coords.length < values.size() * m_dim)
+            throw new IllegalArgumentException("too few coordinates");
+        Snapshot s = m_snapshot;
+        for (int i = 0; i < values.size(); ++i) {
+            s = append(s.trees, s.pending, s.pendingValues, s.pendingSize, coords, i * m_dim, values.get(i));
+        }
+        m_snapshot = s;
+    }
+
+    /**
+     * The k nearest points to the target, nearest first.
+     *
+     * @return the number found, which is less than k only if the tree is smaller
+     */
+    public int nearest(double[] target, int k, Result<V> result) {
+        Snapshot s = m_snapshot;
+        result.clear(k);
+        for (int i = 0; i < s.pendingSize; ++i) {
+            result.offer(k, dist2(s.pending, i, target), s.pendingValues[i]);
+        }
+        for (Tree t : s.trees) {
+            nearest(t, 0, t.size, target, k, result);
+        }
+        result.sortAndRoot(true);
+        return result.size();
+    }
+
+    /** The nearest value, or null if empty. */
+    public V nearest(double[] target, Result<V> result) {
+        if (nearest(target, 1, result) == 0)
+            return null;
+        return result.value(0);
+    }
+
+    /**
+     * All the points strictly within the radius of the target, in no particular
+     * order.
+     *
+     * @return the number found
+     */
+    public int near(double[] target, double radius, Result<V> result) {
+        Snapshot s = m_snapshot;
+        double r2 = radius * radius;
+        result.clear(0);
+        for (int i = 0; i < s.pendingSize; ++i) {
+            double d2 = dist2(s.pending, i, target);
+            if (d2 < r2)
+                result.add(d2, s.pendingValues[i]);
+        }
+        for (Tree t : s.trees) {
+            near(t, 0, t.size, target, r2, result);
+        }
+        result.sortAndRoot(false);
+        return result.size();
+    }
+
+    /////////////////////////////////////////
+
+    private double dist2(double[] coords, int i, double[] target) {
+        int base = i * m_dim;
+        double sum = 0;
+        for (int j = 0; j < m_dim; ++j) {
+            double d = coords[base + j] - target[j];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private void nearest(Tree t, int lo, int hi, double[] target, int k, Result<V> result) {
+        if (lo >= hi)
+            return;
+        int mid = (lo + hi) >>> 1;
+        result.offer(k, dist2(t.coords, mid, target), t.values[mid]);
+        if (hi - lo == 1)
+            return;
+        int axis = t.axes[mid];
+        double diff = target[axis] - t.coords[mid * m_dim + axis];
+        if (diff < 0) {
+            nearest(t, lo, mid, target, k, result);
+            if (diff * diff < result.worst(k))
+                nearest(t, mid + 1, hi, target, k, result);
+        } else {
+            nearest(t, mid + 1, hi, target, k, result);
+            if (diff * diff < result.worst(k))
+                nearest(t, lo, mid, target, k, result);
+        }
+    }
+
+    private void near(Tree t, int lo, int hi, double[] target, double r2, Result<V> result) {
+        if (lo >= hi)
+            return;
+        int mid = (lo + hi) >>> 1;
+        double d2 = dist2(t.coords, mid, target);
+        if (d2 < r2)
+            result.add(d2, t.values[mid]);
+        if (hi - lo == 1)
+            return;
+        int axis = t.axes[mid];
+        double diff = target[axis] - t.coords[mid * m_dim + axis];
+        if (diff < 0 || diff * diff < r2)
+            near(t, lo, mid, target, r2, result);
+        if (diff >= 0 || diff * diff < r2)
+            near(t, mid + 1, hi, target, r2, result);
+    }
+
+    /**
+     * Append to the pending buffer, in place past the published size, so readers
+     * of the old snapshot are not disturbed. If the buffer is full, merge it into
+     * a new tree, and start a new buffer.
+     */
+    private Snapshot append(
+            Tree[] trees,
+            double[] pending,
+            Object[] pendingValues,
+            int pendingSize,
+            double[] x,
+            int offset,
+            V value) {
+        System.arraycopy(x, offset, pending, pendingSize * m_dim, m_dim);
+        pendingValues[pendingSize] = value;
+        pendingSize++;
+        if (pendingSize < kBuffer)
+            return new Snapshot(trees, pending, pendingValues, pendingSize);
+        // merge the buffer with all the trees no bigger than the total so far
+        int keep = trees.length;
+        int total = pendingSize;
+        while (keep > 0 && trees[keep - 1].size <= total) {
+            total += trees[keep - 1].size;
+            keep--;
+        }
+        double[] coords = new double[total * m_dim];
+        Object[] values = new Object[total];
+        int n = 0;
+        for (int i = keep; i < trees.length; ++i) {
+            Tree t = trees[i];
+            System.arraycopy(t.coords, 0, coords, n * m_dim, t.size * m_dim);
+            System.arraycopy(t.values, 0, values, n, t.size);
+            n += t.size;
+        }
+        System.arraycopy(pending, 0, coords, n * m_dim, pendingSize * m_dim);
+        System.arraycopy(pendingValues, 0, values, n, pendingSize);
+        Tree[] newTrees = Arrays.copyOf(trees, keep + 1);
+        newTrees[keep] = build(total, coords, values);
+        // a fresh buffer, since old snapshots may still be reading this one
+        return new Snapshot(newTrees, new double[kBuffer * m_dim], new Object[kBuffer], 0);
+    }
+
+    private Tree build(int size, double[] coords, Object[] values) {
+        int[] perm = new int[size];
+        for (int i = 0; i < size; ++i)
+            perm[i] = i;
+        byte[] axes = new byte[size];
+        build(coords, perm, axes, 0, size);
+        double[] treeCoords = new double[size * m_dim];
+        Object[] treeValues = new Object[size];
+        for (int i = 0; i < size; ++i) {
+            System.arraycopy(coords, perm[i] * m_dim, treeCoords, i * m_dim, m_dim);
+            treeValues[i] = values[perm[i]];
+        }
+        return new Tree(size, treeCoords, treeValues, axes);
+    }
+
+    /** Arrange perm[lo, hi) so the median on the widest axis is in the middle. */
+    private void build(double[] coords, int[] perm, byte[] axes, int lo, int hi) {
+        if (hi - lo < 2)
+            return;
+        int axis = 0;
+        double widest = -1;
+        for (int j = 0; j < m_dim; ++j) {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = lo; i < hi; ++i) {
+                double v = coords[perm[i] * m_dim + j];
+                if (v < min)
+                    min = v;
+                if (v > max)
+                    max = v;
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = j;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(coords, perm, axis, lo, hi - 1, mid);
+        axes[mid] = (byte) axis;
+        build(coords, perm, axes, lo, mid);
+        build(coords, perm, axes, mid + 1, hi);
+    }
+
+    /** Quickselect perm[left, right] so perm[k] is in sorted position. */
+    private void select(double[] coords, int[] perm, int axis, int left, int right, int k) {
+        while (left < right) {
+            double pivot = coords[perm[(left + right) >>> 1] * m_dim + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coords[perm[i] * m_dim + axis] < pivot)
+                    i++;
+                while (coords[perm[j] * m_dim + axis] > pivot)
+                    j--;
+                if (i <= j) {
+                    int tmp = perm[i];
+                    perm[i] = perm[j];
+                    perm[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j)
+                right = j;
+            else if (k >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.team100.lib.planner;
+
+/**
+ * Collision checking on states packed in a double[], in the same order as the
+ * Matrix rows, so planners can check lots of states without making a Matrix for
+ * each one.
+ */
+public interface PackedRobotModel {
+
+    /** True if the packed config is not within an obstacle. */
+    boolean clear(double[] state);
+}
@@ -0,0 +1,198 @@
+package org.team100.lib.rrt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.team100.lib.example.Arena;
+import org.team100.lib.graph.Node;
+import org.team100.lib.index.KDNode;
+import org.team100.lib.random.MersenneTwister;
+import org.team100.lib.space.Sample;
+import org.team100.lib.space.SinglePath;
+
+import edu.wpi.first.math.numbers.N4;
+
+/**
+ * Runs several independently seeded RRTStar7 tree pairs in parallel, for a
+ * fixed time budget, and returns the best path any of them found.
+ *
+ * Each worker repeatedly grows a fresh pair of trees until they connect, then
+ * shortcuts the resulting path with Optimize(), then offers it here. The cost
+ * of the best path so far is shared with all the solvers, which use it to
+ * avoid growing branches that can't beat it, so later trees are cheaper to
+ * grow, and only look where an improvement is possible.
+ */
+public class ParallelRRTStar7<T extends Arena<N4>> {
+    /** Give up on a tree pair after this many steps, and start another. */
+    private static final int kMaxSteps = 10000;
+    /** Shortcut attempts per path, same as FullStateArenaView. */
+    private static final int kOptimizeRounds = 1000;
+
+    private final Supplier<T> _arenas;
+    private final int _workers;
+    private final double _radius;
+    private final Random _seeds;
+
+    private SinglePath<N4> _best;
+    /** Cost of _best, as double bits, so the solvers can read it cheaply. */
+    private final AtomicLong _bound;
+    /** Nanoseconds from start to the first path. */
+    private final AtomicLong _firstSolutionNs;
+    private final AtomicInteger _trees;
+    private final AtomicInteger _solutions;
+    private final AtomicInteger _pruned;
+
+    /**
+     * @param arenas  makes a model for each tree pair, so the workers share
+     *                nothing mutable
+     * @param workers number of tree pairs to run at once
+     * @param radius  RRTStar7 near radius
+     * @param seed    seeds the trees, so runs are repeatable except for timing
+     */
+    public ParallelRRTStar7(Supplier<T> arenas, int workers, double radius, int seed) {
+        if (workers < 1)
+            throw new IllegalArgumentException("need at least one worker");
+        _arenas = arenas;
+        _workers = workers;
+        _radius = radius;
+        _seeds = new MersenneTwister(seed);
+        _bound = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+        _firstSolutionNs = new AtomicLong(-1);
+        _trees = new AtomicInteger();
+        _solutions = new AtomicInteger();
+        _pruned = new AtomicInteger();
+    }
+
+    /**
+     * Plan for the given time, and return the best path, or null if none was
+     * found.
+     */
+    public SinglePath<N4> runForDurationMS(long milliseconds) {
+        if (milliseconds <= 0) {
+            throw new IllegalArgumentException("invalid duration, must be > 0");
+        }
+        final long startNs = System.nanoTime();
+        return run(startNs, startNs + milliseconds * 1000000, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Grow the given number of tree pairs, shared among the workers, with no
+     * deadline, and return the best path, or null if none was found. The work
+     * done doesn't depend on the speed of the machine.
+     */
+    public SinglePath<N4> runForTrees(int trees) {
+        if (trees <= 0) {
+            throw new IllegalArgumentException("invalid tree count, must be > 0");
+        }
+        return run(System.nanoTime(), Long.MAX_VALUE, trees);
+    }
+
+    public synchronized SinglePath<N4> getBestSinglePath() {
+        return _best;
+    }
+
+    /** Nanoseconds from start to the first path, or -1 if none was found. */
+    public long getFirstSolutionNs() {
+        return _firstSolutionNs.get();
+    }
+
+    /** Number of tree pairs grown. */
+    public int getTrees() {
+        return _trees.get();
+    }
+
+    /** Number of paths offered. */
+    public int getSolutions() {
+        return _solutions.get();
+    }
+
+    /** Number of branches pruned by the shared bound. */
+    public int getPruned() {
+        return _pruned.get();
+    }
+
+    /////////////////////////////////////////
+
+    private SinglePath<N4> run(long startNs, long deadlineNs, int trees) {
+        final AtomicInteger remaining = new AtomicInteger(trees);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < _workers; ++i) {
+            final int seed = _seeds.nextInt();
+            tasks.add(() -> {
+                work(seed, startNs, deadlineNs, remaining);
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(_workers);
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return getBestSinglePath();
+    }
+
+    private double bound() {
+        return Double.longBitsToDouble(_bound.get());
+    }
+
+    private synchronized void offer(SinglePath<N4> path, long startNs) {
+        _firstSolutionNs.compareAndSet(-1, System.nanoTime() - startNs);
+        _solutions.incrementAndGet();
+        double distance = path.getDistance();
+        if (_best == null || distance < _best.getDistance()) {
+            _best = path;
+            _bound.set(Double.doubleToLongBits(distance));
+        }
+    }
+
+    private void work(int seed, long startNs, long deadlineNs, AtomicInteger remaining) {
+        Random random = new MersenneTwister(seed);
+        while (System.nanoTime() < deadlineNs && remaining.getAndDecrement() > 0) {
+            T arena = _arenas.get();
+            KDNode<Node<N4>> T_a = new KDNode<>(new Node<>(arena.initial()));
+            KDNode<Node<N4>> T_b = new KDNode<>(new Node<>(arena.goal()));
+            RRTStar7<T> solver = new RRTStar7<>(arena, new Sample<>(arena, random.nextInt()), T_a, T_b);
+            solver.setRadius(_radius);
+            solver.setBound(this::bound);
+            _trees.incrementAndGet();
+            try {
+                // grow until the trees connect
+                for (int steps = 0; steps < kMaxSteps; ++steps) {
+                    if (solver.step() < 0)
+                        break;
+                    if (System.nanoTime() > deadlineNs)
+                        return;
+                }
+                if (solver.getBestSinglePath() == null)
+                    continue;
+                offer(solver.getBestSinglePath(), startNs);
+                // shortcut
+                for (int i = 0; i < kOptimizeRounds; ++i) {
+                    if (System.nanoTime() > deadlineNs)
+                        break;
+                    double frac1 = random.nextDouble();
+                    double frac2 = random.nextDouble(frac1, 1.0);
+                    solver.Optimize(frac1, frac2);
+                }
+                offer(solver.getBestSinglePath(), startNs);
+            } finally {
+                _pruned.addAndGet(solver.getPruned());
+            }
+        }
+    }
+}
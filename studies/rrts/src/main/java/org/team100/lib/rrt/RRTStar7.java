@@ -7,6 +7,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.DoubleSupplier;
 import java.util.function.Predicate;
 
 import org.team100.lib.example.Arena;
@@ -61,6 +62,11 @@ public class RRTStar7<T extends Arena<N4>> implements Solver<N4> {
 
     private SinglePath<N4> _single_sigma_best;
 
+    /** Cost of the best path known anywhere, e.g. from other solvers. */
+    private DoubleSupplier _bound = () -> Double.MAX_VALUE;
+    /** Number of branches not grown because they couldn't beat the bound. */
+    private int _pruned;
+
     static boolean PARTIAL = true;
 
     public RRTStar7(T model, Sample<N4> sample, KDNode<Node<N4>> T_a, KDNode<Node<N4>> T_b) {
@@ -122,6 +128,23 @@ public class RRTStar7<T extends Arena<N4>> implements Solver<N4> {
         final Matrix<N4, N1> x_gA = new Matrix<>(Nat.N4(), Nat.N1(),
                 new double[] { phiA.x.g, phiA.x.gdot, phiA.y.g, phiA.y.gdot });
 
+        // don't grow a branch that can't lead to a path better than the best one
+        // known: the cost so far plus the obstacle-free time to the other end is a
+        // lower bound.
+        double bound = _bound.getAsDouble();
+        if (bound < Double.MAX_VALUE) {
+            double toGo;
+            if (timeForward) {
+                toGo = tOptimal(x_gA, _model.goal(), MAX_U);
+            } else {
+                toGo = tOptimal(_model.initial(), x_iA, MAX_U);
+            }
+            if (x_nearestA._nearest.getPathDist() + tMaxA + toGo >= bound) {
+                _pruned++;
+                return 0;
+            }
+        }
+
         // in partial mode, the resulting state might not be at the probe point.
         if (!PARTIAL) {
             if (timeForward) {
@@ -1402,6 +1425,18 @@ public class RRTStar7<T extends Arena<N4>> implements Solver<N4> {
         this.radius = radius;
     }
 
+    /**
+     * Supply the cost of the best known path, so that branches that can't beat it
+     * aren't grown. The supplier is called every step, so it should be cheap.
+     */
+    public void setBound(DoubleSupplier bound) {
+        _bound = bound;
+    }
+
+    public int getPruned() {
+        return _pruned;
+    }
+
     static boolean same(Matrix<N4, N1> a, Matrix<N4, N1> b) {
         return a.isEqual(b, 0.0001);
     }
@@ -0,0 +1,726 @@
+package org.team100.lib.rrt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.team100.lib.example.Arena;
+import org.team100.lib.graph.Graph;
+import org.team100.lib.graph.Node;
+import org.team100.lib.planner.PackedRobotModel;
+import org.team100.lib.planner.Solver;
+import org.team100.lib.space.Path;
+import org.team100.lib.space.Sample;
+import org.team100.lib.space.SinglePath;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N4;
+
+/**
+ * RRT* version 9
+ *
+ * This is the same as version 8, step for step, but without objects per node:
+ *
+ * The nodes of both trees live in one struct-of-arrays store, indexed by int:
+ * the states are packed four to a node in one double[], and the parent, link
+ * cost, path cost, and the KD tree children are parallel arrays. The KD tree is
+ * the same midpoint-split tree as KDTree, so the near nodes come out in the same
+ * order.
+ *
+ * Steering works on packed arrays too: the trajectory is a double[] instead of
+ * a Trajectory object, the quadratic roots go into a scratch array instead of a
+ * List, and tOptimal sorts its six candidates in place.
+ *
+ * So step() allocates nothing except when the arrays grow, and when a path is
+ * found, which makes a SinglePath of Matrix states like version 8 does.
+ *
+ * The nodes are made into Node objects only when asked for, by getNodesA() and
+ * getNodesB().
+ *
+ * Only the step() of version 8 is here: no Optimize(), no SampleFree(), no
+ * Rewire().
+ */
+public class RRTStar9<T extends Arena<N4> & PackedRobotModel> implements Solver<N4> {
+    public static boolean DEBUG = false;
+    private static final double MAX_U = 2.5;
+    private static final double TSTEP = 0.1;
+
+    // Packed trajectory layout: eight values per axis.
+    private static final int AXIS_X = 0;
+    private static final int AXIS_Y = 8;
+    private static final int I = 0; // initial position
+    private static final int IDOT = 1; // initial velocity
+    private static final int G = 2; // goal position
+    private static final int GDOT = 3; // goal velocity
+    private static final int U1 = 4;
+    private static final int T1 = 5;
+    private static final int U2 = 6;
+    private static final int T2 = 7;
+
+    // tOptimal solution types, as the change in the count of solved axes.
+    private static final int SWITCH = 1;
+    private static final int LIMIT = -1;
+    private static final int MIRROR = 1;
+
+    /** Node storage, one index per node, across both trees. */
+    static final class Nodes {
+        int size;
+        /** States, four per node. */
+        double[] state;
+        /** Index of the parent, or -1 for a root. */
+        int[] parent;
+        /** Cost of the link from the parent. */
+        double[] linkDist;
+        /** Cost from the root; there's no rewiring so it never changes. */
+        double[] pathDist;
+        /** KD tree children, or -1. */
+        int[] kdA;
+        int[] kdB;
+
+        Nodes(int capacity) {
+            state = new double[4 * capacity];
+            parent = new int[capacity];
+            linkDist = new double[capacity];
+            pathDist = new double[capacity];
+            kdA = new int[capacity];
+            kdB = new int[capacity];
+        }
+
+        int add(double[] x, int parentIdx, double dist) {
+            if (size == parent.length) {
+                int capacity = 2 * size;
+                state = Arrays.copyOf(state, 4 * capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                linkDist = Arrays.copyOf(linkDist, capacity);
+                pathDist = Arrays.copyOf(pathDist, capacity);
+                kdA = Arrays.copyOf(kdA, capacity);
+                kdB = Arrays.copyOf(kdB, capacity);
+            }
+            int i = size;
+            System.arraycopy(x, 0, state, 4 * i, 4);
+            parent[i] = parentIdx;
+            linkDist[i] = dist;
+            pathDist[i] = parentIdx < 0 ? 0 : pathDist[parentIdx] + dist;
+            kdA[i] = -1;
+            kdB[i] = -1;
+            size++;
+            return i;
+        }
+
+        Matrix<N4, N1> matrix(int i) {
+            return new Matrix<>(Nat.N4(), Nat.N1(), Arrays.copyOfRange(state, 4 * i, 4 * i + 4));
+        }
+    }
+
+    private final T _model;
+    private final Sample<N4> _sample;
+    private final Nodes _nodes;
+    private final double[] _initial;
+    private final double[] _boundsMin;
+    private final double[] _boundsMax;
+
+    // scratch
+    private final double[] _xRand = new double[4];
+    private final double[] _xNearest = new double[4];
+    private final double[] _xStep = new double[4];
+    private final double[] _trajA = new double[16];
+    private final double[] _trajB = new double[16];
+    private final double[] _roots = new double[2];
+    private final double[] _optT = new double[6];
+    private final int[] _optS = new int[6];
+    private int _optCount;
+    private final double[] _kdMin = new double[4];
+    private final double[] _kdMax = new double[4];
+    private int[] _near = new int[64];
+    private int _nearCount;
+
+    /** Root index of "this" tree. */
+    private int _a;
+    /** Root index of the "other" tree. */
+    private int _b;
+    private int stepNo;
+    private double radius;
+
+    private SinglePath<N4> _single_sigma_best;
+
+    public boolean curves = true;
+
+    public RRTStar9(T model, Sample<N4> sample) {
+        _model = model;
+        _sample = sample;
+        _nodes = new Nodes(1024);
+        _initial = model.initial().getData().clone();
+        _boundsMin = model.getMin().getData().clone();
+        _boundsMax = model.getMax().getData().clone();
+        _a = _nodes.add(_initial, -1, 0);
+        _b = _nodes.add(model.goal().getData().clone(), -1, 0);
+    }
+
+    /**
+     * Same as RRTStar8.step(), with curves or without.
+     */
+    @Override
+    public int step() {
+        if (DEBUG)
+            System.out.println("step");
+        int edges = 0;
+
+        boolean timeForward = same(_a, _initial);
+
+        // alpha
+        SampleState(_xRand);
+
+        // x_n
+        int x_nearestA = BangBangNearest(_xRand, _a, timeForward);
+        if (x_nearestA < 0)
+            return 0;
+
+        System.arraycopy(_nodes.state, 4 * x_nearestA, _xNearest, 0, 4);
+        if (!BangBangSteer(_xNearest, _xRand, timeForward, _trajA))
+            return 0;
+
+        double tMaxA = tMax(_trajA);
+        int freeEndA = grow(_a, x_nearestA, _trajA, tMaxA, timeForward);
+
+        edges += 1;
+
+        // now check for feasible paths to some node in the other tree.
+        int x_nearestB = BangBangNearest(_xRand, _b, !timeForward);
+        if (x_nearestB < 0) {
+            SwapTrees();
+            return 1;
+        }
+
+        System.arraycopy(_nodes.state, 4 * x_nearestB, _xNearest, 0, 4);
+        if (!BangBangSteer(_xNearest, _xRand, !timeForward, _trajB)) {
+            SwapTrees();
+            return 1;
+        }
+        double tMaxB = tMax(_trajB);
+        int freeEndB = grow(_b, x_nearestB, _trajB, tMaxB, !timeForward);
+
+        if (freeEndA >= 0 && freeEndB >= 0) {
+            SinglePath<N4> sp = GenerateSinglePath(freeEndA, freeEndB);
+            if (_single_sigma_best == null || sp.getDistance() < _single_sigma_best.getDistance()) {
+                if (DEBUG)
+                    System.out.printf("new best path distance %7.3f\n", sp.getDistance());
+                _single_sigma_best = sp;
+            }
+            // bail so that we can stop looking
+            return -1;
+        }
+        SwapTrees();
+        return edges;
+    }
+
+    public void SwapTrees() {
+        int tmp = _a;
+        _a = _b;
+        _b = tmp;
+    }
+
+    /** Total nodes in both trees. */
+    public int size() {
+        return _nodes.size;
+    }
+
+    @Override
+    public List<Node<N4>> getNodesA() {
+        return materialize(_a);
+    }
+
+    @Override
+    public List<Node<N4>> getNodesB() {
+        return materialize(_b);
+    }
+
+    /** Like the TODO in RRTStar8 says, only the SinglePath is kept. */
+    @Override
+    public Path<N4> getBestPath() {
+        return null;
+    }
+
+    @Override
+    public SinglePath<N4> getBestSinglePath() {
+        return _single_sigma_best;
+    }
+
+    @Override
+    public void setStepNo(int stepNo) {
+        if (stepNo < 1)
+            throw new IllegalArgumentException();
+        this.stepNo = stepNo;
+    }
+
+    public void setRadius(double radius) {
+        this.radius = radius;
+    }
+
+    /////////////////////////////////////////
+
+    /**
+     * Add the steered trajectory to the tree, either as lots of little segments,
+     * in the time direction of the tree, or as one segment.
+     *
+     * @return the node at x_rand, or -1 if none was added
+     */
+    private int grow(int root, int source, double[] traj, double tMax, boolean forward) {
+        if (!curves) {
+            return InsertNode(_xRand, source, tMax, root);
+        }
+        int freeEnd = -1;
+        if (forward) {
+            double tSoFar = 0;
+            for (double tSec = TSTEP; tSec <= tMax; tSec += TSTEP) {
+                tSoFar = tSec;
+                SampleTrajectory(traj, tSec, _xStep);
+                source = InsertNode(_xStep, source, TSTEP, root);
+                freeEnd = source;
+            }
+            if (tSoFar < tMax) {
+                // add one more segment to actually reach xrand
+                freeEnd = InsertNode(_xRand, source, TSTEP, root);
+            }
+        } else {
+            // time is reversed, so walk the trajectory backwards
+            double tSoFar = 0;
+            for (double tSec = tMax; tSec >= 0; tSec -= TSTEP) {
+                tSoFar = tSec;
+                SampleTrajectory(traj, tSec, _xStep);
+                source = InsertNode(_xStep, source, TSTEP, root);
+                freeEnd = source;
+            }
+            if (tSoFar > 0) {
+                // add one more segment to actually reach xrand
+                freeEnd = InsertNode(_xRand, source, TSTEP, root);
+            }
+        }
+        return freeEnd;
+    }
+
+    /** Sample the free state. */
+    private void SampleState(double[] out) {
+        while (true) {
+            _sample.get(out);
+            if (_model.clear(out))
+                return;
+        }
+    }
+
+    /** Add the node to the tree, with an edge from the parent. */
+    private int InsertNode(double[] x, int parentIdx, double dist, int root) {
+        if (dist < 0)
+            throw new IllegalArgumentException("dist may not be negative");
+        int i = _nodes.add(x, parentIdx, dist);
+        kdInsert(root, i);
+        return i;
+    }
+
+    /**
+     * Return the near node with the fastest optimal trajectory to xNew, or -1 if
+     * there are no near nodes.
+     */
+    private int BangBangNearest(double[] xNew, int root, boolean timeForward) {
+        near(root, xNew);
+        double tMin = Double.MAX_VALUE;
+        int bestNode = -1;
+        for (int k = 0; k < _nearCount; ++k) {
+            int n = _near[k];
+            double tOptimal;
+            if (timeForward) {
+                tOptimal = tOptimal(_nodes.state, 4 * n, xNew, 0, MAX_U);
+            } else {
+                tOptimal = tOptimal(xNew, 0, _nodes.state, 4 * n, MAX_U);
+            }
+            if (tOptimal < tMin) {
+                tMin = tOptimal;
+                bestNode = n;
+            }
+        }
+        return bestNode;
+    }
+
+    /**
+     * Same as RRTStar8.tOptimal(), with the candidates sorted in place.
+     */
+    private double tOptimal(double[] xi, int io, double[] xg, int go, double umax) {
+        double xTSwitch = RRTStar8.tSwitch(xi[io], xi[io + 1], xg[go], xg[go + 1], umax);
+        double yTSwitch = RRTStar8.tSwitch(xi[io + 2], xi[io + 3], xg[go + 2], xg[go + 3], umax);
+        double xTLimit = RRTStar8.tLimit(xi[io], xi[io + 1], xg[go], xg[go + 1], umax);
+        double yTLimit = RRTStar8.tLimit(xi[io + 2], xi[io + 3], xg[go + 2], xg[go + 3], umax);
+        double xTMirror = RRTStar8.tMirror(xi[io], xi[io + 1], xg[go], xg[go + 1], umax);
+        double yTMirror = RRTStar8.tMirror(xi[io + 2], xi[io + 3], xg[go + 2], xg[go + 3], umax);
+
+        _optCount = 0;
+        put(xTSwitch, SWITCH);
+        put(yTSwitch, SWITCH);
+        put(xTLimit, LIMIT);
+        put(yTLimit, LIMIT);
+        put(xTMirror, MIRROR);
+        put(yTMirror, MIRROR);
+
+        int solved = 0;
+        for (int k = 0; k < _optCount; ++k) {
+            solved += _optS[k];
+            if (solved == 2)
+                return _optT[k];
+        }
+        // this should never happen; there is never not a solution.
+        throw new IllegalArgumentException(String.format("x %f %f %f\ny %f %f %f\n",
+                xTSwitch, xTLimit, xTMirror, yTSwitch, yTLimit, yTMirror));
+    }
+
+    /** Insertion into the sorted candidates, stable like Collections.sort(). */
+    private void put(double t, int solution) {
+        if (Double.isNaN(t) || !(t >= 0))
+            return;
+        int j = _optCount++;
+        while (j > 0 && Double.compare(_optT[j - 1], t) > 0) {
+            _optT[j] = _optT[j - 1];
+            _optS[j] = _optS[j - 1];
+            j--;
+        }
+        _optT[j] = t;
+        _optS[j] = solution;
+    }
+
+    /**
+     * Fill traj with a feasible trajectory from x_i to x_g.
+     *
+     * @return false if none is feasible
+     */
+    private boolean BangBangSteer(double[] x_i, double[] x_g, boolean timeForward, double[] traj) {
+        boolean ok;
+        if (timeForward) {
+            ok = optimalTrajectory(x_i, x_g, MAX_U, traj);
+        } else {
+            ok = optimalTrajectory(x_g, x_i, MAX_U, traj);
+        }
+        if (!ok)
+            return false;
+        double tMax = tMax(traj);
+        double tStep = 0.1;
+        for (double tSec = 0; tSec < tMax; tSec += tStep) {
+            SampleTrajectory(traj, tSec, _xStep);
+            if (!_model.clear(_xStep))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean optimalTrajectory(double[] x_i, double[] x_g, double umax, double[] traj) {
+        double tOptimal = tOptimal(x_i, 0, x_g, 0, umax);
+        boolean xOk = slowU(x_i[0], x_i[1], x_g[0], x_g[1], tOptimal, traj, AXIS_X);
+        boolean yOk = slowU(x_i[2], x_i[3], x_g[2], x_g[3], tOptimal, traj, AXIS_Y);
+        return xOk && yOk;
+    }
+
+    /**
+     * Same as RRTStar8.slowU(), writing the axis into traj at base.
+     *
+     * @return false if it fails
+     */
+    private boolean slowU(double i, double idot, double g, double gdot, double tw, double[] traj, int base) {
+        double a = tw * tw;
+        double b = 2.0 * tw * (idot + gdot) + 4.0 * (i - g);
+        double c = -1.0 * (gdot - idot) * (gdot - idot);
+        boolean found = false;
+        double aMin = 0;
+
+        // I+G-
+        int n = quadratic(a, b, c, _roots);
+        for (int k = 0; k < n; ++k) {
+            double p = _roots[k];
+            if (Math.abs(p) < 1e-6 && n > 1)
+                continue;
+            double ts;
+            if (Math.abs(p) < 1e-6) {
+                ts = tw;
+            } else {
+                ts = 0.5 * (tw + (gdot - idot) / p);
+            }
+            if (p < 0 || ts < 0 || ts > tw)
+                continue;
+            if (!found || p < aMin) {
+                found = true;
+                aMin = p;
+                setAxis(traj, base, i, idot, g, gdot, aMin, ts, -aMin, tw - ts);
+            }
+        }
+
+        // I-G+
+        n = quadratic(a, -b, c, _roots);
+        for (int k = 0; k < n; ++k) {
+            double m = _roots[k];
+            if (Math.abs(m) < 1e-6 && n > 1)
+                continue;
+            double ts;
+            if (Math.abs(m) < 1e-6) {
+                ts = tw;
+            } else {
+                ts = 0.5 * (tw + (idot - gdot) / m);
+            }
+            if (m < 0 || ts < 0 || ts > tw)
+                continue;
+            if (!found || m < aMin) {
+                found = true;
+                aMin = m;
+                setAxis(traj, base, i, idot, g, gdot, -aMin, ts, aMin, tw - ts);
+            }
+        }
+        return found;
+    }
+
+    private static void setAxis(double[] traj, int base,
+            double i, double idot, double g, double gdot,
+            double u1, double t1, double u2, double t2) {
+        traj[base + I] = i;
+        traj[base + IDOT] = idot;
+        traj[base + G] = g;
+        traj[base + GDOT] = gdot;
+        traj[base + U1] = u1;
+        traj[base + T1] = t1;
+        traj[base + U2] = u2;
+        traj[base + T2] = t2;
+    }
+
+    /**
+     * Same as RRTStar8.quadratic(), into out.
+     *
+     * @return the number of roots
+     */
+    static int quadratic(double a, double b, double c, double[] out) {
+        if (a == 0) {
+            if (b == 0)
+                return 0;
+            out[0] = -c / b;
+            return 1;
+        }
+        if (c == 0) { // det = b^2
+            out[0] = 0.0;
+            if (b == 0) // just y=ax^2
+                return 1;
+            out[1] = -b / a;
+            return 2;
+        }
+        double det = b * b - 4.0 * a * c;
+        if (det < 0.0)
+            return 0;
+        if (det == 0.0) {
+            out[0] = -b / (2.0 * a);
+            return 1;
+        }
+        det = Math.sqrt(det);
+        if (Math.abs(-b - det) < Math.abs(a))
+            out[0] = 0.5 * (-b + det) / a;
+        else
+            out[0] = 2.0 * c / (-b - det);
+        if (Math.abs(-b + det) < Math.abs(a))
+            out[1] = 0.5 * (-b - det) / a;
+        else
+            out[1] = 2.0 * c / (-b + det);
+        return 2;
+    }
+
+    private static double tMax(double[] traj) {
+        return Math.max(traj[AXIS_X + T1] + traj[AXIS_X + T2], traj[AXIS_Y + T1] + traj[AXIS_Y + T2]);
+    }
+
+    /** Same as RRTStar8.SampleTrajectory(), into out. */
+    static void SampleTrajectory(double[] traj, double tSec, double[] out) {
+        SampleAxis(traj, AXIS_X, tSec, out, 0);
+        SampleAxis(traj, AXIS_Y, tSec, out, 2);
+    }
+
+    static void SampleAxis(double[] traj, int base, double tSec, double[] out, int offset) {
+        double i = traj[base + I];
+        double idot = traj[base + IDOT];
+        double g = traj[base + G];
+        double gdot = traj[base + GDOT];
+        double timeTotal = traj[base + T1] + traj[base + T2];
+        if (tSec < 0) {
+            out[offset] = i;
+            out[offset + 1] = idot;
+        } else if (tSec > timeTotal) {
+            out[offset] = g;
+            out[offset + 1] = gdot;
+        } else if (Math.abs(tSec) < 1e-6) {
+            out[offset] = i;
+            out[offset + 1] = idot;
+        } else if (Math.abs(tSec - timeTotal) < 1e-6) {
+            out[offset] = g;
+            out[offset + 1] = gdot;
+        } else if (tSec < traj[base + T1]) {
+            // first segment
+            double u = traj[base + U1];
+            out[offset] = i + idot * tSec + 0.5 * u * tSec * tSec;
+            out[offset + 1] = idot + u * tSec;
+        } else {
+            double u = traj[base + U2];
+            double timeToGo = timeTotal - tSec; // a positive number
+            out[offset] = g - gdot * timeToGo + 0.5 * u * timeToGo * timeToGo;
+            out[offset + 1] = gdot - u * timeToGo;
+        }
+    }
+
+    /** Same as KDTree.insert(). */
+    private void kdInsert(int root, int i) {
+        System.arraycopy(_boundsMin, 0, _kdMin, 0, 4);
+        System.arraycopy(_boundsMax, 0, _kdMax, 0, 4);
+        int n = root;
+        for (int depth = 0;; ++depth) {
+            int axis = depth % 4;
+            double mp = (_kdMin[axis] + _kdMax[axis]) / 2;
+            double v = _nodes.state[4 * i + axis];
+            if (v < mp) {
+                // a-side
+                if (_nodes.kdA[n] < 0) {
+                    _nodes.kdA[n] = i;
+                    return;
+                }
+                _kdMax[axis] = mp;
+                n = _nodes.kdA[n];
+            } else {
+                // b-side
+                if (_nodes.kdB[n] < 0) {
+                    _nodes.kdB[n] = i;
+                    return;
+                }
+                _kdMin[axis] = mp;
+                n = _nodes.kdB[n];
+            }
+        }
+    }
+
+    /** Same as KDTree.near(), into _near, in the same order. */
+    private void near(int root, double[] target) {
+        System.arraycopy(_boundsMin, 0, _kdMin, 0, 4);
+        System.arraycopy(_boundsMax, 0, _kdMax, 0, 4);
+        _nearCount = 0;
+        near(root, target, 0);
+    }
+
+    private void near(int n, double[] target, int depth) {
+        if (dist(n, target) < radius) {
+            if (_nearCount == _near.length)
+                _near = Arrays.copyOf(_near, 2 * _nearCount);
+            _near[_nearCount++] = n;
+        }
+        final int axis = depth % 4;
+        final double mp = (_kdMin[axis] + _kdMax[axis]) / 2;
+        final double dm = Math.abs(mp - target[axis]);
+
+        int a = _nodes.kdA[n];
+        if (a >= 0 && (target[axis] < mp || dm < radius)) {
+            // in or near a-side
+            double tmp = _kdMax[axis];
+            _kdMax[axis] = mp;
+            near(a, target, depth + 1);
+            _kdMax[axis] = tmp;
+        }
+
+        int b = _nodes.kdB[n];
+        if (b >= 0 && (mp <= target[axis] || dm < radius)) {
+            // in or near b-side
+            double tmp = _kdMin[axis];
+            _kdMin[axis] = mp;
+            near(b, target, depth + 1);
+            _kdMin[axis] = tmp;
+        }
+    }
+
+    /**
+     * Euclidean distance, computed the way Matrix.normF() does it, scaled by the
+     * largest element, so it matches the arena dist() exactly.
+     */
+    private double dist(int n, double[] target) {
+        int base = 4 * n;
+        double scale = 0;
+        for (int j = 0; j < 4; ++j) {
+            scale = Math.max(scale, Math.abs(_nodes.state[base + j] - target[j]));
+        }
+        if (scale == 0.0)
+            return 0.0;
+        double total = 0;
+        for (int j = 0; j < 4; ++j) {
+            double val = (_nodes.state[base + j] - target[j]) / scale;
+            total += val * val;
+        }
+        return scale * Math.sqrt(total);
+    }
+
+    private boolean same(int n, double[] x) {
+        return same(n, x, 0);
+    }
+
+    private boolean same(int n, double[] x, int offset) {
+        for (int j = 0; j < 4; ++j) {
+            if (!(Math.abs(_nodes.state[4 * n + j] - x[offset + j]) <= 0.0001))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same as RRTStar8.GenerateSinglePath(): the path from the root of x_1's tree
+     * to x_1, then from x_2 to the root of its tree, where x_1 is whichever of the
+     * two leaves is at the root of the "this" tree.
+     */
+    private SinglePath<N4> GenerateSinglePath(int x_1, int x_2) {
+        if (!same(_a, _nodes.state, 4 * x_1)) {
+            // swap them
+            int tmp = x_1;
+            x_1 = x_2;
+            x_2 = tmp;
+        }
+        LinkedList<SinglePath.Link<N4>> revLinks1 = new LinkedList<>();
+        for (int n = x_1; _nodes.parent[n] >= 0; n = _nodes.parent[n]) {
+            revLinks1.addFirst(new SinglePath.Link<>(
+                    _nodes.matrix(_nodes.parent[n]), _nodes.matrix(n), _nodes.linkDist[n]));
+        }
+        List<SinglePath.Link<N4>> resultLinks = new ArrayList<>(revLinks1);
+        for (int n = x_2; _nodes.parent[n] >= 0; n = _nodes.parent[n]) {
+            resultLinks.add(new SinglePath.Link<>(
+                    _nodes.matrix(n), _nodes.matrix(_nodes.parent[n]), _nodes.linkDist[n]));
+        }
+        return new SinglePath<>(resultLinks);
+    }
+
+    /**
+     * Make Node objects for one tree, in KD tree preorder like KDTree.values(),
+     * linked like the tree.
+     */
+    private List<Node<N4>> materialize(int root) {
+        List<Integer> order = new ArrayList<>();
+        LinkedList<Integer> stack = new LinkedList<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            int n = stack.pop();
+            order.add(n);
+            if (_nodes.kdB[n] >= 0)
+                stack.push(_nodes.kdB[n]);
+            if (_nodes.kdA[n] >= 0)
+                stack.push(_nodes.kdA[n]);
+        }
+        List<Node<N4>> byIndex = new ArrayList<>(_nodes.size);
+        for (int i = 0; i < _nodes.size; ++i)
+            byIndex.add(null);
+        List<Node<N4>> result = new ArrayList<>(order.size());
+        for (int n : order) {
+            Node<N4> node = new Node<>(_nodes.matrix(n));
+            byIndex.set(n, node);
+            result.add(node);
+        }
+        // parents come before children in the store, so link in index order,
+        // to get the cached path distances right.
+        for (int n = 0; n < _nodes.size; ++n) {
+            int p = _nodes.parent[n];
+            if (p >= 0 && byIndex.get(n) != null)
+                Graph.newLink(byIndex.get(p), byIndex.get(n), _nodes.linkDist[n]);
+        }
+        return result;
+    }
+}
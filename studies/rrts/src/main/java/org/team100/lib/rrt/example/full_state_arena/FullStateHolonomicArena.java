@@ -10,6 +10,7 @@ import org.team100.lib.geom.Obstacle;
 import org.team100.lib.geom.Polygon;
 import org.team100.lib.graph.Node;
 import org.team100.lib.index.KDNearNode;
+import org.team100.lib.planner.PackedRobotModel;
 
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.Nat;
@@ -19,7 +20,7 @@ import edu.wpi.first.math.numbers.N4;
 /**
  * this only works for 4d full state
  */
-public class FullStateHolonomicArena implements Arena<N4> {
+public class FullStateHolonomicArena implements Arena<N4>, PackedRobotModel {
     private static final double DISCRETIZATION = 0.25;
     private static final double ROBOT_RADIUS = .4;
     private static final double GOAL_RADIUS = 0.4;
@@ -133,35 +134,41 @@ public class FullStateHolonomicArena implements Arena<N4> {
      */
     @Override
     public boolean clear(Matrix<N4, N1> config) {
-        if (config.get(0, 0) - ROBOT_RADIUS < _min.get(0, 0))
+        return clear(config.getData());
+    }
+
+    /** Packed config is also (x xdot y ydot) */
+    @Override
+    public boolean clear(double[] config) {
+        if (config[0] - ROBOT_RADIUS < _min.get(0, 0))
             return false;
-        if (config.get(2, 0) - ROBOT_RADIUS < _min.get(2, 0))
+        if (config[2] - ROBOT_RADIUS < _min.get(2, 0))
             return false;
-        if (config.get(0, 0) + ROBOT_RADIUS > _max.get(0, 0))
+        if (config[0] + ROBOT_RADIUS > _max.get(0, 0))
             return false;
-        if (config.get(2, 0) + ROBOT_RADIUS > _max.get(2, 0))
+        if (config[2] + ROBOT_RADIUS > _max.get(2, 0))
             return false;
         // poor-man's velocity limit. TODO: add bang-cruise-bang solutions.
-        if (config.get(1, 0) < _min.get(1, 0)) {
-            // System.out.printf("%f %f\n", config.get(1, 0), _min.get(1, 0));
+        if (config[1] < _min.get(1, 0)) {
+            // System.out.printf("%f %f\n", config[1], _min.get(1, 0));
             return false;
         }
-        if (config.get(3, 0) < _min.get(3, 0)) {
-            // System.out.printf("%f %f\n", config.get(3, 0), _min.get(1, 0));
+        if (config[3] < _min.get(3, 0)) {
+            // System.out.printf("%f %f\n", config[3], _min.get(1, 0));
             return false;
         }
-        if (config.get(1, 0) > _max.get(1, 0)) {
-            // System.out.printf("%f %f\n", config.get(1, 0), _max.get(1, 0));
+        if (config[1] > _max.get(1, 0)) {
+            // System.out.printf("%f %f\n", config[1], _max.get(1, 0));
             return false;
         }
-        if (config.get(3, 0) > _max.get(3, 0)) {
-            // System.out.printf("%f %f\n", config.get(3, 0), _max.get(1, 0));
+        if (config[3] > _max.get(3, 0)) {
+            // System.out.printf("%f %f\n", config[3], _max.get(1, 0));
             return false;
         }
 
         // robot-obstacle collision
         for (Obstacle obstacle : _obstacles) {
-            if (obstacle.distToPoint(config.get(0, 0), config.get(2, 0)) < ROBOT_RADIUS)
+            if (obstacle.distToPoint(config[0], config[2]) < ROBOT_RADIUS)
                 return false;
         }
         return true;
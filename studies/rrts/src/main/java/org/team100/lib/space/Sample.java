@@ -37,4 +37,12 @@ public class Sample<States extends Num> {
         }
         return result;
     }
+
+    /** Same as get(), drawing the same numbers, into out instead of a Matrix. */
+    public void get(double[] out) {
+        for (int i = 0; i < _sampleMin.getNumRows(); ++i) {
+            double range = _sampleMax.get(i, 0) - _sampleMin.get(i, 0);
+            out[i] = _sampleMin.get(i, 0) + range * _random.nextDouble();
+        }
+    }
 }
@@ -0,0 +1,266 @@
+package org.team100.lib.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.graph.Node;
+import org.team100.lib.space.Point;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N4;
+
+class FlatKDTreeTest {
+    private static final boolean dump = false;
+
+    private static class UnitModel implements KDModel<N4> {
+        @Override
+        public Matrix<N4, N1> getMin() {
+            return new Matrix<>(Nat.N4(), Nat.N1(), new double[] { 0, 0, 0, 0 });
+        }
+
+        @Override
+        public Matrix<N4, N1> getMax() {
+            return new Matrix<>(Nat.N4(), Nat.N1(), new double[] { 1, 1, 1, 1 });
+        }
+
+        @Override
+        public double dist(Matrix<N4, N1> start, Matrix<N4, N1> end) {
+            return start.minus(end).normF();
+        }
+
+        @Override
+        public Matrix<N4, N1> steer(KDNearNode<Node<N4>> x_nearest, Matrix<N4, N1> newConfig) {
+            throw new UnsupportedOperationException("Unimplemented method 'steer'");
+        }
+
+        @Override
+        public void setStepNo(int stepNo) {
+        }
+
+        @Override
+        public void setRadius(double radius) {
+        }
+    }
+
+    private static class IntPoint implements Point<N4> {
+        private final int _id;
+        private final Matrix<N4, N1> _state;
+
+        IntPoint(int id, double[] x) {
+            _id = id;
+            _state = new Matrix<>(Nat.N4(), Nat.N1(), x);
+        }
+
+        @Override
+        public Matrix<N4, N1> getState() {
+            return _state;
+        }
+    }
+
+    private static double[] random(Random random, int n, int dim) {
+        double[] x = new double[n * dim];
+        for (int i = 0; i < x.length; ++i)
+            x[i] = random.nextDouble();
+        return x;
+    }
+
+    private static double dist(double[] coords, int i, double[] target) {
+        double sum = 0;
+        for (int j = 0; j < target.length; ++j) {
+            double d = coords[i * target.length + j] - target[j];
+            sum += d * d;
+        }
+        return Math.sqrt(sum);
+    }
+
+    @Test
+    void testEmpty() {
+        FlatKDTree<Integer> tree = new FlatKDTree<>(2);
+        FlatKDTree.Result<Integer> result = new FlatKDTree.Result<>();
+        assertNull(tree.nearest(new double[] { 0, 0 }, result));
+        assertEquals(0, tree.near(new double[] { 0, 0 }, 1, result));
+    }
+
+    /** Same answers as brute force, across several merges. */
+    @Test
+    void testBruteForce() {
+        Random random = new Random(0);
+        int n = 5000;
+        int dim = 4;
+        double[] coords = random(random, n, dim);
+        FlatKDTree<Integer> tree = new FlatKDTree<>(dim);
+        for (int i = 0; i < n; ++i) {
+            tree.add(Arrays.copyOfRange(coords, i * dim, (i + 1) * dim), i);
+        }
+        assertEquals(n, tree.size());
+        FlatKDTree.Result<Integer> result = new FlatKDTree.Result<>();
+        double[] all = new double[n];
+        for (int q = 0; q < 100; ++q) {
+            double[] target = random(random, 1, dim);
+            for (int i = 0; i < n; ++i)
+                all[i] = dist(coords, i, target);
+            double[] sorted = all.clone();
+            Arrays.sort(sorted);
+
+            assertEquals(10, tree.nearest(target, 10, result));
+            for (int i = 0; i < 10; ++i) {
+                assertEquals(sorted[i], result.dist(i), 1e-12);
+                assertEquals(sorted[i], all[result.value(i)], 1e-12);
+            }
+
+            double radius = 0.2;
+            int expected = 0;
+            for (int i = 0; i < n; ++i) {
+                if (all[i] < radius)
+                    expected++;
+            }
+            assertEquals(expected, tree.near(target, radius, result));
+            for (int i = 0; i < result.size(); ++i) {
+                assertTrue(result.dist(i) < radius);
+                assertEquals(all[result.value(i)], result.dist(i), 1e-12);
+            }
+        }
+    }
+
+    /** Duplicate points all come back. */
+    @Test
+    void testDuplicates() {
+        FlatKDTree<Integer> tree = new FlatKDTree<>(2);
+        for (int i = 0; i < 1000; ++i) {
+            tree.add(new double[] { 0.5, 0.5 }, i);
+        }
+        FlatKDTree.Result<Integer> result = new FlatKDTree.Result<>();
+        assertEquals(1000, tree.near(new double[] { 0.5, 0.5 }, 0.1, result));
+        assertEquals(5, tree.nearest(new double[] { 0, 0 }, 5, result));
+    }
+
+    /**
+     * Readers query while the writer inserts batches; each reader sees whole
+     * batches only.
+     */
+    @Test
+    void testConcurrent() throws InterruptedException {
+        int dim = 4;
+        int batch = 1000;
+        int batches = 50;
+        FlatKDTree<Integer> tree = new FlatKDTree<>(dim);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean ok = new AtomicBoolean(true);
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; ++r) {
+            final int seed = r;
+            Thread reader = new Thread(() -> {
+                Random random = new Random(seed);
+                FlatKDTree.Result<Integer> result = new FlatKDTree.Result<>();
+                while (!done.get()) {
+                    // every batch covers the whole cube, so radius 2 finds all
+                    int n = tree.near(random(random, 1, dim), 2.1, result);
+                    if (n % batch != 0)
+                        ok.set(false);
+                    n = tree.nearest(random(random, 1, dim), 3, result);
+                    for (int i = 1; i < n; ++i) {
+                        if (result.dist(i) < result.dist(i - 1))
+                            ok.set(false);
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        Random random = new Random(100);
+        for (int b = 0; b < batches; ++b) {
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < batch; ++i)
+                values.add(b * batch + i);
+            tree.addAll(random(random, batch, dim), values);
+        }
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        assertTrue(ok.get());
+        assertEquals(batch * batches, tree.size());
+    }
+
+    /**
+     * Query throughput, nearest and near, against KDTree, for uniform points in
+     * the unit 4-cube. 1M is slow to build in the linked tree, so only with
+     * dump.
+     */
+    @Test
+    void testBenchmark() {
+        int[] sizes = dump ? new int[] { 10000, 100000, 1000000 } : new int[] { 10000 };
+        int dim = 4;
+        int queries = 10000;
+        double radius = 0.1;
+        KDModel<N4> model = new UnitModel();
+        double sum = 0;
+        for (int n : sizes) {
+            Random random = new Random(0);
+            double[] coords = random(random, n, dim);
+            KDNode<IntPoint> root = new KDNode<>(new IntPoint(0, Arrays.copyOfRange(coords, 0, dim)));
+            List<Integer> values = new ArrayList<>();
+            values.add(0);
+            for (int i = 1; i < n; ++i) {
+                KDTree.insert(model, root, new IntPoint(i, Arrays.copyOfRange(coords, i * dim, (i + 1) * dim)));
+                values.add(i);
+            }
+            FlatKDTree<Integer> flat = new FlatKDTree<>(dim);
+            flat.addAll(coords, values);
+
+            double[] targets = random(random, queries, dim);
+            List<Matrix<N4, N1>> matrixTargets = new ArrayList<>();
+            for (int q = 0; q < queries; ++q) {
+                matrixTargets.add(new Matrix<>(Nat.N4(), Nat.N1(), Arrays.copyOfRange(targets, q * dim, (q + 1) * dim)));
+            }
+            double[] target = new double[dim];
+            FlatKDTree.Result<Integer> result = new FlatKDTree.Result<>();
+            double[] nearSum = new double[1];
+
+            long startTime = System.nanoTime();
+            for (int q = 0; q < queries; ++q) {
+                sum += KDTree.nearest(model, root, matrixTargets.get(q))._nearest._id;
+            }
+            long oldNearestNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int q = 0; q < queries; ++q) {
+                System.arraycopy(targets, q * dim, target, 0, dim);
+                sum += flat.nearest(target, result);
+            }
+            long flatNearestNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int q = 0; q < queries; ++q) {
+                KDTree.near(model, root, matrixTargets.get(q), radius, (v, d) -> nearSum[0] += d);
+            }
+            long oldNearNs = System.nanoTime() - startTime;
+
+            startTime = System.nanoTime();
+            for (int q = 0; q < queries; ++q) {
+                System.arraycopy(targets, q * dim, target, 0, dim);
+                int count = flat.near(target, radius, result);
+                for (int i = 0; i < count; ++i)
+                    nearSum[0] += result.dist(i);
+            }
+            long flatNearNs = System.nanoTime() - startTime;
+            sum += nearSum[0];
+
+            if (dump)
+                System.out.printf("n %7d queries/s nearest old %.0f flat %.0f near old %.0f flat %.0f\n",
+                        n,
+                        queries * 1e9 / oldNearestNs, queries * 1e9 / flatNearestNs,
+                        queries * 1e9 / oldNearNs, queries * 1e9 / flatNearNs);
+        }
+        assertTrue(sum > 0);
+    }
+}
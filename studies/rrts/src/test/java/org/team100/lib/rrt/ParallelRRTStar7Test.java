@@ -0,0 +1,88 @@
+package org.team100.lib.rrt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.graph.Node;
+import org.team100.lib.index.KDNode;
+import org.team100.lib.random.MersenneTwister;
+import org.team100.lib.rrt.example.full_state_arena.FullStateHolonomicArena;
+import org.team100.lib.space.Sample;
+import org.team100.lib.space.SinglePath;
+
+import edu.wpi.first.math.numbers.N4;
+
+class ParallelRRTStar7Test {
+    private static final boolean dump = false;
+
+    /** Bounded by work, not time, so a slow machine doesn't fail it. */
+    @Test
+    void testSolves() {
+        ParallelRRTStar7<FullStateHolonomicArena> planner = new ParallelRRTStar7<>(
+                FullStateHolonomicArena::new, 2, 6, 0);
+        SinglePath<N4> path = planner.runForTrees(8);
+        assertNotNull(path);
+        assertTrue(path.getDistance() > 0);
+        assertTrue(Double.isFinite(path.getDistance()));
+        assertTrue(planner.getFirstSolutionNs() > 0);
+        assertTrue(planner.getSolutions() > 0);
+        assertEquals(8, planner.getTrees());
+    }
+
+    /**
+     * Time to first solution and final cost, single-threaded (as
+     * FullStateArenaView does it) vs parallel with a shared bound, for the same
+     * budget. This takes several seconds, so it only runs with dump on.
+     */
+    @Test
+    void testBenchmark() {
+        if (!dump)
+            return;
+        long budgetMs = 1000;
+        int workers = Runtime.getRuntime().availableProcessors();
+        double sum = 0;
+        for (int seed = 0; seed < 3; ++seed) {
+            long startNs = System.nanoTime();
+            long deadlineNs = startNs + budgetMs * 1000000;
+            FullStateHolonomicArena arena = new FullStateHolonomicArena();
+            KDNode<Node<N4>> T_a = new KDNode<>(new Node<>(arena.initial()));
+            KDNode<Node<N4>> T_b = new KDNode<>(new Node<>(arena.goal()));
+            RRTStar7<FullStateHolonomicArena> solver = new RRTStar7<>(arena, new Sample<>(arena, seed), T_a, T_b);
+            solver.setRadius(6);
+            long singleFirstNs = -1;
+            while (System.nanoTime() < deadlineNs) {
+                if (solver.step() < 0) {
+                    singleFirstNs = System.nanoTime() - startNs;
+                    break;
+                }
+            }
+            Random random = new MersenneTwister(seed);
+            if (singleFirstNs > 0) {
+                for (int i = 0; i < 1000 && System.nanoTime() < deadlineNs; ++i) {
+                    double frac1 = random.nextDouble();
+                    double frac2 = random.nextDouble(frac1, 1.0);
+                    solver.Optimize(frac1, frac2);
+                }
+            }
+            SinglePath<N4> single = solver.getBestSinglePath();
+            double singleCost = single == null ? Double.NaN : single.getDistance();
+
+            ParallelRRTStar7<FullStateHolonomicArena> planner = new ParallelRRTStar7<>(
+                    FullStateHolonomicArena::new, workers, 6, seed);
+            SinglePath<N4> parallel = planner.runForDurationMS(budgetMs);
+            double parallelCost = parallel == null ? Double.NaN : parallel.getDistance();
+            if (parallel != null)
+                sum += parallelCost;
+
+            System.out.printf(
+                    "seed %d first (ms) single %.1f parallel %.1f cost single %.3f parallel %.3f trees %d pruned %d\n",
+                    seed, singleFirstNs / 1e6, planner.getFirstSolutionNs() / 1e6,
+                    singleCost, parallelCost, planner.getTrees(), planner.getPruned());
+        }
+        assertTrue(sum > 0);
+    }
+}
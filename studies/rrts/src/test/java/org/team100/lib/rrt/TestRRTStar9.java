@@ -0,0 +1,135 @@
+package org.team100.lib.rrt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.graph.Node;
+import org.team100.lib.index.KDNode;
+import org.team100.lib.planner.Solver;
+import org.team100.lib.rrt.example.full_state_arena.FullStateHolonomicArena;
+import org.team100.lib.space.Sample;
+import org.team100.lib.space.SinglePath;
+
+import com.sun.management.ThreadMXBean;
+
+import edu.wpi.first.math.numbers.N4;
+
+public class TestRRTStar9 {
+    private static final boolean dump = false;
+
+    private static RRTStar8<FullStateHolonomicArena> rrtStar8(int seed) {
+        FullStateHolonomicArena arena = new FullStateHolonomicArena();
+        KDNode<Node<N4>> T_a = new KDNode<>(new Node<>(arena.initial()));
+        KDNode<Node<N4>> T_b = new KDNode<>(new Node<>(arena.goal()));
+        RRTStar8<FullStateHolonomicArena> solver = new RRTStar8<>(arena, new Sample<>(arena, seed), 1.0, T_a, T_b);
+        solver.setRadius(6);
+        return solver;
+    }
+
+    private static RRTStar9<FullStateHolonomicArena> rrtStar9(int seed) {
+        FullStateHolonomicArena arena = new FullStateHolonomicArena();
+        RRTStar9<FullStateHolonomicArena> solver = new RRTStar9<>(arena, new Sample<>(arena, seed));
+        solver.setRadius(6);
+        return solver;
+    }
+
+    private static void assertSameNodes(List<Node<N4>> expected, List<Node<N4>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals(expected.get(i).getState().getData(), actual.get(i).getState().getData(), 1e-12);
+            assertEquals(expected.get(i).getPathDist(), actual.get(i).getPathDist(), 1e-9);
+        }
+    }
+
+    @Test
+    void testQuadratic() {
+        double[] roots = new double[2];
+        assertEquals(0, RRTStar9.quadratic(0, 0, 1, roots));
+        assertEquals(1, RRTStar9.quadratic(0, 2, -4, roots));
+        assertEquals(2, roots[0], 1e-12);
+        assertEquals(2, RRTStar9.quadratic(1, -3, 2, roots));
+        List<Double> expected = RRTStar8.quadratic(1, -3, 2);
+        assertEquals(expected.get(0), roots[0], 1e-12);
+        assertEquals(expected.get(1), roots[1], 1e-12);
+    }
+
+    /**
+     * Same seed, same trees, same path, as version 8.
+     */
+    @Test
+    void testEquivalence() {
+        for (int seed = 0; seed < 3; ++seed) {
+            RRTStar8<FullStateHolonomicArena> expected = rrtStar8(seed);
+            RRTStar9<FullStateHolonomicArena> actual = rrtStar9(seed);
+            for (int step = 0; step < 5000; ++step) {
+                int e = expected.step();
+                assertEquals(e, actual.step(), "seed " + seed + " step " + step);
+                if (e < 0)
+                    break;
+            }
+            assertSameNodes(expected.getNodesA(), actual.getNodesA());
+            assertSameNodes(expected.getNodesB(), actual.getNodesB());
+
+            SinglePath<N4> expectedPath = expected.getBestSinglePath();
+            SinglePath<N4> actualPath = actual.getBestSinglePath();
+            if (expectedPath == null)
+                continue;
+            assertNotNull(actualPath);
+            assertEquals(expectedPath.getDistance(), actualPath.getDistance(), 1e-9);
+            assertEquals(expectedPath.getLinks().size(), actualPath.getLinks().size());
+            for (int i = 0; i < expectedPath.getLinks().size(); ++i) {
+                SinglePath.Link<N4> el = expectedPath.getLinks().get(i);
+                SinglePath.Link<N4> al = actualPath.getLinks().get(i);
+                assertArrayEquals(el.x_i.getData(), al.x_i.getData(), 1e-12);
+                assertArrayEquals(el.x_g.getData(), al.x_g.getData(), 1e-12);
+                assertEquals(el.cost, al.cost, 1e-12);
+            }
+        }
+    }
+
+    private static long run(Solver<N4> solver, int steps) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < steps; ++i) {
+            solver.step();
+        }
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Nodes per second and bytes allocated per node, for the same steps. Only a
+     * short run without dump; with dump the trees get big.
+     */
+    @Test
+    void testBenchmark() {
+        int steps = dump ? 100000 : 2000;
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        RRTStar8<FullStateHolonomicArena> v8 = rrtStar8(0);
+        long bytes8 = bean.getThreadAllocatedBytes(thread);
+        long ns8 = run(v8, steps);
+        bytes8 = bean.getThreadAllocatedBytes(thread) - bytes8;
+        int nodes8 = v8.getNodesA().size() + v8.getNodesB().size();
+
+        RRTStar9<FullStateHolonomicArena> v9 = rrtStar9(0);
+        long bytes9 = bean.getThreadAllocatedBytes(thread);
+        long ns9 = run(v9, steps);
+        bytes9 = bean.getThreadAllocatedBytes(thread) - bytes9;
+        int nodes9 = v9.size();
+
+        if (dump) {
+            System.out.printf("v8 nodes %d nodes/s %.0f bytes/node %.0f\n",
+                    nodes8, nodes8 * 1e9 / ns8, (double) bytes8 / nodes8);
+            System.out.printf("v9 nodes %d nodes/s %.0f bytes/node %.0f\n",
+                    nodes9, nodes9 * 1e9 / ns9, (double) bytes9 / nodes9);
+        }
+        assertTrue(nodes8 > 2);
+        assertTrue(nodes9 > 2);
+    }
+}
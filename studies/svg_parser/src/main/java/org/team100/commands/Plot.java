@@ -1,16 +1,15 @@
 package org.team100.commands;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 
-import org.team100.planning.SvgReader;
-import org.team100.plotter.Operation;
-import org.team100.plotter.SVGToPlotOperations;
+import org.team100.plotter.PlotPath;
+import org.team100.plotter.PlotPlan;
+import org.team100.plotter.PlotPlanCache;
+import org.team100.plotter.PlotTiming;
 
-import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -23,9 +22,8 @@ import edu.wpi.first.wpilibj2.command.Command;
  * i could read the whole file and store some intermediate thing
  * or i could just read the file bit by bit.
  * 
- * the file reader already loads the whole file into the "nodelist"
- * so i could think of it as transforming the nodelist all at
- * once instead of bit by bit.
+ * the file is compiled all at once into a plan, which is cached,
+ * so the next load just reads the plan.
  */
 public class Plot extends Command {
     private enum PenState {
@@ -34,21 +32,26 @@ public class Plot extends Command {
 
     private static final double xScale = 1;
     private static final double yScale = 1;
-    private static final double tolerance = 0.01;
+    private static final double flatness = 0.01;
+    private static final PlotTiming timing = new PlotTiming(10, 0.1, 0.1, 0.5, 1);
 
-    private final SVGToPlotOperations ops;
+    private final double[] sample = new double[3];
+    private List<PlotPath> paths = List.of();
 
-    private Operation currentOp;
+    private PlotPath currentOp;
     private PenState penState = PenState.DOWN;
-    private Iterator<Operation> opIter;
+    private Iterator<PlotPath> opIter;
     private boolean done;
     private Timer timer = new Timer();
 
     public Plot() {
-        // read the file once
-        ops = new SVGToPlotOperations(xScale, yScale, tolerance);
+        // compile the file once, or read the cached plan
+        PlotPlanCache cache = new PlotPlanCache(
+                Filesystem.getOperatingDirectory().toPath().resolve("plans"));
         try {
-            new SvgReader(stream("subpop.svg"), ops).run();
+            Path svg = Filesystem.getDeployDirectory().toPath().resolve("subpop.svg");
+            PlotPlan plan = cache.get(svg, xScale, yScale, flatness, timing);
+            paths = plan.getPaths();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -56,7 +59,7 @@ public class Plot extends Command {
 
     @Override
     public void initialize() {
-        opIter = ops.getOperations().iterator();
+        opIter = paths.iterator();
         done = false;
         currentOp = null;
         penState = PenState.DOWN;
@@ -85,7 +88,7 @@ public class Plot extends Command {
             return;
         }
         double timeSec = timer.get();
-        if (currentOp == null || timeSec > currentOp.getTrajectory().getTotalTimeSeconds()) {
+        if (currentOp == null || timeSec > currentOp.getTotalTimeSeconds()) {
             if (opIter.hasNext()) {
                 currentOp = opIter.next();
                 timer.stop();
@@ -110,11 +113,11 @@ public class Plot extends Command {
         // if we got here then the pen is in the right state.
         timer.start(); // just in case
 
-        Trajectory.State state = currentOp.getTrajectory().sample(timeSec);
+        currentOp.sample(timeSec, sample);
 
         // TODO: do something with the state (e.g. map it to actuation);
 
-        System.out.println(state);
+        System.out.printf("x %.3f y %.3f v %.3f\n", sample[0], sample[1], sample[2]);
     }
 
     @Override
@@ -127,10 +130,4 @@ public class Plot extends Command {
         // some sort of "stop" event
     }
 
-    private static InputStream stream(String filename) throws IOException {
-        Path deployPath = Filesystem.getDeployDirectory().toPath();
-        Path path = deployPath.resolve(filename);
-        return Files.newInputStream(path);
-    }
-
 }
@@ -0,0 +1,329 @@
+package org.team100.planning;
+
+/**
+ * Tokenizes SVG path data (the "d" attribute) in one pass, and gives absolute
+ * moves, lines, and cubics to the sink, without building anything in between.
+ * 
+ * Relative commands, implicit repeats, H and V, smooth curves (S and T),
+ * quadratics, and arcs are all converted here.
+ * 
+ * See https://www.w3.org/TR/SVG11/paths.html#PathDataBNF
+ */
+public class PathDataParser {
+    private final PathSink m_sink;
+
+    private CharSequence m_d;
+    private int m_pos;
+    /** Current point */
+    private double m_x;
+    private double m_y;
+    /** Start of the current subpath */
+    private double m_startX;
+    private double m_startY;
+    /** Reflected for S and T */
+    private double m_controlX;
+    private double m_controlY;
+
+    public PathDataParser(PathSink sink) {
+        m_sink = sink;
+    }
+
+    /** @throws IllegalArgumentException if the path data is malformed */
+    public void parse(CharSequence d) {
+        m_d = d;
+        m_pos = 0;
+        m_x = 0;
+        m_y = 0;
+        m_startX = 0;
+        m_startY = 0;
+        char command = 0;
+        char previous = 0;
+        while (skipSeparators()) {
+            char c = m_d.charAt(m_pos);
+            if (isCommand(c)) {
+                command = c;
+                ++m_pos;
+            } else if (command == 0 || command == 'Z' || command == 'z') {
+                throw error("expected a command");
+            }
+            boolean relative = Character.isLowerCase(command);
+            double ox = relative ? m_x : 0;
+            double oy = relative ? m_y : 0;
+            switch (Character.toUpperCase(command)) {
+                case 'M': {
+                    double x = ox + number();
+                    double y = oy + number();
+                    m_sink.move(x, y);
+                    m_startX = x;
+                    m_startY = y;
+                    setCurrent(x, y);
+                    // more coordinates are lines
+                    command = relative ? 'l' : 'L';
+                    break;
+                }
+                case 'L':
+                    line(ox + number(), oy + number());
+                    break;
+                case 'H':
+                    line(ox + number(), m_y);
+                    break;
+                case 'V':
+                    line(m_x, oy + number());
+                    break;
+                case 'C': {
+                    double x1 = ox + number();
+                    double y1 = oy + number();
+                    double x2 = ox + number();
+                    double y2 = oy + number();
+                    cubic(x1, y1, x2, y2, ox + number(), oy + number());
+                    break;
+                }
+                case 'S': {
+                    double x1 = m_x;
+                    double y1 = m_y;
+                    if (isCubic(previous)) {
+                        x1 = 2 * m_x - m_controlX;
+                        y1 = 2 * m_y - m_controlY;
+                    }
+                    double x2 = ox + number();
+                    double y2 = oy + number();
+                    cubic(x1, y1, x2, y2, ox + number(), oy + number());
+                    break;
+                }
+                case 'Q':
+                    quadratic(ox + number(), oy + number(), ox + number(), oy + number());
+                    break;
+                case 'T': {
+                    double qx = m_x;
+                    double qy = m_y;
+                    if (isQuadratic(previous)) {
+                        qx = 2 * m_x - m_controlX;
+                        qy = 2 * m_y - m_controlY;
+                    }
+                    quadratic(qx, qy, ox + number(), oy + number());
+                    break;
+                }
+                case 'A': {
+                    double rx = number();
+                    double ry = number();
+                    double rotationDeg = number();
+                    boolean large = flag();
+                    boolean sweep = flag();
+                    arc(rx, ry, rotationDeg, large, sweep, ox + number(), oy + number());
+                    break;
+                }
+                case 'Z':
+                    m_sink.close();
+                    setCurrent(m_startX, m_startY);
+                    break;
+                default:
+                    throw error("unknown command " + command);
+            }
+            previous = Character.toUpperCase(command);
+        }
+    }
+
+    ////////////////////////////////////////////////
+
+    private void line(double x, double y) {
+        m_sink.line(x, y);
+        setCurrent(x, y);
+    }
+
+    private void cubic(double x1, double y1, double x2, double y2, double x, double y) {
+        m_sink.cubic(x1, y1, x2, y2, x, y);
+        setCurrent(x, y);
+        m_controlX = x2;
+        m_controlY = y2;
+    }
+
+    /** Degree elevation: the cubic controls are 2/3 of the way to the quadratic one. */
+    private void quadratic(double qx, double qy, double x, double y) {
+        m_sink.cubic(
+                m_x + 2 * (qx - m_x) / 3, m_y + 2 * (qy - m_y) / 3,
+                x + 2 * (qx - x) / 3, y + 2 * (qy - y) / 3,
+                x, y);
+        setCurrent(x, y);
+        m_controlX = qx;
+        m_controlY = qy;
+    }
+
+    /**
+     * Endpoint to center conversion, SVG implementation notes F.6.5, then one
+     * cubic per quarter turn or less.
+     */
+    private void arc(double rx, double ry, double rotationDeg, boolean large, boolean sweep, double x, double y) {
+        rx = Math.abs(rx);
+        ry = Math.abs(ry);
+        if (rx == 0 || ry == 0 || (x == m_x && y == m_y)) {
+            line(x, y);
+            return;
+        }
+        double phi = Math.toRadians(rotationDeg);
+        double cos = Math.cos(phi);
+        double sin = Math.sin(phi);
+        double dx = (m_x - x) / 2;
+        double dy = (m_y - y) / 2;
+        double x1p = cos * dx + sin * dy;
+        double y1p = -sin * dx + cos * dy;
+        // scale up radii that are too small, F.6.6
+        double lambda = (x1p * x1p) / (rx * rx) + (y1p * y1p) / (ry * ry);
+        if (lambda > 1) {
+            rx *= Math.sqrt(lambda);
+            ry *= Math.sqrt(lambda);
+        }
+        double num = rx * rx * ry * ry - rx * rx * y1p * y1p - ry * ry * x1p * x1p;
+        double den = rx * rx * y1p * y1p + ry * ry * x1p * x1p;
+        double coef = Math.sqrt(Math.max(0, num / den));
+        if (large == sweep)
+            coef = -coef;
+        double cxp = coef * rx * y1p / ry;
+        double cyp = -coef * ry * x1p / rx;
+        double cx = cos * cxp - sin * cyp + (m_x + x) / 2;
+        double cy = sin * cxp + cos * cyp + (m_y + y) / 2;
+        double theta1 = Math.atan2((y1p - cyp) / ry, (x1p - cxp) / rx);
+        double theta2 = Math.atan2((-y1p - cyp) / ry, (-x1p - cxp) / rx);
+        double delta = theta2 - theta1;
+        if (sweep && delta < 0)
+            delta += 2 * Math.PI;
+        else if (!sweep && delta > 0)
+            delta -= 2 * Math.PI;
+
+        int segments = (int) Math.ceil(Math.abs(delta) / (Math.PI / 2) - 1e-9);
+        double step = delta / segments;
+        // control arm length for a circular arc of this angle
+        double k = 4.0 / 3.0 * Math.tan(step / 4);
+        double t = theta1;
+        for (int i = 0; i < segments; ++i) {
+            double c1 = Math.cos(t);
+            double s1 = Math.sin(t);
+            double c2 = Math.cos(t + step);
+            double s2 = Math.sin(t + step);
+            // in the unrotated, unit-circle frame
+            double ax1 = c1 - k * s1;
+            double ay1 = s1 + k * c1;
+            double ax2 = c2 + k * s2;
+            double ay2 = s2 - k * c2;
+            double ex = i == segments - 1 ? x : cx + rx * cos * c2 - ry * sin * s2;
+            double ey = i == segments - 1 ? y : cy + rx * sin * c2 + ry * cos * s2;
+            cubic(
+                    cx + rx * cos * ax1 - ry * sin * ay1, cy + rx * sin * ax1 + ry * cos * ay1,
+                    cx + rx * cos * ax2 - ry * sin * ay2, cy + rx * sin * ax2 + ry * cos * ay2,
+                    ex, ey);
+            t += step;
+        }
+    }
+
+    private void setCurrent(double x, double y) {
+        m_x = x;
+        m_y = y;
+        m_controlX = x;
+        m_controlY = y;
+    }
+
+    private static boolean isCommand(char c) {
+        switch (c) {
+            case 'M': case 'm': case 'L': case 'l': case 'H': case 'h': case 'V': case 'v':
+            case 'C': case 'c': case 'S': case 's': case 'Q': case 'q': case 'T': case 't':
+            case 'A': case 'a': case 'Z': case 'z':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isCubic(char command) {
+        return command == 'C' || command == 'S';
+    }
+
+    private static boolean isQuadratic(char command) {
+        return command == 'Q' || command == 'T';
+    }
+
+    /** @return false at the end */
+    private boolean skipSeparators() {
+        int len = m_d.length();
+        while (m_pos < len) {
+            char c = m_d.charAt(m_pos);
+            if (c != ' ' && c != ',' && c != '\n' && c != '\r' && c != '\t')
+                return true;
+            ++m_pos;
+        }
+        return false;
+    }
+
+    private boolean flag() {
+        if (!skipSeparators())
+            throw error("expected a flag");
+        char c = m_d.charAt(m_pos++);
+        if (c == '0')
+            return false;
+        if (c == '1')
+            return true;
+        throw error("expected a flag");
+    }
+
+    /**
+     * Numbers can run together, like "1.5.5-2" which is 1.5, 0.5, -2, so this
+     * stops at the first character that can't continue the number.
+     */
+    private double number() {
+        if (!skipSeparators())
+            throw error("expected a number");
+        int len = m_d.length();
+        double sign = 1;
+        char c = m_d.charAt(m_pos);
+        if (c == '-' || c == '+') {
+            if (c == '-')
+                sign = -1;
+            ++m_pos;
+        }
+        double value = 0;
+        int digits = 0;
+        while (m_pos < len && (c = m_d.charAt(m_pos)) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            ++digits;
+            ++m_pos;
+        }
+        if (m_pos < len && m_d.charAt(m_pos) == '.') {
+            ++m_pos;
+            double scale = 1;
+            long fraction = 0;
+            while (m_pos < len && (c = m_d.charAt(m_pos)) >= '0' && c <= '9') {
+                if (scale < 1e17) {
+                    fraction = fraction * 10 + (c - '0');
+                    scale *= 10;
+                }
+                ++digits;
+                ++m_pos;
+            }
+            value += fraction / scale;
+        }
+        if (digits == 0)
+            throw error("expected a number");
+        if (m_pos < len && ((c = m_d.charAt(m_pos)) == 'e' || c == 'E')) {
+            ++m_pos;
+            int expSign = 1;
+            if (m_pos < len && ((c = m_d.charAt(m_pos)) == '-' || c == '+')) {
+                if (c == '-')
+                    expSign = -1;
+                ++m_pos;
+            }
+            int exp = 0;
+            int expDigits = 0;
+            while (m_pos < len && (c = m_d.charAt(m_pos)) >= '0' && c <= '9') {
+                exp = exp * 10 + (c - '0');
+                ++expDigits;
+                ++m_pos;
+            }
+            if (expDigits == 0)
+                throw error("expected an exponent");
+            value *= Math.pow(10, expSign * exp);
+        }
+        return sign * value;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + m_pos + " in path data");
+    }
+}
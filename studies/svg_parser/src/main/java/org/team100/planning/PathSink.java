@@ -0,0 +1,18 @@
+package org.team100.planning;
+
+/**
+ * Accepts absolute path operators, in the order they're drawn. Everything in
+ * SVG path data reduces to these.
+ */
+public interface PathSink {
+    /** Pick up the pen and go here. */
+    void move(double x, double y);
+
+    void line(double x, double y);
+
+    /** Cubic Bezier from the current point, with two control points. */
+    void cubic(double x1, double y1, double x2, double y2, double x, double y);
+
+    /** Line back to the start of the subpath. */
+    void close();
+}
@@ -0,0 +1,50 @@
+package org.team100.planning;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams the SVG and gives the path data of each path element to the sink,
+ * without building a DOM.
+ * 
+ * Like SvgReader, this ignores transforms and everything but paths.
+ */
+public class SvgPathReader {
+    private final InputStream m_input;
+    private final PathDataParser m_parser;
+
+    public SvgPathReader(InputStream input, PathSink sink) {
+        m_input = input;
+        m_parser = new PathDataParser(sink);
+    }
+
+    public void run() throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // don't go to w3.org for the DTD.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(m_input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT)
+                        continue;
+                    if (!"path".equals(reader.getLocalName()))
+                        continue;
+                    String d = reader.getAttributeValue(null, "d");
+                    if (d != null)
+                        m_parser.parse(d);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.team100.plotter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.team100.planning.PathSink;
+import org.team100.planning.SvgPathReader;
+
+/**
+ * Compiles SVG path operators into a plot plan.
+ * 
+ * Unlike SVGToPlotOperations, which makes a trajectory per operator, this
+ * flattens the curves into one polyline for each stretch with the pen down,
+ * no matter how many operators it took to draw, and times the whole thing at
+ * once. The pen slows down for curves and stops at corners, and the pen-up
+ * moves between stretches are straight lines.
+ */
+public class PlotCompiler implements PathSink {
+    /** Bisection depth limit for flattening, 2^10 pieces per curve. */
+    private static final int kMaxDepth = 10;
+
+    private final double m_xScale;
+    private final double m_yScale;
+    private final double m_flatness;
+    private final PlotTiming m_timing;
+    private final List<PlotPath> m_paths;
+
+    /** The pen-down stretch so far. */
+    private double[] m_x;
+    private double[] m_y;
+    private int m_n;
+    /** Current point, scaled */
+    private double m_currentX;
+    private double m_currentY;
+    /** Start of the subpath, scaled */
+    private double m_startX;
+    private double m_startY;
+
+    /**
+     * @param flatness curves are flattened until the polyline is this close,
+     *                 in scaled units.
+     */
+    public PlotCompiler(double xScale, double yScale, double flatness, PlotTiming timing) {
+        m_xScale = xScale;
+        m_yScale = yScale;
+        m_flatness = flatness;
+        m_timing = timing;
+        m_paths = new ArrayList<>();
+        m_x = new double[256];
+        m_y = new double[256];
+    }
+
+    /** Read and compile the whole SVG. */
+    public static PlotPlan compile(InputStream svg, double xScale, double yScale, double flatness,
+            PlotTiming timing) throws IOException {
+        PlotCompiler compiler = new PlotCompiler(xScale, yScale, flatness, timing);
+        new SvgPathReader(svg, compiler).run();
+        return compiler.getPlan();
+    }
+
+    /** The parameters, for the cache key. */
+    double[] parameters() {
+        double[] timing = m_timing.parameters();
+        double[] result = Arrays.copyOf(timing, timing.length + 3);
+        result[timing.length] = m_xScale;
+        result[timing.length + 1] = m_yScale;
+        result[timing.length + 2] = m_flatness;
+        return result;
+    }
+
+    @Override
+    public void move(double rawX, double rawY) {
+        double x = m_xScale * rawX;
+        double y = m_yScale * rawY;
+        flush();
+        if (x != m_currentX || y != m_currentY) {
+            m_paths.add(m_timing.parameterize(false,
+                    new double[] { m_currentX, x },
+                    new double[] { m_currentY, y },
+                    2));
+        }
+        m_currentX = x;
+        m_currentY = y;
+        m_startX = x;
+        m_startY = y;
+    }
+
+    @Override
+    public void line(double rawX, double rawY) {
+        lineScaled(m_xScale * rawX, m_yScale * rawY);
+    }
+
+    @Override
+    public void cubic(double rawX1, double rawY1, double rawX2, double rawY2, double rawX, double rawY) {
+        flatten(m_currentX, m_currentY,
+                m_xScale * rawX1, m_yScale * rawY1,
+                m_xScale * rawX2, m_yScale * rawY2,
+                m_xScale * rawX, m_yScale * rawY,
+                0);
+    }
+
+    @Override
+    public void close() {
+        lineScaled(m_startX, m_startY);
+    }
+
+    /** Finish the last stretch; the compiler is empty afterwards. */
+    public PlotPlan getPlan() {
+        flush();
+        PlotPlan plan = new PlotPlan(new ArrayList<>(m_paths));
+        m_paths.clear();
+        return plan;
+    }
+
+    ///////////////////////////////////////////////
+
+    private void lineScaled(double x, double y) {
+        if (m_n == 0)
+            append(m_currentX, m_currentY);
+        append(x, y);
+        m_currentX = x;
+        m_currentY = y;
+    }
+
+    /**
+     * Subdivide until the control points are within the flatness of the chord.
+     */
+    private void flatten(
+            double x0, double y0,
+            double x1, double y1,
+            double x2, double y2,
+            double x3, double y3,
+            int depth) {
+        if (depth >= kMaxDepth || flat(x0, y0, x1, y1, x2, y2, x3, y3)) {
+            lineScaled(x3, y3);
+            return;
+        }
+        // de Casteljau at the midpoint
+        double x01 = (x0 + x1) / 2;
+        double y01 = (y0 + y1) / 2;
+        double x12 = (x1 + x2) / 2;
+        double y12 = (y1 + y2) / 2;
+        double x23 = (x2 + x3) / 2;
+        double y23 = (y2 + y3) / 2;
+        double xa = (x01 + x12) / 2;
+        double ya = (y01 + y12) / 2;
+        double xb = (x12 + x23) / 2;
+        double yb = (y12 + y23) / 2;
+        double xm = (xa + xb) / 2;
+        double ym = (ya + yb) / 2;
+        flatten(x0, y0, x01, y01, xa, ya, xm, ym, depth + 1);
+        flatten(xm, ym, xb, yb, x23, y23, x3, y3, depth + 1);
+    }
+
+    private boolean flat(
+            double x0, double y0,
+            double x1, double y1,
+            double x2, double y2,
+            double x3, double y3) {
+        double dx = x3 - x0;
+        double dy = y3 - y0;
+        double len = Math.hypot(dx, dy);
+        if (len < 1e-12) {
+            return Math.hypot(x1 - x0, y1 - y0) <= m_flatness
+                    && Math.hypot(x2 - x0, y2 - y0) <= m_flatness;
+        }
+        double d1 = Math.abs((x1 - x0) * dy - (y1 - y0) * dx) / len;
+        double d2 = Math.abs((x2 - x0) * dy - (y2 - y0) * dx) / len;
+        return d1 + d2 <= m_flatness;
+    }
+
+    private void append(double x, double y) {
+        if (m_n > 0 && x == m_x[m_n - 1] && y == m_y[m_n - 1])
+            return;
+        if (m_n == m_x.length) {
+            m_x = Arrays.copyOf(m_x, 2 * m_n);
+            m_y = Arrays.copyOf(m_y, 2 * m_n);
+        }
+        m_x[m_n] = x;
+        m_y[m_n] = y;
+        ++m_n;
+    }
+
+    private void flush() {
+        if (m_n >= 2)
+            m_paths.add(m_timing.parameterize(true, m_x, m_y, m_n));
+        m_n = 0;
+    }
+}
@@ -0,0 +1,104 @@
+package org.team100.plotter;
+
+/**
+ * A continuous, time-parameterized path, with the pen up or down.
+ * 
+ * Between points, the acceleration is constant.
+ */
+public class PlotPath {
+    private final boolean m_penDown;
+    private final double[] m_t;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_v;
+
+    /** The arrays are owned by the path after this. */
+    public PlotPath(boolean penDown, double[] t, double[] x, double[] y, double[] v) {
+        if (t.length != x.length || t.length != y.length || t.length != v.length)
+            throw new IllegalArgumentException("arrays must be the same length");
+        if (t.length < 2)
+            throw new IllegalArgumentException("a path needs at least two points");
+        m_penDown = penDown;
+        m_t = t;
+        m_x = x;
+        m_y = y;
+        m_v = v;
+    }
+
+    public boolean isPenDown() {
+        return m_penDown;
+    }
+
+    public int size() {
+        return m_t.length;
+    }
+
+    public double getTotalTimeSeconds() {
+        return m_t[m_t.length - 1];
+    }
+
+    public double getT(int i) {
+        return m_t[i];
+    }
+
+    public double getX(int i) {
+        return m_x[i];
+    }
+
+    public double getY(int i) {
+        return m_y[i];
+    }
+
+    public double getV(int i) {
+        return m_v[i];
+    }
+
+    /**
+     * Position and speed at the given time, written into out as {x, y, v}, so
+     * sampling doesn't allocate.
+     */
+    public void sample(double timeS, double[] out) {
+        if (timeS <= 0) {
+            set(out, 0);
+            return;
+        }
+        int n = m_t.length;
+        if (timeS >= m_t[n - 1]) {
+            set(out, n - 1);
+            return;
+        }
+        // first point after the time
+        int lo = 0;
+        int hi = n - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (m_t[mid] <= timeS)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        double dt = m_t[hi] - m_t[lo];
+        double tau = timeS - m_t[lo];
+        double v0 = m_v[lo];
+        double v1 = m_v[hi];
+        double a = (v1 - v0) / dt;
+        double ds = Math.hypot(m_x[hi] - m_x[lo], m_y[hi] - m_y[lo]);
+        double s;
+        if (v0 + v1 < 1e-9) {
+            // starts and ends stopped, so it's only a guess.
+            s = ds * tau / dt;
+        } else {
+            s = Math.min(ds, v0 * tau + a * tau * tau / 2);
+        }
+        double f = ds == 0 ? 0 : s / ds;
+        out[0] = m_x[lo] + f * (m_x[hi] - m_x[lo]);
+        out[1] = m_y[lo] + f * (m_y[hi] - m_y[lo]);
+        out[2] = v0 + a * tau;
+    }
+
+    private void set(double[] out, int i) {
+        out[0] = m_x[i];
+        out[1] = m_y[i];
+        out[2] = m_v[i];
+    }
+}
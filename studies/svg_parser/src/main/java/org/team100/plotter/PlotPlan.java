@@ -0,0 +1,86 @@
+package org.team100.plotter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the plotter does for one drawing, in order, with a compact
+ * binary form for the cache.
+ */
+public class PlotPlan {
+    private static final int kMagic = 0x504c4f54; // "PLOT"
+    private static final int kVersion = 1;
+
+    private final List<PlotPath> m_paths;
+
+    public PlotPlan(List<PlotPath> paths) {
+        m_paths = Collections.unmodifiableList(paths);
+    }
+
+    public List<PlotPath> getPaths() {
+        return m_paths;
+    }
+
+    public int getPointCount() {
+        int count = 0;
+        for (PlotPath path : m_paths) {
+            count += path.size();
+        }
+        return count;
+    }
+
+    public void write(OutputStream output, long key) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, 1 << 16));
+        out.writeInt(kMagic);
+        out.writeInt(kVersion);
+        out.writeLong(key);
+        out.writeInt(m_paths.size());
+        for (PlotPath path : m_paths) {
+            out.writeBoolean(path.isPenDown());
+            out.writeInt(path.size());
+            for (int i = 0; i < path.size(); ++i) {
+                out.writeDouble(path.getT(i));
+                out.writeDouble(path.getX(i));
+                out.writeDouble(path.getY(i));
+                out.writeDouble(path.getV(i));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * @param key the expected key
+     * @return null if the stream has some other version or key.
+     */
+    public static PlotPlan read(InputStream input, long key) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, 1 << 16));
+        if (in.readInt() != kMagic || in.readInt() != kVersion || in.readLong() != key)
+            return null;
+        int count = in.readInt();
+        List<PlotPath> paths = new ArrayList<>(count);
+        for (int p = 0; p < count; ++p) {
+            boolean penDown = in.readBoolean();
+            int n = in.readInt();
+            double[] t = new double[n];
+            double[] x = new double[n];
+            double[] y = new double[n];
+            double[] v = new double[n];
+            for (int i = 0; i < n; ++i) {
+                t[i] = in.readDouble();
+                x[i] = in.readDouble();
+                y[i] = in.readDouble();
+                v[i] = in.readDouble();
+            }
+            paths.add(new PlotPath(penDown, t, x, y, v));
+        }
+        return new PlotPlan(paths);
+    }
+}
@@ -0,0 +1,64 @@
+package org.team100.plotter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps compiled plans on disk, so a drawing is only compiled the first time
+ * it's loaded.
+ * 
+ * The key is a checksum of the SVG bytes and the compiler parameters, so
+ * changing either one recompiles.
+ */
+public class PlotPlanCache {
+    private final Path m_dir;
+
+    public PlotPlanCache(Path dir) {
+        m_dir = dir;
+    }
+
+    public PlotPlan get(Path svg, double xScale, double yScale, double flatness, PlotTiming timing)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(svg);
+        PlotCompiler compiler = new PlotCompiler(xScale, yScale, flatness, timing);
+        long key = key(bytes, compiler.parameters());
+        Path file = m_dir.resolve(svg.getFileName() + ".plan");
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                PlotPlan plan = PlotPlan.read(in, key);
+                if (plan != null)
+                    return plan;
+            } catch (IOException e) {
+                // corrupt, make a new one
+                e.printStackTrace();
+            }
+        }
+        PlotPlan plan = PlotCompiler.compile(new ByteArrayInputStream(bytes), xScale, yScale, flatness, timing);
+        Files.createDirectories(m_dir);
+        // write and rename, so a crash doesn't leave half a plan.
+        Path tmp = Files.createTempFile(m_dir, "plan", ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            plan.write(out, key);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        return plan;
+    }
+
+    static long key(byte[] svg, double[] parameters) {
+        CRC32 crc = new CRC32();
+        crc.update(svg);
+        ByteBuffer buf = ByteBuffer.allocate(8 * parameters.length);
+        for (double p : parameters) {
+            buf.putDouble(p);
+        }
+        crc.update(buf.array());
+        return (long) svg.length << 32 | crc.getValue();
+    }
+}
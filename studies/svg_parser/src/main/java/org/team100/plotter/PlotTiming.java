@@ -0,0 +1,127 @@
+package org.team100.plotter;
+
+/**
+ * Time-parameterizes a polyline, the same way lib's TimingUtil does: find the
+ * velocity limit at each point, then a forward pass limits acceleration, a
+ * backward pass limits deceleration, and the time of each step comes from the
+ * average velocity.
+ * 
+ * The limits are speed, acceleration along the path, and centripetal
+ * acceleration, using the curvature at each point. A turn sharper than the
+ * corner angle is a corner, where the pen stops.
+ */
+public class PlotTiming {
+    private final double m_maxVel;
+    private final double m_maxAccel;
+    private final double m_maxCentripetalAccel;
+    private final double m_cornerRad;
+    private final double m_maxStep;
+
+    /**
+     * @param maxVel              units/s
+     * @param maxAccel            units/s^2, along the path
+     * @param maxCentripetalAccel units/s^2, across the path
+     * @param cornerRad           turns sharper than this stop the pen
+     * @param maxStep             longer steps are split, so long lines can get up
+     *                            to speed in the middle
+     */
+    public PlotTiming(
+            double maxVel,
+            double maxAccel,
+            double maxCentripetalAccel,
+            double cornerRad,
+            double maxStep) {
+        m_maxVel = maxVel;
+        m_maxAccel = maxAccel;
+        m_maxCentripetalAccel = maxCentripetalAccel;
+        m_cornerRad = cornerRad;
+        m_maxStep = maxStep;
+    }
+
+    /** The parameters, for the cache key. */
+    double[] parameters() {
+        return new double[] { m_maxVel, m_maxAccel, m_maxCentripetalAccel, m_cornerRad, m_maxStep };
+    }
+
+    /**
+     * Starts and ends stopped.
+     * 
+     * @param x points, no two consecutive ones the same
+     * @param y points
+     * @param n how many of the points to use
+     */
+    public PlotPath parameterize(boolean penDown, double[] x, double[] y, int n) {
+        // split long steps
+        int count = 1;
+        for (int i = 1; i < n; ++i) {
+            count += steps(x, y, i);
+        }
+        double[] px = new double[count];
+        double[] py = new double[count];
+        px[0] = x[0];
+        py[0] = y[0];
+        int j = 1;
+        for (int i = 1; i < n; ++i) {
+            int steps = steps(x, y, i);
+            for (int k = 1; k <= steps; ++k) {
+                double f = (double) k / steps;
+                px[j] = x[i - 1] + f * (x[i] - x[i - 1]);
+                py[j] = y[i - 1] + f * (y[i] - y[i - 1]);
+                ++j;
+            }
+        }
+
+        double[] ds = new double[count];
+        for (int i = 1; i < count; ++i) {
+            ds[i] = Math.hypot(px[i] - px[i - 1], py[i] - py[i - 1]);
+        }
+
+        // velocity limit at each point; the ends are zero.
+        double[] v = new double[count];
+        for (int i = 1; i < count - 1; ++i) {
+            double turn = turn(px, py, i);
+            if (Math.abs(turn) > m_cornerRad) {
+                v[i] = 0;
+                continue;
+            }
+            double curvature = Math.abs(turn) / ((ds[i] + ds[i + 1]) / 2);
+            v[i] = curvature < 1e-9 ? m_maxVel
+                    : Math.min(m_maxVel, Math.sqrt(m_maxCentripetalAccel / curvature));
+        }
+
+        // forward pass
+        for (int i = 1; i < count; ++i) {
+            v[i] = Math.min(v[i], Math.sqrt(v[i - 1] * v[i - 1] + 2 * m_maxAccel * ds[i]));
+        }
+        // backward pass
+        for (int i = count - 2; i >= 0; --i) {
+            v[i] = Math.min(v[i], Math.sqrt(v[i + 1] * v[i + 1] + 2 * m_maxAccel * ds[i + 1]));
+        }
+
+        double[] t = new double[count];
+        for (int i = 1; i < count; ++i) {
+            double vSum = v[i - 1] + v[i];
+            if (vSum < 1e-9) {
+                // stopped at both ends, so accelerate halfway and stop.
+                t[i] = t[i - 1] + 2 * Math.sqrt(ds[i] / m_maxAccel);
+            } else {
+                t[i] = t[i - 1] + 2 * ds[i] / vSum;
+            }
+        }
+        return new PlotPath(penDown, t, px, py, v);
+    }
+
+    private int steps(double[] x, double[] y, int i) {
+        double d = Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+        return Math.max(1, (int) Math.ceil(d / m_maxStep));
+    }
+
+    /** Change in direction at point i, radians. */
+    private static double turn(double[] x, double[] y, int i) {
+        double ax = x[i] - x[i - 1];
+        double ay = y[i] - y[i - 1];
+        double bx = x[i + 1] - x[i];
+        double by = y[i + 1] - y[i];
+        return Math.atan2(ax * by - ay * bx, ax * bx + ay * by);
+    }
+}
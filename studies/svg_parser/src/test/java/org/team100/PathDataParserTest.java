@@ -0,0 +1,141 @@
+package org.team100;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.planning.PathDataParser;
+import org.team100.planning.PathSink;
+
+public class PathDataParserTest {
+    private static final double kDelta = 1e-9;
+
+    /** Writes each operator down as a string. */
+    private static class Recorder implements PathSink {
+        final List<String> ops = new ArrayList<>();
+
+        @Override
+        public void move(double x, double y) {
+            ops.add(String.format("M %.3f %.3f", x, y));
+        }
+
+        @Override
+        public void line(double x, double y) {
+            ops.add(String.format("L %.3f %.3f", x, y));
+        }
+
+        @Override
+        public void cubic(double x1, double y1, double x2, double y2, double x, double y) {
+            ops.add(String.format("C %.3f %.3f %.3f %.3f %.3f %.3f", x1, y1, x2, y2, x, y));
+        }
+
+        @Override
+        public void close() {
+            ops.add("Z");
+        }
+    }
+
+    private static List<String> parse(String d) {
+        Recorder r = new Recorder();
+        new PathDataParser(r).parse(d);
+        return r.ops;
+    }
+
+    @Test
+    void testAbsolute() {
+        assertEquals(List.of(
+                "M 1.000 2.000",
+                "L 3.000 4.000",
+                "C 5.000 6.000 7.000 8.000 9.000 10.000",
+                "Z"),
+                parse("M1 2 L3,4 C 5 6 7 8 9 10 Z"));
+    }
+
+    /** Extra coordinates after a move are lines, relative if the move was. */
+    @Test
+    void testImplicit() {
+        assertEquals(List.of(
+                "M 1.000 1.000",
+                "L 2.000 1.000",
+                "L 2.000 2.000",
+                "L 3.000 3.000",
+                "L 4.000 4.000"),
+                parse("m1 1 1 0 0 1L3 3 4 4"));
+    }
+
+    @Test
+    void testHV() {
+        assertEquals(List.of(
+                "M 1.000 1.000",
+                "L 5.000 1.000",
+                "L 5.000 3.000",
+                "L 4.000 3.000",
+                "Z",
+                "L 1.000 0.000"),
+                parse("M1 1H5v2h-1zv-1"));
+    }
+
+    /** Numbers run together, like inkscape writes them. */
+    @Test
+    void testNumbers() {
+        assertEquals(List.of(
+                "M 1.500 0.500",
+                "L -2.000 0.030",
+                "L 20.000 -0.250"),
+                parse("M1.5.5L-2 3e-2 2E1-.25"));
+        assertThrows(IllegalArgumentException.class, () -> parse("1 2"));
+        assertThrows(IllegalArgumentException.class, () -> parse("M 1"));
+        assertThrows(IllegalArgumentException.class, () -> parse("M 1 2 Z 3 4"));
+        assertThrows(IllegalArgumentException.class, () -> parse("M 1 2 X 3 4"));
+    }
+
+    /** The first control point of S reflects the last one of the previous curve. */
+    @Test
+    void testSmooth() {
+        assertEquals(List.of(
+                "M 0.000 0.000",
+                "C 0.000 1.000 1.000 2.000 2.000 2.000",
+                "C 3.000 2.000 4.000 1.000 4.000 0.000",
+                "C 4.000 -1.000 5.000 1.000 6.000 1.000"),
+                parse("M0 0C0 1 1 2 2 2s2-1 2-2S5 1 6 1"));
+    }
+
+    /** Quadratics become cubics with the controls 2/3 of the way. */
+    @Test
+    void testQuadratic() {
+        assertEquals(List.of(
+                "M 0.000 0.000",
+                "C 2.000 2.000 4.000 2.000 6.000 0.000",
+                "C 8.000 -2.000 10.000 -2.000 12.000 0.000"),
+                parse("M0 0Q3 3 6 0T12 0"));
+    }
+
+    /** A half circle arc is two quarter-circle cubics on the circle. */
+    @Test
+    void testArc() {
+        List<double[]> curves = new ArrayList<>();
+        PathSink sink = new Recorder() {
+            @Override
+            public void cubic(double x1, double y1, double x2, double y2, double x, double y) {
+                curves.add(new double[] { x1, y1, x2, y2, x, y });
+            }
+        };
+        new PathDataParser(sink).parse("M0 0A1 1 0 0 1 2 0");
+        assertEquals(2, curves.size());
+        // sweep flag 1 is clockwise on the screen, through negative y.
+        double[] first = curves.get(0);
+        assertEquals(1, first[4], kDelta);
+        assertEquals(-1, first[5], kDelta);
+        double[] second = curves.get(1);
+        assertEquals(2, second[4], kDelta);
+        assertEquals(0, second[5], kDelta);
+        // radius too small is scaled up
+        curves.clear();
+        new PathDataParser(sink).parse("M0 0a.1 .1 0 1 0 2 0");
+        assertEquals(1, curves.get(0)[4], kDelta);
+        assertEquals(1, curves.get(0)[5], kDelta);
+    }
+}
@@ -0,0 +1,206 @@
+package org.team100;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.plotter.PlotCompiler;
+import org.team100.plotter.PlotPath;
+import org.team100.plotter.PlotPlan;
+import org.team100.plotter.PlotPlanCache;
+import org.team100.plotter.PlotTiming;
+
+public class PlotCompilerTest {
+    private static final boolean dump = false;
+    private static final double kDelta = 0.001;
+    private static final PlotTiming kTiming = new PlotTiming(10, 1, 1, 0.5, 1);
+
+    private static PlotPlan compile(String svg) throws IOException {
+        return PlotCompiler.compile(stream(svg), 1, 1, 0.001, kTiming);
+    }
+
+    private static InputStream stream(String svg) {
+        return new ByteArrayInputStream(svg.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String svg(String... paths) {
+        StringBuilder b = new StringBuilder();
+        b.append("<?xml version=\"1.0\"?>\n");
+        b.append("<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\" ");
+        b.append("\"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">\n");
+        b.append("<svg xmlns=\"http://www.w3.org/2000/svg\"><g>\n");
+        for (String d : paths) {
+            b.append("<path d=\"").append(d).append("\"/>\n");
+        }
+        b.append("</g></svg>\n");
+        return b.toString();
+    }
+
+    /**
+     * A circle made of four cubics is one path, not four, and the pen doesn't
+     * stop along the way.
+     */
+    @Test
+    void testCircle() throws IOException {
+        double k = 0.5523 * 9;
+        PlotPlan plan = compile(svg(String.format(
+                "M 21 12 C 21 %1$f %2$f 21 12 21 C %3$f 21 3 %2$f 3 12 "
+                        + "C 3 %3$f %3$f 3 12 3 C %2$f 3 21 %3$f 21 12 Z",
+                12 + k, 12 + k, 12 - k)));
+        // the pen-up move to the start, and the circle
+        assertEquals(2, plan.getPaths().size());
+        assertFalse(plan.getPaths().get(0).isPenDown());
+        PlotPath circle = plan.getPaths().get(1);
+        assertTrue(circle.isPenDown());
+        for (int i = 0; i < circle.size(); ++i) {
+            double r = Math.hypot(circle.getX(i) - 12, circle.getY(i) - 12);
+            assertEquals(9, r, 0.01);
+            if (i > 0 && i < circle.size() - 1)
+                assertTrue(circle.getV(i) > 0);
+        }
+        // centripetal limit 1, radius 9, so about 3; the cubics are a little
+        // flatter than a circle in the middle.
+        double[] sample = new double[3];
+        for (double t = 0; t < circle.getTotalTimeSeconds(); t += 0.1) {
+            circle.sample(t, sample);
+            assertTrue(sample[2] <= 3.05);
+            assertEquals(9, Math.hypot(sample[0] - 12, sample[1] - 12), 0.01);
+        }
+    }
+
+    /** A square stops at each corner. */
+    @Test
+    void testCorners() throws IOException {
+        PlotPlan plan = compile(svg("M0 0 L10 0 L10 10 L0 10 Z"));
+        PlotPath square = plan.getPaths().get(0);
+        assertTrue(square.isPenDown());
+        int stops = 0;
+        double maxV = 0;
+        for (int i = 0; i < square.size(); ++i) {
+            if (square.getV(i) == 0)
+                ++stops;
+            maxV = Math.max(maxV, square.getV(i));
+        }
+        // start, three corners, end
+        assertEquals(5, stops);
+        // accel 1 over 5 meters
+        assertEquals(Math.sqrt(10), maxV, 0.1);
+        // each side is a triangle profile, 2 sqrt(10) seconds
+        assertEquals(8 * Math.sqrt(10), square.getTotalTimeSeconds(), 0.1);
+    }
+
+    /** Separate paths and subpaths get pen-up moves between. */
+    @Test
+    void testPenUp() throws IOException {
+        PlotPlan plan = compile(svg("M1 0 L2 0 M3 0 L4 0", "M5 0 L6 0"));
+        assertEquals(6, plan.getPaths().size());
+        for (int i = 0; i < 6; ++i) {
+            assertEquals(i % 2 == 1, plan.getPaths().get(i).isPenDown());
+        }
+        PlotPath last = plan.getPaths().get(5);
+        assertEquals(6, last.getX(last.size() - 1), kDelta);
+    }
+
+    @Test
+    void testCache() throws IOException {
+        Path dir = Files.createTempDirectory("plans");
+        Path svg = dir.resolve("drawing.svg");
+        try {
+            Files.writeString(svg, svg("M0 0 L10 0 C 15 0 15 10 10 10 Z"));
+            PlotPlanCache cache = new PlotPlanCache(dir);
+            PlotPlan compiled = cache.get(svg, 1, 1, 0.001, kTiming);
+            assertTrue(Files.exists(dir.resolve("drawing.svg.plan")));
+            PlotPlan cached = cache.get(svg, 1, 1, 0.001, kTiming);
+            assertEquals(compiled.getPaths().size(), cached.getPaths().size());
+            assertEquals(compiled.getPointCount(), cached.getPointCount());
+            // starts at the origin, so no pen-up move
+            assertEquals(1, compiled.getPaths().size());
+            PlotPath a = compiled.getPaths().get(0);
+            PlotPath b = cached.getPaths().get(0);
+            for (int i = 0; i < a.size(); ++i) {
+                assertEquals(a.getT(i), b.getT(i));
+                assertEquals(a.getX(i), b.getX(i));
+            }
+            // different parameters, different plan
+            PlotPlan scaled = cache.get(svg, 2, 2, 0.001, kTiming);
+            assertEquals(2 * maxX(a), maxX(scaled.getPaths().get(0)), kDelta);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static double maxX(PlotPath path) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < path.size(); ++i) {
+            max = Math.max(max, path.getX(i));
+        }
+        return max;
+    }
+
+    /**
+     * 10,000 segments, lines and curves, in 100 paths: parse and compile, then
+     * load from the cache.
+     */
+    @Test
+    void testBenchmark() throws IOException {
+        Random random = new Random(0);
+        String[] paths = new String[100];
+        for (int p = 0; p < paths.length; ++p) {
+            StringBuilder d = new StringBuilder();
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            d.append(String.format("M%.2f %.2f", x, y));
+            for (int s = 0; s < 100; ++s) {
+                if (random.nextBoolean()) {
+                    d.append(String.format("l%.2f %.2f", random.nextGaussian() * 10, random.nextGaussian() * 10));
+                } else {
+                    d.append(String.format("c%.2f %.2f %.2f %.2f %.2f %.2f",
+                            random.nextGaussian() * 10, random.nextGaussian() * 10,
+                            random.nextGaussian() * 10, random.nextGaussian() * 10,
+                            random.nextGaussian() * 10, random.nextGaussian() * 10));
+                }
+            }
+            paths[p] = d.toString();
+        }
+        Path dir = Files.createTempDirectory("plans");
+        Path svg = dir.resolve("big.svg");
+        try {
+            Files.writeString(svg, svg(paths));
+            PlotPlanCache cache = new PlotPlanCache(dir);
+            for (int i = 0; i < 5; ++i) {
+                Files.deleteIfExists(dir.resolve("big.svg.plan"));
+                long startNs = System.nanoTime();
+                PlotPlan plan = cache.get(svg, 0.01, -0.01, 0.001, kTiming);
+                long compileNs = System.nanoTime() - startNs;
+                startNs = System.nanoTime();
+                PlotPlan cached = cache.get(svg, 0.01, -0.01, 0.001, kTiming);
+                long cachedNs = System.nanoTime() - startNs;
+                assertNotNull(cached);
+                // pen-up move and pen-down path for each
+                assertEquals(200, plan.getPaths().size());
+                if (dump)
+                    System.out.printf("%d KB svg, %d points, compile %.1f ms, cached %.1f ms\n",
+                            Files.size(svg) >> 10, plan.getPointCount(), compileNs / 1e6, cachedNs / 1e6);
+            }
+        } finally {
+            Files.deleteIfExists(dir.resolve("big.svg.plan"));
+            Files.delete(svg);
+            Files.delete(dir);
+        }
+    }
+}
@@ -1,16 +1,17 @@
 package org.team100.lib.sway.estimator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 
 import org.team100.lib.sway.controller.FeedbackControl;
 import org.team100.lib.sway.controller.InversionFeedforward;
-import org.team100.lib.sway.fusion.LinearPooling;
 import org.team100.lib.sway.fusion.VarianceWeightedLinearPooling;
 import org.team100.lib.sway.math.RandomVector;
 import org.team100.lib.sway.reference.Reference;
-import org.team100.lib.sway.storage.BitemporalBuffer;
+import org.team100.lib.sway.storage.BitemporalRingBuffer;
 import org.team100.lib.sway.storage.EditableHistory;
 import org.team100.lib.sway.storage.History;
 import org.team100.lib.sway.system.NonlinearPlant;
@@ -51,15 +52,20 @@ import edu.wpi.first.math.numbers.N1;
  * // record if you actually use it
  * record(actualTimeSec, u);
  *
+ * Replay cost is proportional to the number of measurements since the earliest
+ * unseen one, so a very late measurement can make replay very expensive. To
+ * bound the cost, replay never reaches further back than the horizon before the
+ * latest measurement; older measurements are stored but not replayed.
  */
 public class BitemporalEstimatorController<States extends Num, Inputs extends Num, Outputs extends Num> {
     private static final boolean kDebug = false;
+    private static final int kCapacity = 1000;
 
     public final RandomVector<States> m_initialState;
     public final Matrix<Inputs, N1> m_initialControl;
     public final Reference<States> m_reference;
     // measurements are bitemporal so we can notice late-arriving ones
-    public final BitemporalBuffer<RandomVector<Outputs>> m_measurements;
+    public final BitemporalRingBuffer<RandomVector<Outputs>> m_measurements;
     // we rewrite recent state history as needed.
     public final EditableHistory<RandomVector<States>> m_estimates;
     // control history is immutable.
@@ -67,12 +73,15 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
     public final ExtrapolatingEstimator<States, Inputs, Outputs> m_predictor;
     public final PointEstimator<States, Inputs, Outputs> m_pointEstimator;
     public final TrendEstimator<States, Inputs, Outputs> m_trendEstimator;
-    public final LinearPooling<States> m_pooling;
+    public final VarianceWeightedLinearPooling<States> m_pooling;
     public final InversionFeedforward<States, Inputs, Outputs> m_feedforward;
     public final FeedbackControl<States, Inputs, Outputs> m_feedback;
 
-    // the last recordTime we've seen from the buffer
-    private long recordTime;
+    // replay never goes further back than this
+    private final double m_horizonSec;
+    // scratch for replay
+    private final double[] m_todoTimes;
+    private final List<RandomVector<Outputs>> m_todoValues;
 
     /**
      * @param system         plant dynamics
@@ -87,10 +96,31 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
             Matrix<Inputs, N1> initialControl,
             Reference<States> reference,
             Matrix<Inputs, States> K) {
+        this(system, initialState, initialControl, reference, K, Double.MAX_VALUE);
+    }
+
+    /**
+     * @param system         plant dynamics
+     * @param initialState   used by the predictor
+     * @param initialControl used by the predictor
+     * @param reference      produces trajectory
+     * @param K              feedback gain
+     * @param horizonSec     maximum replay span, before the latest measurement
+     */
+    public BitemporalEstimatorController(
+            NonlinearPlant<States, Inputs, Outputs> system,
+            RandomVector<States> initialState,
+            Matrix<Inputs, N1> initialControl,
+            Reference<States> reference,
+            Matrix<Inputs, States> K,
+            double horizonSec) {
         m_initialState = initialState;
         m_initialControl = initialControl;
         m_reference = reference;
-        m_measurements = new BitemporalBuffer<>(1000);
+        m_measurements = new BitemporalRingBuffer<>(kCapacity);
+        m_horizonSec = horizonSec;
+        m_todoTimes = new double[kCapacity];
+        m_todoValues = new ArrayList<>(kCapacity);
         m_estimates = new EditableHistory<>(1000);
         m_control_history = new History<>(1000);
         m_predictor = new ExtrapolatingEstimator<>(system);
@@ -112,15 +142,36 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
     /**
      * Updates the state history with any measurements that are pending.
      * 
+     * @param currentSystemTimeMicrosec unused: the buffer keeps track of which
+     *                                  measurements are unseen.
      * @return the number of measurements found to replay
      */
     public int replay(long currentSystemTimeMicrosec) {
-        double earliestMeasurementSec = m_measurements.earliestValidTimeForRecordsAfter(recordTime);
-        recordTime = currentSystemTimeMicrosec;
+        return replay(true);
+    }
+
+    /**
+     * Replay using Matrix arithmetic throughout, for comparison.
+     */
+    int replayWithMatrices(long currentSystemTimeMicrosec) {
+        return replay(false);
+    }
+
+    /**
+     * @param primitive use Kernels for the prediction and fusion arithmetic,
+     *                  which allocates much less.
+     */
+    private int replay(boolean primitive) {
+        double earliestMeasurementSec = m_measurements.takeEarliestUnseen();
+        if (earliestMeasurementSec == Double.MAX_VALUE)
+            return 0;
+        if (m_horizonSec < Double.MAX_VALUE) {
+            earliestMeasurementSec = Math.max(earliestMeasurementSec,
+                    m_measurements.latestValidTime() - m_horizonSec);
+        }
 
         // we need to replay all the measurements since then
-        NavigableMap<Double, Entry<Long, RandomVector<Outputs>>> todo = m_measurements
-                .validTailMap(earliestMeasurementSec);
+        int todo = m_measurements.copyValidTail(earliestMeasurementSec, m_todoTimes, m_todoValues);
 
         // we don't need the old estimates, we're going to redo them all
         m_estimates.trim(earliestMeasurementSec);
@@ -128,11 +179,11 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
         // loop through the measurements to replay, in valid-time order.
         int replayCount = 0;
         if (kDebug)
-            System.out.println("replay " + todo.size());
-        for (Entry<Double, Entry<Long, RandomVector<Outputs>>> measurementEntry : todo.entrySet()) {
+            System.out.println("replay " + todo);
+        for (int i = 0; i < todo; ++i) {
             replayCount += 1;
             // find the time of the measurement
-            double measurementTime = measurementEntry.getKey();
+            double measurementTime = m_todoTimes[i];
             // find the most-recent state earlier than the measurement
             Entry<Double, RandomVector<States>> entry = m_estimates.floor(measurementTime);
             if (entry == null) {
@@ -164,10 +215,9 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
                             .println("tween integrating from " + stateTimeS + " to " + endS + " u " + historical_u);
                 if (kDebug)
                     System.out.println("tween prior state " + priorState.x.get(0, 0));
-                priorState = m_predictor.predictWithNoise(
-                        priorState,
-                        historical_u,
-                        integrationSpanS);
+                priorState = primitive
+                        ? m_predictor.predictWithNoisePrimitive(priorState, historical_u, integrationSpanS)
+                        : m_predictor.predictWithNoise(priorState, historical_u, integrationSpanS);
                 if (kDebug)
                     System.out.println("tween estimate position " + priorState.x.get(0, 0));
 
@@ -183,20 +233,21 @@ public class BitemporalEstimatorController<States extends Num, Inputs extends Nu
             if (kDebug)
                 System.out.println("replay prior state " + priorState.x.get(0, 0));
             double stateToMeasurementS = measurementTime - stateTimeS;
-            RandomVector<States> predictedState = m_predictor.predictWithNoise(
-                    priorState,
-                    historical_u,
-                    stateToMeasurementS);
+            RandomVector<States> predictedState = primitive
+                    ? m_predictor.predictWithNoisePrimitive(priorState, historical_u, stateToMeasurementS)
+                    : m_predictor.predictWithNoise(priorState, historical_u, stateToMeasurementS);
             if (kDebug)
                 System.out.println("replay estimate " + predictedState.x.get(0, 0));
 
             // this is the measurement state
             RandomVector<States> measurementState = m_pointEstimator
-                    .stateForMeasurementWithZeroU(measurementEntry.getValue().getValue());
+                    .stateForMeasurementWithZeroU(m_todoValues.get(i));
             if (kDebug)
                 System.out.println("replay measurement " + measurementState.x.get(0, 0));
             // pool the measurement and the extrapolation
-            RandomVector<States> fused = m_pooling.fuse(predictedState, measurementState);
+            RandomVector<States> fused = primitive
+                    ? m_pooling.fusePrimitive(predictedState, measurementState)
+                    : m_pooling.fuse(predictedState, measurementState);
             // record the new estimate
             if (kDebug)
                 System.out.println("replay fused " + fused.x.get(0, 0));
@@ -1,5 +1,7 @@
 package org.team100.lib.sway.estimator;
 
+import org.ejml.simple.SimpleMatrix;
+import org.team100.lib.sway.math.Kernels;
 import org.team100.lib.sway.math.RandomVector;
 import org.team100.lib.sway.math.Variance;
 import org.team100.lib.sway.system.NonlinearPlant;
@@ -32,6 +34,60 @@ public class ExtrapolatingEstimator<States extends Num, Inputs extends Num, Outp
         return addNoise(predict(x, u, dtS), dtS);
     }
 
+    /**
+     * Same as predictWithNoise, with the arithmetic done by Kernels, so the only
+     * allocations are the plant's and the stage and result vectors. The order of
+     * operations is the same, so the result is the same.
+     */
+    public RandomVector<States> predictWithNoisePrimitive(
+            RandomVector<States> x,
+            Matrix<Inputs, N1> u,
+            double dtS) {
+        final double h = dtS;
+        final int n = x.x.getNumRows();
+        final int nn = n * n;
+        Kernels.Workspace w = Kernels.workspace();
+        double[] sx = w.v[0];
+        double[] sP = w.m[0];
+        double[] tx = w.v[1];
+        double[] tP = w.m[1];
+
+        RandomVector<States> k1 = m_plant.f(x, u);
+        RandomVector<States> k2 = m_plant.f(stage(x, k1, h * 0.5, tx, tP), u);
+        RandomVector<States> k3 = m_plant.f(stage(x, k2, h * 0.5, tx, tP), u);
+        RandomVector<States> k4 = m_plant.f(stage(x, k3, h, tx, tP), u);
+
+        // k1 + 2 k2, wrapped like k1.plus(k2.times(2.0))
+        scaled(k2, 2.0, n, tx, tP);
+        Kernels.add(n, k1.x.getData(), tx, sx);
+        Kernels.add(nn, k1.Kxx.getValue().getData(), tP, sP);
+        k1.wrap(sx);
+        // + 2 k3
+        scaled(k3, 2.0, n, tx, tP);
+        Kernels.add(n, sx, tx, sx);
+        Kernels.add(nn, sP, tP, sP);
+        k1.wrap(sx);
+        // + k4
+        Kernels.add(n, sx, k4.x.getData(), sx);
+        Kernels.add(nn, sP, k4.Kxx.getValue().getData(), sP);
+        k1.wrap(sx);
+        // * h/6
+        double d = h / 6.0;
+        Kernels.scale(n, d, sx, sx);
+        Kernels.scale(nn, d * d, sP, sP);
+        k1.wrap(sx);
+        // x + sum
+        Kernels.add(n, x.x.getData(), sx, sx);
+        Kernels.add(nn, x.Kxx.getValue().getData(), sP, sP);
+        x.wrap(sx);
+        // noise
+        Kernels.scale(nn, dtS, m_plant.w().P.getValue().getData(), tP);
+        Kernels.add(nn, sP, tP, sP);
+        return x.make(
+                new Matrix<>(new SimpleMatrix(n, 1, true, sx)),
+                new Variance<>(new Matrix<>(new SimpleMatrix(n, n, true, sP))));
+    }
+
     /**
      * RK4 integration
      */
@@ -56,4 +112,27 @@ public class ExtrapolatingEstimator<States extends Num, Inputs extends Num, Outp
         return x.make(x.x, x.Kxx.plus(noiseVariance));
     }
 
+    /** x + c k, like x.plus(k.times(c)), as a new state to feed to f. */
+    private RandomVector<States> stage(
+            RandomVector<States> x,
+            RandomVector<States> k,
+            double c,
+            double[] tx,
+            double[] tP) {
+        int n = x.x.getNumRows();
+        scaled(k, c, n, tx, tP);
+        Kernels.add(n, x.x.getData(), tx, tx);
+        Kernels.add(n * n, x.Kxx.getValue().getData(), tP, tP);
+        return x.make(
+                new Matrix<>(new SimpleMatrix(n, 1, true, tx)),
+                new Variance<>(new Matrix<>(new SimpleMatrix(n, n, true, tP))));
+    }
+
+    /** c k, like k.times(c): the variance is scaled by c squared. */
+    private static void scaled(RandomVector<?> k, double c, int n, double[] tx, double[] tP) {
+        Kernels.scale(n, c, k.x.getData(), tx);
+        Kernels.scale(n * n, c * c, k.Kxx.getValue().getData(), tP);
+        k.wrap(tx);
+    }
+
 }
@@ -1,10 +1,14 @@
 package org.team100.lib.sway.fusion;
 
+import org.ejml.simple.SimpleMatrix;
+import org.team100.lib.sway.math.Kernels;
 import org.team100.lib.sway.math.RandomVector;
+import org.team100.lib.sway.math.Variance;
 
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.Num;
 import edu.wpi.first.math.Pair;
+import edu.wpi.first.math.numbers.N1;
 
 /**
  * Variance weighted linear pooling is also called "mixing" -- it represents the
@@ -51,6 +55,95 @@ public class VarianceWeightedLinearPooling<States extends Num> extends LinearPoo
         return fuse(a, pa, b, pb);
     }
 
+    /**
+     * Same as fuse(a, b), with the arithmetic done by Kernels, so the only
+     * allocation is the result. Unlike fuse(), asymmetric inputs are not
+     * modified; the lower triangle is used instead.
+     */
+    public RandomVector<States> fusePrimitive(RandomVector<States> a, RandomVector<States> b) {
+        if (a.getClass() != b.getClass()) {
+            throw new IllegalArgumentException("a and b must be same type\n" + a.getClass() + " " + b.getClass());
+        }
+        final int n = a.x.getNumRows();
+        final int nn = n * n;
+        Kernels.Workspace w = Kernels.workspace();
+        double[] aP = w.m[0];
+        double[] bP = w.m[1];
+        double[] aPI = w.m[2];
+        double[] bPI = w.m[3];
+        double[] sum = w.m[4];
+        double[] sumI = w.m[5];
+        double[] pa = w.m[6];
+        double[] pb = w.m[7];
+        double[] t1 = w.m[8];
+        double[] t2 = w.m[9];
+        double[] cK = w.m[10];
+        double[] d = w.v[0];
+        double[] cx = w.v[1];
+
+        // weights
+        Kernels.copy(nn, a.Kxx.getValue().getData(), aP);
+        Kernels.copy(nn, b.Kxx.getValue().getData(), bP);
+        if (Kernels.det(n, aP) < kThreshold) {
+            throw new IllegalArgumentException("aP is singular.\n" + a.Kxx.getValue().toString());
+        }
+        if (Kernels.det(n, bP) < kThreshold) {
+            throw new IllegalArgumentException("bP is singular.\n" + b.Kxx.getValue().toString());
+        }
+        Kernels.invert(n, aP, aPI);
+        Kernels.invert(n, bP, bPI);
+        Kernels.add(nn, aPI, bPI, sum);
+        if (Kernels.det(n, sum) < kThreshold) {
+            throw new IllegalArgumentException("PIsum is singular.");
+        }
+        Kernels.invert(n, sum, sumI);
+        Kernels.mul(n, aPI, sumI, pa);
+        Kernels.mul(n, bPI, sumI, pb);
+
+        // checks, as in LinearPooling.fuse()
+        Kernels.add(nn, pa, pb, sum);
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                if (Math.abs(sum[i * n + j] - (i == j ? 1 : 0)) > 0.001)
+                    throw new IllegalArgumentException("weights do not sum to one.");
+            }
+        }
+        Kernels.symmetrize(n, aP);
+        Kernels.symmetrize(n, bP);
+        if (!Kernels.cholesky(n, aP, t1)) {
+            throw new IllegalArgumentException("aP is not positive semidefinite.\n" + a.Kxx.toString());
+        }
+        if (!Kernels.cholesky(n, bP, t1)) {
+            throw new IllegalArgumentException("bP is not positive semidefinite.\n" + b.Kxx.toString());
+        }
+
+        // mean: a + pb (b - a), wrapped like a.combine(pb, b)
+        Kernels.sub(n, b.x.getData(), a.x.getData(), d);
+        b.wrap(d);
+        Kernels.mulVec(n, pb, d, cx);
+        Kernels.add(n, a.x.getData(), cx, cx);
+        a.wrap(cx);
+
+        // variance: pa aP paT + pb bP pbT
+        Kernels.mul(n, pa, aP, t1);
+        Kernels.mulTransB(n, t1, pa, cK);
+        Kernels.mul(n, pb, bP, t1);
+        Kernels.mulTransB(n, t1, pb, t2);
+        Kernels.add(nn, cK, t2, cK);
+
+        // dispersion: pa pb diag(a - b)^2
+        Kernels.mul(n, pa, pb, t1);
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                cK[i * n + j] += t1[i * n + j] * d[j] * d[j];
+            }
+        }
+
+        Matrix<States, N1> cxm = new Matrix<>(new SimpleMatrix(n, 1, true, cx));
+        Matrix<States, States> cKm = new Matrix<>(new SimpleMatrix(n, n, true, cK));
+        return a.make(cxm, new Variance<>(cKm));
+    }
+
     /** TODO make a weight type */
     Pair<Matrix<States, States>, Matrix<States, States>> weights(RandomVector<States> a, RandomVector<States> b) {
         Matrix<States, States> aP = a.Kxx.getValue();
@@ -44,6 +44,12 @@ public class AngularRandomVector<States extends Num> extends RandomVector<States
         x.set(0, 0, MathUtil.angleModulus(x.get(0, 0)));
         return x;
     }
+
+    @Override
+    public void wrap(double[] x) {
+        x[0] = MathUtil.angleModulus(x[0]);
+    }
+
     @Override
     public String toString() {
         return "AngularRandomVector [x=" + x + ", P=" + Kxx + "]";
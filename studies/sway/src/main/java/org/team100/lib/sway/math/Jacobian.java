@@ -9,6 +9,9 @@ import edu.wpi.first.math.numbers.N1;
 
 /**
  * Copy of the WPI version but for random variables.
+ *
+ * Each direction uses a single perturbed copy, restored after each column,
+ * rather than two fresh copies per column.
  */
 public class Jacobian {
     private static final double kEpsilon = 1e-5;
@@ -22,13 +25,20 @@ public class Jacobian {
             RandomVector<States> x,
             Matrix<Inputs, N1> u) {
         Matrix<Rows, States> result = new Matrix<>(rows, states);
+        // perturb one copy in each direction, restoring it after each column
+        RandomVector<States> dxPlus = x.copy();
+        RandomVector<States> dxMinus = x.copy();
         for (int i = 0; i < states.getNum(); i++) {
-            RandomVector<States> dxPlus = x.copy();
-            RandomVector<States> dxMinus = x.copy();
-            dxPlus.x.set(i, 0, dxPlus.x.get(i, 0) + kEpsilon);
-            dxMinus.x.set(i, 0, dxMinus.x.get(i, 0) - kEpsilon);
-            var dF = f.apply(dxPlus, u).x.minus(f.apply(dxMinus, u).x).div(2 * kEpsilon);
-            result.setColumn(i, Matrix.changeBoundsUnchecked(dF));
+            double xi = x.x.get(i, 0);
+            dxPlus.x.set(i, 0, xi + kEpsilon);
+            dxMinus.x.set(i, 0, xi - kEpsilon);
+            Matrix<Outputs, N1> fPlus = f.apply(dxPlus, u).x;
+            Matrix<Outputs, N1> fMinus = f.apply(dxMinus, u).x;
+            for (int j = 0; j < rows.getNum(); j++) {
+                result.set(j, i, (fPlus.get(j, 0) - fMinus.get(j, 0)) / (2 * kEpsilon));
+            }
+            dxPlus.x.set(i, 0, xi);
+            dxMinus.x.set(i, 0, xi);
         }
         return result;
     }
@@ -40,13 +50,19 @@ public class Jacobian {
             RandomVector<States> x,
             Matrix<Inputs, N1> u) {
         Matrix<Rows, Inputs> result = new Matrix<>(rows, inputs);
+        Matrix<Inputs, N1> duPlus = u.copy();
+        Matrix<Inputs, N1> duMinus = u.copy();
         for (int i = 0; i < inputs.getNum(); i++) {
-            Matrix<Inputs, N1> duPlus = u.copy();
-            Matrix<Inputs, N1> duMinus = u.copy();
-            duPlus.set(i, 0, duPlus.get(i, 0) + kEpsilon);
-            duMinus.set(i, 0, duMinus.get(i, 0) - kEpsilon);
-            Matrix<States, N1> dF = f.apply(x, duPlus).x.minus(f.apply(x, duMinus).x).div(2 * kEpsilon);
-            result.setColumn(i, Matrix.changeBoundsUnchecked(dF));
+            double ui = u.get(i, 0);
+            duPlus.set(i, 0, ui + kEpsilon);
+            duMinus.set(i, 0, ui - kEpsilon);
+            Matrix<States, N1> fPlus = f.apply(x, duPlus).x;
+            Matrix<States, N1> fMinus = f.apply(x, duMinus).x;
+            for (int j = 0; j < rows.getNum(); j++) {
+                result.set(j, i, (fPlus.get(j, 0) - fMinus.get(j, 0)) / (2 * kEpsilon));
+            }
+            duPlus.set(i, 0, ui);
+            duMinus.set(i, 0, ui);
         }
         return result;
     }
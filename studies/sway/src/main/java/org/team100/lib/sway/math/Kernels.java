@@ -0,0 +1,273 @@
+package org.team100.lib.sway.math;
+
+/**
+ * Matrix arithmetic for the small fixed sizes we actually use, N1 through N4,
+ * on primitive row-major arrays.
+ *
+ * Each Matrix operation allocates a new SimpleMatrix, and the estimator does a
+ * lot of them, so the allocations add up. These kernels write into arrays
+ * supplied by the caller, usually from the thread-local workspace, so they
+ * allocate nothing.
+ *
+ * Arrays may be longer than needed; only the first rows x cols elements are
+ * used. Outputs must not alias inputs, except for the element-wise methods.
+ */
+public final class Kernels {
+    public static final int kMaxDim = 4;
+
+    /** Scratch space for one thread. */
+    public static final class Workspace {
+        /** Square scratch matrices. */
+        public final double[][] m;
+        /** Scratch vectors. */
+        public final double[][] v;
+
+        Workspace() {
+            m = new double[12][kMaxDim * kMaxDim];
+            v = new double[6][kMaxDim];
+        }
+    }
+
+    private static final ThreadLocal<Workspace> kWorkspace = ThreadLocal.withInitial(Workspace::new);
+
+    /** The workspace for the current thread. */
+    public static Workspace workspace() {
+        return kWorkspace.get();
+    }
+
+    /** out = a, for len elements */
+    public static void copy(int len, double[] a, double[] out) {
+        System.arraycopy(a, 0, out, 0, len);
+    }
+
+    /** out = a + b, element-wise, for len elements. */
+    public static void add(int len, double[] a, double[] b, double[] out) {
+        for (int i = 0; i < len; ++i) {
+            out[i] = a[i] + b[i];
+        }
+    }
+
+    /** out = a - b, element-wise, for len elements. */
+    public static void sub(int len, double[] a, double[] b, double[] out) {
+        for (int i = 0; i < len; ++i) {
+            out[i] = a[i] - b[i];
+        }
+    }
+
+    /** out = s * a, element-wise, for len elements. */
+    public static void scale(int len, double s, double[] a, double[] out) {
+        for (int i = 0; i < len; ++i) {
+            out[i] = a[i] * s;
+        }
+    }
+
+    /** out = n x n identity */
+    public static void identity(int n, double[] out) {
+        for (int i = 0; i < n * n; ++i) {
+            out[i] = 0;
+        }
+        for (int i = 0; i < n; ++i) {
+            out[i * n + i] = 1;
+        }
+    }
+
+    /** out = a b, all n x n */
+    public static void mul(int n, double[] a, double[] b, double[] out) {
+        switch (n) {
+            case 1:
+                out[0] = a[0] * b[0];
+                return;
+            case 2:
+                out[0] = a[0] * b[0] + a[1] * b[2];
+                out[1] = a[0] * b[1] + a[1] * b[3];
+                out[2] = a[2] * b[0] + a[3] * b[2];
+                out[3] = a[2] * b[1] + a[3] * b[3];
+                return;
+            case 3:
+                out[0] = a[0] * b[0] + a[1] * b[3] + a[2] * b[6];
+                out[1] = a[0] * b[1] + a[1] * b[4] + a[2] * b[7];
+                out[2] = a[0] * b[2] + a[1] * b[5] + a[2] * b[8];
+                out[3] = a[3] * b[0] + a[4] * b[3] + a[5] * b[6];
+                out[4] = a[3] * b[1] + a[4] * b[4] + a[5] * b[7];
+                out[5] = a[3] * b[2] + a[4] * b[5] + a[5] * b[8];
+                out[6] = a[6] * b[0] + a[7] * b[3] + a[8] * b[6];
+                out[7] = a[6] * b[1] + a[7] * b[4] + a[8] * b[7];
+                out[8] = a[6] * b[2] + a[7] * b[5] + a[8] * b[8];
+                return;
+            case 4:
+                for (int i = 0; i < 4; ++i) {
+                    int r = 4 * i;
+                    for (int j = 0; j < 4; ++j) {
+                        out[r + j] = a[r] * b[j] + a[r + 1] * b[4 + j] + a[r + 2] * b[8 + j] + a[r + 3] * b[12 + j];
+                    }
+                }
+                return;
+            default:
+                throw new IllegalArgumentException("dimension must be 1 to 4: " + n);
+        }
+    }
+
+    /** out = a bT, all n x n */
+    public static void mulTransB(int n, double[] a, double[] b, double[] out) {
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                double sum = 0;
+                for (int k = 0; k < n; ++k) {
+                    sum += a[i * n + k] * b[j * n + k];
+                }
+                out[i * n + j] = sum;
+            }
+        }
+    }
+
+    /** out = a x, a is n x n, x is n x 1 */
+    public static void mulVec(int n, double[] a, double[] x, double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double sum = 0;
+            for (int k = 0; k < n; ++k) {
+                sum += a[i * n + k] * x[k];
+            }
+            out[i] = sum;
+        }
+    }
+
+    /** Determinant of the n x n matrix a. */
+    public static double det(int n, double[] a) {
+        switch (n) {
+            case 1:
+                return a[0];
+            case 2:
+                return a[0] * a[3] - a[1] * a[2];
+            case 3:
+                return a[0] * (a[4] * a[8] - a[5] * a[7])
+                        - a[1] * (a[3] * a[8] - a[5] * a[6])
+                        + a[2] * (a[3] * a[7] - a[4] * a[6]);
+            case 4: {
+                double s0 = a[0] * a[5] - a[4] * a[1];
+                double s1 = a[0] * a[6] - a[4] * a[2];
+                double s2 = a[0] * a[7] - a[4] * a[3];
+                double s3 = a[1] * a[6] - a[5] * a[2];
+                double s4 = a[1] * a[7] - a[5] * a[3];
+                double s5 = a[2] * a[7] - a[6] * a[3];
+                double c5 = a[10] * a[15] - a[14] * a[11];
+                double c4 = a[9] * a[15] - a[13] * a[11];
+                double c3 = a[9] * a[14] - a[13] * a[10];
+                double c2 = a[8] * a[15] - a[12] * a[11];
+                double c1 = a[8] * a[14] - a[12] * a[10];
+                double c0 = a[8] * a[13] - a[12] * a[9];
+                return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+            }
+            default:
+                throw new IllegalArgumentException("dimension must be 1 to 4: " + n);
+        }
+    }
+
+    /**
+     * out = a^-1, by the adjugate.
+     *
+     * @return false if a is singular, in which case out is unchanged.
+     */
+    public static boolean invert(int n, double[] a, double[] out) {
+        double det = det(n, a);
+        if (det == 0 || !Double.isFinite(det))
+            return false;
+        double r = 1.0 / det;
+        switch (n) {
+            case 1:
+                out[0] = r;
+                return true;
+            case 2:
+                out[0] = a[3] * r;
+                out[1] = -a[1] * r;
+                out[2] = -a[2] * r;
+                out[3] = a[0] * r;
+                return true;
+            case 3:
+                out[0] = (a[4] * a[8] - a[5] * a[7]) * r;
+                out[1] = (a[2] * a[7] - a[1] * a[8]) * r;
+                out[2] = (a[1] * a[5] - a[2] * a[4]) * r;
+                out[3] = (a[5] * a[6] - a[3] * a[8]) * r;
+                out[4] = (a[0] * a[8] - a[2] * a[6]) * r;
+                out[5] = (a[2] * a[3] - a[0] * a[5]) * r;
+                out[6] = (a[3] * a[7] - a[4] * a[6]) * r;
+                out[7] = (a[1] * a[6] - a[0] * a[7]) * r;
+                out[8] = (a[0] * a[4] - a[1] * a[3]) * r;
+                return true;
+            case 4: {
+                double s0 = a[0] * a[5] - a[4] * a[1];
+                double s1 = a[0] * a[6] - a[4] * a[2];
+                double s2 = a[0] * a[7] - a[4] * a[3];
+                double s3 = a[1] * a[6] - a[5] * a[2];
+                double s4 = a[1] * a[7] - a[5] * a[3];
+                double s5 = a[2] * a[7] - a[6] * a[3];
+                double c5 = a[10] * a[15] - a[14] * a[11];
+                double c4 = a[9] * a[15] - a[13] * a[11];
+                double c3 = a[9] * a[14] - a[13] * a[10];
+                double c2 = a[8] * a[15] - a[12] * a[11];
+                double c1 = a[8] * a[14] - a[12] * a[10];
+                double c0 = a[8] * a[13] - a[12] * a[9];
+                out[0] = (a[5] * c5 - a[6] * c4 + a[7] * c3) * r;
+                out[1] = (-a[1] * c5 + a[2] * c4 - a[3] * c3) * r;
+                out[2] = (a[13] * s5 - a[14] * s4 + a[15] * s3) * r;
+                out[3] = (-a[9] * s5 + a[10] * s4 - a[11] * s3) * r;
+                out[4] = (-a[4] * c5 + a[6] * c2 - a[7] * c1) * r;
+                out[5] = (a[0] * c5 - a[2] * c2 + a[3] * c1) * r;
+                out[6] = (-a[12] * s5 + a[14] * s2 - a[15] * s1) * r;
+                out[7] = (a[8] * s5 - a[10] * s2 + a[11] * s1) * r;
+                out[8] = (a[4] * c4 - a[5] * c2 + a[7] * c0) * r;
+                out[9] = (-a[0] * c4 + a[1] * c2 - a[3] * c0) * r;
+                out[10] = (a[12] * s4 - a[13] * s2 + a[15] * s0) * r;
+                out[11] = (-a[8] * s4 + a[9] * s2 - a[11] * s0) * r;
+                out[12] = (-a[4] * c3 + a[5] * c1 - a[6] * c0) * r;
+                out[13] = (a[0] * c3 - a[1] * c1 + a[2] * c0) * r;
+                out[14] = (-a[12] * s3 + a[13] * s1 - a[14] * s0) * r;
+                out[15] = (a[8] * s3 - a[9] * s1 + a[10] * s0) * r;
+                return true;
+            }
+            default:
+                throw new IllegalArgumentException("dimension must be 1 to 4: " + n);
+        }
+    }
+
+    /**
+     * Cholesky decomposition, a = L LT, using only the lower triangle of a.
+     *
+     * @param out L, lower triangular, zero above the diagonal
+     * @return false if a is not positive definite
+     */
+    public static boolean cholesky(int n, double[] a, double[] out) {
+        for (int i = 0; i < n * n; ++i) {
+            out[i] = 0;
+        }
+        for (int j = 0; j < n; ++j) {
+            double d = a[j * n + j];
+            for (int k = 0; k < j; ++k) {
+                d -= out[j * n + k] * out[j * n + k];
+            }
+            if (!(d > 0))
+                return false;
+            double ljj = Math.sqrt(d);
+            out[j * n + j] = ljj;
+            for (int i = j + 1; i < n; ++i) {
+                double s = a[i * n + j];
+                for (int k = 0; k < j; ++k) {
+                    s -= out[i * n + k] * out[j * n + k];
+                }
+                out[i * n + j] = s / ljj;
+            }
+        }
+        return true;
+    }
+
+    /** Copy the lower triangle of the n x n matrix a onto the upper triangle. */
+    public static void symmetrize(int n, double[] a) {
+        for (int i = 0; i < n; ++i) {
+            for (int j = i + 1; j < n; ++j) {
+                a[i * n + j] = a[j * n + i];
+            }
+        }
+    }
+
+    private Kernels() {
+    }
+}
@@ -67,6 +67,13 @@ public class RandomVector<States extends Num> {
         return this.x.minus(otherx);
     }
 
+    /**
+     * Primitive counterpart of the wrapping in xplus and xminus, for use with
+     * Kernels. Euclidean, so it does nothing.
+     */
+    public void wrap(double[] x) {
+    }
+
     /**
      * Weighted average with another variable.
      * 
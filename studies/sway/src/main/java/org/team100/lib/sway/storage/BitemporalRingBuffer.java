@@ -0,0 +1,196 @@
+package org.team100.lib.sway.storage;
+
+import java.util.List;
+
+/**
+ * Bitemporal Buffer in primitive arrays.
+ *
+ * This does the same job as BitemporalBuffer, with less work per operation:
+ *
+ * Entries live in a ring of slots, in arrival (record-time) order, so the
+ * oldest arrival is the one evicted when the buffer is full. A second index
+ * holds the slots sorted by valid time, so searching by valid time is a binary
+ * search, and inserting is a binary search and a single array copy.
+ *
+ * Instead of scanning the records after some record time to find the earliest
+ * unseen valid time, the buffer keeps that "watermark" as entries arrive, and
+ * the consumer takes it, which is O(1).
+ *
+ * There are no map entries to allocate, and no key spinning: duplicate valid
+ * times are nudged apart by looking at the neighbor in the sorted index.
+ * Record times are stored as given.
+ *
+ * All the methods are synchronized, and all of them are short.
+ */
+public class BitemporalRingBuffer<Value> {
+    private static final boolean debug = false;
+    private final int m_capacity;
+    /** Record time for each slot. */
+    private final long[] m_record;
+    /** Valid time for each slot. */
+    private final double[] m_valid;
+    /** Value for each slot. */
+    private final Object[] m_values;
+    /** Slots sorted by valid time, the first m_size are used. */
+    private final int[] m_order;
+    /** The next slot to write, which is also the oldest arrival if full. */
+    private int m_head;
+    private int m_size;
+    /** Earliest valid time put since the last take. */
+    private double m_unseen;
+
+    public BitemporalRingBuffer(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
+        m_capacity = capacity;
+        m_record = new long[capacity];
+        m_valid = new double[capacity];
+        m_values = new Object[capacity];
+        m_order = new int[capacity];
+        m_unseen = Double.MAX_VALUE;
+    }
+
+    /**
+     * Store a measurement. Threadsafe.
+     *
+     * @param recordTime represents the system time the value was written, expected
+     *                   to be FPGATime.
+     * @param validTime  represents the real-world time the value describes, in
+     *                   seconds.
+     * @param value      value to store
+     */
+    public synchronized void put(long recordTime, double validTime, Value value) {
+        if (m_size == m_capacity) {
+            // evict the oldest arrival
+            remove(indexOf(m_head));
+        }
+        int pos = upperBound(validTime);
+        // fix the key to avoid duplicates, like BitemporalBuffer does.
+        while (pos > 0 && m_valid[m_order[pos - 1]] == validTime) {
+            validTime = Math.nextUp(validTime);
+            while (pos < m_size && m_valid[m_order[pos]] <= validTime)
+                pos++;
+        }
+        if (debug)
+            System.out.println("put measurement " + validTime + " " + value);
+        int slot = m_head;
+        m_record[slot] = recordTime;
+        m_valid[slot] = validTime;
+        m_values[slot] = value;
+        System.arraycopy(m_order, pos, m_order, pos + 1, m_size - pos);
+        m_order[pos] = slot;
+        m_size++;
+        m_head = (m_head + 1) % m_capacity;
+        if (validTime < m_unseen)
+            m_unseen = validTime;
+    }
+
+    /**
+     * The earliest valid time of all the values put since the last call, or
+     * Double.MAX_VALUE if there are none. This replaces
+     * BitemporalBuffer.earliestValidTimeForRecordsAfter(), so the consumer doesn't
+     * need to keep track of record time.
+     */
+    public synchronized double takeEarliestUnseen() {
+        double result = m_unseen;
+        m_unseen = Double.MAX_VALUE;
+        return result;
+    }
+
+    /**
+     * Copy the entries with valid time at or after validTimeSec, in valid-time
+     * order.
+     *
+     * @param validTimeSec inclusive lower bound
+     * @param validTimes   output, at least capacity long
+     * @param values       output, cleared first
+     * @return the number of entries copied
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized int copyValidTail(double validTimeSec, double[] validTimes, List<Value> values) {
+        values.clear();
+        int count = 0;
+        for (int i = lowerBound(validTimeSec); i < m_size; ++i) {
+            int slot = m_order[i];
+            validTimes[count++] = m_valid[slot];
+            values.add((Value) m_values[slot]);
+        }
+        return count;
+    }
+
+    /**
+     * Find the most-recent value at or before the specified valid time.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Value floorValue(double validTimeSec) {
+        if (validTimeSec < 0)
+            throw new IllegalArgumentException("Negative time is not allowed: " + validTimeSec);
+        int pos = upperBound(validTimeSec) - 1;
+        if (pos < 0)
+            throw new IllegalStateException("No floor key (not initialized?): " + validTimeSec);
+        return (Value) m_values[m_order[pos]];
+    }
+
+    /** The latest valid time in the buffer, or -Double.MAX_VALUE if empty. */
+    public synchronized double latestValidTime() {
+        if (m_size == 0)
+            return -Double.MAX_VALUE;
+        return m_valid[m_order[m_size - 1]];
+    }
+
+    /** The record time of the entry with the given valid time, or -1 if absent. */
+    public synchronized long recordTime(double validTimeSec) {
+        int pos = lowerBound(validTimeSec);
+        if (pos == m_size || m_valid[m_order[pos]] != validTimeSec)
+            return -1;
+        return m_record[m_order[pos]];
+    }
+
+    public synchronized int size() {
+        return m_size;
+    }
+
+    ///////////////////////////////////////
+
+    /** First position with valid time >= t. */
+    private int lowerBound(double t) {
+        int lo = 0;
+        int hi = m_size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_valid[m_order[mid]] < t)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** First position with valid time > t. */
+    private int upperBound(double t) {
+        int lo = 0;
+        int hi = m_size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_valid[m_order[mid]] <= t)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /** Position of the slot in the sorted index. Valid times are distinct. */
+    private int indexOf(int slot) {
+        int pos = lowerBound(m_valid[slot]);
+        if (pos == m_size || m_order[pos] != slot)
+            throw new IllegalStateException("This should never happen: missing slot: " + slot);
+        return pos;
+    }
+
+    private void remove(int pos) {
+        m_values[m_order[pos]] = null;
+        System.arraycopy(m_order, pos + 1, m_order, pos, m_size - pos - 1);
+        m_size--;
+    }
+}
@@ -0,0 +1,172 @@
+package org.team100.lib.sway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.sway.math.MeasurementUncertainty;
+import org.team100.lib.sway.math.Variance;
+import org.team100.lib.sway.math.WhiteNoiseVector;
+import org.team100.lib.sway.system.NonlinearPlant;
+import org.team100.lib.sway.system.examples.Pendulum1D;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.StateSpaceUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N2;
+
+class GainScheduleTest {
+    private static final boolean dump = false;
+    private static final double kDt = 0.02;
+
+    private final Vector<N2> stateTolerance = VecBuilder.fill(0.01, 0.2);
+    private final Vector<N1> controlTolerance = VecBuilder.fill(12.0);
+    private final NonlinearPlant<N2, N1, N2> plant = new Pendulum1D(
+            WhiteNoiseVector.noise2(0.015, 0.17),
+            MeasurementUncertainty.for2(0.01, 0.1));
+
+    /** The exact solution at the equilibrium for x. */
+    private Matrix<N1, N2> exact(Matrix<N2, N1> x) {
+        Matrix<N1, N1> u = plant.finvWrtU(
+                plant.make(x, Variance.zero2()),
+                plant.make(new Matrix<>(Nat.N2(), Nat.N1()), Variance.zero2()));
+        return GainCalculator.calculate(
+                plant,
+                StateSpaceUtil.makeCostMatrix(stateTolerance),
+                StateSpaceUtil.makeCostMatrix(controlTolerance),
+                x, u, kDt);
+    }
+
+    private GainSchedule<N2, N1, N2> angleSchedule() {
+        return new GainSchedule<>(plant, stateTolerance, controlTolerance, kDt,
+                new int[] { 0 }, new double[] { -Math.PI / 2 }, new double[] { Math.PI / 2 }, new int[] { 37 });
+    }
+
+    /** At zero, the table matches GainCalculator. */
+    @Test
+    void testZero() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        GainCalculator<N2, N1, N2> gc = new GainCalculator<>(plant, stateTolerance, controlTolerance, kDt);
+        double[] K = new double[2];
+        schedule.get(VecBuilder.fill(0, 0), K);
+        assertEquals(gc.getK().get(0, 0), K[0], 1e-6);
+        assertEquals(gc.getK().get(0, 1), K[1], 1e-6);
+    }
+
+    /** K really does depend on the angle. */
+    @Test
+    void testVaries() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        double[] horizontal = new double[2];
+        double[] vertical = new double[2];
+        schedule.get(VecBuilder.fill(0, 0), horizontal);
+        schedule.get(VecBuilder.fill(1.5, 0), vertical);
+        assertTrue(Math.abs(vertical[0] - horizontal[0]) > 0.1,
+                String.format("%f %f", vertical[0], horizontal[0]));
+    }
+
+    /** Between grid points, interpolation is close to the exact solve. */
+    @Test
+    void testAccuracy() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        Random random = new Random(0);
+        double[] K = new double[2];
+        double maxError = 0;
+        for (int i = 0; i < 100; ++i) {
+            double p = (Math.PI / 2) * (2 * random.nextDouble() - 1);
+            Matrix<N2, N1> x = VecBuilder.fill(p, 0);
+            Matrix<N1, N2> expected = exact(x);
+            schedule.get(x, K);
+            for (int j = 0; j < 2; ++j) {
+                double error = Math.abs(K[j] - expected.get(0, j)) / Math.abs(expected.get(0, j));
+                maxError = Math.max(maxError, error);
+            }
+        }
+        if (dump)
+            System.out.printf("max relative error %.5f\n", maxError);
+        assertTrue(maxError < 0.01, "error " + maxError);
+    }
+
+    /** Two dimensions: velocity doesn't affect the pendulum linearization. */
+    @Test
+    void testTwoDimensions() {
+        GainSchedule<N2, N1, N2> schedule2 = new GainSchedule<>(plant, stateTolerance, controlTolerance, kDt,
+                new int[] { 0, 1 },
+                new double[] { -Math.PI / 2, -2 },
+                new double[] { Math.PI / 2, 2 },
+                new int[] { 37, 5 });
+        assertEquals(37 * 5, schedule2.size());
+        GainSchedule<N2, N1, N2> schedule1 = angleSchedule();
+        Random random = new Random(1);
+        double[] K1 = new double[2];
+        double[] K2 = new double[2];
+        for (int i = 0; i < 100; ++i) {
+            Matrix<N2, N1> x = VecBuilder.fill(
+                    (Math.PI / 2) * (2 * random.nextDouble() - 1),
+                    3 * (2 * random.nextDouble() - 1));
+            schedule1.get(x, K1);
+            schedule2.get(x, K2);
+            assertEquals(K1[0], K2[0], 1e-6);
+            assertEquals(K1[1], K2[1], 1e-6);
+        }
+    }
+
+    /** Outside the grid, the edge is used. */
+    @Test
+    void testClamped() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        double[] edge = new double[2];
+        double[] outside = new double[2];
+        schedule.get(VecBuilder.fill(Math.PI / 2, 0), edge);
+        schedule.get(VecBuilder.fill(3, 0), outside);
+        assertEquals(edge[0], outside[0], 1e-12);
+        assertEquals(edge[1], outside[1], 1e-12);
+    }
+
+    @Test
+    void testCalculate() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        Matrix<N2, N1> x = VecBuilder.fill(0.5, 0.1);
+        Matrix<N2, N1> error = VecBuilder.fill(0.01, -0.02);
+        double[] K = new double[2];
+        double[] u = new double[1];
+        schedule.calculate(x, error, K, u);
+        assertEquals(K[0] * 0.01 - K[1] * 0.02, u[0], 1e-12);
+    }
+
+    /** Compare the exact solve in the loop with the table lookup. */
+    @Test
+    void testBenchmark() {
+        GainSchedule<N2, N1, N2> schedule = angleSchedule();
+        double[] K = new double[2];
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            int exactIterations = 1000;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < exactIterations; ++i) {
+                sum += exact(VecBuilder.fill(i * 1e-3, 0)).get(0, 0);
+            }
+            long exactNs = System.nanoTime() - startTime;
+
+            int tableIterations = 1000000;
+            Matrix<N2, N1> x = new Matrix<>(Nat.N2(), Nat.N1());
+            startTime = System.nanoTime();
+            for (int i = 0; i < tableIterations; ++i) {
+                x.set(0, 0, i * 1e-6);
+                schedule.get(x, K);
+                sum += K[0];
+            }
+            long tableNs = System.nanoTime() - startTime;
+            if (dump)
+                System.out.printf("round %d ns/op exact %.0f table %.1f\n",
+                        round, (double) exactNs / exactIterations, (double) tableNs / tableIterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(Double.isFinite(sum));
+    }
+}
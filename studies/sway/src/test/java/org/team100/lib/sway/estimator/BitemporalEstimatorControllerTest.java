@@ -1,6 +1,10 @@
 package org.team100.lib.sway.estimator;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.sway.controller.GainCalculator;
@@ -12,13 +16,17 @@ import org.team100.lib.sway.reference.Reference;
 import org.team100.lib.sway.system.NonlinearPlant;
 import org.team100.lib.sway.system.examples.DoubleIntegratorCartesian1D;
 
+import com.sun.management.ThreadMXBean;
+
 import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.Nat;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.Vector;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N2;
 
 class BitemporalEstimatorControllerTest {
+    private static final boolean dump = false;
     private static final double dtSec = 0.02;
 
     /** Tests a very simple case with zero acceleration (so zero required input). */
@@ -162,4 +170,91 @@ class BitemporalEstimatorControllerTest {
             assertEquals(actual_a, reference.getRDot(t).get(1, 0), 0.04);
         }
     }
+
+    /**
+     * A controller with 50 measurements waiting to be replayed, and a control
+     * for each.
+     */
+    private BitemporalEstimatorController<N2, N1, N2> fifty() {
+        WhiteNoiseVector<N2> wx = WhiteNoiseVector.noise2(0.01, 0.01);
+        MeasurementUncertainty<N2> vx = MeasurementUncertainty.for2(0.01, 0.1);
+        NonlinearPlant<N2, N1, N2> system = new DoubleIntegratorCartesian1D(wx, vx);
+        Variance<N2> px = Variance.from2StdDev(.01, .01);
+        RandomVector<N2> initialState = new RandomVector<>(VecBuilder.fill(0, 1), px);
+        Reference<N2> reference = new Reference<>() {
+            @Override
+            public Matrix<N2, N1> getR(double tSec) {
+                return VecBuilder.fill(tSec, 1);
+            }
+
+            @Override
+            public Matrix<N2, N1> getRDot(double tSec) {
+                return VecBuilder.fill(1, 0);
+            }
+        };
+        Matrix<N1, N2> K = new Matrix<>(Nat.N1(), Nat.N2());
+        BitemporalEstimatorController<N2, N1, N2> controller = new BitemporalEstimatorController<>(
+                system, initialState, VecBuilder.fill(0), reference, K);
+        for (int i = 1; i <= 50; ++i) {
+            double t = i * dtSec;
+            // a little off the reference, so the fusion has something to do
+            controller.acceptMeasurement(i, t,
+                    new RandomVector<>(VecBuilder.fill(t + 0.01 * Math.sin(i), 1), px));
+            controller.recordHistory(t - dtSec / 2, VecBuilder.fill(0.1 * Math.cos(i)));
+        }
+        return controller;
+    }
+
+    /** The primitive replay matches the Matrix replay. */
+    @Test
+    void testPrimitiveReplay() {
+        BitemporalEstimatorController<N2, N1, N2> primitive = fifty();
+        BitemporalEstimatorController<N2, N1, N2> matrices = fifty();
+        assertEquals(50, primitive.replay(0));
+        assertEquals(50, matrices.replayWithMatrices(0));
+        for (int i = 1; i <= 50; ++i) {
+            RandomVector<N2> expected = matrices.predictNow(i * dtSec);
+            RandomVector<N2> actual = primitive.predictNow(i * dtSec);
+            assertArrayEquals(expected.x.getData(), actual.x.getData(), 1e-9);
+            assertArrayEquals(expected.Kxx.getData(), actual.Kxx.getData(), 1e-9);
+        }
+    }
+
+    /** One replay of 50 measurements, time and allocation, each way. */
+    @Test
+    void testReplayBenchmark() {
+        ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int iterations = 200;
+        double sum = 0;
+        for (int round = 0; round < 3; ++round) {
+            long matrixNs = 0;
+            long matrixBytes = 0;
+            long primitiveNs = 0;
+            long primitiveBytes = 0;
+            for (int i = 0; i < iterations; ++i) {
+                BitemporalEstimatorController<N2, N1, N2> matrices = fifty();
+                BitemporalEstimatorController<N2, N1, N2> primitive = fifty();
+
+                long bytes = bean.getThreadAllocatedBytes(thread);
+                long startTime = System.nanoTime();
+                sum += matrices.replayWithMatrices(0);
+                matrixNs += System.nanoTime() - startTime;
+                matrixBytes += bean.getThreadAllocatedBytes(thread) - bytes;
+
+                bytes = bean.getThreadAllocatedBytes(thread);
+                startTime = System.nanoTime();
+                sum += primitive.replay(0);
+                primitiveNs += System.nanoTime() - startTime;
+                primitiveBytes += bean.getThreadAllocatedBytes(thread) - bytes;
+            }
+            if (dump)
+                System.out.printf("round %d per replay: matrix %.0f us %d bytes, primitive %.0f us %d bytes\n",
+                        round,
+                        matrixNs / 1e3 / iterations, matrixBytes / iterations,
+                        primitiveNs / 1e3 / iterations, primitiveBytes / iterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(sum > 0);
+    }
 }
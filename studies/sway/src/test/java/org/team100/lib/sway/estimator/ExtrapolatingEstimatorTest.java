@@ -1,6 +1,7 @@
 package org.team100.lib.sway.estimator;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.sway.math.AngularRandomVector;
@@ -400,4 +401,23 @@ class ExtrapolatingEstimatorTest {
         assertArrayEquals(new double[] { 0.04, 0, 0, 0.01 }, x.Kxx.getData(), kDelta);
     }
 
+    /** The primitive version gives exactly the same answer, including wrapping. */
+    @Test
+    void testPrimitive() {
+        WhiteNoiseVector<N2> w = WhiteNoiseVector.noise2(0.015, 0.17);
+        MeasurementUncertainty<N2> v = MeasurementUncertainty.for2(0.01, 0.1);
+        DoubleIntegratorRotary1D system = new DoubleIntegratorRotary1D(w, v);
+        ExtrapolatingEstimator<N2, N1, N2> predictor = new ExtrapolatingEstimator<>(system);
+        Variance<N2> p = Variance.from2StdDev(0.1, 0.1);
+        // near the branch cut, moving across it
+        RandomVector<N2> x = new AngularRandomVector<>(VecBuilder.fill(Math.PI - 0.01, 1), p);
+        Matrix<N1, N1> u = VecBuilder.fill(1);
+        for (double dt : new double[] { 0, 0.02, 0.1, 1 }) {
+            RandomVector<N2> expected = predictor.predictWithNoise(x, u, dt);
+            RandomVector<N2> actual = predictor.predictWithNoisePrimitive(x, u, dt);
+            assertEquals(expected.getClass(), actual.getClass());
+            assertArrayEquals(expected.x.getData(), actual.x.getData(), 1e-12);
+            assertArrayEquals(expected.Kxx.getData(), actual.Kxx.getData(), 1e-12);
+        }
+    }
 }
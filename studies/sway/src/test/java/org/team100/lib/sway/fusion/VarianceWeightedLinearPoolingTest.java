@@ -317,4 +317,31 @@ class VarianceWeightedLinearPoolingTest extends PoolingTestUtil {
             aV.Kxx.getValue().get(0,0));
         }
     }
+
+    /** The primitive version matches, for a variety of inputs. */
+    @Test
+    void testPrimitive() {
+        Random r = new Random(0);
+        for (int i = 0; i < 100; ++i) {
+            double c = r.nextDouble() - 0.5;
+            RandomVector<N2> aV = v2(r.nextGaussian(), r.nextGaussian(),
+                    1 + r.nextDouble(), c, c, 1 + r.nextDouble());
+            RandomVector<N2> bV = v2(r.nextGaussian(), r.nextGaussian(),
+                    1 + 10 * r.nextDouble(), 0, 0, 1 + 10 * r.nextDouble());
+            RandomVector<N2> expected = p2.fuse(aV, bV);
+            RandomVector<N2> actual = p2.fusePrimitive(aV, bV);
+            assertArrayEquals(expected.x.getData(), actual.x.getData(), 1e-9);
+            assertArrayEquals(expected.Kxx.getData(), actual.Kxx.getData(), 1e-9);
+        }
+        // angles wrap
+        RandomVector<N1> aA = a1(Math.PI - 0.1, 1);
+        RandomVector<N1> bA = a1(-Math.PI + 0.1, 1);
+        RandomVector<N1> expected = p1.fuse(aA, bA);
+        RandomVector<N1> actual = p1.fusePrimitive(aA, bA);
+        assertEquals(expected.x.get(0, 0), actual.x.get(0, 0), 1e-9);
+        assertEquals(expected.Kxx.get(0, 0), actual.Kxx.get(0, 0), 1e-9);
+        // same failures
+        assertThrows(IllegalArgumentException.class, () -> p1.fusePrimitive(v1(0, 0), v1(1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> p1.fusePrimitive(aA, v1(1, 1)));
+    }
 }
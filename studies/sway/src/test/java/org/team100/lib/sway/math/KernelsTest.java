@@ -0,0 +1,177 @@
+package org.team100.lib.sway.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class KernelsTest {
+    private static final double kDelta = 1e-9;
+
+    private static double[] random(Random r, int n) {
+        double[] a = new double[n * n];
+        for (int i = 0; i < n * n; ++i) {
+            a[i] = 2 * r.nextDouble() - 1;
+        }
+        return a;
+    }
+
+    /** Symmetric positive definite: a aT + I */
+    private static double[] spd(Random r, int n) {
+        double[] a = random(r, n);
+        double[] out = new double[n * n];
+        Kernels.mulTransB(n, a, a, out);
+        for (int i = 0; i < n; ++i) {
+            out[i * n + i] += 1;
+        }
+        return out;
+    }
+
+    /** The obvious triple loop, for comparison. */
+    private static double[] naiveMul(int n, double[] a, double[] b) {
+        double[] out = new double[n * n];
+        for (int i = 0; i < n; ++i)
+            for (int j = 0; j < n; ++j)
+                for (int k = 0; k < n; ++k)
+                    out[i * n + j] += a[i * n + k] * b[k * n + j];
+        return out;
+    }
+
+    @Test
+    void testMul() {
+        Random r = new Random(0);
+        for (int n = 1; n <= 4; ++n) {
+            double[] a = random(r, n);
+            double[] b = random(r, n);
+            double[] out = new double[n * n];
+            Kernels.mul(n, a, b, out);
+            double[] expected = naiveMul(n, a, b);
+            for (int i = 0; i < n * n; ++i) {
+                assertEquals(expected[i], out[i], kDelta);
+            }
+        }
+    }
+
+    @Test
+    void testMulTransB() {
+        double[] a = { 1, 2, 3, 4 };
+        double[] b = { 5, 6, 7, 8 };
+        double[] out = new double[4];
+        Kernels.mulTransB(2, a, b, out);
+        // bT = [5 7; 6 8]
+        assertEquals(17, out[0], kDelta);
+        assertEquals(23, out[1], kDelta);
+        assertEquals(39, out[2], kDelta);
+        assertEquals(53, out[3], kDelta);
+    }
+
+    @Test
+    void testMulVec() {
+        double[] a = { 1, 2, 3, 4 };
+        double[] x = { 1, -1 };
+        double[] out = new double[2];
+        Kernels.mulVec(2, a, x, out);
+        assertEquals(-1, out[0], kDelta);
+        assertEquals(-1, out[1], kDelta);
+    }
+
+    @Test
+    void testElementwise() {
+        double[] a = { 1, 2, 3 };
+        double[] b = { 4, 5, 6 };
+        double[] out = new double[3];
+        Kernels.add(3, a, b, out);
+        assertEquals(9, out[2]);
+        Kernels.sub(3, a, b, out);
+        assertEquals(-3, out[2]);
+        Kernels.scale(3, 2, a, out);
+        assertEquals(6, out[2]);
+        // in place is ok
+        Kernels.add(3, a, a, a);
+        assertEquals(6, a[2]);
+    }
+
+    @Test
+    void testInvert() {
+        Random r = new Random(1);
+        for (int n = 1; n <= 4; ++n) {
+            for (int trial = 0; trial < 100; ++trial) {
+                double[] a = random(r, n);
+                double[] inv = new double[n * n];
+                assertTrue(Kernels.invert(n, a, inv));
+                double[] product = new double[n * n];
+                Kernels.mul(n, a, inv, product);
+                double[] eye = new double[n * n];
+                Kernels.identity(n, eye);
+                for (int i = 0; i < n * n; ++i) {
+                    // random matrices can be badly conditioned
+                    assertEquals(eye[i], product[i], 1e-6, "n " + n);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSingular() {
+        double[] a = { 1, 2, 2, 4 };
+        double[] inv = { 7, 7, 7, 7 };
+        assertFalse(Kernels.invert(2, a, inv));
+        // unchanged
+        assertEquals(7, inv[0]);
+    }
+
+    @Test
+    void testDet() {
+        assertEquals(-2, Kernels.det(2, new double[] { 1, 2, 3, 4 }), kDelta);
+        assertEquals(24, Kernels.det(4, new double[] {
+                1, 0, 0, 0,
+                0, 2, 0, 0,
+                0, 0, 3, 0,
+                0, 0, 0, 4 }), kDelta);
+        // swapping two rows flips the sign
+        assertEquals(-24, Kernels.det(4, new double[] {
+                0, 2, 0, 0,
+                1, 0, 0, 0,
+                0, 0, 3, 0,
+                0, 0, 0, 4 }), kDelta);
+    }
+
+    @Test
+    void testCholesky() {
+        Random r = new Random(2);
+        for (int n = 1; n <= 4; ++n) {
+            double[] a = spd(r, n);
+            double[] l = new double[n * n];
+            assertTrue(Kernels.cholesky(n, a, l));
+            double[] product = new double[n * n];
+            Kernels.mulTransB(n, l, l, product);
+            for (int i = 0; i < n * n; ++i) {
+                assertEquals(a[i], product[i], kDelta);
+            }
+        }
+        // indefinite
+        assertFalse(Kernels.cholesky(2, new double[] { 1, 0, 0, -1 }, new double[4]));
+    }
+
+    @Test
+    void testSymmetrize() {
+        double[] a = { 1, 9, 2, 3 };
+        Kernels.symmetrize(2, a);
+        assertEquals(2, a[1]);
+    }
+
+    @Test
+    void testWorkspace() throws InterruptedException {
+        Kernels.Workspace w = Kernels.workspace();
+        assertSame(w, Kernels.workspace());
+        Kernels.Workspace[] other = new Kernels.Workspace[1];
+        Thread t = new Thread(() -> other[0] = Kernels.workspace());
+        t.start();
+        t.join();
+        assertTrue(other[0] != null && other[0] != w);
+    }
+}
@@ -0,0 +1,226 @@
+package org.team100.lib.sway.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class BitemporalRingBufferTest {
+    private static final boolean dump = false;
+
+    @Test
+    void testValidOrder() {
+        BitemporalRingBuffer<String> buf = new BitemporalRingBuffer<>(10);
+        buf.put(0, 3.0, "c");
+        buf.put(1, 1.0, "a");
+        buf.put(2, 2.0, "b");
+        double[] times = new double[10];
+        List<String> values = new ArrayList<>();
+        assertEquals(3, buf.copyValidTail(0, times, values));
+        assertEquals(List.of("a", "b", "c"), values);
+        assertEquals(1.0, times[0]);
+        assertEquals(2.0, times[1]);
+        assertEquals(3.0, times[2]);
+        // inclusive
+        assertEquals(2, buf.copyValidTail(2.0, times, values));
+        assertEquals(List.of("b", "c"), values);
+        assertEquals(0, buf.copyValidTail(3.5, times, values));
+        assertEquals(1, buf.recordTime(1.0));
+        assertEquals(-1, buf.recordTime(1.5));
+    }
+
+    @Test
+    void testDuplicateKeys() {
+        BitemporalRingBuffer<String> buf = new BitemporalRingBuffer<>(10);
+        buf.put(0, 0.0, "hello");
+        buf.put(0, 0.0, "duplicate");
+        double[] times = new double[10];
+        List<String> values = new ArrayList<>();
+        assertEquals(2, buf.copyValidTail(0, times, values));
+        assertEquals(List.of("hello", "duplicate"), values);
+        // same nudge as BitemporalBuffer
+        assertEquals(0.0, times[0]);
+        assertEquals(4.9E-324, times[1]);
+    }
+
+    /** The oldest arrival is evicted, whatever its valid time. */
+    @Test
+    void testCapacity() {
+        BitemporalRingBuffer<String> buf = new BitemporalRingBuffer<>(3);
+        buf.put(0, 5.0, "late");
+        buf.put(1, 1.0, "a");
+        buf.put(2, 2.0, "b");
+        buf.put(3, 3.0, "c");
+        assertEquals(3, buf.size());
+        double[] times = new double[3];
+        List<String> values = new ArrayList<>();
+        buf.copyValidTail(0, times, values);
+        assertEquals(List.of("a", "b", "c"), values);
+        assertEquals(3.0, buf.latestValidTime());
+    }
+
+    @Test
+    void testWatermark() {
+        BitemporalRingBuffer<String> buf = new BitemporalRingBuffer<>(10);
+        assertEquals(Double.MAX_VALUE, buf.takeEarliestUnseen());
+        buf.put(0, 2.0, "b");
+        buf.put(1, 1.0, "a");
+        buf.put(2, 3.0, "c");
+        assertEquals(1.0, buf.takeEarliestUnseen());
+        // taking resets it
+        assertEquals(Double.MAX_VALUE, buf.takeEarliestUnseen());
+        buf.put(3, 2.5, "d");
+        assertEquals(2.5, buf.takeEarliestUnseen());
+    }
+
+    @Test
+    void testFloor() {
+        BitemporalRingBuffer<String> buf = new BitemporalRingBuffer<>(10);
+        assertThrows(IllegalStateException.class, () -> buf.floorValue(1));
+        buf.put(0, 1.0, "a");
+        buf.put(1, 2.0, "b");
+        assertEquals("a", buf.floorValue(1.0));
+        assertEquals("a", buf.floorValue(1.5));
+        assertEquals("b", buf.floorValue(10));
+        assertThrows(IllegalStateException.class, () -> buf.floorValue(0.5));
+        assertThrows(IllegalArgumentException.class, () -> buf.floorValue(-1));
+    }
+
+    /**
+     * Four producers and one consumer. Every value is seen by the consumer
+     * (nothing is evicted, because the capacity is large enough), and every copy
+     * is sorted.
+     */
+    @Test
+    void testStress() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20000;
+        BitemporalRingBuffer<Integer> buf = new BitemporalRingBuffer<>(producers * perProducer);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; ++p) {
+            final int id = p;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(id);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; ++i) {
+                    // latency up to 0.1 sec
+                    double validTime = i * 0.001 - random.nextDouble() * 0.1;
+                    buf.put(i, Math.max(0, validTime), id * perProducer + i);
+                }
+                done.countDown();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        AtomicBoolean sorted = new AtomicBoolean(true);
+        Thread consumer = new Thread(() -> {
+            double[] times = new double[producers * perProducer];
+            List<Integer> values = new ArrayList<>();
+            while (done.getCount() > 0) {
+                double earliest = buf.takeEarliestUnseen();
+                if (earliest == Double.MAX_VALUE)
+                    continue;
+                int n = buf.copyValidTail(earliest, times, values);
+                for (int i = 1; i < n; ++i) {
+                    if (times[i] <= times[i - 1])
+                        sorted.set(false);
+                }
+            }
+        });
+        consumer.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        consumer.join();
+
+        assertTrue(sorted.get());
+        assertEquals(producers * perProducer, buf.size());
+        double[] times = new double[producers * perProducer];
+        List<Integer> values = new ArrayList<>();
+        int n = buf.copyValidTail(0, times, values);
+        assertEquals(producers * perProducer, n);
+        Set<Integer> distinct = new HashSet<>(values);
+        assertEquals(producers * perProducer, distinct.size());
+        for (int i = 1; i < n; ++i) {
+            assertTrue(times[i] > times[i - 1]);
+        }
+    }
+
+    /**
+     * Replay cost: find the unseen measurements and copy everything since, for
+     * a few latency distributions. The old buffer scans the record tail and
+     * iterates the valid tail map; the ring buffer takes the watermark and
+     * copies. The horizon bounds the copy.
+     */
+    @Test
+    void testBenchmark() {
+        int capacity = 1000;
+        double dt = 0.02;
+        double[] meanLatencies = { 0.0, 0.05, 0.2 };
+        double sum = 0;
+        for (double meanLatency : meanLatencies) {
+            BitemporalBuffer<Integer> oldBuf = new BitemporalBuffer<>(capacity);
+            BitemporalRingBuffer<Integer> newBuf = new BitemporalRingBuffer<>(capacity);
+            Random random = new Random(0);
+            double[] times = new double[capacity];
+            List<Integer> values = new ArrayList<>(capacity);
+            long oldNs = 0;
+            long newNs = 0;
+            long horizonNs = 0;
+            int iterations = 20000;
+            long recordTime = 0;
+            for (int i = 0; i < iterations; ++i) {
+                double latency = -meanLatency * Math.log(1 - random.nextDouble());
+                double validTime = Math.max(0, i * dt - latency);
+                oldBuf.put(i, validTime, i);
+                newBuf.put(i, validTime, i);
+
+                long startTime = System.nanoTime();
+                double earliest = oldBuf.earliestValidTimeForRecordsAfter(recordTime);
+                recordTime = i + 1;
+                for (Entry<Double, Entry<Long, Integer>> e : oldBuf.validTailMap(earliest).entrySet()) {
+                    sum += e.getValue().getValue();
+                }
+                oldNs += System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                earliest = newBuf.takeEarliestUnseen();
+                int n = newBuf.copyValidTail(earliest, times, values);
+                for (int j = 0; j < n; ++j) {
+                    sum += values.get(j);
+                }
+                newNs += System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                earliest = Math.max(earliest, newBuf.latestValidTime() - 0.1);
+                n = newBuf.copyValidTail(earliest, times, values);
+                for (int j = 0; j < n; ++j) {
+                    sum += values.get(j);
+                }
+                horizonNs += System.nanoTime() - startTime;
+            }
+            if (dump)
+                System.out.printf("mean latency %.2f ns/replay old %.0f ring %.0f ring+horizon %.0f\n",
+                        meanLatency, (double) oldNs / iterations, (double) newNs / iterations,
+                        (double) horizonNs / iterations);
+        }
+        // keep the JIT from discarding the work
+        assertTrue(sum > 0);
+    }
+}
@@ -29,6 +29,7 @@ import org.team100.lib.motion.drivetrain.kinematics.FrameTransform;
 import org.team100.lib.motion.drivetrain.kinematics.SwerveDriveKinematicsFactory;
 import org.team100.lib.sensors.HeadingInterface;
 import org.team100.lib.sensors.SimulatedHeading;
+import org.team100.lib.util.Housekeeping;
 
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
@@ -40,6 +41,7 @@ import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.trajectory.TrajectoryConfig;
 import edu.wpi.first.math.trajectory.TrajectoryGenerator;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
@@ -320,6 +322,7 @@ public class Robot extends TimedRobot {
 
     @Override
     public void robotPeriodic() {
+        double startS = Timer.getFPGATimestamp();
         // m_swerve.updateOdometry();
         // if you forget this scheduler thing then nothing will happen
         CommandScheduler.getInstance().run();
@@ -328,6 +331,8 @@ public class Robot extends TimedRobot {
         //         CommandScheduler.getInstance().isScheduled(m_driveCommand),
         //         m_swerve.getDefaultCommand().getName(),
         //         CommandScheduler.getInstance().isScheduled(waypointCommand));
+        // last, so it only uses what's left of the cycle.
+        Housekeeping.get().run(startS);
     }
 
     @Override
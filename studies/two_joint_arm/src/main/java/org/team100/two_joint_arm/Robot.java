@@ -1,6 +1,9 @@
 package org.team100.two_joint_arm;
 
+import org.team100.lib.util.Housekeeping;
+
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 
 public class Robot extends TimedRobot {
@@ -12,6 +15,9 @@ public class Robot extends TimedRobot {
 
     @Override
     public void robotPeriodic() {
+        double startS = Timer.getFPGATimestamp();
         CommandScheduler.getInstance().run();
+        // last, so it only uses what's left of the cycle.
+        Housekeeping.get().run(startS);
     }
 }